@@ -1,5 +1,9 @@
 package edu.virginia.jinsup;
 
+import java.util.Random;
+
+import org.apache.commons.math3.random.RandomGenerator;
+
 /**
  * Holds implementation of a generic agent's acting procedures. All new agents
  * should inherit from this class since act() is not implemented, i.e. there is
@@ -10,27 +14,18 @@ package edu.virginia.jinsup;
 public abstract class Agent {
 
   /**
-   * Constant used to index the results of the checkInventory() method.
-   * Indicates which side of the order book the agent should clear.
-   */
-  protected static final int WILL_BUY = 0;
-
-  /**
-   * Constant used to index the results of the checkInventory() method.
-   * Indicates if an agent has broken the inventory limit.
+   * Flag of the result of the checkInventory() method. Indicates which side
+   * the agent should trade on, and so which side of the order book it should
+   * clear if it has broken the limit.
    */
-  protected static final int OVER_LIMIT = 1;
+  protected static final int WILL_BUY = 1;
 
   /**
-   * Constant used to index the results of the checkInventory() method.
-   * Indicates if an agent should take further action after breaking the limit.
+   * Flag of the result of the checkInventory() method. Indicates if an agent
+   * has broken the inventory limit, in which case it should clear one side of
+   * the order book and trade on the other (override).
    */
-  protected static final int OVERRIDE = 2;
-
-  /**
-   * The ID that should be assigned to the next agent created.
-   */
-  private static long nextAgentID = 0;
+  protected static final int OVER_LIMIT = 2;
 
   /**
    * ID of the agent. Used by the Order class to track agents.
@@ -46,6 +41,11 @@ public abstract class Agent {
    * Matching engine that is used in the simulation. Should not be changed.
    */
   private final MatchingEngine matchingEngine;
+
+  /**
+   * The agent's own stream of random numbers.
+   */
+  private final RandomStream randomStream;
   /**
    * Next time that the agent can act. This is determined in the act() method.
    */
@@ -92,7 +92,7 @@ public abstract class Agent {
   /**
    * Must pass in the MatchingEngine that is used for the simulation. Time is
    * set to a negative value so that the agent is not automatically picked to
-   * act. The agent is also added automatically to the MatchingEngine's agentMap
+   * act. The agent is also added automatically to the MatchingEngine's agents
    * so that it can keep track of the agent.
    * 
    * @param matchEng
@@ -102,9 +102,29 @@ public abstract class Agent {
    *          The Type of the agent.
    */
   public Agent(MatchingEngine matchEng, String type) {
-    this.id = nextAgentID;
-    nextAgentID++;
+    this(matchEng, type, null);
+  }
+
+  /**
+   * Creates an agent that draws its random numbers from a given stream instead
+   * of from its own, such as a member of a PoissonAgentGroup, which shares the
+   * stream of its group.
+   * 
+   * @param matchEng
+   *          The MatchingEngine of the simulator.
+   * @param type
+   *          The Type of the agent.
+   * @param randomStream
+   *          Stream of random numbers to draw from, or null to draw from the
+   *          agent's own stream.
+   */
+  public Agent(MatchingEngine matchEng, String type,
+    RandomStream randomStream) {
+    this.id = matchEng.getSimulation().takeNextAgentID();
     this.matchingEngine = matchEng;
+    this.randomStream =
+      (randomStream != null) ? randomStream : matchEng.getSimulation()
+        .createStream(this.id);
     this.inventory = 0;
     this.nextActTime = -1;
     this.nextOrderTime = -1;
@@ -128,13 +148,19 @@ public abstract class Agent {
   }
 
   /**
-   * Method used by some classes to allow messages to be passed from
-   * MatchingEngine to agent. Should be overridden.
+   * Tells the agent that one of its orders has been traded. Only called for
+   * intelligent agents, which override it.
    * 
-   * @param arguments
-   *          The list of required arguments.
+   * @param price
+   *          Price (CENTS) of the order traded.
+   * @param time
+   *          Time the order was traded, in milliseconds.
+   * @param volume
+   *          Volume traded.
+   * @param buyOrder
+   *          True if a buy order was traded.
    */
-  public void notify(Object... arguments) {
+  public void notifyTrade(int price, long time, int volume, boolean buyOrder) {
     return;
   }
 
@@ -192,6 +218,15 @@ public abstract class Agent {
     matchingEngine.cancelOrder(this.id, price);
   }
 
+  /**
+   * Calls the MatchingEngine to cancel the agent's oldest order.
+   * 
+   * @return True if an order was cancelled. False if the agent has no orders.
+   */
+  public boolean cancelOldestOrder() {
+    return matchingEngine.cancelOldestOrder(this.id);
+  }
+
   /**
    * Calls the MatchingEngine to create a new order for the agent.
    * 
@@ -205,8 +240,7 @@ public abstract class Agent {
    * @return True if the creation of the order resulted in a trade
    */
   public boolean createNewOrder(int price, int initialQuant, boolean buyOrder) {
-    return matchingEngine.createOrder(new Order(this.id, price, initialQuant,
-      buyOrder, false));
+    return matchingEngine.createOrder(this.id, price, initialQuant, buyOrder);
   }
 
   /**
@@ -225,7 +259,8 @@ public abstract class Agent {
   }
 
   /**
-   * Calls the MatchingEngine to modify an order.
+   * Calls the MatchingEngine to modify an order. Lowering only the quantity
+   * keeps the order's time priority; any other change loses it.
    * 
    * @param order
    *          The order to be modified.
@@ -253,12 +288,28 @@ public abstract class Agent {
     inventory += volume;
   }
 
+  /**
+   * Informs the agent that an order of a given agent ID was traded. The ID is
+   * this agent's own unless the agent acts for other agent IDs.
+   * 
+   * @param agentID
+   *          ID of the agent whose order was traded.
+   * @param traded
+   *          True if a trade happened. False otherwise.
+   * @param volume
+   *          Volume that was traded
+   */
+  public void setLastOrderTraded(long agentID, boolean traded, int volume) {
+    setLastOrderTraded(traded, volume);
+  }
+
   /**
    * @return Midpoint between the best ask price and best bid price
+   *         that are known; see MatchingEngine.getKnownBestBidPrice().
    */
   public int getMidPoint() {
-    return (matchingEngine.getBestBid().getPrice() + matchingEngine
-      .getBestAsk().getPrice()) / 2;
+    return (matchingEngine.getKnownBestBidPrice() + matchingEngine
+      .getKnownBestAskPrice()) / 2;
   }
 
   /**
@@ -316,7 +367,7 @@ public abstract class Agent {
    * @return Returns a random order from the agent's order book.
    */
   public Order getRandomOrder() {
-    return matchingEngine.getRandomOrder(this.id);
+    return matchingEngine.getRandomOrder(this.id, getRandom());
   }
 
   /**
@@ -327,23 +378,25 @@ public abstract class Agent {
   }
 
   /**
-   * @return The highest price an agent is willing to buy.
+   * @return The highest price an agent is willing to buy: the best bid, or the
+   *         last known one if there are no bids.
    */
   public int getBestBuyPrice() {
     if (matchingEngine.isStartingPeriod()) {
-      return Parameters.buyPrice - TICK_SIZE;
+      return getParameters().buyPrice - TICK_SIZE;
     }
-    return matchingEngine.getBestBid().getPrice();
+    return matchingEngine.getKnownBestBidPrice();
   }
 
   /**
-   * @return The lowest price an agent is willing to sell.
+   * @return The lowest price an agent is willing to sell: the best ask, or the
+   *         last known one if there are no asks.
    */
   public int getBestSellPrice() {
     if (matchingEngine.isStartingPeriod()) {
-      return Parameters.buyPrice + TICK_SIZE;
+      return getParameters().buyPrice + TICK_SIZE;
     }
-    return matchingEngine.getBestAsk().getPrice();
+    return matchingEngine.getKnownBestAskPrice();
   }
 
   /**
@@ -373,7 +426,49 @@ public abstract class Agent {
    * @return The startup period of the simulation, in milliseconds.
    */
   public long getStartupTime() {
-    return Parameters.startTime;
+    return getParameters().startTime;
+  }
+
+  /**
+   * @return The matching engine of the simulation the agent is in.
+   */
+  protected MatchingEngine getMatchingEngine() {
+    return matchingEngine;
+  }
+
+  /**
+   * @return The simulation the agent is in.
+   */
+  protected Simulation getSimulation() {
+    return matchingEngine.getSimulation();
+  }
+
+  /**
+   * @return The parameters of the simulation the agent is in.
+   */
+  protected Parameters getParameters() {
+    return matchingEngine.getSimulation().getParameters();
+  }
+
+  /**
+   * @return The stream of random numbers the agent draws from.
+   */
+  protected RandomStream getRandomStream() {
+    return randomStream;
+  }
+
+  /**
+   * @return The agent's own stream of random numbers.
+   */
+  protected Random getRandom() {
+    return randomStream.getRandom();
+  }
+
+  /**
+   * @return The agent's own stream of random numbers, for distributions.
+   */
+  protected RandomGenerator getRandomGenerator() {
+    return randomStream.getRandomGenerator();
   }
 
   /**
@@ -411,24 +506,6 @@ public abstract class Agent {
     return id;
   }
 
-  /**
-   * Clears one side of the order book depending on whether which inventory
-   * limit the agent has broke.
-   * 
-   * @param override
-   *          True if the inventory limit was broken.
-   * @param willBuy
-   *          True if the negative limit was broken (too many shares sold).
-   */
-  protected void processInventory(boolean override, boolean willBuy) {
-    if (override) {
-      if (willBuy) {
-        cancelAllSellOrders();
-      } else {
-        cancelAllBuyOrders();
-      }
-    }
-  }
 
   /**
    * @param currentInventory
@@ -438,37 +515,27 @@ public abstract class Agent {
    * @param previousOverLimitState
    *          True if the agent broke the limit on the last occasion of
    *          inventory checking.
-   * @return An array of boolean values corresponding to whether the agent has
-   *         broken the inventory limit, which side of the order book the agent
-   *         should clear if it did break the limit, and whether the agent
-   *         should perform extra tasks (override) as a result of crossing the
-   *         limit. The array should be accessed using the constants OVER_LIMIT,
-   *         OVER_LIMIT, and OVERRIDE respectively.
-   */
-  protected boolean[] checkInventory(int currentInventory, int inventoryLimit,
-    boolean previousOverLimitState) {
-    boolean[] results = {true, true, true};
+   * @return The flags WILL_BUY and OVER_LIMIT: whether the agent has broken
+   *         the inventory limit (and should override its usual choice of
+   *         side), and which side it should then trade on. WILL_BUY is also
+   *         set if the limit is not broken.
+   */
+  protected static int checkInventory(int currentInventory,
+    int inventoryLimit, boolean previousOverLimitState) {
     if (currentInventory > inventoryLimit) {
-      results[OVER_LIMIT] = true;
-      results[WILL_BUY] = false;
+      return OVER_LIMIT;
     } else if (currentInventory < -inventoryLimit) {
-      results[OVER_LIMIT] = true;
-      results[WILL_BUY] = true;
+      return OVER_LIMIT | WILL_BUY;
     } else if (currentInventory > inventoryLimit / 2 && previousOverLimitState) {
-      results[WILL_BUY] = false;
+      return OVER_LIMIT;
     } else if (currentInventory < -inventoryLimit / 2 && previousOverLimitState) {
-      results[WILL_BUY] = true;
+      return OVER_LIMIT | WILL_BUY;
     } else if (Math.abs(currentInventory) <= inventoryLimit / 2) {
-      results[OVER_LIMIT] = false;
-      results[OVERRIDE] = false;
+      return WILL_BUY;
     } else if (Math.abs(currentInventory) <= inventoryLimit
       && !previousOverLimitState) {
-      results[OVERRIDE] = false;
-      results[OVER_LIMIT] = false;
-    } else {
-      System.err.println("Error with inventory checking.");
-      System.exit(1);
+      return WILL_BUY;
     }
-    return results;
+    throw new IllegalStateException("Error with inventory checking.");
   }
 }
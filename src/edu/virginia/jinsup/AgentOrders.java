@@ -0,0 +1,268 @@
+package edu.virginia.jinsup;
+
+/**
+ * All of the resting orders of a single agent. Orders are kept in the order
+ * they were created, oldest first, in a list that is linked through the orders
+ * themselves so that any order can be removed in constant time. The orders are
+ * also chained by side and by price so that an agent can find (and cancel) its
+ * buy orders, sell orders or orders at a certain price without looking at any
+ * of its other orders.
+ */
+public class AgentOrders {
+
+  /**
+   * The agent's oldest resting order.
+   */
+  private Order head;
+
+  /**
+   * The agent's newest resting order.
+   */
+  private Order tail;
+
+  /**
+   * The agent's oldest resting buy order.
+   */
+  private Order buyHead;
+
+  /**
+   * The agent's newest resting buy order.
+   */
+  private Order buyTail;
+
+  /**
+   * The agent's oldest resting sell order.
+   */
+  private Order sellHead;
+
+  /**
+   * The agent's newest resting sell order.
+   */
+  private Order sellTail;
+
+  /**
+   * The pool that the agent's orders belong to.
+   */
+  private final OrderPool orderPool;
+
+  /**
+   * Slot in orderPool of the agent's newest resting order at each price
+   * (CENTS). Older orders at the same price are reached by following the
+   * chain backwards.
+   */
+  private final LongIntMap newestByPrice;
+
+  /**
+   * Number of resting orders the agent has.
+   */
+  private int size;
+
+  /**
+   * Creates an empty list of orders.
+   * 
+   * @param orderPool
+   *          The pool that the agent's orders belong to.
+   */
+  public AgentOrders(OrderPool orderPool) {
+    this.orderPool = orderPool;
+    head = null;
+    tail = null;
+    buyHead = null;
+    buyTail = null;
+    sellHead = null;
+    sellTail = null;
+    newestByPrice = new LongIntMap(16);
+    size = 0;
+  }
+
+  /**
+   * @return The agent's oldest resting order, or null if there are none.
+   */
+  public Order getFirst() {
+    return head;
+  }
+
+  /**
+   * @return The agent's oldest resting buy order, or null if there are none.
+   *         Newer buy orders are reached through getNextSameSide().
+   */
+  public Order getFirstBuy() {
+    return buyHead;
+  }
+
+  /**
+   * @return The agent's oldest resting sell order, or null if there are none.
+   *         Newer sell orders are reached through getNextSameSide().
+   */
+  public Order getFirstSell() {
+    return sellHead;
+  }
+
+  /**
+   * @param price
+   *          The price (CENTS) to look up.
+   * @return The agent's oldest resting order at the given price, or null if
+   *         there are none. Newer orders at the price are reached through
+   *         getNextSamePrice().
+   */
+  public Order getFirstAtPrice(int price) {
+    int slot = newestByPrice.get(price);
+    if (slot == LongIntMap.NONE) {
+      return null;
+    }
+    Order order = orderPool.get(slot);
+    while (order.getPrevSamePrice() != null) {
+      order = order.getPrevSamePrice();
+    }
+    return order;
+  }
+
+  /**
+   * @return The number of resting orders the agent has.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return True if the agent has no resting orders.
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Adds a newly created order to the end of the list.
+   * 
+   * @param order
+   *          The new order. Must not already be in the list.
+   */
+  void add(Order order) {
+    order.setPrevByAgent(tail);
+    order.setNextByAgent(null);
+    if (tail == null) {
+      head = order;
+    } else {
+      tail.setNextByAgent(order);
+    }
+    tail = order;
+
+    Order sideTail = order.isBuyOrder() ? buyTail : sellTail;
+    order.setPrevSameSide(sideTail);
+    order.setNextSameSide(null);
+    if (sideTail != null) {
+      sideTail.setNextSameSide(order);
+    } else if (order.isBuyOrder()) {
+      buyHead = order;
+    } else {
+      sellHead = order;
+    }
+    if (order.isBuyOrder()) {
+      buyTail = order;
+    } else {
+      sellTail = order;
+    }
+
+    linkPrice(order);
+    size++;
+  }
+
+  /**
+   * Unlinks an order from the list.
+   * 
+   * @param order
+   *          The order to remove. Must currently be in the list.
+   */
+  void remove(Order order) {
+    Order prev = order.getPrevByAgent();
+    Order next = order.getNextByAgent();
+    if (prev == null) {
+      head = next;
+    } else {
+      prev.setNextByAgent(next);
+    }
+    if (next == null) {
+      tail = prev;
+    } else {
+      next.setPrevByAgent(prev);
+    }
+    order.setPrevByAgent(null);
+    order.setNextByAgent(null);
+
+    prev = order.getPrevSameSide();
+    next = order.getNextSameSide();
+    if (prev != null) {
+      prev.setNextSameSide(next);
+    } else if (order.isBuyOrder()) {
+      buyHead = next;
+    } else {
+      sellHead = next;
+    }
+    if (next != null) {
+      next.setPrevSameSide(prev);
+    } else if (order.isBuyOrder()) {
+      buyTail = prev;
+    } else {
+      sellTail = prev;
+    }
+    order.setPrevSameSide(null);
+    order.setNextSameSide(null);
+
+    unlinkPrice(order, order.getPrice());
+    size--;
+  }
+
+  /**
+   * Moves an order to the chain of its new price after it has been modified.
+   * 
+   * @param order
+   *          The modified order. Must currently be in the list.
+   * @param oldPrice
+   *          The price (CENTS) the order had before it was modified.
+   */
+  void changePrice(Order order, int oldPrice) {
+    unlinkPrice(order, oldPrice);
+    linkPrice(order);
+  }
+
+  /**
+   * Adds an order to the end of the chain for its price.
+   * 
+   * @param order
+   *          The order to add.
+   */
+  private void linkPrice(Order order) {
+    int slot = newestByPrice.put(order.getPrice(), order.getSlot());
+    Order newest = (slot == LongIntMap.NONE) ? null : orderPool.get(slot);
+    order.setPrevSamePrice(newest);
+    order.setNextSamePrice(null);
+    if (newest != null) {
+      newest.setNextSamePrice(order);
+    }
+  }
+
+  /**
+   * Removes an order from the chain for a price.
+   * 
+   * @param order
+   *          The order to remove.
+   * @param price
+   *          The price (CENTS) of the chain the order is in.
+   */
+  private void unlinkPrice(Order order, int price) {
+    Order prev = order.getPrevSamePrice();
+    Order next = order.getNextSamePrice();
+    if (prev != null) {
+      prev.setNextSamePrice(next);
+    }
+    if (next != null) {
+      next.setPrevSamePrice(prev);
+    } else if (prev != null) {
+      newestByPrice.put(price, prev.getSlot());
+    } else {
+      newestByPrice.remove(price);
+    }
+    order.setPrevSamePrice(null);
+    order.setNextSamePrice(null);
+  }
+}
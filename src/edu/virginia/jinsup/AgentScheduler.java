@@ -0,0 +1,162 @@
+package edu.virginia.jinsup;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Keeps the agents of the simulation in a priority queue ordered by the time
+ * they will act next, so that the Controller only has to look at the agents
+ * that are due instead of at every agent every millisecond. Agents that are
+ * due at the same time come out in the order they were added, which is the
+ * order that the Controller used to find them in when it scanned its list of
+ * agents.
+ * 
+ * The queue is a TimeQueue of agent numbers, where an agent's number is the
+ * order in which it was added. Ties are broken by agent number.
+ */
+public class AgentScheduler {
+
+  /**
+   * Every agent that has been added, indexed by agent number.
+   */
+  private Agent[] agents;
+
+  /**
+   * The queue of agent numbers.
+   */
+  private final TimeQueue queue;
+
+  /**
+   * Numbers of the agents that are due at the current time.
+   */
+  private int[] due;
+
+  /**
+   * Number of entries in due.
+   */
+  private int dueCount;
+
+  /**
+   * Number of agents that have been added.
+   */
+  private int agentCount;
+
+  /**
+   * Creates an empty scheduler.
+   */
+  public AgentScheduler() {
+    agents = new Agent[16];
+    queue = new TimeQueue(16);
+    due = new int[16];
+    dueCount = 0;
+    agentCount = 0;
+  }
+
+  /**
+   * Adds an agent and queues it for its next act time.
+   * 
+   * @param agent
+   *          The agent to add.
+   * @param now
+   *          The current time. The agent is not queued if its next act time is
+   *          before this.
+   */
+  public void add(Agent agent, long now) {
+    if (agentCount == agents.length) {
+      agents = Arrays.copyOf(agents, agentCount * 2);
+      due = Arrays.copyOf(due, agentCount * 2);
+    }
+    agents[agentCount] = agent;
+    schedule(agentCount, now);
+    agentCount++;
+  }
+
+  /**
+   * @return The earliest time an agent is queued for, or Long.MAX_VALUE if no
+   *         agent is queued.
+   */
+  public long getNextTime() {
+    return queue.getFirstTime();
+  }
+
+  /**
+   * Takes every agent that is queued for a certain time out of the queue and
+   * makes it a due agent. Agents that are queued for an earlier time are
+   * dropped, since that time will never come again.
+   * 
+   * @param now
+   *          The current time.
+   * @return The number of due agents. They are in the order they were added
+   *         to the scheduler until shuffleDue() is called.
+   */
+  public int pollDue(long now) {
+    dueCount = 0;
+    while (queue.getFirstTime() <= now) {
+      int number = queue.removeFirst();
+      if (queue.getTime(number) == now) {
+        due[dueCount++] = number;
+      }
+    }
+    return dueCount;
+  }
+
+  /**
+   * Shuffles the due agents. Uses random numbers in exactly the same way as
+   * Collections.shuffle(List, Random) would on a list of the due agents, so
+   * seeded simulations act in the same order as when the Controller shuffled
+   * its own list.
+   * 
+   * @param rand
+   *          Random number generator to shuffle with.
+   */
+  public void shuffleDue(Random rand) {
+    for (int i = dueCount; i > 1; i--) {
+      int j = rand.nextInt(i);
+      int tmp = due[i - 1];
+      due[i - 1] = due[j];
+      due[j] = tmp;
+    }
+  }
+
+  /**
+   * @param i
+   *          Index of the due agent, less than the count returned by
+   *          pollDue().
+   * @return The due agent.
+   */
+  public Agent getDueAgent(int i) {
+    return agents[due[i]];
+  }
+
+  /**
+   * Queues a due agent for its new next act time once it has acted.
+   * 
+   * @param i
+   *          Index of the due agent, less than the count returned by
+   *          pollDue().
+   * @param now
+   *          The current time. The agent is not queued again unless its next
+   *          act time is after this.
+   */
+  public void rescheduleDue(int i, long now) {
+    if (agents[due[i]].getNextActTime() > now) {
+      schedule(due[i], now);
+    }
+  }
+
+  /**
+   * Queues an agent for its next act time, if that is not in the past.
+   * 
+   * @param number
+   *          Number of the agent.
+   * @param now
+   *          The current time.
+   */
+  private void schedule(int number, long now) {
+    long time = agents[number].getNextActTime();
+    if (time < now) {
+      return;
+    }
+    queue.add(number, time);
+  }
+}
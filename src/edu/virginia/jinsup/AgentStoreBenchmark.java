@@ -0,0 +1,169 @@
+package edu.virginia.jinsup;
+
+import com.beust.jcommander.JCommander;
+
+/**
+ * Compares how much heap memory each poisson trader takes as an object of its
+ * agent class and as an entry of a PoissonAgentStore, including what the
+ * matching engine keeps for its agent ID. The traders are of every type in
+ * turn. Run with:
+ * 
+ * java -cp jinsup.jar edu.virginia.jinsup.AgentStoreBenchmark [agents]
+ * [rngStreams]
+ */
+public class AgentStoreBenchmark {
+
+  /**
+   * Number of traders to create if none is given.
+   */
+  private static final int DEFAULT_AGENT_COUNT = 100000;
+
+  /**
+   * Number of trader types.
+   */
+  private static final int TYPES = 6;
+
+  public static void main(String[] args) {
+    int agentCount =
+      (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_AGENT_COUNT;
+    String rngStreams = (args.length > 1) ? args[1] : "split";
+
+    System.out.println("Agents: " + agentCount + ", RNG streams: "
+      + rngStreams);
+    measureObjects(createSimulation(rngStreams), agentCount);
+    measureStore(createSimulation(rngStreams), agentCount);
+  }
+
+  /**
+   * @param rngStreams
+   *          Random number streams: split or shared.
+   * @return A simulation in which nothing is logged.
+   */
+  private static Simulation createSimulation(String rngStreams) {
+    Parameters parameters = new Parameters();
+    parameters.testing = true;
+    parameters.showGui = false;
+    parameters.buyPrice = 10000;
+    parameters.startTime = 30000;
+    parameters.fundamentalArrivalRate = 1;
+    parameters.fundamentalCancelRate = 1;
+    parameters.marketMakerArrivalRate = 1;
+    parameters.marketMakerCancelRate = 1;
+    parameters.opporStratArrivalRate = 1;
+    parameters.opporStratCancelRate = 1;
+    parameters.hftArrivalRate = 1;
+    parameters.hftCancelRate = 1;
+    parameters.smallTraderArrivalRate = 1;
+    parameters.smallTraderCancelRate = 1;
+    RunOptions options = new RunOptions();
+    new JCommander(options, "--rngStreams", rngStreams);
+    Settings settings = new Settings(options, 0, null, null, null);
+    return new Simulation(settings, parameters);
+  }
+
+  /**
+   * Creates traders as objects of their agent classes and prints the heap
+   * memory used per trader.
+   * 
+   * @param simulation
+   *          The simulation to create the traders in.
+   * @param agentCount
+   *          Number of traders to create.
+   */
+  private static void measureObjects(Simulation simulation, int agentCount) {
+    MatchingEngine matchingEngine = new MatchingEngine(simulation);
+    Agent[] agents = new Agent[agentCount];
+    long before = usedMemory();
+    for (int i = 0; i < agentCount; i++) {
+      long initialActTime = i % 30000;
+      switch (i % TYPES) {
+        case PoissonAgentStore.FUND_BUYER:
+          agents[i] =
+            new FundBuyerPoisson(matchingEngine, 1, 1, initialActTime);
+          break;
+        case PoissonAgentStore.FUND_SELLER:
+          agents[i] =
+            new FundSellerPoisson(matchingEngine, 1, 1, initialActTime);
+          break;
+        case PoissonAgentStore.MARKET_MAKER:
+          agents[i] =
+            new MarketMakerPoisson(matchingEngine, 1, 1, initialActTime);
+          break;
+        case PoissonAgentStore.OPPOR_STRAT:
+          agents[i] =
+            new OpporStratPoisson(matchingEngine, 1, 1, initialActTime);
+          break;
+        case PoissonAgentStore.HFT:
+          agents[i] = new HFTPoisson(matchingEngine, 1, 1, initialActTime);
+          break;
+        default:
+          agents[i] = new SmallTrader(matchingEngine, 1, 1, initialActTime);
+          break;
+      }
+    }
+    long after = usedMemory();
+    report("objects", before, after, agentCount);
+    // Keep the agents reachable until after the measurement.
+    if (agents[agentCount - 1] == null) {
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Creates traders in a PoissonAgentStore and prints the heap memory used per
+   * trader.
+   * 
+   * @param simulation
+   *          The simulation to create the traders in.
+   * @param agentCount
+   *          Number of traders to create.
+   */
+  private static void measureStore(Simulation simulation, int agentCount) {
+    MatchingEngine matchingEngine = new MatchingEngine(simulation);
+    long before = usedMemory();
+    PoissonAgentStore store = new PoissonAgentStore(matchingEngine, agentCount);
+    for (int i = 0; i < agentCount; i++) {
+      store.addAgent(i % TYPES, i % 30000);
+    }
+    long after = usedMemory();
+    report("store", before, after, agentCount);
+    // Keep the store reachable until after the measurement.
+    if (store.getAgentCount() != agentCount) {
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Prints the heap memory used per trader.
+   * 
+   * @param name
+   *          Name of the representation.
+   * @param before
+   *          Bytes of heap in use before the traders were created.
+   * @param after
+   *          Bytes of heap in use after the traders were created.
+   * @param agentCount
+   *          Number of traders.
+   */
+  private static void report(String name, long before, long after,
+    int agentCount) {
+    System.out.printf("%-8s %8.1f bytes/agent%n", name, (after - before)
+      / (double) agentCount);
+  }
+
+  /**
+   * @return The number of bytes of heap in use after garbage collection.
+   */
+  private static long usedMemory() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+      try {
+        Thread.sleep(50);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
@@ -0,0 +1,137 @@
+package edu.virginia.jinsup;
+
+import java.util.Random;
+
+/**
+ * An immutable discrete distribution over the indices 0 to size() - 1 that can
+ * be sampled in constant time with Walker's alias method. The table has one
+ * column per index. A sample picks a column uniformly and then either keeps
+ * its index or takes the column's alias, so that each index comes out with its
+ * probability. The table is built with Vose's method.
+ */
+public final class AliasTable {
+
+  /**
+   * Probability of each index, as given.
+   */
+  private final double[] probabilities;
+
+  /**
+   * Probability that a sample that picks a column keeps the column's index.
+   */
+  private final double[] cutoffs;
+
+  /**
+   * Index a sample takes instead of the column's index.
+   */
+  private final int[] aliases;
+
+  /**
+   * Builds the alias table of a distribution.
+   * 
+   * @param probabilities
+   *          Probability of each index. Must not be negative and should add up
+   *          to 1; they are scaled so that they add up to exactly 1.
+   */
+  public AliasTable(double[] probabilities) {
+    int n = probabilities.length;
+    this.probabilities = probabilities.clone();
+    cutoffs = new double[n];
+    aliases = new int[n];
+
+    double sum = 0;
+    for (double p : probabilities) {
+      sum += p;
+    }
+
+    // Columns whose scaled probability is below 1 are topped up by columns
+    // whose scaled probability is above 1.
+    double[] scaled = new double[n];
+    int[] small = new int[n];
+    int[] large = new int[n];
+    int smallCount = 0;
+    int largeCount = 0;
+    for (int i = 0; i < n; i++) {
+      scaled[i] = probabilities[i] * n / sum;
+      if (scaled[i] < 1.0) {
+        small[smallCount++] = i;
+      } else {
+        large[largeCount++] = i;
+      }
+    }
+    while (smallCount > 0 && largeCount > 0) {
+      int less = small[--smallCount];
+      int more = large[--largeCount];
+      cutoffs[less] = scaled[less];
+      aliases[less] = more;
+      scaled[more] = (scaled[more] + scaled[less]) - 1.0;
+      if (scaled[more] < 1.0) {
+        small[smallCount++] = more;
+      } else {
+        large[largeCount++] = more;
+      }
+    }
+    // Whatever is left is 1 up to rounding errors.
+    while (largeCount > 0) {
+      int i = large[--largeCount];
+      cutoffs[i] = 1.0;
+      aliases[i] = i;
+    }
+    while (smallCount > 0) {
+      int i = small[--smallCount];
+      cutoffs[i] = 1.0;
+      aliases[i] = i;
+    }
+  }
+
+  /**
+   * @return The number of indices.
+   */
+  public int size() {
+    return probabilities.length;
+  }
+
+  /**
+   * @param i
+   *          An index.
+   * @return The probability of the index, as given.
+   */
+  public double getProbability(int i) {
+    return probabilities[i];
+  }
+
+  /**
+   * Draws an index in constant time.
+   * 
+   * @param rand
+   *          Random number generator to draw with. Uses one nextDouble().
+   * @return The index.
+   */
+  public int sample(Random rand) {
+    double u = rand.nextDouble() * probabilities.length;
+    int column = (int) u;
+    return (u - column < cutoffs[column]) ? column : aliases[column];
+  }
+
+  /**
+   * Draws an index by adding up the probabilities until they exceed a uniform
+   * random number, which takes time linear in the index. This is how older
+   * versions of the simulator drew, so a seeded run gives the same results.
+   * 
+   * @param rand
+   *          Random number generator to draw with. Uses one nextDouble().
+   * @return The index.
+   */
+  public int scan(Random rand) {
+    double u = rand.nextDouble();
+    double cumulativeProb = 0;
+    for (int i = 0; i < probabilities.length; i++) {
+      cumulativeProb += probabilities[i];
+      if (u < cumulativeProb) {
+        return i;
+      }
+    }
+    // Only reachable if the probabilities add up to slightly less than 1.
+    return probabilities.length - 1;
+  }
+}
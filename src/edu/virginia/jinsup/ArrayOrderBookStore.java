@@ -0,0 +1,377 @@
+package edu.virginia.jinsup;
+
+import java.util.Arrays;
+
+/**
+ * Keeps every order in an OrderStore instead of as an Order object, which takes
+ * much less memory per order. The handle of an order is its OrderStore handle.
+ * 
+ * Orders are not chained by price, to save memory, so finding an agent's
+ * orders at a price looks at all of the agent's orders.
+ */
+public class ArrayOrderBookStore implements OrderBookStore {
+
+  /**
+   * Holds every order in the simulation.
+   */
+  private final OrderStore store;
+
+  /**
+   * All the buy orders in the simulation, grouped by price level.
+   */
+  private final CompactOrderBook buyOrders;
+
+  /**
+   * All the sell orders in the simulation, grouped by price level.
+   */
+  private final CompactOrderBook sellOrders;
+
+  /**
+   * Slot of the oldest resting order of each agent, indexed by agent ID.
+   */
+  private int[] agentHeads;
+
+  /**
+   * Slot of the newest resting order of each agent.
+   */
+  private int[] agentTails;
+
+  /**
+   * Slot of the oldest resting buy order of each agent.
+   */
+  private int[] buyHeads;
+
+  /**
+   * Slot of the newest resting buy order of each agent.
+   */
+  private int[] buyTails;
+
+  /**
+   * Slot of the oldest resting sell order of each agent.
+   */
+  private int[] sellHeads;
+
+  /**
+   * Slot of the newest resting sell order of each agent.
+   */
+  private int[] sellTails;
+
+  /**
+   * Number of resting orders of each agent.
+   */
+  private int[] agentOrderCounts;
+
+  /**
+   * Creates an empty store.
+   * 
+   * @param centerPrice
+   *          Price (CENTS) that the order book should be centered around. This
+   *          should be the starting price of the simulation.
+   */
+  public ArrayOrderBookStore(int centerPrice) {
+    store = new OrderStore();
+    buyOrders = new CompactOrderBook(store, true, centerPrice);
+    sellOrders = new CompactOrderBook(store, false, centerPrice);
+    agentHeads = new int[0];
+    agentTails = new int[0];
+    buyHeads = new int[0];
+    buyTails = new int[0];
+    sellHeads = new int[0];
+    sellTails = new int[0];
+    agentOrderCounts = new int[0];
+  }
+
+  @Override
+  public void setAgentCapacity(int agentCount) {
+    if (agentCount > agentHeads.length) {
+      agentHeads = grow(agentHeads, agentCount);
+      agentTails = grow(agentTails, agentCount);
+      buyHeads = grow(buyHeads, agentCount);
+      buyTails = grow(buyTails, agentCount);
+      sellHeads = grow(sellHeads, agentCount);
+      sellTails = grow(sellTails, agentCount);
+      agentOrderCounts = Arrays.copyOf(agentOrderCounts, agentCount);
+    }
+  }
+
+  @Override
+  public long add(long id, long agentID, int price, int originalQuant,
+    boolean buyOrder, boolean marketOrder) {
+    return store.add(id, agentID, price, originalQuant, buyOrder,
+      marketOrder);
+  }
+
+  @Override
+  public void rest(long handle) {
+    bookOf(handle).add(handle);
+    linkAgent((int) handle);
+  }
+
+  @Override
+  public boolean unrest(long handle) {
+    if (!bookOf(handle).remove(handle)) {
+      return false;
+    }
+    unlinkAgent((int) handle);
+    return true;
+  }
+
+  @Override
+  public void release(long handle) {
+    store.remove(handle);
+  }
+
+  @Override
+  public void modify(long handle, int price, int quant) {
+    CompactOrderBook book = bookOf(handle);
+    book.remove(handle);
+    store.setPrice(handle, price);
+    store.setCurrentQuant(handle, quant);
+    book.add(handle);
+  }
+
+  /**
+   * The order store indexes every stored order, so orders that are not
+   * resting are left out here.
+   */
+  @Override
+  public long find(long orderID) {
+    long handle = store.find(orderID);
+    return (handle == NONE || store.getLevel((int) handle) < 0) ? NONE
+      : handle;
+  }
+
+  /**
+   * @return The number of order slots that have been used so far. Slots are
+   *         reused, so this should stop increasing once enough orders have
+   *         been filled or cancelled.
+   */
+  @Override
+  public long getAllocatedOrderCount() {
+    return store.getUsedSlots();
+  }
+
+  @Override
+  public long getID(long handle) {
+    return store.getID(handle);
+  }
+
+  @Override
+  public long getAgentID(long handle) {
+    return store.getAgentID(handle);
+  }
+
+  @Override
+  public int getPrice(long handle) {
+    return store.getPrice(handle);
+  }
+
+  @Override
+  public int getOriginalQuant(long handle) {
+    return store.getOriginalQuant(handle);
+  }
+
+  @Override
+  public int getCurrentQuant(long handle) {
+    return store.getCurrentQuant(handle);
+  }
+
+  @Override
+  public void setCurrentQuant(long handle, int quant) {
+    bookOf(handle).setQuant(handle, quant);
+  }
+
+  @Override
+  public boolean isBuyOrder(long handle) {
+    return store.isBuyOrder(handle);
+  }
+
+  @Override
+  public boolean isMarketOrder(long handle) {
+    return store.isMarketOrder(handle);
+  }
+
+  @Override
+  public long getFirstAt(boolean buySide, int price) {
+    CompactOrderBook book = buySide ? buyOrders : sellOrders;
+    int level = book.getLevel(price);
+    return (level == CompactOrderBook.NONE) ? NONE : book.getFirst(level);
+  }
+
+  @Override
+  public long getBest(boolean buySide) {
+    CompactOrderBook book = buySide ? buyOrders : sellOrders;
+    int level = book.getBestLevel();
+    return (level == CompactOrderBook.NONE) ? NONE : book.getFirst(level);
+  }
+
+  @Override
+  public long getNextInLevel(long handle) {
+    return bookOf(handle).getNextInLevel(handle);
+  }
+
+  @Override
+  public long getFirstInNextLevel(long handle) {
+    CompactOrderBook book = bookOf(handle);
+    int next = book.getNextLevel(store.getLevel((int) handle));
+    return (next == CompactOrderBook.NONE) ? NONE : book.getFirst(next);
+  }
+
+  @Override
+  public int getBestQuantity(boolean buySide) {
+    CompactOrderBook book = buySide ? buyOrders : sellOrders;
+    int level = book.getBestLevel();
+    return (level == CompactOrderBook.NONE) ? 0 : book
+      .getTotalQuantity(level);
+  }
+
+  @Override
+  public int getDepth(boolean buySide, int[] prices, int[] quantities) {
+    return (buySide ? buyOrders : sellOrders).getDepth(prices, quantities);
+  }
+
+  @Override
+  public int getOrderCount(long agentID) {
+    return agentOrderCounts[(int) agentID];
+  }
+
+  @Override
+  public long getOldest(long agentID) {
+    return store.handleOf(agentHeads[(int) agentID]);
+  }
+
+  @Override
+  public long getNextByAgent(long handle) {
+    return store.handleOf(store.getNextByAgent((int) handle));
+  }
+
+  @Override
+  public long getOldestOnSide(long agentID, boolean buySide) {
+    return store.handleOf(buySide ? buyHeads[(int) agentID]
+      : sellHeads[(int) agentID]);
+  }
+
+  @Override
+  public long getNextSameSide(long handle) {
+    return store.handleOf(store.getNextSameSide((int) handle));
+  }
+
+  @Override
+  public long getOldestAtPrice(long agentID, int price) {
+    return findPrice(agentHeads[(int) agentID], price);
+  }
+
+  @Override
+  public long getNextSamePrice(long handle) {
+    return findPrice(store.getNextByAgent((int) handle),
+      store.getPrice(handle));
+  }
+
+  /**
+   * @param slot
+   *          Slot of the order of an agent to start looking at, or -1.
+   * @param price
+   *          Price (CENTS) to look for.
+   * @return Handle of the first order of the agent at the price from the slot
+   *         on, or NONE.
+   */
+  private long findPrice(int slot, int price) {
+    while (slot >= 0 && store.getPrice(slot) != price) {
+      slot = store.getNextByAgent(slot);
+    }
+    return store.handleOf(slot);
+  }
+
+  /**
+   * Adds an order to the end of its agent's orders.
+   * 
+   * @param slot
+   *          Slot of the new order.
+   */
+  private void linkAgent(int slot) {
+    int agent = (int) store.getAgentID(slot);
+    int tail = agentTails[agent];
+    store.setPrevByAgent(slot, tail);
+    store.setNextByAgent(slot, -1);
+    if (tail < 0) {
+      agentHeads[agent] = slot;
+    } else {
+      store.setNextByAgent(tail, slot);
+    }
+    agentTails[agent] = slot;
+
+    int[] sideHeads = store.isBuyOrder(slot) ? buyHeads : sellHeads;
+    int[] sideTails = store.isBuyOrder(slot) ? buyTails : sellTails;
+    tail = sideTails[agent];
+    store.setPrevSameSide(slot, tail);
+    store.setNextSameSide(slot, -1);
+    if (tail < 0) {
+      sideHeads[agent] = slot;
+    } else {
+      store.setNextSameSide(tail, slot);
+    }
+    sideTails[agent] = slot;
+    agentOrderCounts[agent]++;
+  }
+
+  /**
+   * Unlinks an order from its agent's orders.
+   * 
+   * @param slot
+   *          Slot of the order to remove.
+   */
+  private void unlinkAgent(int slot) {
+    int agent = (int) store.getAgentID(slot);
+    int prev = store.getPrevByAgent(slot);
+    int next = store.getNextByAgent(slot);
+    if (prev < 0) {
+      agentHeads[agent] = next;
+    } else {
+      store.setNextByAgent(prev, next);
+    }
+    if (next < 0) {
+      agentTails[agent] = prev;
+    } else {
+      store.setPrevByAgent(next, prev);
+    }
+
+    int[] sideHeads = store.isBuyOrder(slot) ? buyHeads : sellHeads;
+    int[] sideTails = store.isBuyOrder(slot) ? buyTails : sellTails;
+    prev = store.getPrevSameSide(slot);
+    next = store.getNextSameSide(slot);
+    if (prev < 0) {
+      sideHeads[agent] = next;
+    } else {
+      store.setNextSameSide(prev, next);
+    }
+    if (next < 0) {
+      sideTails[agent] = prev;
+    } else {
+      store.setPrevSameSide(next, prev);
+    }
+    agentOrderCounts[agent]--;
+  }
+
+  /**
+   * @param handle
+   *          Handle of an order.
+   * @return The side of the book the order belongs to.
+   */
+  private CompactOrderBook bookOf(long handle) {
+    return store.isBuyOrder(handle) ? buyOrders : sellOrders;
+  }
+
+  /**
+   * @param array
+   *          Array to grow.
+   * @param length
+   *          New length of the array.
+   * @return A copy of the array with the new entries set to -1.
+   */
+  private static int[] grow(int[] array, int length) {
+    int oldLength = array.length;
+    int[] grown = Arrays.copyOf(array, length);
+    Arrays.fill(grown, oldLength, length, -1);
+    return grown;
+  }
+}
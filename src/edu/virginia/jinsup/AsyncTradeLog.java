@@ -0,0 +1,467 @@
+package edu.virginia.jinsup;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands the messages of a simulation to another trade log on a writer thread,
+ * so that formatting the messages and writing them to disk never stops the
+ * matching engine. The simulation thread copies the fields of each message
+ * into a ring buffer of pre-allocated arrays, and the writer thread takes them
+ * out in batches. Only the simulation thread may call the methods of this
+ * class.
+ * 
+ * When the ring buffer is full, the simulation thread either waits for the
+ * writer thread to catch up or drops the message, which is counted and
+ * reported when the log is closed. Agent types, flushes and closing are never
+ * dropped.
+ * 
+ * If the writer thread fails, it closes the log and stops. The failure is
+ * thrown on the simulation thread by close(), or as soon as it has to wait for
+ * the writer thread. If the simulation fails instead, abort() makes the writer
+ * thread write what it has been handed, close the log and stop.
+ */
+public class AsyncTradeLog implements TradeLog {
+
+  /**
+   * Kinds of the entries of the ring buffer.
+   */
+  private static final byte TYPE = 0;
+  private static final byte ORDER = 1;
+  private static final byte TRADE = 2;
+  private static final byte TOP_OF_BOOK = 3;
+  private static final byte FLUSH = 4;
+  private static final byte CLOSE = 5;
+
+  /**
+   * Largest number of entries the writer thread takes out before it frees
+   * their slots for the simulation thread.
+   */
+  private static final int BATCH_SIZE = 1024;
+
+  /**
+   * Number of times a waiting thread spins, and then yields, before it starts
+   * to sleep.
+   */
+  private static final int SPIN_TRIES = 100;
+
+  /**
+   * Nanoseconds a waiting thread sleeps for between checks.
+   */
+  private static final long PARK_NANOS = 50000;
+
+  /**
+   * The log the messages are written to by the writer thread.
+   */
+  private final TradeLog log;
+
+  /**
+   * True if messages should be dropped when the ring buffer is full, false if
+   * the simulation thread should wait.
+   */
+  private final boolean dropWhenFull;
+
+  /**
+   * Number of entries of the ring buffer, a power of two.
+   */
+  private final int capacity;
+
+  /**
+   * capacity - 1, to turn sequence numbers into indices.
+   */
+  private final int mask;
+
+  /**
+   * The fields of the entries of the ring buffer, indexed by entry. Fields
+   * that a kind of entry does not have are left as they were.
+   */
+  private final byte[] kinds;
+  private final byte[] messageTypes;
+  private final boolean[] buyOrders;
+  private final boolean[] markets;
+  private final boolean[] aggressors;
+  private final long[] times;
+  private final int[] bestBids;
+  private final int[] bestAsks;
+  private final long[] agentIDs;
+  private final int[] agentTypes;
+  private final long[] orderIDs;
+  private final int[] originalQuants;
+  private final int[] prices;
+  private final int[] leavesQuants;
+  private final int[] tradePrices;
+  private final int[] volumes;
+  private final long[] matchIDs;
+  private final String[] typeNames;
+
+  /**
+   * Number of entries the simulation thread has put into the ring buffer.
+   */
+  private final AtomicLong published;
+
+  /**
+   * Number of entries the writer thread has taken out of the ring buffer.
+   */
+  private final AtomicLong consumed;
+
+  /**
+   * Sequence number of the next entry the simulation thread puts in.
+   */
+  private long next;
+
+  /**
+   * Last value of consumed seen by the simulation thread.
+   */
+  private long consumedCache;
+
+  /**
+   * Number of messages dropped because the ring buffer was full.
+   */
+  private long dropped;
+
+  /**
+   * Number of bytes the writer thread has logged so far.
+   */
+  private final AtomicLong size;
+
+  /**
+   * What the writer thread failed with, or null if it has not failed.
+   */
+  private volatile RuntimeException failure;
+
+  /**
+   * True once the writer thread should stop after the entries that have been
+   * published, even though no CLOSE entry will come.
+   */
+  private volatile boolean aborted;
+
+  /**
+   * The writer thread.
+   */
+  private final Thread writer;
+
+  /**
+   * Creates the ring buffer and starts the writer thread.
+   * 
+   * @param log
+   *          The log to write the messages to.
+   * @param queueSize
+   *          Number of messages the ring buffer should hold. Rounded up to a
+   *          power of two.
+   * @param dropWhenFull
+   *          True if messages should be dropped when the ring buffer is full,
+   *          false if the simulation thread should wait for room.
+   */
+  public AsyncTradeLog(TradeLog log, int queueSize, boolean dropWhenFull) {
+    this.log = log;
+    this.dropWhenFull = dropWhenFull;
+    capacity = Integer.highestOneBit(Math.max(queueSize, 2) * 2 - 1);
+    mask = capacity - 1;
+    kinds = new byte[capacity];
+    messageTypes = new byte[capacity];
+    buyOrders = new boolean[capacity];
+    markets = new boolean[capacity];
+    aggressors = new boolean[capacity];
+    times = new long[capacity];
+    bestBids = new int[capacity];
+    bestAsks = new int[capacity];
+    agentIDs = new long[capacity];
+    agentTypes = new int[capacity];
+    orderIDs = new long[capacity];
+    originalQuants = new int[capacity];
+    prices = new int[capacity];
+    leavesQuants = new int[capacity];
+    tradePrices = new int[capacity];
+    volumes = new int[capacity];
+    matchIDs = new long[capacity];
+    typeNames = new String[capacity];
+    published = new AtomicLong();
+    consumed = new AtomicLong();
+    next = 0;
+    consumedCache = 0;
+    dropped = 0;
+    size = new AtomicLong(log.getSize());
+    failure = null;
+    aborted = false;
+    writer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        write();
+      }
+    }, "JinSup log writer");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  @Override
+  public void addAgentType(int code, String name) {
+    int i = claim(false);
+    kinds[i] = TYPE;
+    agentTypes[i] = code;
+    typeNames[i] = name;
+    publish();
+  }
+
+  @Override
+  public void logOrder(long time, int bestBid, int bestAsk, long agentID,
+    int agentType, int messageType, boolean buyOrder, long orderID,
+    int originalQuant, int price, boolean market, int leavesQuant) {
+    int i = claim(dropWhenFull);
+    if (i < 0) {
+      return;
+    }
+    kinds[i] = ORDER;
+    messageTypes[i] = (byte) messageType;
+    setCommon(i, time, bestBid, bestAsk, agentID, agentType, buyOrder,
+      orderID, originalQuant, price, market, leavesQuant);
+    publish();
+  }
+
+  @Override
+  public void logTrade(long time, int bestBid, int bestAsk, long agentID,
+    int agentType, boolean buyOrder, long orderID, int originalQuant,
+    int price, boolean market, int leavesQuant, int tradePrice, int volume,
+    boolean aggressor, long matchID) {
+    int i = claim(dropWhenFull);
+    if (i < 0) {
+      return;
+    }
+    kinds[i] = TRADE;
+    setCommon(i, time, bestBid, bestAsk, agentID, agentType, buyOrder,
+      orderID, originalQuant, price, market, leavesQuant);
+    tradePrices[i] = tradePrice;
+    volumes[i] = volume;
+    aggressors[i] = aggressor;
+    matchIDs[i] = matchID;
+    publish();
+  }
+
+  @Override
+  public void logTopOfBook(long time, int bestBid, int bestAsk) {
+    int i = claim(dropWhenFull);
+    if (i < 0) {
+      return;
+    }
+    kinds[i] = TOP_OF_BOOK;
+    times[i] = time;
+    bestBids[i] = bestBid;
+    bestAsks[i] = bestAsk;
+    publish();
+  }
+
+  /**
+   * @return The number of bytes the writer thread had logged after its last
+   *         batch of messages, which may lag behind the messages handed to this
+   *         log.
+   */
+  @Override
+  public long getSize() {
+    return size.get();
+  }
+
+  /**
+   * Asks the writer thread to write everything logged so far to the log file.
+   * Does not wait for it to do so.
+   */
+  @Override
+  public void flush() {
+    kinds[claim(false)] = FLUSH;
+    publish();
+  }
+
+  /**
+   * Waits for the writer thread to write everything logged so far and to
+   * close the log file.
+   */
+  @Override
+  public void close() {
+    kinds[claim(false)] = CLOSE;
+    publish();
+    try {
+      writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    checkFailure();
+    reportDropped();
+  }
+
+  /**
+   * Makes the writer thread write the messages handed to it so far, close the
+   * log and stop, and waits for it. Unlike close(), this does not need room in
+   * the ring buffer, so it works even if the writer thread has failed or
+   * fallen behind. A failure of the writer thread is not thrown, since the
+   * simulation has already failed.
+   */
+  @Override
+  public void abort() {
+    aborted = true;
+    try {
+      writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    reportDropped();
+  }
+
+  /**
+   * Warns about the messages that were dropped, if any.
+   */
+  private void reportDropped() {
+    if (dropped > 0) {
+      System.err.println("Warning: " + dropped + " trade log messages were "
+        + "dropped because the log writer fell behind.");
+    }
+  }
+
+  /**
+   * Sets the fields that order and trade entries share.
+   */
+  private void setCommon(int i, long time, int bestBid, int bestAsk,
+    long agentID, int agentType, boolean buyOrder, long orderID,
+    int originalQuant, int price, boolean market, int leavesQuant) {
+    times[i] = time;
+    bestBids[i] = bestBid;
+    bestAsks[i] = bestAsk;
+    agentIDs[i] = agentID;
+    agentTypes[i] = agentType;
+    buyOrders[i] = buyOrder;
+    orderIDs[i] = orderID;
+    originalQuants[i] = originalQuant;
+    prices[i] = price;
+    markets[i] = market;
+    leavesQuants[i] = leavesQuant;
+  }
+
+  /**
+   * Finds a free entry of the ring buffer for the simulation thread.
+   * 
+   * @param mayDrop
+   *          True if the entry may be dropped when the ring buffer is full.
+   * @return Index of the entry, or -1 if it was dropped.
+   */
+  private int claim(boolean mayDrop) {
+    if (next - consumedCache >= capacity) {
+      consumedCache = consumed.get();
+      if (next - consumedCache >= capacity) {
+        if (mayDrop) {
+          dropped++;
+          return -1;
+        }
+        int tries = 0;
+        while (next - consumedCache >= capacity) {
+          checkFailure();
+          tries = idle(tries);
+          consumedCache = consumed.get();
+        }
+      }
+    }
+    return (int) next & mask;
+  }
+
+  /**
+   * Hands the claimed entry to the writer thread.
+   */
+  private void publish() {
+    published.lazySet(++next);
+  }
+
+  /**
+   * Throws the failure of the writer thread, if it has failed.
+   */
+  private void checkFailure() {
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Body of the writer thread: passes the entries of the ring buffer to the
+   * log until it finds the CLOSE entry. If that fails, it still tries to close
+   * the log so that its file and threads are not left open.
+   */
+  private void write() {
+    try {
+      writeEntries();
+    } catch (RuntimeException e) {
+      try {
+        log.close();
+      } catch (RuntimeException closeFailure) {
+        e.addSuppressed(closeFailure);
+      }
+      failure = e;
+    }
+  }
+
+  /**
+   * Passes the entries of the ring buffer to the log until it finds the CLOSE
+   * entry.
+   */
+  private void writeEntries() {
+    long position = 0;
+    int tries = 0;
+    while (true) {
+      long available = published.get();
+      if (available == position) {
+        if (aborted && published.get() == position) {
+          log.close();
+          size.set(log.getSize());
+          return;
+        }
+        tries = idle(tries);
+        continue;
+      }
+      tries = 0;
+      long end = Math.min(available, position + BATCH_SIZE);
+      for (; position < end; position++) {
+        int i = (int) position & mask;
+        switch (kinds[i]) {
+          case TYPE:
+            log.addAgentType(agentTypes[i], typeNames[i]);
+            typeNames[i] = null;
+            break;
+          case ORDER:
+            log.logOrder(times[i], bestBids[i], bestAsks[i], agentIDs[i],
+              agentTypes[i], messageTypes[i], buyOrders[i], orderIDs[i],
+              originalQuants[i], prices[i], markets[i], leavesQuants[i]);
+            break;
+          case TRADE:
+            log.logTrade(times[i], bestBids[i], bestAsks[i], agentIDs[i],
+              agentTypes[i], buyOrders[i], orderIDs[i], originalQuants[i],
+              prices[i], markets[i], leavesQuants[i], tradePrices[i],
+              volumes[i], aggressors[i], matchIDs[i]);
+            break;
+          case TOP_OF_BOOK:
+            log.logTopOfBook(times[i], bestBids[i], bestAsks[i]);
+            break;
+          case FLUSH:
+            log.flush();
+            break;
+          default:
+            log.close();
+            size.set(log.getSize());
+            consumed.lazySet(position + 1);
+            return;
+        }
+      }
+      size.set(log.getSize());
+      consumed.lazySet(position);
+    }
+  }
+
+  /**
+   * Waits a little: spins at first, then yields, then sleeps.
+   * 
+   * @param tries
+   *          Number of times the thread has waited in a row.
+   * @return tries + 1.
+   */
+  private static int idle(int tries) {
+    if (tries >= 2 * SPIN_TRIES) {
+      LockSupport.parkNanos(PARK_NANOS);
+    } else if (tries >= SPIN_TRIES) {
+      Thread.yield();
+    }
+    return tries + 1;
+  }
+}
@@ -0,0 +1,218 @@
+package edu.virginia.jinsup;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Converts a trade log written with "--logFormat binary" into the CSV that
+ * "--logFormat csv" would have written for the same run. Binary logs written
+ * with "--logCompression gzip" are read as well, and the CSV is gzipped if its
+ * name ends in ".gz". IA profit logs written with "--iaProfitFormat binary"
+ * are converted in the same way. Run with:
+ * 
+ * java -cp jinsup.jar edu.virginia.jinsup.BinaryLogConverter log.bin log.csv
+ */
+public class BinaryLogConverter {
+
+  /**
+   * Size of the input buffer in bytes.
+   */
+  private static final int BUFFER_SIZE = 1 << 20;
+
+  public static void main(String[] args) {
+    if (args.length != 2) {
+      System.err.println("Usage: java -cp jinsup.jar "
+        + "edu.virginia.jinsup.BinaryLogConverter <binary log> <CSV log>");
+      System.exit(1);
+    }
+    try {
+      convert(args[0], args[1]);
+    } catch (IOException | UncheckedIOException e) {
+      System.err.println("Error: " + e.getMessage());
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Converts a binary trade log or IA profit log file into the CSV.
+   * 
+   * @param binaryPath
+   *          The binary log, which may be gzipped.
+   * @param csvPath
+   *          The CSV log to write, which is gzipped if its name ends in ".gz".
+   * @throws IOException
+   *           If the binary log cannot be read or is not a binary log, or the
+   *           CSV log cannot be created.
+   */
+  public static void convert(String binaryPath, String csvPath)
+    throws IOException {
+    DataInputStream in = new DataInputStream(openInput(binaryPath));
+    try {
+      in.mark(4);
+      int magic = in.readInt();
+      in.reset();
+      if (magic == BinaryProfitLog.MAGIC) {
+        convertProfits(in, csvPath);
+        return;
+      }
+      WritableByteChannel out = new FileOutputStream(csvPath).getChannel();
+      if (csvPath.endsWith(".gz")) {
+        out =
+          new GzipBlockChannel(out, Runtime.getRuntime().availableProcessors());
+      }
+      convert(in, new CsvTradeLog(out));
+    } catch (IOException e) {
+      throw new IOException("Failed to convert " + binaryPath + ": "
+        + e.getMessage(), e);
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Opens a file for reading, decompressing it if it is gzipped.
+   * 
+   * @param path
+   *          The file.
+   * @return Stream of the contents of the file.
+   * @throws IOException
+   *           If the file cannot be opened.
+   */
+  private static InputStream openInput(String path) throws IOException {
+    InputStream in =
+      new BufferedInputStream(new FileInputStream(path), BUFFER_SIZE);
+    in.mark(2);
+    int first = in.read();
+    int second = in.read();
+    in.reset();
+    if (first == 0x1f && second == 0x8b) {
+      return new BufferedInputStream(new GZIPInputStream(in, BUFFER_SIZE),
+        BUFFER_SIZE);
+    }
+    return in;
+  }
+
+  /**
+   * Reads every record of a binary log and writes it to another log.
+   * 
+   * @param in
+   *          Stream of the binary log, positioned at its header.
+   * @param log
+   *          Log to write the records to. It is closed at the end.
+   * @throws IOException
+   *           If the binary log cannot be read, or is not a binary trade log
+   *           of a version this converter knows.
+   */
+  public static void convert(DataInputStream in, TradeLog log)
+    throws IOException {
+    if (in.readInt() != BinaryTradeLog.MAGIC) {
+      throw new IOException("Not a binary trade log.");
+    }
+    short version = in.readShort();
+    if (version < 1 || version > BinaryTradeLog.VERSION) {
+      throw new IOException("Unsupported binary trade log version " + version
+        + ".");
+    }
+    long time = 0;
+    while (true) {
+      int kind;
+      try {
+        kind = in.readByte();
+      } catch (EOFException e) {
+        break;
+      }
+      if (kind == BinaryTradeLog.TYPE_RECORD) {
+        int code = in.readShort();
+        log.addAgentType(code, in.readUTF());
+        continue;
+      }
+      if (kind == BinaryTradeLog.TOP_OF_BOOK_RECORD) {
+        time += in.readInt();
+        log.logTopOfBook(time, in.readInt(), in.readInt());
+        continue;
+      }
+      int messageType = 105;
+      if (kind == BinaryTradeLog.ORDER_RECORD) {
+        messageType = in.readByte();
+      } else if (kind != BinaryTradeLog.TRADE_RECORD) {
+        throw new IOException("Unknown record kind " + kind + ".");
+      }
+      int flags = in.readByte();
+      int agentType = in.readShort();
+      time += in.readInt();
+      int bestBid = in.readInt();
+      int bestAsk = in.readInt();
+      long agentID = (version == 1) ? in.readInt() : in.readLong();
+      long orderID = in.readLong();
+      int originalQuant = in.readInt();
+      int price = in.readInt();
+      int leavesQuant = in.readInt();
+      boolean buyOrder = (flags & BinaryTradeLog.BUY) != 0;
+      boolean market = (flags & BinaryTradeLog.MARKET) != 0;
+      if (kind == BinaryTradeLog.ORDER_RECORD) {
+        log.logOrder(time, bestBid, bestAsk, agentID, agentType, messageType,
+          buyOrder, orderID, originalQuant, price, market, leavesQuant);
+      } else {
+        int tradePrice = in.readInt();
+        int volume = in.readInt();
+        long matchID = in.readLong();
+        log.logTrade(time, bestBid, bestAsk, agentID, agentType, buyOrder,
+          orderID, originalQuant, price, market, leavesQuant, tradePrice,
+          volume, (flags & BinaryTradeLog.AGGRESSOR) != 0, matchID);
+      }
+    }
+    log.close();
+  }
+
+  /**
+   * Reads every record of a binary profit log and writes it to a CSV profit
+   * log.
+   * 
+   * @param in
+   *          Stream of the binary profit log, positioned at its header.
+   * @param path
+   *          The CSV profit log to write.
+   * @throws IOException
+   *           If the binary profit log cannot be read, or is not a binary
+   *           profit log of a version this converter knows.
+   */
+  public static void convertProfits(DataInputStream in, String path)
+    throws IOException {
+    if (in.readInt() != BinaryProfitLog.MAGIC) {
+      throw new IOException("Not a binary profit log.");
+    }
+    short version = in.readShort();
+    if (version != BinaryProfitLog.VERSION) {
+      throw new IOException("Unsupported binary profit log version "
+        + version + ".");
+    }
+    boolean combined = in.readByte() != 0;
+    int[] delays = new int[in.readShort()];
+    for (int i = 0; i < delays.length; i++) {
+      delays[i] = in.readInt();
+    }
+    ProfitLog log = new CsvProfitLog(new String[] {path}, delays, combined);
+    double[] averageProfits = new double[delays.length];
+    while (true) {
+      long time;
+      try {
+        time = in.readLong();
+      } catch (EOFException e) {
+        break;
+      }
+      for (int i = 0; i < averageProfits.length; i++) {
+        averageProfits[i] = in.readDouble();
+      }
+      log.logProfits(time, averageProfits);
+    }
+    log.close();
+  }
+}
@@ -0,0 +1,112 @@
+package edu.virginia.jinsup;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Profit log written as fixed-width binary records, with a file for each delay
+ * or one file for all delays like CsvProfitLog. BinaryLogConverter turns the
+ * files back into the CSV.
+ * 
+ * All numbers are big-endian. Each file starts with the int MAGIC, the short
+ * VERSION, a byte that is 1 if the file is for all delays and 0 otherwise,
+ * the short number of delays in the file and an int for each of them. Then
+ * comes a record for every time: the long time, followed by the double average
+ * profit (DOLLARS) of each delay in the file.
+ */
+public class BinaryProfitLog implements ProfitLog {
+
+  /**
+   * First four bytes of every binary profit log: "JSIP".
+   */
+  public static final int MAGIC = 0x4A534950;
+
+  /**
+   * Version of the record layout.
+   */
+  public static final short VERSION = 1;
+
+  /**
+   * Size of the buffer of each file in bytes.
+   */
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  /**
+   * Streams to the log files.
+   */
+  private final DataOutputStream[] streams;
+
+  /**
+   * True if all delays go into one file, false if each has its own.
+   */
+  private final boolean combined;
+
+  /**
+   * Creates the log files and writes their headers.
+   * 
+   * @param paths
+   *          The log file of each delay, or a single log file for all delays.
+   * @param delays
+   *          The delays, in the order of the profits that will be logged.
+   * @param combined
+   *          True if all delays go into the single file in paths.
+   */
+  public BinaryProfitLog(String[] paths, int[] delays, boolean combined) {
+    this.combined = combined;
+    streams = new DataOutputStream[paths.length];
+    try {
+      for (int i = 0; i < paths.length; i++) {
+        streams[i] =
+          new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+            paths[i]), BUFFER_SIZE));
+        streams[i].writeInt(MAGIC);
+        streams[i].writeShort(VERSION);
+        streams[i].writeByte(combined ? 1 : 0);
+        if (combined) {
+          streams[i].writeShort(delays.length);
+          for (int delay : delays) {
+            streams[i].writeInt(delay);
+          }
+        } else {
+          streams[i].writeShort(1);
+          streams[i].writeInt(delays[i]);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to create log file.", e);
+    }
+  }
+
+  @Override
+  public void logProfits(long time, double[] averageProfits) {
+    try {
+      if (combined) {
+        streams[0].writeLong(time);
+        for (double averageProfit : averageProfits) {
+          streams[0].writeDouble(averageProfit);
+        }
+      } else {
+        for (int i = 0; i < streams.length; i++) {
+          streams[i].writeLong(time);
+          streams[i].writeDouble(averageProfits[i]);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to update log.", e);
+    }
+  }
+
+  @Override
+  public void close() {
+    try {
+      for (DataOutputStream stream : streams) {
+        stream.close();
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to close log.", e);
+    }
+  }
+}
@@ -0,0 +1,451 @@
+package edu.virginia.jinsup;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * One side (buy or sell) of the order book of an ArrayOrderBookStore. Works
+ * like OrderBook, but the orders are slots of an OrderStore and the price
+ * levels are kept in arrays of primitives and identified by number. Levels
+ * 0 to OrderBook.LADDER_SIZE - 1 are the ladder of prices on the tick grid
+ * around the starting price. Any price outside of the ladder gets a level
+ * after the ladder, which is found through an overflow map.
+ */
+public class CompactOrderBook {
+
+  /**
+   * Level number meaning "no level".
+   */
+  public static final int NONE = -1;
+
+  /**
+   * The store that holds the orders of this book.
+   */
+  private final OrderStore store;
+
+  /**
+   * True if this side holds buy orders, where the best price is the highest
+   * price. False if it holds sell orders, where the best price is the lowest.
+   */
+  private final boolean buySide;
+
+  /**
+   * Tick number (price / TICK_SIZE) of level zero.
+   */
+  private final int minTick;
+
+  /**
+   * Price (CENTS) of each level.
+   */
+  private int[] levelPrices;
+
+  /**
+   * Slot of the oldest order of each level, or -1 if the level is empty.
+   */
+  private int[] levelHeads;
+
+  /**
+   * Slot of the newest order of each level, or -1 if the level is empty.
+   */
+  private int[] levelTails;
+
+  /**
+   * Sum of the current quantities of all orders in each level.
+   */
+  private int[] levelQuantities;
+
+  /**
+   * Number of orders in each level.
+   */
+  private int[] levelCounts;
+
+  /**
+   * One bit per ladder level that is set when the level has orders.
+   */
+  private final long[] occupied;
+
+  /**
+   * The best occupied ladder level, or -1 if the ladder is empty.
+   */
+  private int bestIndex;
+
+  /**
+   * Non-empty levels outside of the ladder, keyed by price.
+   */
+  private final TreeMap<Integer, Integer> overflow;
+
+  /**
+   * Levels after the ladder that are not in use.
+   */
+  private int[] freeLevels;
+
+  /**
+   * Number of entries in freeLevels.
+   */
+  private int freeLevelCount;
+
+  /**
+   * Number of levels after the ladder that have ever been used.
+   */
+  private int overflowLevels;
+
+  /**
+   * Creates an empty side of the order book.
+   * 
+   * @param store
+   *          The store that holds the orders.
+   * @param buySide
+   *          True if the book will hold buy orders, false for sell orders.
+   * @param centerPrice
+   *          Price (CENTS) that the ladder should be centered around. This
+   *          should be the starting price of the simulation.
+   */
+  public CompactOrderBook(OrderStore store, boolean buySide, int centerPrice) {
+    this.store = store;
+    this.buySide = buySide;
+    this.minTick = centerPrice / Agent.TICK_SIZE - OrderBook.LADDER_SIZE / 2;
+    int size = OrderBook.LADDER_SIZE + 16;
+    this.levelPrices = new int[size];
+    this.levelHeads = new int[size];
+    this.levelTails = new int[size];
+    this.levelQuantities = new int[size];
+    this.levelCounts = new int[size];
+    Arrays.fill(levelHeads, -1);
+    Arrays.fill(levelTails, -1);
+    for (int i = 0; i < OrderBook.LADDER_SIZE; i++) {
+      levelPrices[i] = (minTick + i) * Agent.TICK_SIZE;
+    }
+    this.occupied = new long[OrderBook.LADDER_SIZE / 64];
+    this.bestIndex = -1;
+    this.overflow = new TreeMap<Integer, Integer>();
+    this.freeLevels = new int[16];
+    this.freeLevelCount = 0;
+    this.overflowLevels = 0;
+  }
+
+  /**
+   * Adds an order to the back of the queue at its price.
+   * 
+   * @param handle
+   *          Handle of the order to add. Must not already be in the book.
+   */
+  public void add(long handle) {
+    int price = store.getPrice(handle);
+    int index = indexOf(price);
+    int level;
+    if (index < 0) {
+      Integer existing = overflow.get(price);
+      if (existing == null) {
+        level = newOverflowLevel(price);
+        overflow.put(price, level);
+      } else {
+        level = existing;
+      }
+    } else {
+      level = index;
+      occupied[index >>> 6] |= 1L << index;
+      if (bestIndex < 0 || (buySide ? index > bestIndex : index < bestIndex)) {
+        bestIndex = index;
+      }
+    }
+
+    int slot = (int) handle;
+    int tail = levelTails[level];
+    store.setLevel(slot, level);
+    store.setPrevInLevel(slot, tail);
+    store.setNextInLevel(slot, -1);
+    if (tail < 0) {
+      levelHeads[level] = slot;
+    } else {
+      store.setNextInLevel(tail, slot);
+    }
+    levelTails[level] = slot;
+    levelQuantities[level] += store.getCurrentQuant(handle);
+    levelCounts[level]++;
+  }
+
+  /**
+   * Removes an order from the order book.
+   * 
+   * @param handle
+   *          Handle of the order to remove.
+   * @return True if the order was in this side of the order book.
+   */
+  public boolean remove(long handle) {
+    int slot = (int) handle;
+    int level = store.getLevel(slot);
+    if (level < 0 || store.isBuyOrder(handle) != buySide) {
+      return false;
+    }
+    int prev = store.getPrevInLevel(slot);
+    int next = store.getNextInLevel(slot);
+    if (prev < 0) {
+      levelHeads[level] = next;
+    } else {
+      store.setNextInLevel(prev, next);
+    }
+    if (next < 0) {
+      levelTails[level] = prev;
+    } else {
+      store.setPrevInLevel(next, prev);
+    }
+    store.setLevel(slot, -1);
+    store.setPrevInLevel(slot, -1);
+    store.setNextInLevel(slot, -1);
+    levelQuantities[level] -= store.getCurrentQuant(handle);
+    levelCounts[level]--;
+    if (levelHeads[level] < 0) {
+      releaseLevel(level);
+    }
+    return true;
+  }
+
+  /**
+   * Sets the quantity that is left in an order, keeping the total quantity of
+   * its price level up to date if it is resting in the book.
+   * 
+   * @param handle
+   *          Handle of the order.
+   * @param quant
+   *          The new quantity.
+   */
+  public void setQuant(long handle, int quant) {
+    int level = store.getLevel((int) handle);
+    if (level >= 0) {
+      levelQuantities[level] += quant - store.getCurrentQuant(handle);
+    }
+    store.setCurrentQuant(handle, quant);
+  }
+
+  /**
+   * @return True if there are no orders on this side of the book.
+   */
+  public boolean isEmpty() {
+    return bestIndex < 0 && overflow.isEmpty();
+  }
+
+  /**
+   * @param price
+   *          Price (CENTS) to look up.
+   * @return The level at the given price, or NONE if there are no orders at
+   *         that price.
+   */
+  public int getLevel(int price) {
+    int index = indexOf(price);
+    if (index < 0) {
+      Integer level = overflow.get(price);
+      return (level == null) ? NONE : level;
+    }
+    return (levelHeads[index] < 0) ? NONE : index;
+  }
+
+  /**
+   * @return The non-empty level with the best price (highest for buy orders,
+   *         lowest for sell orders), or NONE if the side is empty.
+   */
+  public int getBestLevel() {
+    if (overflow.isEmpty()) {
+      return bestIndex;
+    }
+    Map.Entry<Integer, Integer> entry =
+      buySide ? overflow.lastEntry() : overflow.firstEntry();
+    return isBetter(entry.getValue(), bestIndex) ? entry.getValue()
+      : bestIndex;
+  }
+
+  /**
+   * Gets the next non-empty level going away from the best price.
+   * 
+   * @param level
+   *          The level to start from.
+   * @return The non-empty level with the next worse price, or NONE if there is
+   *         none.
+   */
+  public int getNextLevel(int level) {
+    int price = levelPrices[level];
+    int next = NONE;
+    if (!overflow.isEmpty()) {
+      Map.Entry<Integer, Integer> entry =
+        buySide ? overflow.lowerEntry(price) : overflow.higherEntry(price);
+      if (entry != null) {
+        next = entry.getValue();
+      }
+    }
+    int index;
+    if (buySide) {
+      // Largest tick strictly below the price.
+      index = OrderBook.highestSetBit(occupied,
+        Math.floorDiv(price - 1, Agent.TICK_SIZE) - minTick);
+    } else {
+      // Smallest tick strictly above the price.
+      index = OrderBook.lowestSetBit(occupied,
+        Math.floorDiv(price, Agent.TICK_SIZE) + 1 - minTick);
+    }
+    if (index >= 0 && isBetter(index, next)) {
+      next = index;
+    }
+    return next;
+  }
+
+  /**
+   * @param level
+   *          A level of this book.
+   * @return The price (CENTS) of the level.
+   */
+  public int getPrice(int level) {
+    return levelPrices[level];
+  }
+
+  /**
+   * @param level
+   *          A level of this book.
+   * @return Handle of the order with the highest time priority in the level,
+   *         or OrderStore.NONE if the level is empty.
+   */
+  public long getFirst(int level) {
+    return store.handleOf(levelHeads[level]);
+  }
+
+  /**
+   * @param level
+   *          A level of this book.
+   * @return The sum of the current quantities of all orders in the level.
+   */
+  public int getTotalQuantity(int level) {
+    return levelQuantities[level];
+  }
+
+  /**
+   * @param level
+   *          A level of this book.
+   * @return The number of orders resting in the level.
+   */
+  public int getOrderCount(int level) {
+    return levelCounts[level];
+  }
+
+  /**
+   * @param level
+   *          A level of this book.
+   * @return True if there are no orders resting in the level.
+   */
+  public boolean isEmpty(int level) {
+    return levelHeads[level] < 0;
+  }
+
+  /**
+   * @param handle
+   *          Handle of an order in the level.
+   * @return Handle of the order behind it in its level, or OrderStore.NONE.
+   */
+  public long getNextInLevel(long handle) {
+    return store.handleOf(store.getNextInLevel((int) handle));
+  }
+
+  /**
+   * Fills in the total quantity at each of the best price levels, best first.
+   * 
+   * @param prices
+   *          Array to store the price (CENTS) of each level in. Its length is
+   *          the maximum number of levels returned.
+   * @param quantities
+   *          Array to store the total quantity of each level in. Must be at
+   *          least as long as prices.
+   * @return The number of levels filled in.
+   */
+  public int getDepth(int[] prices, int[] quantities) {
+    int depth = 0;
+    int level = getBestLevel();
+    while (level != NONE && depth < prices.length) {
+      prices[depth] = levelPrices[level];
+      quantities[depth] = levelQuantities[level];
+      depth++;
+      level = getNextLevel(level);
+    }
+    return depth;
+  }
+
+  /**
+   * Gets a level after the ladder for a price that is not in the ladder.
+   * 
+   * @param price
+   *          Price (CENTS) of the level.
+   * @return The empty level.
+   */
+  private int newOverflowLevel(int price) {
+    int level;
+    if (freeLevelCount > 0) {
+      level = freeLevels[--freeLevelCount];
+    } else {
+      level = OrderBook.LADDER_SIZE + overflowLevels++;
+      if (level == levelPrices.length) {
+        int size = levelPrices.length * 2;
+        levelPrices = Arrays.copyOf(levelPrices, size);
+        levelHeads = Arrays.copyOf(levelHeads, size);
+        levelTails = Arrays.copyOf(levelTails, size);
+        levelQuantities = Arrays.copyOf(levelQuantities, size);
+        levelCounts = Arrays.copyOf(levelCounts, size);
+      }
+    }
+    levelPrices[level] = price;
+    levelHeads[level] = -1;
+    levelTails[level] = -1;
+    levelQuantities[level] = 0;
+    levelCounts[level] = 0;
+    return level;
+  }
+
+  /**
+   * Forgets about a level that no longer has any orders. The price of an
+   * overflow level stays readable until the level is reused.
+   * 
+   * @param level
+   *          The empty level.
+   */
+  private void releaseLevel(int level) {
+    if (level >= OrderBook.LADDER_SIZE) {
+      overflow.remove(levelPrices[level]);
+      if (freeLevelCount == freeLevels.length) {
+        freeLevels = Arrays.copyOf(freeLevels, freeLevelCount * 2);
+      }
+      freeLevels[freeLevelCount++] = level;
+      return;
+    }
+    occupied[level >>> 6] &= ~(1L << level);
+    if (level == bestIndex) {
+      bestIndex =
+        buySide ? OrderBook.highestSetBit(occupied, level - 1) : OrderBook
+          .lowestSetBit(occupied, level + 1);
+    }
+  }
+
+  /**
+   * @param price
+   *          Price (CENTS) to look up.
+   * @return The ladder level of the price, or -1 if the price must be kept in
+   *         the overflow map.
+   */
+  private int indexOf(int price) {
+    if (price % Agent.TICK_SIZE != 0) {
+      return -1;
+    }
+    int index = price / Agent.TICK_SIZE - minTick;
+    return (index < 0 || index >= OrderBook.LADDER_SIZE) ? -1 : index;
+  }
+
+  /**
+   * @param candidate
+   *          Level to check. Must not be NONE.
+   * @param current
+   *          Level to compare against. May be NONE.
+   * @return True if candidate has a better price than current for this side.
+   */
+  private boolean isBetter(int candidate, int current) {
+    if (current == NONE) {
+      return true;
+    }
+    return buySide ? levelPrices[candidate] > levelPrices[current]
+      : levelPrices[candidate] < levelPrices[current];
+  }
+}
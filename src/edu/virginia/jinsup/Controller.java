@@ -1,10 +1,7 @@
 package edu.virginia.jinsup;
 
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Random;
 
 import org.apache.commons.math3.distribution.PoissonDistribution;
 
@@ -19,37 +16,43 @@ public class Controller {
    * To speed up the simulation with infinite thresholds, set this to false.
    * Takes precedence over INTELLIGENT_AGENT_THRESHOLD.
    */
-  private static final boolean INTELLIGENT_AGENT_THRESHOLD_ENABLE =
-    Parameters.intelligentAgentThresholdEnable;
+  private final boolean intelligentAgentThresholdEnable;
 
   /**
    * How often the average profit over all intelligent agents should be logged,
    * in milliseconds.
    */
-  private static final int INTELLIGENT_AGENT_PROFIT_LOG_FREQUENCY =
-    Parameters.intelligentAgentLogFreq;
+  private final int intelligentAgentProfitLogFrequency;
 
   /**
-   * Location of the log file for intelligent agent average profits. It will be
-   * in the same directory as the order log files and named
-   * "IAProfits-{time}.csv".
+   * List of all agents in the simulator
    */
-  private final String INTELLIGENT_AGENT_PROFIT_LOG_LOCATION;
+  public ArrayList<Agent> agentList;
 
   /**
-   * List of all agents in the simulator
+   * Queue of the agents ordered by the time they act next.
    */
-  public ArrayList<Agent> agentList;
+  private final AgentScheduler scheduler;
 
   /**
    * Simulator time in milliseconds.
    */
-  public static long time;
+  private long time;
+
+  /**
+   * Price graph, or null if the GUI is not shown.
+   */
+  private final GraphFrame graphFrame;
+
+  /**
+   * The simulation this controller runs.
+   */
+  private final Simulation simulation;
 
   /**
-   * Price graph
+   * Parameters of the simulation.
    */
-  public static GraphFrame graphFrame;
+  private final Parameters parameters;
 
   /**
    * The MatchingEngine used for this simulation.
@@ -63,9 +66,14 @@ public class Controller {
   private ArrayList<ArrayList<IntelligentAgent>> intelligentAgentByDelay;
 
   /**
-   * List of log files for each type of agent.
+   * Log of the average profits of the intelligent agents of each delay.
    */
-  private ArrayList<String> intelligentAgentProfitFileNames;
+  private ProfitLog profitLog;
+
+  /**
+   * Reused to pass the average profits of each delay to the profit log.
+   */
+  private double[] averageProfits;
 
   /**
    * List of all intelligent agents.
@@ -83,6 +91,17 @@ public class Controller {
    */
   private final PoissonDistribution poissonGeneratorNews;
 
+  /**
+   * Random numbers for news, i.e. for the times and the changes of the buy
+   * probability.
+   */
+  private final RandomStream newsStream;
+
+  /**
+   * Random numbers for shuffling the agents that act at the same time.
+   */
+  private final RandomStream schedulerStream;
+
   /**
    * The last time the news was updated. Time in milliseconds.
    */
@@ -90,20 +109,31 @@ public class Controller {
 
   /**
    * Creates a controller with no agents.
+   * 
+   * @param simulation
+   *          The simulation to run.
+   * @param matchingEngine
+   *          The MatchingEngine used for the simulation.
    */
-  public Controller(MatchingEngine matchingEngine) {
+  public Controller(Simulation simulation, MatchingEngine matchingEngine) {
+    this.simulation = simulation;
+    parameters = simulation.getParameters();
+    graphFrame = simulation.getGraphFrame();
+    intelligentAgentThresholdEnable =
+      parameters.intelligentAgentThresholdEnable;
+    intelligentAgentProfitLogFrequency = parameters.intelligentAgentLogFreq;
     agentList = new ArrayList<Agent>();
+    scheduler = new AgentScheduler();
     time = 0;
     this.matchingEngine = matchingEngine;
+    newsStream = simulation.createStream(Simulation.NEWS_STREAM);
+    schedulerStream = simulation.createStream(Simulation.SCHEDULER_STREAM);
     poissonGeneratorNews =
-      new PoissonDistribution(JinSup.randGen, Parameters.opporStratNewsFreq,
-        PoissonDistribution.DEFAULT_EPSILON,
+      new PoissonDistribution(newsStream.getRandomGenerator(),
+        parameters.opporStratNewsFreq, PoissonDistribution.DEFAULT_EPSILON,
         PoissonDistribution.DEFAULT_MAX_ITERATIONS);
-    lastNewsTime = Parameters.opporStratNewsFreq * 1000;
-    File logFile = new File(Settings.getDestIAProfitFile());
-    INTELLIGENT_AGENT_PROFIT_LOG_LOCATION = logFile.getAbsolutePath();
+    lastNewsTime = parameters.opporStratNewsFreq * 1000;
     intelligentAgentByDelay = new ArrayList<ArrayList<IntelligentAgent>>();
-    intelligentAgentProfitFileNames = new ArrayList<String>();
     intelligentAgentHelpers = new ArrayList<IntelligentAgentHelper>();
   }
 
@@ -112,127 +142,291 @@ public class Controller {
    * at a specified time specified by the user.
    */
   public void runSimulator() {
-    if (Parameters.showGui) {
-      graphFrame.setTradePeriod(Parameters.startTime, Parameters.endTime);
+    if (parameters.showGui) {
+      graphFrame.setTradePeriod(parameters.startTime, parameters.endTime);
       graphFrame.updateTitleBar(0, "Creating agents...");
     }
 
     // Create agents
-    Order.setNextOrderID(0);
+    simulation.setNextOrderID(0);
+    Random rand =
+      simulation.createStream(Simulation.SETUP_STREAM).getRandom();
+
+    // Explicitly set global buy probability.
+    simulation.setBuyProbability(parameters.initialBuyProbability);
+    if (simulation.isAggregatePoissonAgents()) {
+      createPoissonAgentGroups();
+    } else if (simulation.isCompactPoissonAgents()) {
+      createPoissonAgentStore(rand);
+    } else {
+      createPoissonAgents(rand);
+    }
+
+    if (parameters.intelligentAgentCount != 0) {
+      // Set up the profit log, depending on number of delays
+      profitLog = simulation.createProfitLog(parameters.intelligentAgentDelays);
+      averageProfits = new double[parameters.intelligentAgentDelays.size()];
+      IntelligentAgentHelper currentIAH;
+      IntelligentAgent intelligentAgent;
+      for (Integer l : parameters.intelligentAgentDelays) {
+        currentIAH =
+          new IntelligentAgentHelper((int) l,
+            parameters.intelligentAgentThreshold, parameters.buyPrice,
+            intelligentAgentThresholdEnable);
+
+        intelligentAgentHelpers.add(currentIAH);
+        ArrayList<IntelligentAgent> intelligentAgentList =
+          new ArrayList<IntelligentAgent>();
+        for (int i = 0; i < parameters.intelligentAgentCount
+          / parameters.intelligentAgentDelays.size(); i++) {
+          intelligentAgent =
+            new IntelligentAgent(matchingEngine, currentIAH, l);
+          intelligentAgentList.add(intelligentAgent);
+          agentList.add(intelligentAgent);
+        }
+        intelligentAgentByDelay.add(intelligentAgentList);
+      }
+
+      simulation.checkLogAgentTypes();
+      for (Agent a : agentList) {
+        scheduler.add(a, time);
+      }
+
+      // run simulator until Settings.getEndTime() is reached.
+      while (time < parameters.startTime) {
+        moveTime();
+        skipIdleTime(parameters.startTime);
+      }
+      matchingEngine.setStartingPeriod(false);
+      state = "Trading Period";
+      while (time < parameters.endTime) {
+        moveTime();
+        skipIdleTime(parameters.endTime);
+      }
+
+      // write remaining entries to the log
+      if (parameters.showGui) {
+          graphFrame.updateTitleBar(time, "Simulation Finished");
+      }
+      closeLogs();
+    }
+  }
 
+  /**
+   * Writes what is left of the trade log and the profit log and closes them.
+   * Does nothing for logs that have already been closed, so that it can also
+   * be called after the simulation failed.
+   */
+  public void closeLogs() {
+    endLogs(false);
+  }
+
+  /**
+   * Like closeLogs(), but for a simulation that has failed: the trade log only
+   * writes what it has been handed so far.
+   */
+  public void abortLogs() {
+    endLogs(true);
+  }
+
+  /**
+   * Closes or aborts the trade log and closes the profit log.
+   * 
+   * @param abort
+   *          True if the simulation has failed.
+   */
+  private void endLogs(boolean abort) {
+    ProfitLog closing = profitLog;
+    profitLog = null;
+    try {
+      if (abort) {
+        matchingEngine.abortListeners();
+      } else {
+        matchingEngine.closeListeners();
+      }
+    } finally {
+      if (closing != null) {
+        closing.close();
+      }
+    }
+  }
+
+  /**
+   * Creates every poisson trader as an agent that is scheduled on its own.
+   * 
+   * @param rand
+   *          Random number generator to draw the first act times from.
+   */
+  private void createPoissonAgents(Random rand) {
     FundBuyerPoisson fundBuyerPoisson;
     FundSellerPoisson fundSellerPoisson;
-    for (int i = 0; i < Parameters.fundCount; ++i) {
+    for (int i = 0; i < parameters.fundCount; ++i) {
       fundBuyerPoisson =
         new FundBuyerPoisson(matchingEngine,
-          (int) Parameters.fundamentalArrivalRate,
-          (int) Parameters.fundamentalCancelRate,
-          (long) (JinSup.rand.nextDouble() * Parameters.startTime));
+          (int) parameters.fundamentalArrivalRate,
+          (int) parameters.fundamentalCancelRate,
+          (long) (rand.nextDouble() * parameters.startTime));
       fundSellerPoisson =
         new FundSellerPoisson(matchingEngine,
-          (int) Parameters.fundamentalArrivalRate,
-          (int) Parameters.fundamentalCancelRate,
-          (long) (JinSup.rand.nextDouble() * Parameters.startTime));
+          (int) parameters.fundamentalArrivalRate,
+          (int) parameters.fundamentalCancelRate,
+          (long) (rand.nextDouble() * parameters.startTime));
       agentList.add(fundBuyerPoisson);
       agentList.add(fundSellerPoisson);
     }
 
     MarketMakerPoisson marketMakerPoisson;
-    for (int i = 0; i < Parameters.marketMakerCount; ++i) {
+    for (int i = 0; i < parameters.marketMakerCount; ++i) {
       marketMakerPoisson =
         new MarketMakerPoisson(matchingEngine,
-          (int) Parameters.marketMakerArrivalRate,
-          (int) Parameters.marketMakerCancelRate,
-          (long) (JinSup.rand.nextDouble() * Parameters.startTime));
+          (int) parameters.marketMakerArrivalRate,
+          (int) parameters.marketMakerCancelRate,
+          (long) (rand.nextDouble() * parameters.startTime));
       agentList.add(marketMakerPoisson);
     }
 
     OpporStratPoisson opporStratPoisson;
-    // Explicitly set global buy probability.
-    OpporStratPoisson.setBuyProbability(Parameters.initialBuyProbability);
-    for (int i = 0; i < Parameters.opporStratCount; ++i) {
+    for (int i = 0; i < parameters.opporStratCount; ++i) {
       opporStratPoisson =
         new OpporStratPoisson(matchingEngine,
-          (int) Parameters.opporStratArrivalRate,
-          (int) Parameters.opporStratCancelRate,
-          (long) (JinSup.rand.nextDouble() * Parameters.startTime));
+          (int) parameters.opporStratArrivalRate,
+          (int) parameters.opporStratCancelRate,
+          (long) (rand.nextDouble() * parameters.startTime));
       agentList.add(opporStratPoisson);
     }
 
     HFTPoisson hftPoisson;
-    for (int i = 0; i < Parameters.hftCount; ++i) {
+    for (int i = 0; i < parameters.hftCount; ++i) {
       hftPoisson =
-        new HFTPoisson(matchingEngine, Parameters.hftArrivalRate,
-          Parameters.hftCancelRate,
-          (long) (JinSup.rand.nextDouble() * Parameters.startTime));
+        new HFTPoisson(matchingEngine, parameters.hftArrivalRate,
+          parameters.hftCancelRate,
+          (long) (rand.nextDouble() * parameters.startTime));
       agentList.add(hftPoisson);
     }
 
     SmallTrader smallTrader;
-    for (int i = 0; i < Parameters.smallTraderCount; ++i) {
+    for (int i = 0; i < parameters.smallTraderCount; ++i) {
       smallTrader =
         new SmallTrader(matchingEngine,
-          (int) Parameters.smallTraderArrivalRate,
-          (int) Parameters.smallTraderCancelRate,
-          (long) (JinSup.rand.nextDouble() * Parameters.startTime));
+          (int) parameters.smallTraderArrivalRate,
+          (int) parameters.smallTraderCancelRate,
+          (long) (rand.nextDouble() * parameters.startTime));
       agentList.add(smallTrader);
     }
+  }
 
-    if (Parameters.intelligentAgentCount != 0) {
-      // Set up appropriate number of log files, depending on number of delays
-      IntelligentAgentHelper currentIAH;
-      IntelligentAgent intelligentAgent;
-      String fileName;
-      for (Integer l : Parameters.intelligentAgentDelays) {
-        try {
-          fileName =
-            INTELLIGENT_AGENT_PROFIT_LOG_LOCATION.split(".csv")[0] + "-Delay"
-              + l + ".csv";
-          FileWriter writer = new FileWriter(fileName);
-          writer.append("Time, IA Average Profit\n");
-          writer.flush();
-          writer.close();
-          intelligentAgentProfitFileNames.add(fileName);
-        } catch (IOException e) {
-          System.err.println("Error: Failed to create log file.");
-          e.printStackTrace();
-          System.exit(1);
-        }
-        currentIAH =
-          new IntelligentAgentHelper((int) l,
-            Parameters.intelligentAgentThreshold, Parameters.buyPrice,
-            INTELLIGENT_AGENT_THRESHOLD_ENABLE);
+  /**
+   * Creates every type of poisson trader as a PoissonAgentGroup, so that only
+   * one agent per type is scheduled however many traders there are.
+   */
+  private void createPoissonAgentGroups() {
+    PoissonAgentGroup fundBuyers =
+      new PoissonAgentGroup(matchingEngine,
+        (int) parameters.fundamentalArrivalRate,
+        (int) parameters.fundamentalCancelRate);
+    PoissonAgentGroup fundSellers =
+      new PoissonAgentGroup(matchingEngine,
+        (int) parameters.fundamentalArrivalRate,
+        (int) parameters.fundamentalCancelRate);
+    for (int i = 0; i < parameters.fundCount; ++i) {
+      fundBuyers.addMember(new FundBuyerPoisson(matchingEngine, fundBuyers
+        .getMemberStream()));
+      fundSellers.addMember(new FundSellerPoisson(matchingEngine, fundSellers
+        .getMemberStream()));
+    }
+    addGroup(fundBuyers);
+    addGroup(fundSellers);
+
+    PoissonAgentGroup marketMakers =
+      new PoissonAgentGroup(matchingEngine,
+        (int) parameters.marketMakerArrivalRate,
+        (int) parameters.marketMakerCancelRate);
+    for (int i = 0; i < parameters.marketMakerCount; ++i) {
+      marketMakers.addMember(new MarketMakerPoisson(matchingEngine,
+        marketMakers.getMemberStream()));
+    }
+    addGroup(marketMakers);
+
+    PoissonAgentGroup opporStrats =
+      new PoissonAgentGroup(matchingEngine,
+        (int) parameters.opporStratArrivalRate,
+        (int) parameters.opporStratCancelRate);
+    for (int i = 0; i < parameters.opporStratCount; ++i) {
+      opporStrats.addMember(new OpporStratPoisson(matchingEngine, opporStrats
+        .getMemberStream()));
+    }
+    addGroup(opporStrats);
 
-        intelligentAgentHelpers.add(currentIAH);
-        ArrayList<IntelligentAgent> intelligentAgentList =
-          new ArrayList<IntelligentAgent>();
-        for (int i = 0; i < Parameters.intelligentAgentCount
-          / Parameters.intelligentAgentDelays.size(); i++) {
-          intelligentAgent =
-            new IntelligentAgent(matchingEngine, currentIAH, l);
-          intelligentAgentList.add(intelligentAgent);
-          agentList.add(intelligentAgent);
-        }
-        intelligentAgentByDelay.add(intelligentAgentList);
-      }
+    PoissonAgentGroup hfts =
+      new PoissonAgentGroup(matchingEngine, parameters.hftArrivalRate,
+        parameters.hftCancelRate);
+    for (int i = 0; i < parameters.hftCount; ++i) {
+      hfts.addMember(new HFTPoisson(matchingEngine, hfts.getMemberStream()));
+    }
+    addGroup(hfts);
+
+    PoissonAgentGroup smallTraders =
+      new PoissonAgentGroup(matchingEngine,
+        (int) parameters.smallTraderArrivalRate,
+        (int) parameters.smallTraderCancelRate);
+    for (int i = 0; i < parameters.smallTraderCount; ++i) {
+      smallTraders.addMember(new SmallTrader(matchingEngine, smallTraders
+        .getMemberStream()));
+    }
+    addGroup(smallTraders);
+  }
 
-      // run simulator until Settings.getEndTime() is reached.
-      while (time < Parameters.startTime) {
-        moveTime();
-      }
-      matchingEngine.setStartingPeriod(false);
-      state = "Trading Period";
-      while (time < Parameters.endTime) {
-        moveTime();
-      }
+  /**
+   * Creates every poisson trader in one PoissonAgentStore. The traders are
+   * created in the same order and with the same first act times as the agents
+   * of createPoissonAgents().
+   * 
+   * @param rand
+   *          Random number generator to draw the first act times from.
+   */
+  private void createPoissonAgentStore(Random rand) {
+    PoissonAgentStore store =
+      new PoissonAgentStore(matchingEngine, 2 * parameters.fundCount
+        + parameters.marketMakerCount + parameters.opporStratCount
+        + parameters.hftCount + parameters.smallTraderCount);
+    for (int i = 0; i < parameters.fundCount; ++i) {
+      store.addAgent(PoissonAgentStore.FUND_BUYER,
+        (long) (rand.nextDouble() * parameters.startTime));
+      store.addAgent(PoissonAgentStore.FUND_SELLER,
+        (long) (rand.nextDouble() * parameters.startTime));
+    }
+    for (int i = 0; i < parameters.marketMakerCount; ++i) {
+      store.addAgent(PoissonAgentStore.MARKET_MAKER,
+        (long) (rand.nextDouble() * parameters.startTime));
+    }
+    for (int i = 0; i < parameters.opporStratCount; ++i) {
+      store.addAgent(PoissonAgentStore.OPPOR_STRAT,
+        (long) (rand.nextDouble() * parameters.startTime));
+    }
+    for (int i = 0; i < parameters.hftCount; ++i) {
+      store.addAgent(PoissonAgentStore.HFT,
+        (long) (rand.nextDouble() * parameters.startTime));
+    }
+    for (int i = 0; i < parameters.smallTraderCount; ++i) {
+      store.addAgent(PoissonAgentStore.SMALL_TRADER,
+        (long) (rand.nextDouble() * parameters.startTime));
+    }
+    if (store.getAgentCount() > 0) {
+      agentList.add(store);
+    }
+  }
 
-      // write remaining entries to the log
-      if (Parameters.showGui) {
-          graphFrame.updateTitleBar(time, "Simulation Finished");
-      }
-      if (!Parameters.testing) {
-        matchingEngine.writeToLog();
-      }
+  /**
+   * Starts a group of poisson traders and adds it to the agents to schedule,
+   * unless it has no members.
+   * 
+   * @param group
+   *          The group.
+   */
+  private void addGroup(PoissonAgentGroup group) {
+    if (group.getMemberCount() > 0) {
+      group.start();
+      agentList.add(group);
     }
   }
 
@@ -242,49 +436,28 @@ public class Controller {
    */
   private void moveTime() {
     // Select all eligible agents in random order to act during a given time
-    ArrayList<Agent> actingAgents = new ArrayList<Agent>();
-    for (Agent a : agentList) {
-      if (a.getNextActTime() == time) {
-        actingAgents.add(a);
-      }
-    }
-    Collections.shuffle(actingAgents, JinSup.rand);
-    for (Agent a : actingAgents) {
+    int actingCount = scheduler.pollDue(time);
+    scheduler.shuffleDue(schedulerStream.getRandom());
+    for (int i = 0; i < actingCount; i++) {
+      Agent a = scheduler.getDueAgent(i);
       // Enable the agent to act until it no longer needs to act.
       a.setWillAct(true);
       do {
         a.act();
       } while (a.getWillAct());
+      scheduler.rescheduleDue(i, time);
     }
 
-    if (Parameters.intelligentAgentCount != 0) {
-      // Update the delay data for intelligent agents. A positive number means
-      // that there are more buy orders than sell orders at the best bid/ask.
-      for (int i = 0; i < Parameters.intelligentAgentDelays.size(); i++) {
-        if (time >= (Parameters.startTime - Parameters.intelligentAgentDelays
-          .get(i))) {
-          intelligentAgentHelpers.get(i).addData(
-            matchingEngine.getBestBidQuantity()
-              - matchingEngine.getBestAskQuantity(),
-            matchingEngine.getBestBid().getPrice(),
-            matchingEngine.getBestAsk().getPrice());
-          if (INTELLIGENT_AGENT_THRESHOLD_ENABLE) {
-            for (IntelligentAgent a : intelligentAgentByDelay.get(i)) {
-              a.setOldThresholdState(intelligentAgentHelpers.get(i)
-                .getOldThresholdState());
-            }
-          }
-        }
-      }
+    if (parameters.intelligentAgentCount != 0) {
+      addIntelligentAgentData(time + 1);
     }
 
     // Check if profit logging should be done
-    if (time % INTELLIGENT_AGENT_PROFIT_LOG_FREQUENCY == 0) {
+    if (time % intelligentAgentProfitLogFrequency == 0) {
       // Log the average profit over all intelligent agents, based on delay
       int totalProfit;
       int totalInventory;
-      FileWriter writer;
-      for (int i = 0; i < Parameters.intelligentAgentDelays.size(); i++) {
+      for (int i = 0; i < parameters.intelligentAgentDelays.size(); i++) {
         totalProfit = 0;
         totalInventory = 0;
         for (IntelligentAgent a : intelligentAgentByDelay.get(i)) {
@@ -293,18 +466,10 @@ public class Controller {
         }
         totalProfit =
           totalProfit + totalInventory * matchingEngine.getLastTradePrice();
-        try {
-          writer = new FileWriter(intelligentAgentProfitFileNames.get(i), true);
-          writer.append(time + ","
-            + (totalProfit / (intelligentAgentByDelay.get(i).size() * 100.0))
-            + "\n");
-          writer.flush();
-          writer.close();
-        } catch (IOException e) {
-          System.err.println("Error: Failed to update log.");
-          System.exit(1);
-        }
+        averageProfits[i] =
+          totalProfit / (intelligentAgentByDelay.get(i).size() * 100.0);
       }
+      profitLog.logProfits(time, averageProfits);
     }
 
     time++;
@@ -313,12 +478,89 @@ public class Controller {
     // Update a group of agents. Currently only updates the buy probabilities
     // across all opportunistic traders.
     if (time == lastNewsTime) {
-      OpporStratPoisson.calcNewBuyProbability();
+      OpporStratPoisson.calcNewBuyProbability(simulation,
+        newsStream.getRandomGenerator());
       lastNewsTime += poissonGeneratorNews.sample();
     }
 
-    if (Parameters.showGui && time % 500 == 0) {
+    if (parameters.showGui && time % 500 == 0) {
       graphFrame.updateTitleBar(time, state);
     }
   }
+
+  /**
+   * Moves time forward to the next millisecond in which something happens, so
+   * that moveTime() is not called for milliseconds in which no agent acts, no
+   * news arrives, no profits are logged and the title bar is not updated. The
+   * order book cannot change in the skipped milliseconds, so the delay data
+   * they would have added for the intelligent agents is added all at once.
+   * 
+   * @param limit
+   *          Time not to skip past, such as the end of the current period.
+   */
+  private void skipIdleTime(long limit) {
+    long next = Math.min(getNextEventTime(), limit);
+    if (next <= time) {
+      return;
+    }
+    if (parameters.intelligentAgentCount != 0) {
+      addIntelligentAgentData(next);
+    }
+    matchingEngine.advanceTime(next - time);
+    time = next;
+  }
+
+  /**
+   * @return The first millisecond from now on in which moveTime() has more to
+   *         do than add delay data for the intelligent agents.
+   */
+  private long getNextEventTime() {
+    long next = scheduler.getNextTime();
+    // Profits are logged at the start of every multiple of the log frequency.
+    long nextProfitLog =
+      (time + intelligentAgentProfitLogFrequency - 1)
+        / intelligentAgentProfitLogFrequency
+        * intelligentAgentProfitLogFrequency;
+    next = Math.min(next, nextProfitLog);
+    // News and title bar updates happen at the end of the millisecond before.
+    if (lastNewsTime > time) {
+      next = Math.min(next, lastNewsTime - 1);
+    }
+    if (parameters.showGui) {
+      next = Math.min(next, (time / 500 + 1) * 500 - 1);
+    }
+    return next;
+  }
+
+  /**
+   * Updates the delay data for intelligent agents with the current state of
+   * the order book once for every millisecond from now until a given time. A
+   * positive number means that there are more buy orders than sell orders at
+   * the best bid/ask. Delay data is only added once the startup period is
+   * close enough to its end for the agents to look back on it.
+   * 
+   * @param until
+   *          The millisecond after the last one to add data for.
+   */
+  private void addIntelligentAgentData(long until) {
+    for (int i = 0; i < parameters.intelligentAgentDelays.size(); i++) {
+      long from =
+        Math.max(time, parameters.startTime
+          - parameters.intelligentAgentDelays.get(i));
+      if (from >= until) {
+        continue;
+      }
+      intelligentAgentHelpers.get(i).addData(
+        matchingEngine.getBestBidQuantity()
+          - matchingEngine.getBestAskQuantity(),
+        matchingEngine.getKnownBestBidPrice(),
+        matchingEngine.getKnownBestAskPrice(), until - from);
+      if (intelligentAgentThresholdEnable) {
+        for (IntelligentAgent a : intelligentAgentByDelay.get(i)) {
+          a.setOldThresholdState(intelligentAgentHelpers.get(i)
+            .getOldThresholdState());
+        }
+      }
+    }
+  }
 }
@@ -0,0 +1,102 @@
+package edu.virginia.jinsup;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Profit log written as CSV, either with a file for each delay that has a line
+ * "time,profit" for every time, or with one file for all delays that has a
+ * line "time,profit,profit,..." for every time.
+ */
+public class CsvProfitLog implements ProfitLog {
+
+  /**
+   * Size of the buffer of each file in characters.
+   */
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  /**
+   * Writers of the log files.
+   */
+  private final BufferedWriter[] writers;
+
+  /**
+   * True if all delays go into one file, false if each has its own.
+   */
+  private final boolean combined;
+
+  /**
+   * Reused to build each line.
+   */
+  private final StringBuilder line;
+
+  /**
+   * Creates the log files and writes their header lines.
+   * 
+   * @param paths
+   *          The log file of each delay, or a single log file for all delays.
+   * @param delays
+   *          The delays, in the order of the profits that will be logged.
+   * @param combined
+   *          True if all delays go into the single file in paths.
+   */
+  public CsvProfitLog(String[] paths, int[] delays, boolean combined) {
+    this.combined = combined;
+    writers = new BufferedWriter[paths.length];
+    line = new StringBuilder();
+    try {
+      for (int i = 0; i < paths.length; i++) {
+        writers[i] =
+          new BufferedWriter(new FileWriter(paths[i]), BUFFER_SIZE);
+        if (combined) {
+          writers[i].write("Time");
+          for (int delay : delays) {
+            writers[i].write(", IA Average Profit Delay " + delay);
+          }
+          writers[i].write("\n");
+        } else {
+          writers[i].write("Time, IA Average Profit\n");
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to create log file.", e);
+    }
+  }
+
+  @Override
+  public void logProfits(long time, double[] averageProfits) {
+    try {
+      if (combined) {
+        line.setLength(0);
+        line.append(time);
+        for (double averageProfit : averageProfits) {
+          line.append(',').append(averageProfit);
+        }
+        line.append('\n');
+        writers[0].append(line);
+      } else {
+        for (int i = 0; i < writers.length; i++) {
+          line.setLength(0);
+          line.append(time).append(',').append(averageProfits[i])
+            .append('\n');
+          writers[i].append(line);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to update log.", e);
+    }
+  }
+
+  @Override
+  public void close() {
+    try {
+      for (BufferedWriter writer : writers) {
+        writer.close();
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to close log.", e);
+    }
+  }
+}
@@ -0,0 +1,367 @@
+package edu.virginia.jinsup;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Trade log written as CSV, one line per message, with prices in dollars and
+ * agent types by name. See the Logging Columns page of the wiki for the
+ * columns.
+ * 
+ * The fields are encoded straight into a direct buffer, which is written to a
+ * channel that stays open for the whole run whenever it fills up. Prices
+ * are formatted from their CENTS without going through a double, except for
+ * the rare prices whose dollar value as a double does not print as a plain
+ * number of cents. Nothing is allocated per message.
+ */
+public class CsvTradeLog implements TradeLog {
+
+  /**
+   * Size of the output buffer in bytes.
+   */
+  private static final int BUFFER_SIZE = 1 << 20;
+
+  /**
+   * Room to leave in the buffer for a line, besides the name of its agent
+   * type. No other field takes more than 25 bytes.
+   */
+  private static final int MAX_LINE_SIZE = 512;
+
+  /**
+   * Largest number of CENTS that a double of dollars prints without an
+   * exponent for.
+   */
+  private static final long MAX_PLAIN_CENTS = 999999999L;
+
+  /**
+   * Number of entries of the cache of prices that are not printed plainly.
+   */
+  private static final int PRICE_CACHE_SIZE = 1024;
+
+  /**
+   * The header line of the log.
+   */
+  private static final String HEADER =
+    "Time, Best Bid Price, Best Ask Price, Agent ID, Agent Type,"
+      + " Message, Buy/Sell, Order ID, "
+      + "Original Quantity, Price, Type, Leaves Quantity, Trade Price, "
+      + "Quantity Filled, Aggressor, Trade Match ID\n";
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+  private static final byte[] NONE = "None".getBytes(UTF8);
+  private static final byte[] MARKET = "Market".getBytes(UTF8);
+  private static final byte[] LIMIT = "Limit".getBytes(UTF8);
+  private static final byte[] EMPTY_ORDER_FIELDS = ",,,,,,\n".getBytes(UTF8);
+
+  /**
+   * Channel to the log file.
+   */
+  private final WritableByteChannel channel;
+
+  /**
+   * Buffer the lines are encoded into.
+   */
+  private final ByteBuffer buffer;
+
+  /**
+   * Scratch space for the digits of a number, in reverse order.
+   */
+  private final byte[] digits;
+
+  /**
+   * Number of bytes written to the channel so far.
+   */
+  private long written;
+
+  /**
+   * Names of the agent types in UTF-8, indexed by code.
+   */
+  private byte[][] typeNames;
+
+  /**
+   * Length of the longest name in typeNames.
+   */
+  private int maxTypeNameLength;
+
+  /**
+   * Prices (CENTS) whose encodings are in priceCacheBytes. Prices are cached
+   * in the entry given by their low bits.
+   */
+  private final int[] priceCacheKeys;
+
+  /**
+   * Encodings of the dollar value of the prices in priceCacheKeys, as
+   * multiplied by 0.01, or null for empty entries.
+   */
+  private final byte[][] priceCacheBytes;
+
+  /**
+   * Creates the log and writes the header line to it.
+   * 
+   * @param channel
+   *          Channel to the log file, which is closed with the log.
+   */
+  public CsvTradeLog(WritableByteChannel channel) {
+    this.channel = channel;
+    buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    digits = new byte[20];
+    written = 0;
+    typeNames = new byte[0][];
+    maxTypeNameLength = 0;
+    priceCacheKeys = new int[PRICE_CACHE_SIZE];
+    priceCacheBytes = new byte[PRICE_CACHE_SIZE][];
+    buffer.put(HEADER.getBytes(UTF8));
+  }
+
+  @Override
+  public void addAgentType(int code, String name) {
+    if (code >= typeNames.length) {
+      byte[][] names = new byte[code + 1][];
+      System.arraycopy(typeNames, 0, names, 0, typeNames.length);
+      typeNames = names;
+    }
+    typeNames[code] = name.getBytes(UTF8);
+    maxTypeNameLength = Math.max(maxTypeNameLength, typeNames[code].length);
+  }
+
+  @Override
+  public void logOrder(long time, int bestBid, int bestAsk, long agentID,
+    int agentType, int messageType, boolean buyOrder, long orderID,
+    int originalQuant, int price, boolean market, int leavesQuant) {
+    putStart(time, bestBid, bestAsk, agentID, agentType);
+    putLong(messageType);
+    putFields(buyOrder, orderID, originalQuant);
+    putCents(price);
+    buffer.put((byte) ',');
+    buffer.put(market ? MARKET : LIMIT);
+    buffer.put((byte) ',');
+    putLong(leavesQuant);
+    buffer.put((byte) '\n');
+  }
+
+  @Override
+  public void logTrade(long time, int bestBid, int bestAsk, long agentID,
+    int agentType, boolean buyOrder, long orderID, int originalQuant,
+    int price, boolean market, int leavesQuant, int tradePrice, int volume,
+    boolean aggressor, long matchID) {
+    putStart(time, bestBid, bestAsk, agentID, agentType);
+    putLong(105);
+    putFields(buyOrder, orderID, originalQuant);
+    putScaledCents(price);
+    buffer.put((byte) ',');
+    buffer.put(market ? MARKET : LIMIT);
+    buffer.put((byte) ',');
+    putLong(leavesQuant);
+    buffer.put((byte) ',');
+    putScaledCents(tradePrice);
+    buffer.put((byte) ',');
+    putLong(volume);
+    buffer.put((byte) ',');
+    buffer.put((byte) (aggressor ? 'Y' : 'N'));
+    buffer.put((byte) ',');
+    buffer.put((byte) ' ');
+    putLong(matchID);
+    buffer.put((byte) '\n');
+  }
+
+  /**
+   * Writes the time and best prices, the message type and empty order fields.
+   */
+  @Override
+  public void logTopOfBook(long time, int bestBid, int bestAsk) {
+    if (buffer.remaining() < MAX_LINE_SIZE) {
+      flush();
+    }
+    putLong(time);
+    buffer.put((byte) ',');
+    putBestPrice(bestBid);
+    buffer.put((byte) ',');
+    putBestPrice(bestAsk);
+    buffer.put((byte) ',');
+    buffer.put((byte) ',');
+    buffer.put((byte) ',');
+    putLong(TopOfBookEvent.TOP_OF_BOOK);
+    buffer.put(EMPTY_ORDER_FIELDS);
+  }
+
+  @Override
+  public long getSize() {
+    return written + buffer.position();
+  }
+
+  /**
+   * Writes the buffer to the file and then clears it. This is called when the
+   * buffer is full or when the simulation has ended.
+   */
+  @Override
+  public void flush() {
+    buffer.flip();
+    written += buffer.remaining();
+    try {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to update log.", e);
+    }
+    buffer.clear();
+  }
+
+  @Override
+  public void close() {
+    flush();
+    try {
+      channel.close();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to close log.", e);
+    }
+  }
+
+  /**
+   * The log is written on the calling thread, so there is nothing to wait for
+   * and aborting is the same as closing.
+   */
+  @Override
+  public void abort() {
+    close();
+  }
+
+  /**
+   * Makes room for a line and encodes its fields up to the agent type,
+   * followed by a comma.
+   */
+  private void putStart(long time, int bestBid, int bestAsk, long agentID,
+    int agentType) {
+    if (buffer.remaining() < MAX_LINE_SIZE + maxTypeNameLength) {
+      flush();
+    }
+    putLong(time);
+    buffer.put((byte) ',');
+    putBestPrice(bestBid);
+    buffer.put((byte) ',');
+    putBestPrice(bestAsk);
+    buffer.put((byte) ',');
+    putLong(agentID);
+    buffer.put((byte) ',');
+    buffer.put(typeNames[agentType]);
+    buffer.put((byte) ',');
+  }
+
+  /**
+   * Encodes the side, order ID and original quantity of a line, surrounded by
+   * commas.
+   */
+  private void putFields(boolean buyOrder, long orderID, int originalQuant) {
+    buffer.put((byte) ',');
+    buffer.put((byte) (buyOrder ? '1' : '2'));
+    buffer.put((byte) ',');
+    putLong(orderID);
+    buffer.put((byte) ',');
+    putLong(originalQuant);
+    buffer.put((byte) ',');
+  }
+
+  /**
+   * Encodes a best bid/ask price like Double.toString(price / 100.0).
+   * 
+   * @param price
+   *          The best bid/ask price in CENTS, or a negative number if there
+   *          were no bid/ask orders, which is encoded as "None".
+   */
+  private void putBestPrice(int price) {
+    if (price < 0) {
+      buffer.put(NONE);
+    } else {
+      putCents(price);
+    }
+  }
+
+  /**
+   * Encodes a price like Double.toString(cents / 100.0), which gives the
+   * shortest decimal that rounds to the double nearest the price in dollars:
+   * the dollars, a point and the cents without a trailing zero, but with at
+   * least one digit after the point.
+   * 
+   * @param cents
+   *          The price in CENTS.
+   */
+  private void putCents(long cents) {
+    if (cents > MAX_PLAIN_CENTS || cents < -MAX_PLAIN_CENTS) {
+      putString(Double.toString(cents / 100.0));
+      return;
+    }
+    if (cents < 0) {
+      buffer.put((byte) '-');
+      cents = -cents;
+    }
+    putLong(cents / 100);
+    buffer.put((byte) '.');
+    int fraction = (int) (cents % 100);
+    buffer.put((byte) ('0' + fraction / 10));
+    if (fraction % 10 != 0) {
+      buffer.put((byte) ('0' + fraction % 10));
+    }
+  }
+
+  /**
+   * Encodes a price like Double.toString(cents * 0.01). The product is
+   * usually the double nearest the price in dollars, in which case it is
+   * encoded like putCents(). Otherwise it is encoded by Double.toString() once
+   * and cached.
+   * 
+   * @param cents
+   *          The price in CENTS.
+   */
+  private void putScaledCents(int cents) {
+    if (cents * 0.01 == cents / 100.0) {
+      putCents(cents);
+      return;
+    }
+    int entry = cents & (PRICE_CACHE_SIZE - 1);
+    if (priceCacheBytes[entry] == null || priceCacheKeys[entry] != cents) {
+      priceCacheKeys[entry] = cents;
+      priceCacheBytes[entry] = Double.toString(cents * 0.01).getBytes(UTF8);
+    }
+    buffer.put(priceCacheBytes[entry]);
+  }
+
+  /**
+   * Encodes a number in decimal.
+   * 
+   * @param value
+   *          The number.
+   */
+  private void putLong(long value) {
+    if (value < 0) {
+      if (value == Long.MIN_VALUE) {
+        putString(Long.toString(value));
+        return;
+      }
+      buffer.put((byte) '-');
+      value = -value;
+    }
+    int length = 0;
+    do {
+      digits[length++] = (byte) ('0' + value % 10);
+      value /= 10;
+    } while (value != 0);
+    while (length > 0) {
+      buffer.put(digits[--length]);
+    }
+  }
+
+  /**
+   * Encodes a string of ASCII characters.
+   * 
+   * @param s
+   *          The string.
+   */
+  private void putString(String s) {
+    for (int i = 0; i < s.length(); i++) {
+      buffer.put((byte) s.charAt(i));
+    }
+  }
+}
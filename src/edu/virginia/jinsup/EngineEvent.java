@@ -0,0 +1,61 @@
+package edu.virginia.jinsup;
+
+/**
+ * Something that happened in a MatchingEngine, together with the state of the
+ * top of the book right after it. Event objects are reused by the engine, see
+ * EngineListener.
+ */
+public abstract class EngineEvent {
+
+  /**
+   * Time of the event in milliseconds.
+   */
+  private long time;
+
+  /**
+   * Best bid price (CENTS), or -1 if there is none.
+   */
+  private int bestBid;
+
+  /**
+   * Best ask price (CENTS), or -1 if there is none.
+   */
+  private int bestAsk;
+
+  /**
+   * Sets the time of the event and the top of the book after it.
+   * 
+   * @param time
+   *          Time of the event in milliseconds.
+   * @param bestBid
+   *          Best bid price (CENTS), or -1 if there is none.
+   * @param bestAsk
+   *          Best ask price (CENTS), or -1 if there is none.
+   */
+  void setBook(long time, int bestBid, int bestAsk) {
+    this.time = time;
+    this.bestBid = bestBid;
+    this.bestAsk = bestAsk;
+  }
+
+  /**
+   * @return Time of the event in milliseconds.
+   */
+  public long getTime() {
+    return time;
+  }
+
+  /**
+   * @return Best bid price (CENTS) after the event, or -1 if there is none.
+   */
+  public int getBestBid() {
+    return bestBid;
+  }
+
+  /**
+   * @return Best ask price (CENTS) after the event, or -1 if there is none.
+   */
+  public int getBestAsk() {
+    return bestAsk;
+  }
+}
@@ -0,0 +1,82 @@
+package edu.virginia.jinsup;
+
+/**
+ * Receives what happens in a MatchingEngine. The trade log and the GUI are
+ * listeners, and anything else that collects output from the simulation, such
+ * as statistics, can be added in the same way with
+ * MatchingEngine.addListener(). An engine without listeners does no output
+ * work at all.
+ * 
+ * The engine reuses the same event objects for every call, so a listener must
+ * copy what it wants to keep before it returns. Events are passed in the order
+ * they happen, on the simulation thread.
+ */
+public interface EngineListener {
+
+  /**
+   * Introduces an agent type before it is first used in an event.
+   * 
+   * @param code
+   *          Code of the type, as returned by OrderEvent.getAgentType().
+   * @param name
+   *          Name of the type.
+   */
+  void agentTypeAdded(int code, String name);
+
+  /**
+   * Called when a new limit or market order is accepted, before it trades.
+   * 
+   * @param event
+   *          The order, with message type 1.
+   */
+  void orderAccepted(OrderEvent event);
+
+  /**
+   * Called when the price or quantity of an order is modified, before it
+   * trades at its new price.
+   * 
+   * @param event
+   *          The order, with message type 2.
+   */
+  void orderModified(OrderEvent event);
+
+  /**
+   * Called when an order is cancelled, including the unfilled rest of a market
+   * order.
+   * 
+   * @param event
+   *          The order, with message type 3.
+   */
+  void orderCancelled(OrderEvent event);
+
+  /**
+   * Called for each side of a trade, the aggressive side first. Every trade
+   * against the same price level in one sweep has the same match ID.
+   * 
+   * @param event
+   *          The traded order, with message type 105.
+   */
+  void trade(TradeEvent event);
+
+  /**
+   * Called after an order or trade event that changed the best bid or ask
+   * price.
+   * 
+   * @param event
+   *          The new and previous best prices.
+   */
+  void topOfBookChanged(TopOfBookEvent event);
+
+  /**
+   * Called when the simulation has ended. Listeners that write files write
+   * out what they have left and close them.
+   */
+  void close();
+
+  /**
+   * Called instead of close() when the simulation has failed. Listeners close
+   * their files without waiting on anything that may no longer happen, and
+   * stop their threads.
+   */
+  void abort();
+}
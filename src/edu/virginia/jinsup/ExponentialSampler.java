@@ -0,0 +1,88 @@
+package edu.virginia.jinsup;
+
+import org.apache.commons.math3.random.RandomGenerator;
+
+/**
+ * Draws exponentially distributed numbers with the ziggurat method of Marsaglia
+ * and Tsang. The density under the curve is covered by LAYERS layers of equal
+ * area. Almost every sample falls inside the part of a layer that lies
+ * completely under the curve, and then costs one random long, a multiplication
+ * and a comparison, with no allocation and no logarithm.
+ */
+public final class ExponentialSampler {
+
+  /**
+   * Number of layers of the ziggurat. Must be a power of two.
+   */
+  private static final int LAYERS = 256;
+
+  /**
+   * Right edge of the widest layer that is not the base layer. Samples beyond
+   * it come from the tail of the base layer.
+   */
+  static final double R = 7.69711747013104972;
+
+  /**
+   * Area of each layer: the rectangle of width R and height exp(-R) plus the
+   * tail beyond R, whose area is exp(-R).
+   */
+  private static final double V = Math.exp(-R) * (R + 1);
+
+  /**
+   * Multiplier that turns the top 53 bits of a long into a double in [0, 1).
+   */
+  private static final double DOUBLE_UNIT = 1.0 / (1L << 53);
+
+  /**
+   * Right edge of each layer, from the base layer (X[0], which stretches the
+   * base so that its area is V) to the top of the curve (X[LAYERS] = 0).
+   */
+  private static final double[] X = new double[LAYERS + 1];
+
+  /**
+   * The density at each right edge, exp(-X[i]).
+   */
+  private static final double[] F = new double[LAYERS + 1];
+
+  static {
+    X[0] = V / Math.exp(-R);
+    X[1] = R;
+    for (int i = 1; i < LAYERS - 1; i++) {
+      X[i + 1] = -Math.log(Math.exp(-X[i]) + V / X[i]);
+    }
+    X[LAYERS] = 0;
+    for (int i = 0; i <= LAYERS; i++) {
+      F[i] = Math.exp(-X[i]);
+    }
+  }
+
+  private ExponentialSampler() {
+  }
+
+  /**
+   * Draws a number from the exponential distribution with mean 1. Multiply
+   * by the mean to draw from another exponential distribution.
+   * 
+   * @param rng
+   *          Random number generator to draw from.
+   * @return The sample.
+   */
+  public static double sample(RandomGenerator rng) {
+    while (true) {
+      long bits = rng.nextLong();
+      // The low bits choose the layer and the high bits the position in it.
+      int i = (int) bits & (LAYERS - 1);
+      double x = (bits >>> 11) * DOUBLE_UNIT * X[i];
+      if (x < X[i + 1]) {
+        return x;
+      }
+      if (i == 0) {
+        // The tail beyond R is exponential again, shifted by R.
+        return R - Math.log(1.0 - rng.nextDouble());
+      }
+      if (F[i] + rng.nextDouble() * (F[i + 1] - F[i]) < Math.exp(-x)) {
+        return x;
+      }
+    }
+  }
+}
@@ -0,0 +1,186 @@
+package edu.virginia.jinsup;
+
+import org.apache.commons.math3.distribution.BinomialDistribution;
+import org.apache.commons.math3.distribution.ExponentialDistribution;
+import org.apache.commons.math3.distribution.GammaDistribution;
+import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.stat.inference.ChiSquareTest;
+
+/**
+ * Checks that the ExponentialSampler draws from the same distribution as
+ * commons-math's ExponentialDistribution. Both are sampled many times and the
+ * samples are counted in bins of equal probability. Chi-square tests then
+ * compare each set of counts with the counts expected of the exponential
+ * distribution, and the two sets of counts with each other.
+ * 
+ * The last bin starts near 6.9, so the bins cannot tell whether the ziggurat
+ * draws its tail beyond ExponentialSampler.R correctly. The samples beyond R
+ * are therefore checked on their own: their number against the binomial
+ * distribution with probability exp(-R), and the sum of how far they lie
+ * beyond R against the gamma distribution, since each of those distances
+ * should be exponential with mean 1 again. Exits with status 1 if any test
+ * rejects at the 0.1% level. Run with:
+ * 
+ * java -cp jinsup.jar edu.virginia.jinsup.ExponentialSamplerCheck [samples]
+ * [seed]
+ */
+public class ExponentialSamplerCheck {
+
+  /**
+   * Number of samples to draw from each sampler if none is given.
+   */
+  private static final int DEFAULT_SAMPLE_COUNT = 10000000;
+
+  /**
+   * Number of bins of equal probability.
+   */
+  private static final int BINS = 1000;
+
+  /**
+   * Significance level below which a test fails.
+   */
+  private static final double ALPHA = 0.001;
+
+  public static void main(String[] args) {
+    int sampleCount =
+      (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_SAMPLE_COUNT;
+    long seed = (args.length > 1) ? Long.parseLong(args[1]) : 0;
+
+    RandomGenerator zigguratRng = new MersenneTwister(seed);
+    long[] zigguratCounts = new long[BINS];
+    double zigguratSum = 0;
+    int zigguratTailCount = 0;
+    double zigguratTailSum = 0;
+    for (int i = 0; i < sampleCount; i++) {
+      double x = ExponentialSampler.sample(zigguratRng);
+      zigguratSum += x;
+      zigguratCounts[bin(x)]++;
+      if (x > ExponentialSampler.R) {
+        zigguratTailCount++;
+        zigguratTailSum += x - ExponentialSampler.R;
+      }
+    }
+
+    ExponentialDistribution dist =
+      new ExponentialDistribution(new MersenneTwister(seed + 1), 1.0,
+        ExponentialDistribution.DEFAULT_INVERSE_ABSOLUTE_ACCURACY);
+    long[] commonsCounts = new long[BINS];
+    double commonsSum = 0;
+    int commonsTailCount = 0;
+    double commonsTailSum = 0;
+    for (int i = 0; i < sampleCount; i++) {
+      double x = dist.sample();
+      commonsSum += x;
+      commonsCounts[bin(x)]++;
+      if (x > ExponentialSampler.R) {
+        commonsTailCount++;
+        commonsTailSum += x - ExponentialSampler.R;
+      }
+    }
+
+    double[] expected = new double[BINS];
+    for (int i = 0; i < BINS; i++) {
+      expected[i] = sampleCount / (double) BINS;
+    }
+
+    ChiSquareTest test = new ChiSquareTest();
+    System.out.printf("Samples: %d, bins: %d%n", sampleCount, BINS);
+    System.out.printf("Mean: ziggurat %.5f, commons %.5f%n", zigguratSum
+      / sampleCount, commonsSum / sampleCount);
+    System.out.printf("Samples beyond R = %.5f: ziggurat %d, commons %d, "
+      + "expected %.1f%n", ExponentialSampler.R, zigguratTailCount,
+      commonsTailCount, sampleCount * Math.exp(-ExponentialSampler.R));
+    System.out.printf("Mean beyond R: ziggurat %.5f, commons %.5f, "
+      + "expected %.5f%n", ExponentialSampler.R + zigguratTailSum
+      / zigguratTailCount, ExponentialSampler.R + commonsTailSum
+      / commonsTailCount, ExponentialSampler.R + 1);
+    boolean passed = true;
+    passed &=
+      report("ziggurat vs exponential",
+        test.chiSquareTest(expected, zigguratCounts));
+    passed &=
+      report("commons vs exponential",
+        test.chiSquareTest(expected, commonsCounts));
+    passed &=
+      report("ziggurat vs commons",
+        test.chiSquareTestDataSetsComparison(zigguratCounts, commonsCounts));
+    passed &=
+      report("ziggurat tail count", tailCountTest(sampleCount,
+        zigguratTailCount));
+    passed &=
+      report("commons tail count", tailCountTest(sampleCount,
+        commonsTailCount));
+    passed &=
+      report("ziggurat tail mean", tailMeanTest(zigguratTailCount,
+        zigguratTailSum));
+    passed &=
+      report("commons tail mean", tailMeanTest(commonsTailCount,
+        commonsTailSum));
+    if (!passed) {
+      System.exit(1);
+    }
+  }
+
+  /**
+   * @param x
+   *          A sample of the exponential distribution with mean 1.
+   * @return The bin of equal probability that the sample falls in.
+   */
+  private static int bin(double x) {
+    return Math.min(BINS - 1, (int) (BINS * -Math.expm1(-x)));
+  }
+
+  /**
+   * Tests the number of samples beyond R against the binomial distribution.
+   * 
+   * @param sampleCount
+   *          Number of samples drawn.
+   * @param tailCount
+   *          Number of them that were beyond R.
+   * @return Two-sided p-value of the test.
+   */
+  private static double tailCountTest(int sampleCount, int tailCount) {
+    BinomialDistribution tail =
+      new BinomialDistribution(sampleCount, Math.exp(-ExponentialSampler.R));
+    double below = tail.cumulativeProbability(tailCount);
+    double above = 1 - tail.cumulativeProbability(tailCount - 1);
+    return Math.min(1, 2 * Math.min(below, above));
+  }
+
+  /**
+   * Tests how far the samples beyond R lie beyond it. The distances should be
+   * exponential with mean 1, so their sum should follow the gamma distribution
+   * with their number as shape.
+   * 
+   * @param tailCount
+   *          Number of samples beyond R.
+   * @param tailSum
+   *          Sum of the distances of those samples beyond R.
+   * @return Two-sided p-value of the test, or 1 if no sample was beyond R.
+   */
+  private static double tailMeanTest(int tailCount, double tailSum) {
+    if (tailCount == 0) {
+      return 1;
+    }
+    double below =
+      new GammaDistribution(tailCount, 1).cumulativeProbability(tailSum);
+    return Math.min(1, 2 * Math.min(below, 1 - below));
+  }
+
+  /**
+   * Prints the result of a test.
+   * 
+   * @param name
+   *          Name of the test.
+   * @param pValue
+   *          P-value of the test.
+   * @return True if the test passed.
+   */
+  private static boolean report(String name, double pValue) {
+    boolean passed = pValue >= ALPHA;
+    System.out.printf("%-24s p = %.4f %s%n", name, pValue, passed ? "ok"
+      : "FAILED");
+    return passed;
+  }
+}
@@ -23,9 +23,34 @@ public class FundBuyerPoisson extends PoissonAgent {
       initialActTime);
   }
 
+  /**
+   * Creates a fundamental buyer that is a member of a PoissonAgentGroup.
+   * 
+   * @param matchEng
+   *          Matching engine of the simulation.
+   * @param randomStream
+   *          Stream of random numbers of the group.
+   */
+  public FundBuyerPoisson(MatchingEngine matchEng, RandomStream randomStream) {
+    super(matchEng, "FundBuyerPoisson", randomStream);
+  }
+
   public void makeOrder() {
-    createPoissonOrder(true,
-      getOrderSize(Parameters.fundamentalOrderSizeProbabilities),
-      Parameters.fundamentalTickProbabilities);
+    makeOrder(this, getID());
+  }
+
+  /**
+   * Places an order of a fundamental buyer: always a buy order.
+   * 
+   * @param agent
+   *          The trader, or the PoissonAgentStore it belongs to.
+   * @param agentID
+   *          ID of the trader.
+   */
+  static void makeOrder(Agent agent, long agentID) {
+    Parameters parameters = agent.getParameters();
+    placeOrder(agent, agentID, true,
+      parameters.fundamentalOrderSizeProbabilities,
+      parameters.fundamentalTickProbabilities);
   }
 }
@@ -23,10 +23,35 @@ public class FundSellerPoisson extends PoissonAgent {
       initialActTime);
   }
 
+  /**
+   * Creates a fundamental seller that is a member of a PoissonAgentGroup.
+   * 
+   * @param matchEng
+   *          Matching engine of the simulation.
+   * @param randomStream
+   *          Stream of random numbers of the group.
+   */
+  public FundSellerPoisson(MatchingEngine matchEng, RandomStream randomStream) {
+    super(matchEng, "FundSellerPoisson", randomStream);
+  }
+
   // probabilities are the same as in the fundamental buyer's method...for now
   public void makeOrder() {
-    createPoissonOrder(false,
-      getOrderSize(Parameters.fundamentalOrderSizeProbabilities),
-      Parameters.fundamentalTickProbabilities);
+    makeOrder(this, getID());
+  }
+
+  /**
+   * Places an order of a fundamental seller: always a sell order.
+   * 
+   * @param agent
+   *          The trader, or the PoissonAgentStore it belongs to.
+   * @param agentID
+   *          ID of the trader.
+   */
+  static void makeOrder(Agent agent, long agentID) {
+    Parameters parameters = agent.getParameters();
+    placeOrder(agent, agentID, false,
+      parameters.fundamentalOrderSizeProbabilities,
+      parameters.fundamentalTickProbabilities);
   }
 }
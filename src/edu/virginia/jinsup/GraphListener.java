@@ -0,0 +1,92 @@
+package edu.virginia.jinsup;
+
+/**
+ * Shows the order book and the trades of a MatchingEngine in the GUI. Market
+ * orders never rest in the book, so they are not part of the order book graph.
+ */
+public class GraphListener implements EngineListener {
+
+  /**
+   * The window that shows the graphs.
+   */
+  private final GraphFrame graphFrame;
+
+  /**
+   * Match ID of the last trade plotted, or -1 if there is none. All trades
+   * against one price level in a sweep share a match ID and are plotted as a
+   * single point.
+   */
+  private long lastMatchID;
+
+  /**
+   * @param graphFrame
+   *          The window that shows the graphs.
+   */
+  public GraphListener(GraphFrame graphFrame) {
+    this.graphFrame = graphFrame;
+    lastMatchID = -1;
+  }
+
+  @Override
+  public void agentTypeAdded(int code, String name) {
+    // Agent types are not shown.
+  }
+
+  @Override
+  public void orderAccepted(OrderEvent event) {
+    if (!event.isMarketOrder()) {
+      graphFrame.addOrder(event.isBuyOrder(), event.getLeavesQuant(),
+        event.getPrice());
+    }
+  }
+
+  @Override
+  public void orderModified(OrderEvent event) {
+    if (event.isMarketOrder()) {
+      return;
+    }
+    if (event.getPriceChanged() != 0) {
+      // delete all orders from the old price point
+      graphFrame.addOrder(event.isBuyOrder(), -event.getLeavesQuant(),
+        event.getPrice() - event.getPriceChanged());
+    } else {
+      graphFrame.addOrder(event.isBuyOrder(), event.getQuantChanged(),
+        event.getPrice());
+    }
+  }
+
+  @Override
+  public void orderCancelled(OrderEvent event) {
+    if (!event.isMarketOrder()) {
+      graphFrame.addOrder(event.isBuyOrder(), event.getQuantChanged(),
+        event.getPrice());
+    }
+  }
+
+  @Override
+  public void trade(TradeEvent event) {
+    if (!event.isMarketOrder()) {
+      graphFrame.addOrder(event.isBuyOrder(), -event.getVolume(),
+        event.getTradePrice());
+    }
+    if (event.getMatchID() != lastMatchID) {
+      lastMatchID = event.getMatchID();
+      graphFrame.addTrade(event.getTime() * 0.001, event.getTradePrice());
+    }
+  }
+
+  @Override
+  public void topOfBookChanged(TopOfBookEvent event) {
+    // The order book graph already shows the best prices.
+  }
+
+  @Override
+  public void close() {
+    // The window stays open after the simulation.
+  }
+
+  @Override
+  public void abort() {
+    // The window stays open after the simulation.
+  }
+}
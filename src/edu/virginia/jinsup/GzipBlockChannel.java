@@ -0,0 +1,404 @@
+package edu.virginia.jinsup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Channel that gzips everything written to it before passing it on to another
+ * channel. The data is cut into blocks, and each block is compressed on a pool
+ * of worker threads into a gzip member of its own. A writer thread then writes
+ * the members to the other channel in order. Concatenated members make a valid
+ * gzip file, which GZIPInputStream and gunzip read as one stream.
+ * 
+ * The thread that writes to the channel only copies data into blocks. It waits
+ * only when the compressors already have as many blocks as they may queue.
+ * 
+ * The compressor threads are shared by every channel of the JVM, so that the
+ * runs of a sweep and the segments of a log do not each start their own. So is
+ * the limit on blocks queued for them, which grows with the threads and not
+ * with the number of channels, and the blocks themselves are reused across
+ * channels. Each compressor thread keeps its own deflater and buffers.
+ */
+public class GzipBlockChannel implements WritableByteChannel {
+
+  /**
+   * Number of bytes of data in each gzip member.
+   */
+  private static final int BLOCK_SIZE = 1 << 20;
+
+  /**
+   * Header of every gzip member: deflate, no flags, no time, unknown OS.
+   */
+  private static final byte[] MEMBER_HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0,
+    0, 0, 0, (byte) 0xff};
+
+  /**
+   * Number of blocks that may be queued or being compressed per compressor
+   * thread, enough to keep every thread busy while others are handed over.
+   */
+  private static final int BLOCKS_PER_THREAD = 2;
+
+  /**
+   * Threads that compress the blocks of every channel, or null until the first
+   * channel is created.
+   */
+  private static ThreadPoolExecutor sharedCompressors = null;
+
+  /**
+   * One permit for every block that may be handed to the compressors and not
+   * compressed yet, across all channels.
+   */
+  private static final Semaphore queuedBlocks = new Semaphore(0);
+
+  /**
+   * Blocks that no channel is using, to be reused.
+   */
+  private static final ArrayList<byte[]> spareBlocks = new ArrayList<byte[]>();
+
+  /**
+   * The deflater and buffers of each compressor thread.
+   */
+  private static final ThreadLocal<Compressor> threadCompressor =
+    new ThreadLocal<Compressor>() {
+      @Override
+      protected Compressor initialValue() {
+        return new Compressor();
+      }
+    };
+
+  /**
+   * The channel the compressed data is written to.
+   */
+  private final WritableByteChannel out;
+
+  /**
+   * The shared compressor threads.
+   */
+  private final ExecutorService compressors;
+
+  /**
+   * Thread that writes the compressed blocks in order.
+   */
+  private final ExecutorService writer;
+
+  /**
+   * The block being filled, or null if none is.
+   */
+  private byte[] block;
+
+  /**
+   * Number of bytes of data in block.
+   */
+  private int blockLength;
+
+  /**
+   * Number of blocks handed to the compressors so far.
+   */
+  private long blockCount;
+
+  /**
+   * True once the channel has been closed.
+   */
+  private boolean closed;
+
+  /**
+   * The first failure of a compression or write, or null if there was none.
+   * Once set, no more members are written.
+   */
+  private volatile Throwable failure;
+
+  /**
+   * Creates the channel and starts its threads.
+   * 
+   * @param out
+   *          The channel to write the compressed data to. It is closed when
+   *          this channel is closed.
+   * @param threads
+   *          Number of threads to compress blocks on. The shared compressor
+   *          threads are increased to this number if there are fewer.
+   */
+  public GzipBlockChannel(WritableByteChannel out, int threads) {
+    this.out = out;
+    compressors = startCompressors(threads);
+    writer =
+      Executors.newSingleThreadExecutor(createThreadFactory("JinSup gzip "
+        + "writer"));
+    block = null;
+    blockLength = 0;
+    blockCount = 0;
+    closed = false;
+    failure = null;
+  }
+
+  @Override
+  public int write(ByteBuffer src) throws IOException {
+    checkFailure();
+    int written = src.remaining();
+    while (src.hasRemaining()) {
+      if (block == null) {
+        block = takeSpareBlock();
+        blockLength = 0;
+      }
+      int length = Math.min(src.remaining(), BLOCK_SIZE - blockLength);
+      src.get(block, blockLength, length);
+      blockLength += length;
+      if (blockLength == BLOCK_SIZE) {
+        submitBlock();
+      }
+    }
+    return written;
+  }
+
+  @Override
+  public boolean isOpen() {
+    return !closed;
+  }
+
+  /**
+   * Compresses and writes the data written so far, waits for the threads to
+   * finish and closes the channel the data was written to. If a compression or
+   * write failed, the channel is still closed and the failure is thrown.
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    // An empty gzip file still needs one member.
+    if (block != null || blockCount == 0) {
+      if (block == null) {
+        block = takeSpareBlock();
+        blockLength = 0;
+      }
+      submitBlock();
+    }
+    writer.shutdown();
+    try {
+      writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      out.close();
+    }
+    checkFailure();
+  }
+
+  /**
+   * Starts the shared compressor threads, or adds to them, and allows as many
+   * more blocks to be queued for them.
+   * 
+   * @param threads
+   *          Number of threads there should be at least.
+   * @return The shared compressor threads.
+   */
+  private static synchronized ExecutorService startCompressors(int threads) {
+    if (sharedCompressors == null) {
+      sharedCompressors =
+        (ThreadPoolExecutor) Executors.newFixedThreadPool(threads,
+          createThreadFactory("JinSup log compressor"));
+      queuedBlocks.release(BLOCKS_PER_THREAD * threads);
+    } else if (threads > sharedCompressors.getMaximumPoolSize()) {
+      queuedBlocks.release(BLOCKS_PER_THREAD
+        * (threads - sharedCompressors.getMaximumPoolSize()));
+      sharedCompressors.setMaximumPoolSize(threads);
+      sharedCompressors.setCorePoolSize(threads);
+    }
+    return sharedCompressors;
+  }
+
+  /**
+   * @return A spare block, or a new one if there are no spare blocks.
+   */
+  private static byte[] takeSpareBlock() {
+    synchronized (spareBlocks) {
+      if (!spareBlocks.isEmpty()) {
+        return spareBlocks.remove(spareBlocks.size() - 1);
+      }
+    }
+    return new byte[BLOCK_SIZE];
+  }
+
+  /**
+   * Keeps a block that has been compressed for reuse.
+   * 
+   * @param block
+   *          The block.
+   */
+  private static void returnSpareBlock(byte[] block) {
+    synchronized (spareBlocks) {
+      spareBlocks.add(block);
+    }
+  }
+
+  /**
+   * Hands the block being filled to the compressors, and writing its member to
+   * the writer thread.
+   */
+  private void submitBlock() {
+    final byte[] data = block;
+    final int length = blockLength;
+    block = null;
+    blockLength = 0;
+    blockCount++;
+    queuedBlocks.acquireUninterruptibly();
+    final Future<byte[]> member =
+      compressors.submit(new Callable<byte[]>() {
+        @Override
+        public byte[] call() {
+          // A failure reaches the writer thread through the future, but the
+          // block must be freed either way or the channels wait for it.
+          try {
+            return threadCompressor.get().compress(data, length);
+          } finally {
+            returnSpareBlock(data);
+            queuedBlocks.release();
+          }
+        }
+      });
+    writer.submit(new Runnable() {
+      @Override
+      public void run() {
+        if (failure != null) {
+          return;
+        }
+        try {
+          ByteBuffer buffer = ByteBuffer.wrap(member.get());
+          while (buffer.hasRemaining()) {
+            out.write(buffer);
+          }
+        } catch (IOException e) {
+          fail(e);
+        } catch (ExecutionException e) {
+          fail(e.getCause());
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    });
+  }
+
+  /**
+   * Records a failed compression or write, to be thrown by the next write()
+   * or by close().
+   * 
+   * @param e
+   *          The cause of the failure.
+   */
+  private void fail(Throwable e) {
+    if (failure == null) {
+      failure = e;
+    }
+  }
+
+  /**
+   * @throws IOException
+   *           If a compression or write has failed.
+   */
+  private void checkFailure() throws IOException {
+    if (failure != null) {
+      throw new IOException("Failed to write compressed log.", failure);
+    }
+  }
+
+  /**
+   * @param name
+   *          Name of the threads.
+   * @return A factory of daemon threads with the given name.
+   */
+  private static ThreadFactory createThreadFactory(final String name) {
+    return new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, name);
+        thread.setDaemon(true);
+        return thread;
+      }
+    };
+  }
+
+  /**
+   * The deflater and buffers of a compressor thread, which are reused for
+   * every block the thread compresses.
+   */
+  private static class Compressor {
+
+    /**
+     * Deflater without a zlib wrapper, since the member has a gzip one.
+     */
+    private final Deflater deflater;
+
+    /**
+     * Checksum of the data, for the gzip trailer.
+     */
+    private final CRC32 crc;
+
+    /**
+     * Buffer the deflater writes to.
+     */
+    private final byte[] buffer;
+
+    /**
+     * The member being put together.
+     */
+    private final ByteArrayOutputStream member;
+
+    /**
+     * Creates a compressor for one thread.
+     */
+    public Compressor() {
+      deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+      crc = new CRC32();
+      buffer = new byte[65536];
+      member = new ByteArrayOutputStream(BLOCK_SIZE / 4 + 64);
+    }
+
+    /**
+     * Compresses a block into a gzip member.
+     * 
+     * @param data
+     *          The block.
+     * @param length
+     *          Number of bytes of data in the block.
+     * @return The gzip member.
+     */
+    public byte[] compress(byte[] data, int length) {
+      crc.reset();
+      crc.update(data, 0, length);
+      member.reset();
+      member.write(MEMBER_HEADER, 0, MEMBER_HEADER.length);
+      deflater.reset();
+      deflater.setInput(data, 0, length);
+      deflater.finish();
+      while (!deflater.finished()) {
+        member.write(buffer, 0, deflater.deflate(buffer));
+      }
+      writeIntLE((int) crc.getValue());
+      writeIntLE(length);
+      return member.toByteArray();
+    }
+
+    /**
+     * Writes an int in little-endian order, as gzip trailers store them.
+     */
+    private void writeIntLE(int value) {
+      for (int i = 0; i < 4; i++) {
+        member.write(value >>> (8 * i));
+      }
+    }
+  }
+}
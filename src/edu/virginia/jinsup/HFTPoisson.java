@@ -7,13 +7,8 @@ package edu.virginia.jinsup;
 public class HFTPoisson extends PoissonAgent {
 
   /**
-   * Limits the number of shares owned by the agent.
-   */
-  private static final int INVENTORY_LIMIT = Parameters.hftInventoryLimit;
-
-  /**
-   * Whether or not agent owns more shares than INVENTORY_LIMIT or has a deficit
-   * of more than -INVENTORY_LIMIT.
+   * Whether or not agent owns more shares than the inventory limit or has a
+   * deficit of more than minus the limit.
    */
   private boolean overLimit;
 
@@ -35,24 +30,56 @@ public class HFTPoisson extends PoissonAgent {
     overLimit = false;
   }
 
+  /**
+   * Creates a HFTPoisson trader that is a member of a PoissonAgentGroup.
+   * 
+   * @param matchEng
+   *          Matching engine of the simulation.
+   * @param randomStream
+   *          Stream of random numbers of the group.
+   */
+  public HFTPoisson(MatchingEngine matchEng, RandomStream randomStream) {
+    super(matchEng, "HFTPoisson", randomStream);
+    overLimit = false;
+  }
+
   @Override
   void makeOrder() {
-    boolean[] inventoryResults =
-      checkInventory(getInventory(), INVENTORY_LIMIT, overLimit);
-    processInventory(inventoryResults[OVERRIDE], inventoryResults[WILL_BUY]);
-    overLimit = inventoryResults[OVER_LIMIT];
-    // Fetch qBuy once only
-    double qBuy = getBestBidQuantity();
-    double factor = qBuy / (qBuy + getBestAskQuantity());
-    boolean willBuy = inventoryResults[WILL_BUY];
+    overLimit = makeOrder(this, getID(), getInventory(), overLimit);
+  }
+
+  /**
+   * Places an order of a HFT: within its inventory limit, it buys with a
+   * probability that follows the share of the best bid/ask quantity that is
+   * bid.
+   * 
+   * @param agent
+   *          The trader, or the PoissonAgentStore it belongs to.
+   * @param agentID
+   *          ID of the trader.
+   * @param inventory
+   *          The number of shares the trader has.
+   * @param overLimit
+   *          True if the trader broke its inventory limit on its last order.
+   * @return True if the trader has broken its inventory limit now.
+   */
+  static boolean makeOrder(Agent agent, long agentID, int inventory,
+    boolean overLimit) {
+    Parameters parameters = agent.getParameters();
+    int inventoryResults =
+      limitInventory(agent, agentID, inventory, parameters.hftInventoryLimit,
+        overLimit);
+    boolean willBuy = (inventoryResults & WILL_BUY) != 0;
 
     // determine buy probability from the trend
-    if (!inventoryResults[OVERRIDE] && factor < 0.9) {
-      willBuy = 10 * JinSup.rand.nextFloat() < ((int) (factor * 10 + 1));
+    if ((inventoryResults & OVER_LIMIT) == 0) {
+      double qBuy = agent.getBestBidQuantity();
+      willBuy =
+        chooseSide(agent, qBuy / (qBuy + agent.getBestAskQuantity()), willBuy);
     }
 
-    createPoissonOrder(willBuy,
-      getOrderSize(Parameters.hftOrderSizeProbabilities),
-      Parameters.hftTickProbabilities);
+    placeOrder(agent, agentID, willBuy, parameters.hftOrderSizeProbabilities,
+      parameters.hftTickProbabilities);
+    return (inventoryResults & OVER_LIMIT) != 0;
   }
 }
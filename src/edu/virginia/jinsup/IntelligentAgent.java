@@ -8,7 +8,7 @@ import java.util.Set;
 import edu.virginia.jinsup.IntelligentAgentHelper.ThresholdState;
 
 /**
- * Agent that maintains an order book with a width of 2 * HALF_TICK_WIDTH. The
+ * Agent that maintains an order book with a width of 2 * halfTickWidth. The
  * agent acts on a delay and its actions depend on the difference between total
  * volume at the best bid/ask. See wiki for more details.
  */
@@ -17,8 +17,7 @@ public class IntelligentAgent extends Agent {
   /**
    * Limits the number of shares owned by the agent.
    */
-  private static final int INVENTORY_LIMIT =
-    Parameters.intelligentAgentInventoryLimit;
+  private final int inventoryLimit;
 
   /**
    * Different inventory states the intelligent agent can be in.
@@ -28,8 +27,8 @@ public class IntelligentAgent extends Agent {
   };
 
   /**
-   * Whether or not agent owns more shares than INVENTORY_LIMIT or has a deficit
-   * of more than -INVENTORY_LIMIT.
+   * Whether or not agent owns more shares than inventoryLimit or has a deficit
+   * of more than -inventoryLimit.
    */
   private boolean overLimit;
 
@@ -41,17 +40,17 @@ public class IntelligentAgent extends Agent {
   /**
    * How often the agent should act, in milliseconds.
    */
-  private static final int INTERVAL = Parameters.actInterval;
+  private final int interval;
 
   /**
    * Half of the size of the order book the agent maintains.
    */
-  private static final int HALF_TICK_WIDTH = Parameters.halfTickWidth;
+  private final int halfTickWidth;
 
   /**
    * The quantity of each order the agent orders.
    */
-  private static final int ORDER_SIZE = Parameters.orderSize;
+  private final int orderSize;
 
   /**
    * Helper class for all Intelligent Agents.
@@ -66,7 +65,7 @@ public class IntelligentAgent extends Agent {
   /**
    * List of order prices over time that were traded that may need to be covered
    * by the agent. No duplicates allowed. This means that this is only valid for
-   * ORDER_SIZE = 1.
+   * orderSize = 1.
    */
   private final ArrayList<HashSet<Integer>> potentialOrdersPricesToCover;
 
@@ -75,7 +74,7 @@ public class IntelligentAgent extends Agent {
    * track of trades that happen before the agent has a chance to act at time t
    * = now.
    * 
-   * No duplicates allowed. This means that this is only valid for ORDER_SIZE =
+   * No duplicates allowed. This means that this is only valid for orderSize =
    * 1.
    */
   private final Set<Integer> orderBuffer;
@@ -109,7 +108,7 @@ public class IntelligentAgent extends Agent {
 
   /**
    * Constructs an Intelligent Agent and initializes its order book so that
-   * there is a single order with ORDER_SIZE quantity at each tick above and
+   * there is a single order with orderSize quantity at each tick above and
    * below the buy price.
    * 
    * @param matchEng
@@ -118,6 +117,11 @@ public class IntelligentAgent extends Agent {
   public IntelligentAgent(MatchingEngine matchEng, IntelligentAgentHelper iah,
     int delayLength) {
     super(matchEng, "IntelligentAgent");
+    Parameters parameters = getParameters();
+    inventoryLimit = parameters.intelligentAgentInventoryLimit;
+    interval = parameters.actInterval;
+    halfTickWidth = parameters.halfTickWidth;
+    orderSize = parameters.orderSize;
     this.profit = 0;
     this.intelligentAgentHelper = iah;
     this.delayLength = delayLength;
@@ -134,14 +138,14 @@ public class IntelligentAgent extends Agent {
     orderBuffer = new HashSet<Integer>();
     currentOrderBook = new HashSet<Integer>();
 
-    for (int i = 0; i < HALF_TICK_WIDTH; i++) {
-      createNewOrder(Parameters.buyPrice - ((i + 1) * TICK_SIZE), ORDER_SIZE,
+    for (int i = 0; i < halfTickWidth; i++) {
+      createNewOrder(parameters.buyPrice - ((i + 1) * TICK_SIZE), orderSize,
         true);
-      createNewOrder(Parameters.buyPrice + ((i + 1) * TICK_SIZE), ORDER_SIZE,
+      createNewOrder(parameters.buyPrice + ((i + 1) * TICK_SIZE), orderSize,
         false);
 
       // Do not act until the market opens.
-      setNextActTime(Parameters.startTime);
+      setNextActTime(parameters.startTime);
     }
   }
 
@@ -171,7 +175,7 @@ public class IntelligentAgent extends Agent {
 
     // Assume all prices have to be ordered covered first.
     HashSet<Integer> pricesToOrder = new HashSet<Integer>();
-    for (int i = 0; i < HALF_TICK_WIDTH; ++i) {
+    for (int i = 0; i < halfTickWidth; ++i) {
       pricesToOrder.add(bestBidPriceToFill - (i * TICK_SIZE));
       pricesToOrder.add(bestAskPriceToFill + (i * TICK_SIZE));
     }
@@ -179,7 +183,7 @@ public class IntelligentAgent extends Agent {
     // Cancel all orders that exist (i.e. have not been traded) but have prices
     // that are no longer in the new best bid/ask interval.
     Integer currentPrice;
-    for (int i = 0; i < HALF_TICK_WIDTH; ++i) {
+    for (int i = 0; i < halfTickWidth; ++i) {
       // Iterate through old interval, best bid and under (buy orders)
       currentPrice = previousBestBidPrice - (i * TICK_SIZE);
       if (!interestedList.contains(currentPrice)) {
@@ -244,8 +248,7 @@ public class IntelligentAgent extends Agent {
 
         break;
       default:
-        System.err.println("Error: Invalid threshold state...exiting.");
-        System.exit(1);
+        throw new IllegalStateException("Invalid threshold state.");
     }
 
     // Deal with inventory limit
@@ -254,11 +257,11 @@ public class IntelligentAgent extends Agent {
       case BALANCED:
         if (previousInventoryState == InventoryState.SHARE_SURPLUS) {
           // Refill all buys except edge
-          for (int i = 1; i < HALF_TICK_WIDTH; i++) {
+          for (int i = 1; i < halfTickWidth; i++) {
             pricesToOrder.add(bestBidPriceToFill - (i * TICK_SIZE));
           }
         } else if (previousInventoryState == InventoryState.SHARE_DEFICIT) {
-          for (int i = 1; i < HALF_TICK_WIDTH; i++) {
+          for (int i = 1; i < halfTickWidth; i++) {
             pricesToOrder.add(bestAskPriceToFill + (i * TICK_SIZE));
           }
         } else {
@@ -268,23 +271,23 @@ public class IntelligentAgent extends Agent {
       case SHARE_SURPLUS:
         if (previousInventoryState == InventoryState.SHARE_SURPLUS) {
           // Remove buy prices from toOrder
-          for (int i = 0; i < HALF_TICK_WIDTH; i++) {
+          for (int i = 0; i < halfTickWidth; i++) {
             pricesToOrder.remove(bestBidPriceToFill - (i * TICK_SIZE));
           }
 
         } else if (previousInventoryState == InventoryState.SHARE_DEFICIT) {
           // Fill sells and cancel buys
-          for (int i = 1; i < HALF_TICK_WIDTH; i++) {
+          for (int i = 1; i < halfTickWidth; i++) {
             pricesToOrder.add(bestAskPriceToFill + (i * TICK_SIZE));
           }
 
-          for (int i = 0; i < HALF_TICK_WIDTH; i++) {
+          for (int i = 0; i < halfTickWidth; i++) {
             pricesToOrder.remove(bestBidPriceToFill - (i * TICK_SIZE));
             cancelOrder(bestBidPriceToFill - (i * TICK_SIZE));
           }
         } else {
           // Cancel ALL buys
-          for (int i = 0; i < HALF_TICK_WIDTH; i++) {
+          for (int i = 0; i < halfTickWidth; i++) {
             pricesToOrder.remove(bestBidPriceToFill - (i * TICK_SIZE));
             cancelOrder(bestBidPriceToFill - (i * TICK_SIZE));
           }
@@ -293,23 +296,23 @@ public class IntelligentAgent extends Agent {
       case SHARE_DEFICIT:
         if (previousInventoryState == InventoryState.SHARE_SURPLUS) {
           // Cancel all sells and refill buys
-          for (int i = 1; i < HALF_TICK_WIDTH; i++) {
+          for (int i = 1; i < halfTickWidth; i++) {
             pricesToOrder.add(bestBidPriceToFill - (i * TICK_SIZE));
           }
 
-          for (int i = 0; i < HALF_TICK_WIDTH; i++) {
+          for (int i = 0; i < halfTickWidth; i++) {
             pricesToOrder.remove(bestBidPriceToFill + (i * TICK_SIZE));
             cancelOrder(bestAskPriceToFill + (i * TICK_SIZE));
           }
 
         } else if (previousInventoryState == InventoryState.SHARE_DEFICIT) {
           // Remove sell prices from toOrder
-          for (int i = 0; i < HALF_TICK_WIDTH; i++) {
+          for (int i = 0; i < halfTickWidth; i++) {
             pricesToOrder.remove(bestAskPriceToFill + (i * TICK_SIZE));
           }
         } else {
           // Cancel all sells
-          for (int i = 0; i < HALF_TICK_WIDTH; i++) {
+          for (int i = 0; i < halfTickWidth; i++) {
             pricesToOrder.remove(bestAskPriceToFill + (i * TICK_SIZE));
             cancelOrder(bestAskPriceToFill + (i * TICK_SIZE));
           }
@@ -321,19 +324,20 @@ public class IntelligentAgent extends Agent {
 
     // Fill all remaining orders
     for (Integer i : pricesToOrder) {
-      createNewOrder(i, ORDER_SIZE, i <= bestBidPriceToFill);
+      createNewOrder(i, orderSize, i <= bestBidPriceToFill);
     }
 
     // Replace inventory limit history
 
     previousInventoryState = inventoryLimitHistory.get(inventoryLimitIndex);
-    boolean[] inventoryResults =
-      checkInventory(getInventory(), INVENTORY_LIMIT, overLimit);
-    overLimit = inventoryResults[OVER_LIMIT];
-
-    if (inventoryResults[OVERRIDE]) {
-      inventoryLimitHistory.set(inventoryLimitIndex, inventoryResults[WILL_BUY]
-        ? InventoryState.SHARE_DEFICIT : InventoryState.SHARE_SURPLUS);
+    int inventoryResults =
+      checkInventory(getInventory(), inventoryLimit, overLimit);
+    overLimit = (inventoryResults & OVER_LIMIT) != 0;
+
+    if (overLimit) {
+      inventoryLimitHistory.set(inventoryLimitIndex,
+        (inventoryResults & WILL_BUY) != 0 ? InventoryState.SHARE_DEFICIT
+          : InventoryState.SHARE_SURPLUS);
     } else {
       inventoryLimitHistory.set(inventoryLimitIndex, InventoryState.BALANCED);
     }
@@ -349,25 +353,25 @@ public class IntelligentAgent extends Agent {
     interestedList.addAll(orderBuffer);
     orderBuffer.clear();
 
-    setNextActTime(getNextActTime() + INTERVAL);
+    setNextActTime(getNextActTime() + interval);
     setWillAct(false);
   }
 
   /**
    * Notifies the agent that one of its orders has been traded.
    * 
-   * @param arguments
-   *          1) Price of the order traded. 2) Time the order was traded, in
-   *          milliseconds. 3) Volume traded (for profit logging). 4) True if
-   *          buy order was traded.
-   * 
+   * @param priceOfOrderTraded
+   *          Price of the order traded.
+   * @param timeOfTrade
+   *          Time the order was traded, in milliseconds.
+   * @param volumeTraded
+   *          Volume traded (for profit logging).
+   * @param buyOrderTraded
+   *          True if buy order was traded.
    */
   @Override
-  public void notify(Object... arguments) {
-    long timeOfTrade = (Long) arguments[1];
-    int priceOfOrderTraded = (Integer) arguments[0];
-    int volumeTraded = (Integer) arguments[2];
-    boolean buyOrderTraded = (Boolean) arguments[3];
+  public void notifyTrade(int priceOfOrderTraded, long timeOfTrade,
+    int volumeTraded, boolean buyOrderTraded) {
     // Check if acted yet
     if (getNextActTime() <= timeOfTrade) {
       orderBuffer.add(priceOfOrderTraded);
@@ -402,8 +406,8 @@ public class IntelligentAgent extends Agent {
   }
 
   /**
-   * Checks if the price is in the interval (bestBidPrice - HALF_TICK_WIDTH *
-   * TICK_SIZE , bestBidPrice] or [bestAskPrice, bestAskPrice + HALF_TICK_WIDTH
+   * Checks if the price is in the interval (bestBidPrice - halfTickWidth *
+   * TICK_SIZE , bestBidPrice] or [bestAskPrice, bestAskPrice + halfTickWidth
    * * TICK_SIZE).
    * 
    * @param priceToCheck
@@ -418,10 +422,10 @@ public class IntelligentAgent extends Agent {
     int bestAskPrice) {
     return (
     // Price within bid interval
-    (priceToCheck > bestBidPrice - (HALF_TICK_WIDTH * TICK_SIZE) && priceToCheck <= bestBidPrice)
+    (priceToCheck > bestBidPrice - (halfTickWidth * TICK_SIZE) && priceToCheck <= bestBidPrice)
     // Price within ask interval
     || (priceToCheck >= bestAskPrice && priceToCheck < bestAskPrice
-      + (HALF_TICK_WIDTH * TICK_SIZE)));
+      + (halfTickWidth * TICK_SIZE)));
   }
 
   /**
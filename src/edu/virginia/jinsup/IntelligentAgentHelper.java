@@ -140,6 +140,39 @@ public class IntelligentAgentHelper {
     }
   }
 
+  /**
+   * Adds the same data several times in a row, as if addData was called once
+   * per millisecond while the order book did not change. Only the last
+   * delayLength additions are written, since they overwrite everything the
+   * earlier ones would have.
+   * 
+   * @param newVolumeDifference
+   *          The new value of best bid - best ask total volume.
+   * @param newBestBidPrice
+   *          The new best bid price.
+   * @param newBestAskPrice
+   *          The new best ask price.
+   * @param count
+   *          How many times to add the data.
+   */
+  public void addData(int newVolumeDifference, int newBestBidPrice,
+    int newBestAskPrice, long count) {
+    boolean overwritesAll = count > delayLength;
+    if (overwritesAll) {
+      oldestIndex =
+        (int) ((oldestIndex + count - delayLength) % delayLength);
+      count = delayLength;
+    }
+    for (long i = 0; i < count; i++) {
+      addData(newVolumeDifference, newBestBidPrice, newBestAskPrice);
+    }
+    if (overwritesAll) {
+      // The last data overwritten was added by one of the skipped additions.
+      previousOldBestBidPrice = newBestBidPrice;
+      previousOldBestAskPrice = newBestAskPrice;
+    }
+  }
+
   /**
    * Update the old index to point at oldest data so far.
    */
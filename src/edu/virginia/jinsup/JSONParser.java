@@ -2,6 +2,7 @@ package edu.virginia.jinsup;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 
 import com.fasterxml.jackson.databind.JsonNode;
@@ -14,148 +15,152 @@ public class JSONParser {
    * 
    * @param configFileLocation
    *          The location of the configuration file.
+   * @return The parameters read from the file.
    */
-  public static void loadParameters(String configFileLocation) {
+  public static Parameters loadParameters(String configFileLocation) {
+    Parameters parameters = new Parameters();
     ObjectMapper m = new ObjectMapper();
     JsonNode rootNode = null;
     try {
       rootNode = m.readTree(new File(configFileLocation));
     } catch (IOException e) {
-      System.err.println("Error: Could not parse configuration file.");
+      throw new UncheckedIOException("Could not parse configuration file "
+        + configFileLocation + ".", e);
     }
 
     JsonNode rootConfigs = rootNode.path("JinSupRunConfigs");
 
     // Overall simulation parameters
-    Parameters.buyPrice = rootConfigs.path("buyPrice").asInt();
-    Parameters.startTime = rootConfigs.path("startTime").asLong();
-    Parameters.tradeTime = rootConfigs.path("tradeTime").asLong();
-    Parameters.testing = rootConfigs.path("testing").asBoolean();
-    Parameters.showGui = rootConfigs.path("showGui").asBoolean();
+    parameters.buyPrice = rootConfigs.path("buyPrice").asInt();
+    parameters.startTime = rootConfigs.path("startTime").asLong();
+    parameters.tradeTime = rootConfigs.path("tradeTime").asLong();
+    parameters.testing = rootConfigs.path("testing").asBoolean();
+    parameters.showGui = rootConfigs.path("showGui").asBoolean();
 
     // Agent Counts
     JsonNode agentCounts = rootConfigs.path("AgentCounts");
-    Parameters.fundCount = agentCounts.path("FundamentalCount").asInt();
-    Parameters.marketMakerCount = agentCounts.path("MarketMakerCount").asInt();
-    Parameters.opporStratCount = agentCounts.path("OpporStratCount").asInt();
-    Parameters.hftCount = agentCounts.path("HFTCount").asInt();
-    Parameters.smallTraderCount = agentCounts.path("SmallTraderCount").asInt();
-    Parameters.intelligentAgentCount =
+    parameters.fundCount = agentCounts.path("FundamentalCount").asInt();
+    parameters.marketMakerCount = agentCounts.path("MarketMakerCount").asInt();
+    parameters.opporStratCount = agentCounts.path("OpporStratCount").asInt();
+    parameters.hftCount = agentCounts.path("HFTCount").asInt();
+    parameters.smallTraderCount = agentCounts.path("SmallTraderCount").asInt();
+    parameters.intelligentAgentCount =
       agentCounts.path("IntelligentAgentCount").asInt();
 
     // Poisson arrival rates
     JsonNode poissonArrivalRates = rootConfigs.path("PoissonArrivalRates");
-    Parameters.fundamentalArrivalRate =
+    parameters.fundamentalArrivalRate =
       poissonArrivalRates.path("FundamentalArrivalRate").asDouble();
-    Parameters.marketMakerArrivalRate =
+    parameters.marketMakerArrivalRate =
       poissonArrivalRates.path("MarketMakerArrivalRate").asDouble();
-    Parameters.opporStratArrivalRate =
+    parameters.opporStratArrivalRate =
       poissonArrivalRates.path("OpporStratArrivalRate").asDouble();
-    Parameters.hftArrivalRate =
+    parameters.hftArrivalRate =
       poissonArrivalRates.path("HFTArrivalRate").asDouble();
-    Parameters.smallTraderArrivalRate =
+    parameters.smallTraderArrivalRate =
       poissonArrivalRates.path("SmallTraderArrivalRate").asDouble();
 
     // Poisson cancel rates
     JsonNode poissonCancelRates = rootConfigs.path("PoissonCancelRates");
-    Parameters.fundamentalCancelRate =
+    parameters.fundamentalCancelRate =
       poissonCancelRates.path("FundamentalCancelRate").asDouble();
-    Parameters.marketMakerCancelRate =
+    parameters.marketMakerCancelRate =
       poissonCancelRates.path("MarketMakerCancelRate").asDouble();
-    Parameters.opporStratCancelRate =
+    parameters.opporStratCancelRate =
       poissonCancelRates.path("OpporStratCancelRate").asDouble();
-    Parameters.hftCancelRate =
+    parameters.hftCancelRate =
       poissonCancelRates.path("HFTCancelRate").asDouble();
-    Parameters.smallTraderCancelRate =
+    parameters.smallTraderCancelRate =
       poissonCancelRates.path("SmallTraderCancelRate").asDouble();
 
     // Poisson order size probabilities
     JsonNode orderSizeProbabilities =
       rootConfigs.path("PoissonOrderSizeProbabilities");
-    Parameters.fundamentalOrderSizeProbabilities =
-      getMulitpleDoubleElements(orderSizeProbabilities.path("FundamentalSizes"));
-    Parameters.marketMakerOrderSizeProbabilities =
-      getMulitpleDoubleElements(orderSizeProbabilities.path("MarketMakerSizes"));
-    Parameters.opporStratOrderSizeProbabilities =
-      getMulitpleDoubleElements(orderSizeProbabilities.path("OpporStratSizes"));
-    Parameters.hftOrderSizeProbabilities =
-      getMulitpleDoubleElements(orderSizeProbabilities.path("HFTSizes"));
-    Parameters.smallTraderOrderSizeProbabilities =
-      getMulitpleDoubleElements(orderSizeProbabilities.path("SmallTraderSizes"));
+    parameters.fundamentalOrderSizeProbabilities =
+      getProbabilities(orderSizeProbabilities, "FundamentalSizes");
+    parameters.marketMakerOrderSizeProbabilities =
+      getProbabilities(orderSizeProbabilities, "MarketMakerSizes");
+    parameters.opporStratOrderSizeProbabilities =
+      getProbabilities(orderSizeProbabilities, "OpporStratSizes");
+    parameters.hftOrderSizeProbabilities =
+      getProbabilities(orderSizeProbabilities, "HFTSizes");
+    parameters.smallTraderOrderSizeProbabilities =
+      getProbabilities(orderSizeProbabilities, "SmallTraderSizes");
 
     // Poisson tick probabilities
     JsonNode tickProbabilities = rootConfigs.path("PoissonTickProbabilities");
-    Parameters.fundamentalTickProbabilities =
-      getMulitpleDoubleElements(tickProbabilities.path("FundamentalTicks"));
-    Parameters.marketMakerTickProbabilities =
-      getMulitpleDoubleElements(tickProbabilities.path("MarketMakerTicks"));
-    Parameters.opporStratTickProbabilities =
-      getMulitpleDoubleElements(tickProbabilities.path("OpporStratTicks"));
-    Parameters.hftTickProbabilities =
-      getMulitpleDoubleElements(tickProbabilities.path("HFTTicks"));
-    Parameters.smallTraderTickProbabilities =
-      getMulitpleDoubleElements(tickProbabilities.path("SmallTraderTicks"));
+    parameters.fundamentalTickProbabilities =
+      getProbabilities(tickProbabilities, "FundamentalTicks");
+    parameters.marketMakerTickProbabilities =
+      getProbabilities(tickProbabilities, "MarketMakerTicks");
+    parameters.opporStratTickProbabilities =
+      getProbabilities(tickProbabilities, "OpporStratTicks");
+    parameters.hftTickProbabilities =
+      getProbabilities(tickProbabilities, "HFTTicks");
+    parameters.smallTraderTickProbabilities =
+      getProbabilities(tickProbabilities, "SmallTraderTicks");
 
     // Inventory Limits
     JsonNode inventoryLimits = rootConfigs.path("InventoryLimits");
-    Parameters.marketMakerInventoryLimit =
+    parameters.marketMakerInventoryLimit =
       inventoryLimits.path("MarketMakerInventoryLimit").asInt();
-    Parameters.opporStratInventoryLimit =
+    parameters.opporStratInventoryLimit =
       inventoryLimits.path("OpporStratInventoryLimit").asInt();
-    Parameters.hftInventoryLimit =
+    parameters.hftInventoryLimit =
       inventoryLimits.path("HFTInventoryLimit").asInt();
-    Parameters.intelligentAgentInventoryLimit =
+    parameters.intelligentAgentInventoryLimit =
       inventoryLimits.path("IntelligentAgentInventoryLimit").asInt();
 
     // Intelligent Agent Parameters
     JsonNode intelligentAgentParams =
       rootConfigs.path("IntelligentAgentParams");
-    Parameters.intelligentAgentLogFreq =
+    parameters.intelligentAgentLogFreq =
       intelligentAgentParams.path("ProfitLogFrequency").asInt();
-    Parameters.intelligentAgentThresholdEnable =
+    parameters.intelligentAgentThresholdEnable =
       intelligentAgentParams.path("ThresholdEnable").asBoolean();
-    Parameters.intelligentAgentThreshold =
+    parameters.intelligentAgentThreshold =
       intelligentAgentParams.path("Threshold").asInt();
-    Parameters.halfTickWidth =
+    parameters.halfTickWidth =
       intelligentAgentParams.path("HalfTickWidth").asInt();
-    Parameters.orderSize = intelligentAgentParams.path("OrderSize").asInt();
-    Parameters.actInterval = intelligentAgentParams.path("ActInterval").asInt();
-    Parameters.intelligentAgentDelays =
+    parameters.orderSize = intelligentAgentParams.path("OrderSize").asInt();
+    parameters.actInterval = intelligentAgentParams.path("ActInterval").asInt();
+    parameters.intelligentAgentDelays =
       getMulitpleIntegerElements(intelligentAgentParams.path("Delays"));
 
     // OpporStrat Parameters
     JsonNode opporStratParams = rootConfigs.path("OpporStratParams");
-    Parameters.opporStratNewsFreq =
+    parameters.opporStratNewsFreq =
       opporStratParams.path("OpporStratNewsFreq").asInt();
-    Parameters.initialBuyProbability =
+    parameters.initialBuyProbability =
       opporStratParams.path("InitialBuyProbability").asDouble();
-    Parameters.minBuyProbability =
+    parameters.minBuyProbability =
       opporStratParams.path("MinBuyProbability").asDouble();
-    Parameters.maxBuyProbability =
+    parameters.maxBuyProbability =
       opporStratParams.path("MaxBuyProbability").asDouble();
-    Parameters.lowerUniformBound =
+    parameters.lowerUniformBound =
       opporStratParams.path("LowerUniformBound").asDouble();
-    Parameters.upperUniformBound =
+    parameters.upperUniformBound =
       opporStratParams.path("UpperUniformBound").asDouble();
+    return parameters;
   }
 
   /**
-   * Helper method used to parse a list of Double values.
+   * Helper method used to parse a list of probabilities. Throws an
+   * IllegalArgumentException if they do not add up to 1.0.
    * 
-   * @param element
-   *          The element to extract the list from.
-   * @return ArrayList of values from the given element.
+   * @param parent
+   *          The node that contains the list.
+   * @param name
+   *          Name of the node to extract the list from.
+   * @return Table to draw from the probabilities with.
    */
-  private static ArrayList<Double> getMulitpleDoubleElements(JsonNode jsonNode) {
-    ArrayList<Double> values = new ArrayList<Double>();
-    for (JsonNode value : jsonNode) {
-      values.add(value.asDouble());
-    }
-    if (!Parameters.checkProbabilitiesList(values)) {
-      System.err
-        .println("Error: Probabilities do not add up close enough to 1.0.");
+  private static AliasTable getProbabilities(JsonNode parent, String name) {
+    JsonNode jsonNode = parent.path(name);
+    double[] values = new double[jsonNode.size()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = jsonNode.get(i).asDouble();
     }
-    return values;
+    return Parameters.createProbabilityTable(name, values);
   }
 
   /**
@@ -1,32 +1,59 @@
 package edu.virginia.jinsup;
 
-import java.security.SecureRandom;
-import java.util.Random;
-
-import org.apache.commons.math3.random.AbstractRandomGenerator;
-import org.apache.commons.math3.random.JDKRandomGenerator;
-import org.apache.commons.math3.random.MersenneTwister;
-import org.apache.commons.math3.random.RandomAdaptor;
-import org.apache.commons.math3.random.RandomGenerator;
-import org.apache.commons.math3.random.Well19937c;
+import java.util.Calendar;
 
 import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParameterException;
+import com.beust.jcommander.ParametersDelegate;
 
 public class JinSup {
 
   public static final String RUN_COMMAND = "java -jar jinsup.jar";
 
-  public static RandomGenerator randGen;
-  public static Random rand;
+  private static Calendar calendar = Calendar.getInstance();
+  private String timestamp = String.format("%2d%02d%02d-%02d%02d%02d",
+    calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH),
+    calendar.get(Calendar.DAY_OF_MONTH), calendar.get(Calendar.HOUR_OF_DAY),
+    calendar.get(Calendar.MINUTE), calendar.get(Calendar.SECOND));
+
+  @Parameter(names = {"--seed"}, description = "PRNG seed")
+  private long seed = System.currentTimeMillis();
+
+  // Logs
+
+  @Parameter(names = {"--destTradeFile", "-dt"},
+    description = "File to write trade log data")
+  private String destTradeFile = "log-" + timestamp + ".csv";
+
+  @Parameter(names = {"--destIAProfitFile", "-dia"},
+    description = "File to write IA profits")
+  private String destIAProfitFile = "IAProfits-" + timestamp + ".csv";
+
+  // Options shared with the SweepRunner
+
+  @ParametersDelegate
+  private RunOptions options = new RunOptions();
+
+  // Configuration File
+  @Parameter(names = {"--config"}, description = "Configuration file",
+    required = true)
+  private String configPath;
+
+  // Help
+
+  @Parameter(names = {"--help"}, description = "Show this usage information",
+    help = true)
+  private boolean help;
 
   public static void main(String[] args) {
     // Read command-line flags
+    JinSup jinSup = new JinSup();
     try {
-      JCommander jcommander = new JCommander(new Settings(), args);
+      JCommander jcommander = new JCommander(jinSup, args);
 
       // Show help and exit if help flag was given
-      if (Settings.showHelp()) {
+      if (jinSup.help) {
         jcommander.setProgramName(RUN_COMMAND);
         jcommander.usage();
         System.exit(0);
@@ -36,95 +63,22 @@ public class JinSup {
         + "\nUse --help to display usage information.");
       System.exit(1);
     }
+    Settings settings =
+      new Settings(jinSup.options, jinSup.seed, jinSup.destTradeFile,
+        jinSup.destIAProfitFile, jinSup.configPath);
 
-    // Use appropriate parser to load simulation parameters.
-    if (Settings.getConfigPath()
-      .substring(Settings.getConfigPath().length() - 3).equals("xml")) {
-      XMLParser.loadParameters(Settings.getConfigPath());
-    } else if (Settings.getConfigPath()
-      .substring(Settings.getConfigPath().length() - 4).equals("json")) {
-      JSONParser.loadParameters(Settings.getConfigPath());
-    } else {
-      System.err
-        .println("Configuration file must be in either XML or JSON format!"
-          + "\nSee the wiki for more details and examples.");
-    }
-
-    Parameters.endTime = (Parameters.startTime + Parameters.tradeTime);
-
-    // Initialize reusable RNG instance
-    String rng = Settings.getRNG().toLowerCase();
-    if (rng.equals("mersenne")) { // Mersenne Twister
-      randGen = new MersenneTwister(Settings.getSeed());
-      rand = new RandomAdaptor(randGen);
-    } else if (rng.equals("well19937c")) { // Well19937c
-      randGen = new Well19937c(Settings.getSeed());
-      rand = new RandomAdaptor(randGen);
-    } else if (rng.equals("secure")) { // SecureRandom
-      rand = new SecureRandom();
-      rand.setSeed(Settings.getSeed());
-      randGen = new AbstractRandomGenerator() {
-        @Override
-        public boolean nextBoolean() {
-          return rand.nextBoolean();
-        }
-
-        @Override
-        public void nextBytes(byte[] bytes) {
-          rand.nextBytes(bytes);
-        }
-
-        @Override
-        public double nextDouble() {
-          return rand.nextDouble();
-        }
-
-        @Override
-        public float nextFloat() {
-          return rand.nextFloat();
-        }
-
-        @Override
-        public double nextGaussian() {
-          return rand.nextGaussian();
-        }
-
-        @Override
-        public int nextInt() {
-          return rand.nextInt();
-        }
-
-        @Override
-        public int nextInt(int n) {
-          return rand.nextInt(n);
-        }
-
-        @Override
-        public long nextLong() {
-          return rand.nextLong();
-        }
-
-        @Override
-        public void setSeed(long seed) {
-          rand.setSeed(seed);
-        }
-      };
-    } else { // Random
-      randGen = new JDKRandomGenerator();
-      randGen.setSeed(Settings.getSeed());
-      rand = new RandomAdaptor(randGen);
-    }
-
-    // Create window
-    if (Parameters.showGui) {
-      Controller.graphFrame = new GraphFrame();
-    }
+    try {
+      // Use appropriate parser to load simulation parameters.
+      Parameters parameters = Parameters.load(settings.getConfigPath());
 
-    Controller controller = new Controller(new MatchingEngine());
-    long elapsedTime = System.nanoTime();
-    controller.runSimulator();
-    if (Parameters.showGui) {
-      Controller.graphFrame.showFinished(System.nanoTime() - elapsedTime);
+      new Simulation(settings, parameters).run();
+    } catch (IllegalArgumentException e) {
+      System.err.println("Error: " + e.getMessage());
+      System.exit(1);
+    } catch (RuntimeException e) {
+      System.err.println("Error: " + e.getMessage());
+      e.printStackTrace();
+      System.exit(1);
     }
   }
 }
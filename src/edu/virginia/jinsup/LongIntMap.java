@@ -0,0 +1,191 @@
+package edu.virginia.jinsup;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from non-negative long keys (order IDs, prices) to int values
+ * (slots) that stores both in arrays of primitives, so that no key or entry
+ * object is allocated per mapping. Uses open addressing with linear probing
+ * and doubles itself when it gets half full.
+ */
+public class LongIntMap {
+
+  /**
+   * Value returned for a key that is not in the map.
+   */
+  public static final int NONE = -1;
+
+  /**
+   * Key marking an empty entry. Keys are never negative.
+   */
+  private static final long EMPTY_KEY = -1;
+
+  /**
+   * Key of each entry, or EMPTY_KEY.
+   */
+  private long[] keys;
+
+  /**
+   * Value of the entry at the same position in keys.
+   */
+  private int[] values;
+
+  /**
+   * Number of keys in the map.
+   */
+  private int size;
+
+  /**
+   * Creates an empty map.
+   * 
+   * @param capacity
+   *          Number of entries to start with. Must be a power of two.
+   */
+  public LongIntMap(int capacity) {
+    keys = new long[capacity];
+    Arrays.fill(keys, EMPTY_KEY);
+    values = new int[capacity];
+    size = 0;
+  }
+
+  /**
+   * @param key
+   *          Key to look up.
+   * @return The value of the key, or NONE if the key is not in the map.
+   */
+  public int get(long key) {
+    int mask = keys.length - 1;
+    for (int i = hash(key) & mask; keys[i] != EMPTY_KEY; i = (i + 1) & mask) {
+      if (keys[i] == key) {
+        return values[i];
+      }
+    }
+    return NONE;
+  }
+
+  /**
+   * Sets the value of a key, adding the key if it is not in the map yet.
+   * 
+   * @param key
+   *          The key. Must not be negative.
+   * @param value
+   *          The value.
+   * @return The previous value of the key, or NONE if it was not in the map.
+   * @throws IllegalArgumentException
+   *           If the key is negative.
+   */
+  public int put(long key, int value) {
+    if (key < 0) {
+      throw new IllegalArgumentException("Key " + key + " is negative.");
+    }
+    int mask = keys.length - 1;
+    int i = hash(key) & mask;
+    while (keys[i] != EMPTY_KEY) {
+      if (keys[i] == key) {
+        int previous = values[i];
+        values[i] = value;
+        return previous;
+      }
+      i = (i + 1) & mask;
+    }
+    if ((size + 1) * 2 > keys.length) {
+      grow();
+      insert(key, value);
+    } else {
+      keys[i] = key;
+      values[i] = value;
+    }
+    size++;
+    return NONE;
+  }
+
+  /**
+   * Removes a key from the map. The entries after it are shifted back so that
+   * no entry ends up behind an empty one in its probe sequence.
+   * 
+   * @param key
+   *          The key.
+   * @return The value the key had, or NONE if it was not in the map.
+   */
+  public int remove(long key) {
+    int mask = keys.length - 1;
+    int i = hash(key) & mask;
+    while (keys[i] != key) {
+      if (keys[i] == EMPTY_KEY) {
+        return NONE;
+      }
+      i = (i + 1) & mask;
+    }
+    int value = values[i];
+    int j = i;
+    while (true) {
+      j = (j + 1) & mask;
+      if (keys[j] == EMPTY_KEY) {
+        break;
+      }
+      int home = hash(keys[j]) & mask;
+      // Move the entry at j into the hole at i unless its home lies
+      // (cyclically) in (i, j], in which case it is still reachable.
+      if (((j - home) & mask) >= ((j - i) & mask)) {
+        keys[i] = keys[j];
+        values[i] = values[j];
+        i = j;
+      }
+    }
+    keys[i] = EMPTY_KEY;
+    size--;
+    return value;
+  }
+
+  /**
+   * @return The number of keys in the map.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Doubles the number of entries.
+   */
+  private void grow() {
+    long[] oldKeys = keys;
+    int[] oldValues = values;
+    keys = new long[oldKeys.length * 2];
+    Arrays.fill(keys, EMPTY_KEY);
+    values = new int[oldKeys.length * 2];
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != EMPTY_KEY) {
+        insert(oldKeys[i], oldValues[i]);
+      }
+    }
+  }
+
+  /**
+   * Adds a key that is not in the map yet. The map must have room for it.
+   * 
+   * @param key
+   *          The key.
+   * @param value
+   *          The value.
+   */
+  private void insert(long key, int value) {
+    int mask = keys.length - 1;
+    int i = hash(key) & mask;
+    while (keys[i] != EMPTY_KEY) {
+      i = (i + 1) & mask;
+    }
+    keys[i] = key;
+    values[i] = value;
+  }
+
+  /**
+   * @param key
+   *          Key to hash.
+   * @return Hash of the key with its bits well mixed, since order IDs are
+   *         sequential and prices are multiples of the tick size.
+   */
+  private static int hash(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+}
@@ -8,7 +8,7 @@ public class MarketMakerPoisson extends PoissonAgent {
   /**
    * Limits the number of shares owned by the agent.
    */
-  private static final int INVENTORY_LIMIT = 30;
+  static final int INVENTORY_LIMIT = 30;
 
   /**
    * Whether or not agent owns more shares than INVENTORY_LIMIT or has a deficit
@@ -35,24 +35,57 @@ public class MarketMakerPoisson extends PoissonAgent {
     overLimit = false;
   }
 
+  /**
+   * Creates a Market Maker that is a member of a PoissonAgentGroup.
+   * 
+   * @param matchEng
+   *          Matching engine of the simulation.
+   * @param randomStream
+   *          Stream of random numbers of the group.
+   */
+  public MarketMakerPoisson(MatchingEngine matchEng,
+    RandomStream randomStream) {
+    super(matchEng, "MarketMakerPoisson", randomStream);
+    overLimit = false;
+  }
+
   @Override
   public void makeOrder() {
-    boolean[] inventoryResults =
-      checkInventory(getInventory(), INVENTORY_LIMIT, overLimit);
-    processInventory(inventoryResults[OVERRIDE], inventoryResults[WILL_BUY]);
-    overLimit = inventoryResults[OVER_LIMIT];
-    // bestBuyOrder/(bestBuyOrder + bestSellOrder)
-    double bestBuyPrice = getBestBuyPrice();
-    double factor = bestBuyPrice / (bestBuyPrice + getBestSellPrice());
-    boolean willBuy = inventoryResults[WILL_BUY];
+    overLimit = makeOrder(this, getID(), getInventory(), overLimit);
+  }
 
-    // Whether or not to skip factor checking
+  /**
+   * Places an order of a market maker: within its inventory limit, it buys
+   * with a probability that follows bestBuyPrice / (bestBuyPrice +
+   * bestSellPrice).
+   * 
+   * @param agent
+   *          The trader, or the PoissonAgentStore it belongs to.
+   * @param agentID
+   *          ID of the trader.
+   * @param inventory
+   *          The number of shares the trader has.
+   * @param overLimit
+   *          True if the trader broke its inventory limit on its last order.
+   * @return True if the trader has broken its inventory limit now.
+   */
+  static boolean makeOrder(Agent agent, long agentID, int inventory,
+    boolean overLimit) {
+    int inventoryResults =
+      limitInventory(agent, agentID, inventory, INVENTORY_LIMIT, overLimit);
+    boolean willBuy = (inventoryResults & WILL_BUY) != 0;
 
-    if (!inventoryResults[OVERRIDE] && factor < 0.9) {
-      willBuy = 10 * JinSup.rand.nextFloat() < ((int) (factor * 10 + 1));
+    // Whether or not to skip factor checking
+    if ((inventoryResults & OVER_LIMIT) == 0) {
+      double bestBuyPrice = agent.getBestBuyPrice();
+      willBuy =
+        chooseSide(agent,
+          bestBuyPrice / (bestBuyPrice + agent.getBestSellPrice()), willBuy);
     }
-    createPoissonOrder(willBuy,
-      getOrderSize(Parameters.marketMakerOrderSizeProbabilities),
-      Parameters.marketMakerTickProbabilities);
+    Parameters parameters = agent.getParameters();
+    placeOrder(agent, agentID, willBuy,
+      parameters.marketMakerOrderSizeProbabilities,
+      parameters.marketMakerTickProbabilities);
+    return (inventoryResults & OVER_LIMIT) != 0;
   }
 }
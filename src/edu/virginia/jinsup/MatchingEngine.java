@@ -1,50 +1,62 @@
 package edu.virginia.jinsup;
 
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.TreeSet;
+import java.util.Random;
 
 /**
  * Class that handles order creation, modification, and cancellation. Also deals
  * with trades and provides agents with appropriate trade data from the last
  * millisecond of trading.
+ * 
+ * The orders are kept in an OrderBookStore, which holds them either as Order
+ * objects or in arrays of primitives. Orders that the engine hands out, e.g.
+ * from getRandomOrder(), are copies that are not updated when the stored order
+ * changes. Orders that are passed in, e.g. to cancelOrder(Order), are looked up
+ * by ID, so nothing is done for orders that have already been filled or
+ * cancelled.
  */
 
 public class MatchingEngine {
 
   /**
-   * Maximum size the log buffer will reach before writing
+   * ID to be assigned to orders that trade.
    */
-  private static final int LOG_BUFFER_SIZE = 524288;
+  private long tradeMatchID;
 
   /**
-   * ID to be assigned to orders that trade.
+   * The order book and every order in the simulation.
    */
-  private long tradeMatchID;
+  private final OrderBookStore store;
 
   /**
-   * All the orders in the simulation, grouped by agent ID.
+   * All the agents in the simulation, indexed by agent ID. Agent IDs are given
+   * out in sequence, so the array has no gaps.
    */
-  private final HashMap<Long, ArrayList<Order>> orderMap;
+  private Agent[] agents;
 
   /**
-   * All the agents in the simulation, indexed by agent ID.
+   * Code of the type of each agent, indexed by agent ID. The code is the index
+   * of the type in typeNames.
    */
-  private final HashMap<Long, Agent> agentMap;
+  private int[] agentTypes;
 
   /**
-   * All the buy orders in the simulation, highest first.
+   * True for each agent that is an intelligent agent and has to be notified of
+   * its trades, indexed by agent ID.
    */
-  private final TreeSet<Order> buyOrders;
+  private boolean[] intelligentAgents;
 
   /**
-   * All the sell orders in the simulation, highest first.
+   * Names of the agent types that have been seen so far, indexed by type code.
    */
-  private final TreeSet<Order> sellOrders;
+  private final ArrayList<String> typeNames;
+
+  /**
+   * Type code of each agent type name. Only used when an agent is added.
+   */
+  private final HashMap<String, Integer> typeCodes;
 
   /**
    * The price (CENTS) that the share was last traded at. This should be plotted
@@ -59,12 +71,44 @@ public class MatchingEngine {
   private boolean startingPeriod;
 
   /**
-   * A temporary buffer in memory used to keep logging information so that the
-   * program does not have write to the log file every time an order is made,
-   * traded, etc. Writes are made to the log file either when the simulator is
-   * done or when the buffer is full.
+   * Receivers of the events of the engine, such as the trade log and the GUI.
    */
-  private final ArrayList<String> logBuffer;
+  private EngineListener[] listeners;
+
+  /**
+   * Event object passed to the listeners for every order message.
+   */
+  private final OrderEvent orderEvent;
+
+  /**
+   * Event object passed to the listeners for every side of a trade.
+   */
+  private final TradeEvent tradeEvent;
+
+  /**
+   * Event object passed to the listeners for every change of the best prices.
+   */
+  private final TopOfBookEvent topOfBookEvent;
+
+  /**
+   * Best bid price (CENTS) last passed to the listeners, or -1 if none.
+   */
+  private int lastBestBid;
+
+  /**
+   * Best ask price (CENTS) last passed to the listeners, or -1 if none.
+   */
+  private int lastBestAsk;
+
+  /**
+   * Best bid price (CENTS) last seen by getKnownBestBidPrice().
+   */
+  private int knownBestBid;
+
+  /**
+   * Best ask price (CENTS) last seen by getKnownBestAskPrice().
+   */
+  private int knownBestAsk;
 
   /**
    * Time in milliseconds that an action occurs. This is kept in sync with the
@@ -72,55 +116,101 @@ public class MatchingEngine {
    */
   private long time;
 
+  /**
+   * The simulation the matching engine belongs to.
+   */
+  private final Simulation simulation;
+
+  /**
+   * Parameters of the simulation.
+   */
+  private final Parameters parameters;
+
+  /**
+   * Creates a matching engine with empty fields, which stores its orders as
+   * requested by the settings of the simulation.
+   * 
+   * @param simulation
+   *          The simulation the matching engine belongs to.
+   */
+  public MatchingEngine(Simulation simulation) {
+    this(simulation, simulation.createOrderBookStore());
+  }
+
   /**
    * Creates a matching engine with empty fields. Everything is initialized to
-   * zero. Also initializes the log file.
+   * zero. Nothing is logged or shown until listeners are added.
    * 
+   * @param simulation
+   *          The simulation the matching engine belongs to.
+   * @param store
+   *          Empty store to keep the orders in.
    */
-  public MatchingEngine() {
-    orderMap = new HashMap<Long, ArrayList<Order>>();
-    buyOrders = new TreeSet<Order>(Order.highestFirstComparator);
-    sellOrders = new TreeSet<Order>(Order.highestFirstComparator);
-    agentMap = new HashMap<Long, Agent>();
-    lastTradePrice = Parameters.buyPrice;
+  public MatchingEngine(Simulation simulation, OrderBookStore store) {
+    this.simulation = simulation;
+    this.store = store;
+    parameters = simulation.getParameters();
+    agents = new Agent[0];
+    agentTypes = new int[0];
+    intelligentAgents = new boolean[0];
+    typeNames = new ArrayList<String>();
+    typeCodes = new HashMap<String, Integer>();
+    lastTradePrice = parameters.buyPrice;
     startingPeriod = true;
     tradeMatchID = 0;
+    listeners = new EngineListener[0];
+    orderEvent = new OrderEvent();
+    tradeEvent = new TradeEvent();
+    topOfBookEvent = new TopOfBookEvent();
+    lastBestBid = -1;
+    lastBestAsk = -1;
+    knownBestBid = parameters.buyPrice - Agent.TICK_SIZE;
+    knownBestAsk = parameters.buyPrice + Agent.TICK_SIZE;
+  }
 
-    // 2^19 lines before writing to file
-    logBuffer = new ArrayList<String>(LOG_BUFFER_SIZE);
-    if (!Parameters.testing) {
-      // create the CSV file
-      File logFile = new File(Settings.getDestTradeFile());
-      try {
-        FileWriter writer = new FileWriter(logFile.getAbsoluteFile());
-        writer
-          .append("Time, Best Bid Price, Best Ask Price, Agent ID, Agent Type,"
-            + " Message, Buy/Sell, Order ID, "
-            + "Original Quantity, Price, Type, Leaves Quantity, Trade Price, "
-            + "Quantity Filled, Aggressor, Trade Match ID\n");
-        writer.flush();
-        writer.close();
-      } catch (IOException e) {
-        System.err.println("Error: Failed to create log file.");
-        e.printStackTrace();
-        System.exit(1);
-      }
+  /**
+   * Adds a receiver of the events of the engine. The listener is told about
+   * the agent types that have already been added.
+   * 
+   * @param listener
+   *          The listener.
+   */
+  public void addListener(EngineListener listener) {
+    listeners = Arrays.copyOf(listeners, listeners.length + 1);
+    listeners[listeners.length - 1] = listener;
+    for (int i = 0; i < typeNames.size(); i++) {
+      listener.agentTypeAdded(i, typeNames.get(i));
     }
   }
 
   /**
-   * Deletes an order from the simulation (orderMap and allOrders).
+   * Deletes an order from the simulation (agentOrders and allOrders).
    * 
    * @param order
    *          The order to be removed.
-   * @param agentID
-   *          ID of the agent whose order is to be removed.
    */
   public void cancelOrder(Order order) {
-    buyOrders.remove(order);
-    sellOrders.remove(order);
-    orderMap.get(order.getCreatorID()).remove(order);
-    logOrder(order, 3, false, -order.getCurrentQuant(), 0);
+    long handle = find(order);
+    if (handle != OrderBookStore.NONE) {
+      cancelOrder(handle);
+    }
+  }
+
+  /**
+   * Deletes an order from the simulation given only its ID.
+   * 
+   * @param orderID
+   *          ID of the order to be removed.
+   * @return True if the order was cancelled. False if there is no resting
+   *         order with that ID, e.g. because it has already been traded.
+   */
+  public boolean cancelOrderByID(long orderID) {
+    long handle = store.find(orderID);
+    if (handle == OrderBookStore.NONE) {
+      return false;
+    }
+    cancelOrder(handle);
+    return true;
   }
 
   /**
@@ -130,20 +220,34 @@ public class MatchingEngine {
    *          The price of the order to remove.
    */
   public void cancelOrder(long agentID, int price) {
-    ArrayList<Order> cancelList = new ArrayList<Order>();
-    for (Order o : orderMap.get(agentID)) {
-      if (o.getPrice() == price) {
-        // Cannot remove order while iterating.
-        cancelList.add(o);
-      }
+    long handle = store.getOldestAtPrice(agentID, price);
+    while (handle != OrderBookStore.NONE) {
+      // Cancelling the order unlinks it, so find the next one first.
+      long next = store.getNextSamePrice(handle);
+      cancelOrder(handle);
+      handle = next;
     }
-    for (Order o : cancelList) {
-      cancelOrder(o);
+  }
+
+  /**
+   * Deletes the oldest resting order of an agent from the simulation.
+   * 
+   * @param agentID
+   *          ID of the agent whose order is to be removed.
+   * @return True if an order was cancelled. False if the agent has no resting
+   *         orders.
+   */
+  public boolean cancelOldestOrder(long agentID) {
+    long oldest = store.getOldest(agentID);
+    if (oldest == OrderBookStore.NONE) {
+      return false;
     }
+    cancelOrder(oldest);
+    return true;
   }
 
   /**
-   * Inserts the agent into the MatchingEngine's agentMap so that it can keep
+   * Inserts the agent into the MatchingEngine's agents so that it can keep
    * track of it. This is called every time a new agent is constructed so it
    * should not have to be explicitly called.
    * 
@@ -153,140 +257,136 @@ public class MatchingEngine {
    *          Agent object to be added.
    */
   public void addNewAgent(long id, Agent agent) {
-    agentMap.put(id, agent);
+    addNewAgent(id, agent, agent.getType());
   }
 
   /**
-   * Takes a newly created order and stores it in the MatchingEngine's allOrders
-   * and orderMap so that it can keep track of it. Also checks if any trade
-   * occurs from this newly created order.
+   * Inserts an agent ID into the MatchingEngine's agents under a given type.
+   * This is used by agents that act for other agents, such as the
+   * PoissonAgentStore, which is told about the trades of every agent ID it
+   * adds.
+   * 
+   * @param id
+   *          ID of the agent.
+   * @param agent
+   *          Agent object that is told about the trades of the ID.
+   * @param type
+   *          Type of the agent to log.
+   */
+  public void addNewAgent(long id, Agent agent, String type) {
+    int index = (int) id;
+    if (index >= agents.length) {
+      int length = Math.max(index + 1, agents.length * 2);
+      agents = Arrays.copyOf(agents, length);
+      store.setAgentCapacity(length);
+      agentTypes = Arrays.copyOf(agentTypes, length);
+      intelligentAgents = Arrays.copyOf(intelligentAgents, length);
+    }
+    agents[index] = agent;
+    Integer typeCode = typeCodes.get(type);
+    if (typeCode == null) {
+      typeCode = typeNames.size();
+      typeNames.add(type);
+      typeCodes.put(type, typeCode);
+      for (EngineListener listener : listeners) {
+        listener.agentTypeAdded(typeCode, type);
+      }
+    }
+    agentTypes[index] = typeCode;
+    intelligentAgents[index] = agent instanceof IntelligentAgent;
+  }
+
+  /**
+   * @return The number of Order objects or order slots that have been
+   *         allocated so far. Once enough orders have been filled or
+   *         cancelled, this should stop increasing.
+   */
+  public long getAllocatedOrderCount() {
+    return store.getAllocatedOrderCount();
+  }
+
+  /**
+   * Creates a new limit order for an agent and checks if any trade occurs from
+   * it.
    * 
-   * @param order
-   *          New order to be inserted into the MatchingEngine.
    * @param agentID
    *          ID of the agent that initiated the order.
+   * @param price
+   *          Price (CENTS) of the order.
+   * @param initialQuant
+   *          The quantity of shares the agent wants to buy or sell.
+   * @param buyOrder
+   *          True if the agent wants to buy. False otherwise.
+   * @return True if the creation of the order resulted in a trade.
    */
-  public boolean createOrder(Order order) {
+  public boolean createOrder(long agentID, int price, int initialQuant,
+    boolean buyOrder) {
+    return createOrder(store.add(simulation.takeNextOrderID(), agentID, price,
+      initialQuant, buyOrder, false));
+  }
 
-    if (order.isBuyOrder()) {
-      buyOrders.add(order);
-    } else {
-      sellOrders.add(order);
-    }
-    if (orderMap.containsKey(order.getCreatorID())) {
-      orderMap.get(order.getCreatorID()).add(order);
-    } else {
-      ArrayList<Order> orderList = new ArrayList<Order>();
-      orderList.add(order);
-      orderMap.put(order.getCreatorID(), orderList);
-    }
+  /**
+   * Puts a newly stored order in the order book and checks if any trade occurs
+   * from it.
+   * 
+   * @param handle
+   *          Handle of the new order.
+   * @return True if the creation of the order resulted in a trade.
+   */
+  private boolean createOrder(long handle) {
+    store.rest(handle);
     // log the action.
     // must then check if a trade can occur
-
-    logOrder(order, 1, order.isMarketOrder(), 0, 0);
-    return trade(order, willTrade(order));
+    publishOrder(handle, 1, store.isMarketOrder(handle), 0, 0);
+    return trade(handle, store.getPrice(handle));
   }
 
   /**
-   * Trades market orders only. If there are not orders to satisfy the market
-   * order, then the simulation exits.
+   * Trades market orders only. The market order takes liquidity from the other
+   * side of the book one price level at a time, starting at the best price,
+   * until it is filled. If there are not enough orders to satisfy the market
+   * order, then the remaining quantity is cancelled.
    * 
-   * @param order
-   *          The market order to be traded.
+   * @param agentID
+   *          ID of the agent that initiated the order.
+   * @param initialQuant
+   *          The quantity that the market order is for.
+   * @param buyOrder
+   *          True if this is a buy market order. False if this is a sell market
+   *          order.
    */
   public void
     tradeMarketOrder(long agentID, int initialQuant, boolean buyOrder) {
     if (startingPeriod) {
       return;
     }
-    int quantToRid = initialQuant;
-
-    TreeSet<Order> interestedOrders;
-    if (buyOrder) {
-      // The top ten sell orders sorted by price (lowest) and time of order
-      // creation (most recent).
-      interestedOrders = new TreeSet<Order>(Order.lowestFirstComparator);
-      for (Order o : sellOrders) {
-        if (interestedOrders.size() < 10) {
-          interestedOrders.add(o);
-        } else if (Order.lowestFirstComparator.compare(o,
-          interestedOrders.last()) < 0) {
-          interestedOrders.pollLast();
-          interestedOrders.add(o);
-        }
-      }
-    } else {
-      // The top ten pending buy orders sorted by price (highest) and time of
-      // order creation (most recent).
-      interestedOrders = new TreeSet<Order>(Order.highestFirstComparator);
-      for (Order o : buyOrders) {
-        if (interestedOrders.size() < 10) {
-          interestedOrders.add(o);
-        } else if (Order.highestFirstComparator.compare(o,
-          interestedOrders.last()) < 0) {
-          interestedOrders.pollLast();
-          interestedOrders.add(o);
-        }
-      }
-    }
-
-    if (interestedOrders.isEmpty()) {
-      System.err.println("Error: Sell / Buy orders depleted.");
-      System.exit(1);
-    }
-
-    // TODO Perhaps use a SortedMap instead, but must ensure that prices are
-    // ordered correctly depending on buy/sell.
-    ArrayList<Integer> prices = new ArrayList<Integer>();
-    ArrayList<Integer> quantities = new ArrayList<Integer>();
-    int priceIndex = -1;
-    int currPrice = 0;
-
-    while (quantToRid > 0 && !interestedOrders.isEmpty()) {
-      if (currPrice == interestedOrders.first().getPrice()) {
-        if (quantToRid > interestedOrders.first().getCurrentQuant()) {
-          quantities.set(priceIndex, quantities.get(priceIndex)
-            + interestedOrders.first().getCurrentQuant());
-        } else {
-          quantities.set(priceIndex, quantities.get(priceIndex) + quantToRid);
-          quantToRid = 0;
-          break;
-        }
-      } else {
-        priceIndex++;
-        currPrice = interestedOrders.first().getPrice();
-        prices.add(currPrice);
-        if (quantToRid > interestedOrders.first().getCurrentQuant()) {
-          quantities.add(interestedOrders.first().getCurrentQuant());
-        } else {
-          quantities.add(quantToRid);
-          quantToRid = 0;
-          break;
-        }
 
-      }
-      quantToRid -= interestedOrders.first().getCurrentQuant();
-      interestedOrders.pollFirst();
-    }
+    // Market orders do not have a price and never rest in the order book.
+    long handle =
+      store.add(simulation.takeNextOrderID(), agentID, 0, initialQuant,
+        buyOrder, true);
+    publishOrder(handle, 1, true, 0, 0);
 
-    if (quantToRid > 0) {
-      System.err.println("Error: Not enough orders to satisfy market order.");
-      System.exit(1);
+    long best = store.getBest(!buyOrder);
+    while (store.getCurrentQuant(handle) > 0 && best != OrderBookStore.NONE) {
+      trade(handle, store.getPrice(best));
+      best = store.getBest(!buyOrder);
     }
 
-    int i = 0;
-    while (i <= priceIndex) {
-      createOrder(new Order(agentID, prices.get(i), quantities.get(i),
-        buyOrder, true));
-      ++i;
+    if (store.getCurrentQuant(handle) > 0) {
+      publishOrder(handle, 3, true, -store.getCurrentQuant(handle), 0);
     }
+    store.release(handle);
 
-    // Last trade price logging is done in the trade(order, arrlist) method.
+    // Last trade price logging is done in the trade(handle, price) method.
   }
 
   /**
-   * Modifies the order in the MatchingEngine's allOrders and orderMap. Also
-   * checks if any trade occurs from this modification.
+   * Modifies the order in the MatchingEngine's allOrders and agentOrders. Also
+   * checks if any trade occurs from this modification. An order whose quantity
+   * is lowered at the same price keeps its place in the queue of its price
+   * level. Any other change moves it to the back of the queue at its new
+   * price, so it loses its time priority.
    * 
    * @param order
    *          Order being modified.
@@ -294,15 +394,26 @@ public class MatchingEngine {
    *          The new price the order should have.
    * @param newQuant
    *          The new quantity the order should have.
+   * @return True if the modification of this order resulted in a trade. False
+   *         if it did not, or if the order is no longer resting.
    */
   public boolean modifyOrder(Order order, int newPrice, int newQuant) {
-    order.setPrice(newPrice);
-    order.setQuant(newQuant);
+    long handle = find(order);
+    if (handle == OrderBookStore.NONE) {
+      return false;
+    }
+    if (newPrice == store.getPrice(handle)
+      && newQuant <= store.getCurrentQuant(handle)) {
+      store.setCurrentQuant(handle, newQuant);
+    } else {
+      // The order has to be moved to the back of its new price level.
+      store.modify(handle, newPrice, newQuant);
+    }
     // log the action
-    logOrder(order, 2, false, newQuant - order.getCurrentQuant(), newPrice
-      - order.getPrice());
+    publishOrder(handle, 2, false, newQuant - store.getCurrentQuant(handle),
+      newPrice - store.getPrice(handle));
     // must then check if a trade can occur
-    return trade(order, willTrade(order));
+    return trade(handle, newPrice);
   }
 
   /**
@@ -317,133 +428,148 @@ public class MatchingEngine {
    * @return The sum of quantities of all orders at the best bid price.
    */
   public int getBestBidQuantity() {
-    if (buyOrders.isEmpty()) {
-      return 0;
-    }
-    int quantity = 0;
-    int bestBidPrice = getBestBid().getPrice();
-    for (Order o : buyOrders) {
-      if (o.getPrice() == bestBidPrice) {
-        quantity += o.getCurrentQuant();
-      }
-    }
-    return quantity;
+    return store.getBestQuantity(true);
   }
 
   /**
    * @return The sum of quantities of all orders at the best ask price.
    */
   public int getBestAskQuantity() {
-    if (sellOrders.isEmpty()) {
-      return 0;
-    }
-    int quantity = 0;
-    int bestAskPrice = getBestAsk().getPrice();
-    for (Order o : sellOrders) {
-      if (o.getPrice() == bestAskPrice) {
-        quantity += o.getCurrentQuant();
-      }
-    }
-    return quantity;
+    return store.getBestQuantity(false);
   }
 
   /**
-   * Checks if an order will cause a trade.
+   * Gets the total quantity at each of the best bid prices, highest first.
    * 
-   * @param order
-   *          The order to check for a trade
-   * @return Orders that have the same price, if a trade can be made. Otherwise,
-   *         null. Returns only enough orders to satisfy a trade. The list is
-   *         sorted in descending order of priority.
-   */
-  public ArrayList<Order> willTrade(Order order) {
-    ArrayList<Order> samePrice = new ArrayList<Order>();
-    ArrayList<Order> toTrade = new ArrayList<Order>();
-    int quantToRid = order.getCurrentQuant();
-    TreeSet<Order> interestedOrders =
-      order.isBuyOrder() ? sellOrders : buyOrders;
-    for (Order o : interestedOrders) {
-      if (o.getPrice() == order.getPrice()) {
-        samePrice.add(o);
-      }
-    }
-
-    // Does not matter which comparator; prices are the same. Just want orders
-    // that have been made first to get the highest trading priority.
-    Collections.sort(samePrice, Order.highestFirstComparator);
-
-    for (Order o : samePrice) {
-      toTrade.add(o);
-      quantToRid -= o.getCurrentQuant();
-      if (quantToRid <= 0) {
-        break;
-      }
-    }
+   * @param prices
+   *          Array to store the price (CENTS) of each level in. Its length is
+   *          the number of levels requested.
+   * @param quantities
+   *          Array to store the total quantity of each level in.
+   * @return The number of levels filled in.
+   */
+  public int getBidDepth(int[] prices, int[] quantities) {
+    return store.getDepth(true, prices, quantities);
+  }
 
-    return (toTrade.isEmpty()) ? null : samePrice;
+  /**
+   * Gets the total quantity at each of the best ask prices, lowest first.
+   * 
+   * @param prices
+   *          Array to store the price (CENTS) of each level in. Its length is
+   *          the number of levels requested.
+   * @param quantities
+   *          Array to store the total quantity of each level in.
+   * @return The number of levels filled in.
+   */
+  public int getAskDepth(int[] prices, int[] quantities) {
+    return store.getDepth(false, prices, quantities);
   }
 
   /**
-   * Initializes trading for limit orders. If samePricedOrders is null, i.e. the
-   * order will not make a trade, then the function simply exits and no logging
-   * is done.
+   * Trades an order against the orders on the other side of the book at one
+   * price, in order of time priority. If there are no orders at that price,
+   * then the function simply exits and no logging is done.
    * 
-   * @param order
-   *          The order to be traded.
-   * @param samePricedOrders
-   *          Orders having the same price as the order to be traded.
+   * @param handle
+   *          Handle of the order to be traded.
+   * @param contraPrice
+   *          Price (CENTS) on the other side of the book to trade at. For a
+   *          limit order, this is its own price.
    * 
    * @return True if the trade was made.
    */
-  public boolean trade(Order order, ArrayList<Order> samePricedOrders) {
-    if (samePricedOrders == null) {
+  private boolean trade(long handle, int contraPrice) {
+    boolean contraSide = !store.isBuyOrder(handle);
+    long passive = store.getFirstAt(contraSide, contraPrice);
+    if (passive == OrderBookStore.NONE) {
       return false;
     }
 
-    // save price for logging below
-    int price = order.getPrice();
-
     if (startingPeriod) {
-      cancelOrder(order);
+      cancelOrder(handle);
       return false;
     }
 
-    lastTradePrice = samePricedOrders.get(0).getPrice();
-    int quantToRid = order.getCurrentQuant();
-    int orderIndex = 0;
+    lastTradePrice = contraPrice;
     long currentID = getAndUpdateTradeMatchID();
-    while (quantToRid > 0 && orderIndex < samePricedOrders.size()) {
-      quantToRid -= trade(order, samePricedOrders.get(orderIndex), currentID);
-      orderIndex++;
+    // Passive orders that are completely filled are removed from the level,
+    // so the head of the queue is always the next order to trade against.
+    while (store.getCurrentQuant(handle) > 0
+      && passive != OrderBookStore.NONE) {
+      trade(handle, passive, currentID);
+      passive = store.getFirstAt(contraSide, contraPrice);
     }
 
-    // Update trading graph
-    if (Parameters.showGui) {
-      Controller.graphFrame.addTrade(Controller.time * 0.001, price);
+    // Market orders are released once the whole sweep is done.
+    if (store.getCurrentQuant(handle) == 0 && !store.isMarketOrder(handle)) {
+      store.release(handle);
     }
     return true;
   }
 
   /**
-   * @return The order with the highest bid price.
+   * @return A copy of the order with the highest bid price, or null if there
+   *         are no bids.
    */
   public Order getBestBid() {
-    if (buyOrders.isEmpty()) {
-      return null;
-    } else {
-      return buyOrders.first();
-    }
+    return toOrder(store.getBest(true));
   }
 
   /**
-   * @return The order with the lowest ask price.
+   * @return A copy of the order with the lowest ask price, or null if there
+   *         are no asks.
    */
   public Order getBestAsk() {
-    if (sellOrders.isEmpty()) {
-      return null;
-    } else {
-      return sellOrders.last();
+    return toOrder(store.getBest(false));
+  }
+
+  /**
+   * @return The highest bid price (CENTS), or -1 if there are no bids. The
+   *         trade log writes -1 as "None". Agents that price orders off the
+   *         book must use getKnownBestBidPrice() instead, so that -1 is never
+   *         taken for a price.
+   */
+  public int getBestBidPrice() {
+    long best = store.getBest(true);
+    return (best == OrderBookStore.NONE) ? -1 : store.getPrice(best);
+  }
+
+  /**
+   * @return The lowest ask price (CENTS), or -1 if there are no asks. See
+   *         getBestBidPrice().
+   */
+  public int getBestAskPrice() {
+    long best = store.getBest(false);
+    return (best == OrderBookStore.NONE) ? -1 : store.getPrice(best);
+  }
+
+  /**
+   * @return The highest bid price (CENTS). If there are no bids, the highest
+   *         bid price that this method last saw instead, or one tick below the
+   *         starting price if it has never seen one. The controller calls this
+   *         every millisecond once intelligent agents collect data, so the
+   *         price is at most a millisecond old.
+   */
+  public int getKnownBestBidPrice() {
+    long best = store.getBest(true);
+    if (best != OrderBookStore.NONE) {
+      knownBestBid = store.getPrice(best);
+    }
+    return knownBestBid;
+  }
+
+  /**
+   * @return The lowest ask price (CENTS). If there are no asks, the lowest ask
+   *         price that this method last saw instead, or one tick above the
+   *         starting price. See getKnownBestBidPrice().
+   */
+  public int getKnownBestAskPrice() {
+    long best = store.getBest(false);
+    if (best != OrderBookStore.NONE) {
+      knownBestAsk = store.getPrice(best);
     }
+    return knownBestAsk;
   }
 
   /**
@@ -466,68 +592,56 @@ public class MatchingEngine {
   }
 
   /**
-   * Logs all the required information into the order book and updates graph
-   * when an order is created, modified, or deleted. The CSV to be logged will
-   * have the following fields: Agent ID, Message Type (1 = new order, 2 =
-   * modification , 3 = cancel, 105 = trade), Buy/Sell (1/2), Order ID, Original
-   * Order Quantity, Price, Order Type (limit/market), Leaves Quantity.
+   * Passes the listeners an event for an order that is created, modified, or
+   * deleted. The trade log writes it with the following fields: Agent ID,
+   * Message Type (1 = new order, 2 = modification , 3 = cancel, 105 = trade),
+   * Buy/Sell (1/2), Order ID, Original Order Quantity, Price, Order Type
+   * (limit/market), Leaves Quantity.
    * 
-   * @param order
-   *          Order to log
+   * @param handle
+   *          Handle of the order to publish
    * @param messageType
    *          Message type
    * @param market
-   *          True if logging a market order. False if logging a limit order
+   *          True if publishing a market order. False if publishing a limit
+   *          order
    */
-  public void logOrder(Order order, int messageType, boolean market,
+  private void publishOrder(long handle, int messageType, boolean market,
     int quantChanged, int priceChanged) {
-    if (Parameters.showGui) {
+    if (listeners.length == 0) {
+      return;
+    }
+    long agentID = store.getAgentID(handle);
+    orderEvent.setBook(time, getBestBidPrice(), getBestAskPrice());
+    orderEvent.setOrder(agentID, agentTypes[(int) agentID],
+      store.isBuyOrder(handle), store.getID(handle),
+      store.getOriginalQuant(handle), store.getPrice(handle), market,
+      store.getCurrentQuant(handle));
+    orderEvent.setChange(messageType, quantChanged, priceChanged);
+    for (EngineListener listener : listeners) {
       switch (messageType) {
         case 1:
-          Controller.graphFrame.addOrder(order.isBuyOrder(),
-            order.getCurrentQuant(), order.getPrice());
+          listener.orderAccepted(orderEvent);
           break;
         case 2:
-          if (priceChanged != 0) {
-            // delete all orders from the old price point
-            Controller.graphFrame.addOrder(order.isBuyOrder(),
-              -order.getCurrentQuant(), order.getPrice() - priceChanged);
-            // re-add the orders to the new price point
-          } else {
-            Controller.graphFrame.addOrder(order.isBuyOrder(), quantChanged,
-              order.getPrice());
-          }
+          listener.orderModified(orderEvent);
           break;
         case 3:
-          Controller.graphFrame.addOrder(order.isBuyOrder(), quantChanged,
-            order.getPrice());
+          listener.orderCancelled(orderEvent);
           break;
         default:
-          System.err.println("Message type " + messageType + " is invalid.");
-          System.exit(1);
-          break;
+          throw new IllegalStateException("Message type " + messageType
+            + " is invalid.");
       }
     }
-    if (!Parameters.testing) {
-      if (logBuffer.size() == LOG_BUFFER_SIZE) {
-        // write the stuff to the file.
-        writeToLog();
-      }
-
-      logBuffer.add(time + "," + getBestBidOrAskPriceString(true) + ","
-        + getBestBidOrAskPriceString(false) + "," + order.getCreatorID() + ","
-        + agentMap.get(order.getCreatorID()).getType() + "," + messageType
-        + "," + (order.isBuyOrder() ? "1" : "2") + "," + order.getID() + ","
-        + order.getOriginalQuant() + "," + order.getPrice() / 100.0 + ","
-        + (market ? "Market" : "Limit") + "," + order.getCurrentQuant() + "\n");
-    }
+    publishTopOfBook(orderEvent);
   }
 
   /**
-   * A logging method that is called to log orders when they trade.
+   * Passes the listeners an event for one side of a trade.
    * 
-   * @param order
-   *          The order to be logged.
+   * @param handle
+   *          Handle of the order that traded.
    * @param market
    *          True if the order is a market order.
    * @param tradePrice
@@ -535,62 +649,115 @@ public class MatchingEngine {
    * @param volume
    *          The volume that was traded on this order.
    */
-  public void logTrade(Order order, boolean market, int tradePrice, int volume,
-    boolean aggressor, long matchID) {
-    if (Parameters.showGui) {
-      Controller.graphFrame.addOrder(order.isBuyOrder(), -volume, tradePrice);
+  private void publishTrade(long handle, boolean market, int tradePrice,
+    int volume, boolean aggressor, long matchID) {
+    if (listeners.length == 0) {
+      return;
     }
-    if (!Parameters.testing) {
-      if (logBuffer.size() == LOG_BUFFER_SIZE) {
-        // write the stuff to the file.
-        // logging for the passive order
-        writeToLog();
-      }
-      logBuffer.add(time + "," + getBestBidOrAskPriceString(true) + ","
-        + getBestBidOrAskPriceString(false) + "," + order.getCreatorID() + ","
-        + agentMap.get(order.getCreatorID()).getType() + ",105,"
-        + (order.isBuyOrder() ? "1" : "2") + "," + order.getID() + ","
-        + order.getOriginalQuant() + "," + order.getPrice() * 0.01 + ","
-        + (market ? "Market," : "Limit,") + order.getCurrentQuant() + ","
-        + tradePrice * 0.01 + "," + volume + (aggressor ? ",Y" : ",N") + ", "
-        + matchID + "\n");
+    long agentID = store.getAgentID(handle);
+    tradeEvent.setBook(time, getBestBidPrice(), getBestAskPrice());
+    tradeEvent.setOrder(agentID, agentTypes[(int) agentID],
+      store.isBuyOrder(handle), store.getID(handle),
+      store.getOriginalQuant(handle), store.getPrice(handle), market,
+      store.getCurrentQuant(handle));
+    tradeEvent.setTrade(tradePrice, volume, aggressor, matchID);
+    for (EngineListener listener : listeners) {
+      listener.trade(tradeEvent);
     }
+    publishTopOfBook(tradeEvent);
   }
 
   /**
-   * Writes the logBuffer contents to the file and then clears the log buffer.
-   * This is called when the buffer is full or when the simulation has ended.
+   * Passes the listeners an event if the best prices after an event differ
+   * from those they were last told about.
+   * 
+   * @param event
+   *          The event that was just published.
    */
-  public void writeToLog() {
-    try {
-      FileWriter writer = new FileWriter(Settings.getDestTradeFile(), true);
-      for (int i = 0; i < logBuffer.size(); i++) {
-        writer.append(logBuffer.get(i));
-      }
-      writer.flush();
-      writer.close();
-
-    } catch (IOException e) {
-      System.err.println("Error: Failed to update log.");
-      e.printStackTrace();
-      System.exit(1);
+  private void publishTopOfBook(EngineEvent event) {
+    int bestBid = event.getBestBid();
+    int bestAsk = event.getBestAsk();
+    if (bestBid == lastBestBid && bestAsk == lastBestAsk) {
+      return;
     }
+    topOfBookEvent.setBook(time, bestBid, bestAsk);
+    topOfBookEvent.setPrevious(lastBestBid, lastBestAsk);
+    lastBestBid = bestBid;
+    lastBestAsk = bestAsk;
+    for (EngineListener listener : listeners) {
+      listener.topOfBookChanged(topOfBookEvent);
+    }
+  }
+
+  /**
+   * Tells the listeners that the simulation has ended, so that the trade log
+   * writes what it has left and closes its file. Every listener is closed even
+   * if closing one of them fails, and the listeners are removed, so calling
+   * this again does nothing.
+   */
+  public void closeListeners() {
+    endListeners(false);
+  }
 
-    logBuffer.clear();
+  /**
+   * Tells the listeners that the simulation has failed, so that the trade log
+   * writes what it has been handed and closes its file without waiting for
+   * anything else. Like closeListeners(), this ends every listener once.
+   */
+  public void abortListeners() {
+    endListeners(true);
+  }
+
+  /**
+   * Closes or aborts every listener and removes them.
+   * 
+   * @param abort
+   *          True if the simulation has failed.
+   */
+  private void endListeners(boolean abort) {
+    EngineListener[] ending = listeners;
+    listeners = new EngineListener[0];
+    RuntimeException failure = null;
+    for (EngineListener listener : ending) {
+      try {
+        if (abort) {
+          listener.abort();
+        } else {
+          listener.close();
+        }
+      } catch (RuntimeException e) {
+        if (failure == null) {
+          failure = e;
+        } else {
+          failure.addSuppressed(e);
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
   }
 
   /**
    * @param agentID
    *          Agent to select orders from
-   * @return A random order that the agent made that has not been traded yet
+   * @param rand
+   *          Random number generator to select the order with, normally the
+   *          agent's own.
+   * @return A copy of a random order that the agent made that has not been
+   *         traded yet
    */
-  public Order getRandomOrder(long agentID) {
+  public Order getRandomOrder(long agentID, Random rand) {
+    int count = store.getOrderCount(agentID);
     // if agent does not have anything to trade
-    if (orderMap.get(agentID) == null || orderMap.get(agentID).size() < 1) {
+    if (count == 0) {
       return null;
     }
-    return orderMap.get(agentID).get(
-      JinSup.rand.nextInt(orderMap.get(agentID).size()));
+    long handle = store.getOldest(agentID);
+    for (int i = rand.nextInt(count); i > 0; i--) {
+      handle = store.getNextByAgent(handle);
+    }
+    return toOrder(handle);
   }
 
   /**
@@ -598,19 +765,11 @@ public class MatchingEngine {
    * 
    * @param agentID
    *          The agent that needs the oldest order.
-   * @return The oldest order in the agent's orderbook.
+   * @return A copy of the oldest order in the agent's orderbook.
    */
   public Order getOldestOrder(long agentID) {
-    ArrayList<Order> orders = orderMap.get(agentID);
-    Order oldestOrder = null;
-    long oldest = Order.getNextOrderID();
-    for (Order order : orders) {
-      if (order.getID() < oldest) {
-        oldestOrder = order;
-        oldest = order.getID();
-      }
-    }
-    return oldestOrder;
+    // Orders are kept in the order they were created.
+    return toOrder(store.getOldest(agentID));
   }
 
   /**
@@ -621,7 +780,7 @@ public class MatchingEngine {
    * @return True if agent has orders; false otherwise
    */
   public boolean agentHasOrders(long agentID) {
-    return !(orderMap.get(agentID) == null || orderMap.get(agentID).size() == 0);
+    return agentID < agents.length && store.getOrderCount(agentID) > 0;
   }
 
   /**
@@ -629,18 +788,7 @@ public class MatchingEngine {
    *          Agent that wants to cancel all outstanding sell orders
    */
   public void cancelAllSellOrders(long agentID) {
-    int currIndex = 0;
-    while (currIndex < orderMap.get(agentID).size()) {
-      // If a removal is needed, then cannot increment the index since it is
-      // possible that the next element (now placed at the current index after
-      // removal of current element) is
-      // also a sell order
-      if (!orderMap.get(agentID).get(currIndex).isBuyOrder()) {
-        cancelOrder(orderMap.get(agentID).get(currIndex));
-      } else {
-        currIndex++;
-      }
-    }
+    cancelAll(store.getOldestOnSide(agentID, false));
   }
 
   /**
@@ -648,17 +796,38 @@ public class MatchingEngine {
    *          Agent that wants to cancel all outstanding buy orders
    */
   public void cancelAllBuyOrders(long agentID) {
-    int currIndex = 0;
-    while (currIndex < orderMap.get(agentID).size()) {
-      // Same logic from cancelAllSellOrders applies
-      if (orderMap.get(agentID).get(currIndex).isBuyOrder()) {
-        cancelOrder(orderMap.get(agentID).get(currIndex));
-      } else {
-        currIndex++;
-      }
+    cancelAll(store.getOldestOnSide(agentID, true));
+  }
+
+  /**
+   * Cancels an order and all newer orders on the same side of the same agent.
+   * 
+   * @param handle
+   *          Handle of the oldest order to cancel, or OrderBookStore.NONE.
+   */
+  private void cancelAll(long handle) {
+    while (handle != OrderBookStore.NONE) {
+      // Cancelling the order unlinks it, so find the next one first.
+      long next = store.getNextSameSide(handle);
+      cancelOrder(handle);
+      handle = next;
     }
   }
 
+  /**
+   * @return The current time in milliseconds.
+   */
+  public long getTime() {
+    return time;
+  }
+
+  /**
+   * @return The simulation the matching engine belongs to.
+   */
+  public Simulation getSimulation() {
+    return simulation;
+  }
+
   /**
    * Increments time; called from controller.
    */
@@ -667,21 +836,28 @@ public class MatchingEngine {
   }
 
   /**
-   * @return Sell orders as an ArrayList.
+   * Moves time forward by more than one millisecond; called from controller
+   * when it skips milliseconds in which nothing happens.
+   * 
+   * @param milliseconds
+   *          Number of milliseconds to move forward.
+   */
+  public void advanceTime(long milliseconds) {
+    time += milliseconds;
+  }
+
+  /**
+   * @return Copies of the sell orders as an ArrayList.
    */
   public ArrayList<Order> getSellOrdersAsArrayList() {
-    ArrayList<Order> sellArrayList = new ArrayList<Order>();
-    sellArrayList.addAll(sellOrders);
-    return sellArrayList;
+    return toArrayList(false);
   }
 
   /**
-   * @return Buy orders as an ArrayList.
+   * @return Copies of the buy orders as an ArrayList.
    */
   public ArrayList<Order> getBuyOrdersAsArrayList() {
-    ArrayList<Order> buyArrayList = new ArrayList<Order>();
-    buyArrayList.addAll(buyOrders);
-    return buyArrayList;
+    return toArrayList(true);
   }
 
   public long getAndUpdateTradeMatchID() {
@@ -693,107 +869,179 @@ public class MatchingEngine {
   }
 
   /**
-   * Method that performs the actual trading for the tradeMarketOrder and
-   * trade(Order, ArrayList) method. Takes care of filling the correct
-   * quantities during a trade.
+   * Method that performs the actual trading for the trade(long, int) method.
+   * Takes care of filling the correct quantities during a trade.
    * 
-   * @param agOrder
-   *          Order of the aggressive agent.
-   * @param passOrder
-   *          Order of the passive agent.
+   * @param ag
+   *          Handle of the order of the aggressive agent.
+   * @param pass
+   *          Handle of the order of the passive agent.
+   * @param matchID
+   *          Trade match ID of the trade.
    * @return The volume that was traded between the two orders.
    */
-  private int trade(Order agOrder, Order passOrder, long matchID) {
+  private int trade(long ag, long pass, long matchID) {
     // save price for logging at the end.
-    int price = passOrder.getPrice();
+    int price = store.getPrice(pass);
     lastTradePrice = price;
 
+    int agQuant = store.getCurrentQuant(ag);
+    int passQuant = store.getCurrentQuant(pass);
     int volumeTraded;
-    if (agOrder.getCurrentQuant() == passOrder.getCurrentQuant()) {
-      volumeTraded = agOrder.getCurrentQuant();
-      if (agOrder.isBuyOrder()) {
-        buyOrders.remove(agOrder);
-      } else {
-        sellOrders.remove(agOrder);
-      }
-      if (passOrder.isBuyOrder()) {
-        buyOrders.remove(passOrder);
-      } else {
-        sellOrders.remove(passOrder);
-      }
+    if (agQuant == passQuant) {
+      volumeTraded = agQuant;
+      store.unrest(ag);
+      store.unrest(pass);
       // Setting quantities to new values is necessary for correct logging of
       // leaves quantity.
-      agOrder.setQuant(0);
-      passOrder.setQuant(0);
-      orderMap.get(agOrder.getCreatorID()).remove(agOrder);
-      orderMap.get(passOrder.getCreatorID()).remove(passOrder);
-    } else if (agOrder.getCurrentQuant() > passOrder.getCurrentQuant()) {
-      volumeTraded = passOrder.getCurrentQuant();
-      agOrder.setQuant(agOrder.getCurrentQuant() - passOrder.getCurrentQuant());
-      if (passOrder.isBuyOrder()) {
-        buyOrders.remove(passOrder);
-      } else {
-        sellOrders.remove(passOrder);
-      }
-      passOrder.setQuant(0);
-      orderMap.get(passOrder.getCreatorID()).remove(passOrder);
+      store.setCurrentQuant(ag, 0);
+      store.setCurrentQuant(pass, 0);
+    } else if (agQuant > passQuant) {
+      volumeTraded = passQuant;
+      store.setCurrentQuant(ag, agQuant - passQuant);
+      store.unrest(pass);
+      store.setCurrentQuant(pass, 0);
     } else {
-      volumeTraded = agOrder.getCurrentQuant();
-      passOrder.setQuant(passOrder.getCurrentQuant()
-        - agOrder.getCurrentQuant());
-      if (agOrder.isBuyOrder()) {
-        buyOrders.remove(agOrder);
-      } else {
-        sellOrders.remove(agOrder);
-      }
-      agOrder.setQuant(0);
-      orderMap.get(agOrder.getCreatorID()).remove(agOrder);
+      volumeTraded = agQuant;
+      store.setCurrentQuant(pass, passQuant - agQuant);
+      store.unrest(ag);
+      store.setCurrentQuant(ag, 0);
     }
 
-    // Update order-book visualization
-    logTrade(agOrder, agOrder.isMarketOrder(), price, volumeTraded, true,
+    // Publish both sides of the trade
+    publishTrade(ag, store.isMarketOrder(ag), price, volumeTraded, true,
       matchID);
-    logTrade(passOrder, false, price, volumeTraded, false, matchID);
+    publishTrade(pass, false, price, volumeTraded, false, matchID);
 
-    // Update inventories
-    int inventoryChange = volumeTraded * (agOrder.isBuyOrder() ? 1 : -1);
-    agentMap.get(agOrder.getCreatorID()).setLastOrderTraded(true,
-      inventoryChange);
-    agentMap.get(passOrder.getCreatorID()).setLastOrderTraded(true,
-      -inventoryChange);
+    settleTrade(store.getAgentID(ag), store.getPrice(ag),
+      store.getAgentID(pass), price, store.isBuyOrder(ag), volumeTraded);
 
-    checkIntelligentAgentOrder(agOrder, volumeTraded);
-    checkIntelligentAgentOrder(passOrder, volumeTraded);
+    // The aggressive order is released by the caller once it stops trading.
+    if (store.getCurrentQuant(pass) == 0) {
+      store.release(pass);
+    }
 
     return volumeTraded;
   }
 
   /**
-   * Checks if the order belongs to an intelligent agent. If so, then notify the
-   * agent that the order has been traded.
+   * Deletes a stored order from the simulation.
+   * 
+   * @param handle
+   *          Handle of the order to be removed.
+   */
+  private void cancelOrder(long handle) {
+    store.unrest(handle);
+    publishOrder(handle, 3, false, -store.getCurrentQuant(handle), 0);
+    store.release(handle);
+  }
+
+  /**
+   * Finds the stored order that an Order object stands for.
    * 
    * @param order
+   *          The order, e.g. one handed out by getRandomOrder().
+   * @return Handle of the stored order, or OrderBookStore.NONE if it is no
+   *         longer resting because it has been filled or cancelled.
+   */
+  private long find(Order order) {
+    long handle = store.find(order.getID());
+    if (handle == OrderBookStore.NONE
+      && simulation.getSettings().isDebugOrders()) {
+      throw new IllegalStateException("Order " + order.getID()
+        + " was used after it was filled or cancelled.");
+    }
+    return handle;
+  }
+
+  /**
+   * @param handle
+   *          Handle of an order, or OrderBookStore.NONE.
+   * @return A new order with the same ID and fields as the stored order, or
+   *         null if handle is OrderBookStore.NONE.
+   */
+  private Order toOrder(long handle) {
+    if (handle == OrderBookStore.NONE) {
+      return null;
+    }
+    return new Order(store.getID(handle), store.getAgentID(handle),
+      store.getPrice(handle), store.getOriginalQuant(handle),
+      store.getCurrentQuant(handle), store.isBuyOrder(handle),
+      store.isMarketOrder(handle));
+  }
+
+  /**
+   * @param buySide
+   *          True for the buy side of the book, false for the sell side.
+   * @return Copies of every order on the side, sorted by highest price first
+   *         and then by time of creation.
    */
-  private void checkIntelligentAgentOrder(Order order, int volumeTraded) {
-    if (agentMap.get(order.getCreatorID()) instanceof IntelligentAgent) {
-      agentMap.get(order.getCreatorID()).notify(order.getPrice(), time,
-        volumeTraded, order.isBuyOrder());
+  private ArrayList<Order> toArrayList(boolean buySide) {
+    ArrayList<Long> levels = new ArrayList<Long>();
+    long first = store.getBest(buySide);
+    while (first != OrderBookStore.NONE) {
+      levels.add(first);
+      first = store.getFirstInNextLevel(first);
+    }
+    ArrayList<Order> orders = new ArrayList<Order>();
+    for (int i = 0; i < levels.size(); i++) {
+      long handle = levels.get(buySide ? i : levels.size() - 1 - i);
+      while (handle != OrderBookStore.NONE) {
+        orders.add(toOrder(handle));
+        handle = store.getNextInLevel(handle);
+      }
     }
+    return orders;
   }
 
   /**
-   * Gets the best bid/ask price as a string for logging purposes.
+   * Updates the inventories of the two agents involved in a trade and notifies
+   * them if they are intelligent agents.
    * 
-   * @param wantBidPrice
-   *          True if the requesting the best bid price as a string. Otherwise,
-   *          will return the best ask price as a string.
+   * @param agAgentID
+   *          ID of the agent that placed the aggressive order.
+   * @param agPrice
+   *          Price (CENTS) of the aggressive order.
+   * @param passAgentID
+   *          ID of the agent that placed the passive order.
+   * @param passPrice
+   *          Price (CENTS) of the passive order.
+   * @param agBuyOrder
+   *          True if the aggressive order is a buy order.
+   * @param volumeTraded
+   *          The volume that was traded.
+   */
+  protected void settleTrade(long agAgentID, int agPrice, long passAgentID,
+    int passPrice, boolean agBuyOrder, int volumeTraded) {
+    // Update inventories
+    int inventoryChange = volumeTraded * (agBuyOrder ? 1 : -1);
+    agents[(int) agAgentID].setLastOrderTraded(agAgentID, true,
+      inventoryChange);
+    agents[(int) passAgentID].setLastOrderTraded(passAgentID, true,
+      -inventoryChange);
+
+    checkIntelligentAgentOrder(agAgentID, agPrice, volumeTraded, agBuyOrder);
+    checkIntelligentAgentOrder(passAgentID, passPrice, volumeTraded,
+      !agBuyOrder);
+  }
+
+  /**
+   * Checks if the order belongs to an intelligent agent. If so, then notify the
+   * agent that the order has been traded.
    * 
-   * @return The best bid/ask price in CENTS as a string. Returns "None" if
-   *         there were no bid/ask orders.
+   * @param agentID
+   *          ID of the agent that placed the order.
+   * @param price
+   *          Price (CENTS) of the order.
+   * @param volumeTraded
+   *          The volume that was traded.
+   * @param buyOrder
+   *          True if the order is a buy order.
    */
-  private String getBestBidOrAskPriceString(boolean wantBidPrice) {
-    return (wantBidPrice) ? (getBestBid() == null) ? "None" : Double
-      .toString(getBestBid().getPrice() / 100.0) : (getBestAsk() == null)
-      ? "None" : Double.toString(getBestAsk().getPrice() / 100.0);
+  private void checkIntelligentAgentOrder(long agentID, int price,
+    int volumeTraded, boolean buyOrder) {
+    if (intelligentAgents[(int) agentID]) {
+      agents[(int) agentID].notifyTrade(price, time, volumeTraded, buyOrder);
+    }
   }
 }
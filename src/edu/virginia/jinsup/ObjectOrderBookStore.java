@@ -0,0 +1,264 @@
+package edu.virginia.jinsup;
+
+import java.util.Arrays;
+
+/**
+ * Keeps every order as an Order object, which is linked into its price level
+ * and its agent's orders. Orders are recycled through an OrderPool, and the
+ * handle of an order is its slot in the pool.
+ */
+public class ObjectOrderBookStore implements OrderBookStore {
+
+  /**
+   * Recycles orders once they have been filled or cancelled.
+   */
+  private final OrderPool orderPool;
+
+  /**
+   * All the buy orders in the simulation, grouped by price level.
+   */
+  private final OrderBook buyOrders;
+
+  /**
+   * All the sell orders in the simulation, grouped by price level.
+   */
+  private final OrderBook sellOrders;
+
+  /**
+   * All the orders in the simulation, grouped by agent. Indexed by agent ID.
+   */
+  private AgentOrders[] agentOrders;
+
+  /**
+   * The orders of every agent that has not created an order yet. Never has any
+   * orders itself, so that agents only get their own AgentOrders once they
+   * need them.
+   */
+  private final AgentOrders noOrders;
+
+  /**
+   * Slot of every order resting in the order book, indexed by order ID.
+   */
+  private final LongIntMap restingOrders;
+
+  /**
+   * Creates an empty store.
+   * 
+   * @param centerPrice
+   *          Price (CENTS) that the order book should be centered around. This
+   *          should be the starting price of the simulation.
+   * @param debug
+   *          True if use of released orders should be detected.
+   */
+  public ObjectOrderBookStore(int centerPrice, boolean debug) {
+    orderPool = new OrderPool(debug);
+    buyOrders = new OrderBook(true, centerPrice);
+    sellOrders = new OrderBook(false, centerPrice);
+    agentOrders = new AgentOrders[0];
+    noOrders = new AgentOrders(orderPool);
+    restingOrders = new LongIntMap(1024);
+  }
+
+  @Override
+  public void setAgentCapacity(int agentCount) {
+    int oldLength = agentOrders.length;
+    if (agentCount > oldLength) {
+      agentOrders = Arrays.copyOf(agentOrders, agentCount);
+      Arrays.fill(agentOrders, oldLength, agentCount, noOrders);
+    }
+  }
+
+  @Override
+  public long add(long id, long agentID, int price, int originalQuant,
+    boolean buyOrder, boolean marketOrder) {
+    return orderPool.acquire(id, agentID, price, originalQuant, buyOrder,
+      marketOrder).getSlot();
+  }
+
+  @Override
+  public void rest(long handle) {
+    Order order = get(handle);
+    bookOf(order.isBuyOrder()).add(order);
+    int agentIndex = (int) order.getCreatorID();
+    if (agentOrders[agentIndex] == noOrders) {
+      agentOrders[agentIndex] = new AgentOrders(orderPool);
+    }
+    agentOrders[agentIndex].add(order);
+    restingOrders.put(order.getID(), order.getSlot());
+  }
+
+  @Override
+  public boolean unrest(long handle) {
+    Order order = get(handle);
+    if (!bookOf(order.isBuyOrder()).remove(order)) {
+      return false;
+    }
+    agentOrders[(int) order.getCreatorID()].remove(order);
+    restingOrders.remove(order.getID());
+    return true;
+  }
+
+  @Override
+  public void release(long handle) {
+    orderPool.release(get(handle));
+  }
+
+  @Override
+  public void modify(long handle, int price, int quant) {
+    Order order = get(handle);
+    int oldPrice = order.getPrice();
+    OrderBook book = bookOf(order.isBuyOrder());
+    book.remove(order);
+    order.setPrice(price);
+    order.setQuant(quant);
+    book.add(order);
+    agentOrders[(int) order.getCreatorID()].changePrice(order, oldPrice);
+  }
+
+  @Override
+  public long find(long orderID) {
+    return restingOrders.get(orderID);
+  }
+
+  @Override
+  public long getAllocatedOrderCount() {
+    return orderPool.getAllocatedCount();
+  }
+
+  @Override
+  public long getID(long handle) {
+    return get(handle).getID();
+  }
+
+  @Override
+  public long getAgentID(long handle) {
+    return get(handle).getCreatorID();
+  }
+
+  @Override
+  public int getPrice(long handle) {
+    return get(handle).getPrice();
+  }
+
+  @Override
+  public int getOriginalQuant(long handle) {
+    return get(handle).getOriginalQuant();
+  }
+
+  @Override
+  public int getCurrentQuant(long handle) {
+    return get(handle).getCurrentQuant();
+  }
+
+  @Override
+  public void setCurrentQuant(long handle, int quant) {
+    get(handle).setQuant(quant);
+  }
+
+  @Override
+  public boolean isBuyOrder(long handle) {
+    return get(handle).isBuyOrder();
+  }
+
+  @Override
+  public boolean isMarketOrder(long handle) {
+    return get(handle).isMarketOrder();
+  }
+
+  @Override
+  public long getFirstAt(boolean buySide, int price) {
+    PriceLevel level = bookOf(buySide).getLevel(price);
+    return (level == null) ? NONE : handleOf(level.getFirst());
+  }
+
+  @Override
+  public long getBest(boolean buySide) {
+    return handleOf(bookOf(buySide).getBestOrder());
+  }
+
+  @Override
+  public long getNextInLevel(long handle) {
+    return handleOf(get(handle).getNextInLevel());
+  }
+
+  @Override
+  public long getFirstInNextLevel(long handle) {
+    Order order = get(handle);
+    PriceLevel next = bookOf(order.isBuyOrder()).getNextLevel(order.getLevel());
+    return (next == null) ? NONE : handleOf(next.getFirst());
+  }
+
+  @Override
+  public int getBestQuantity(boolean buySide) {
+    PriceLevel bestLevel = bookOf(buySide).getBestLevel();
+    return (bestLevel == null) ? 0 : bestLevel.getTotalQuantity();
+  }
+
+  @Override
+  public int getDepth(boolean buySide, int[] prices, int[] quantities) {
+    return bookOf(buySide).getDepth(prices, quantities);
+  }
+
+  @Override
+  public int getOrderCount(long agentID) {
+    return agentOrders[(int) agentID].size();
+  }
+
+  @Override
+  public long getOldest(long agentID) {
+    return handleOf(agentOrders[(int) agentID].getFirst());
+  }
+
+  @Override
+  public long getNextByAgent(long handle) {
+    return handleOf(get(handle).getNextByAgent());
+  }
+
+  @Override
+  public long getOldestOnSide(long agentID, boolean buySide) {
+    AgentOrders orders = agentOrders[(int) agentID];
+    return handleOf(buySide ? orders.getFirstBuy() : orders.getFirstSell());
+  }
+
+  @Override
+  public long getNextSameSide(long handle) {
+    return handleOf(get(handle).getNextSameSide());
+  }
+
+  @Override
+  public long getOldestAtPrice(long agentID, int price) {
+    return handleOf(agentOrders[(int) agentID].getFirstAtPrice(price));
+  }
+
+  @Override
+  public long getNextSamePrice(long handle) {
+    return handleOf(get(handle).getNextSamePrice());
+  }
+
+  /**
+   * @param handle
+   *          Handle of an order.
+   * @return The order.
+   */
+  private Order get(long handle) {
+    return orderPool.get((int) handle);
+  }
+
+  /**
+   * @param order
+   *          An order of the pool, or null.
+   * @return Handle of the order, or NONE if order is null.
+   */
+  private static long handleOf(Order order) {
+    return (order == null) ? NONE : order.getSlot();
+  }
+
+  /**
+   * @param buySide
+   *          True for the buy side of the book, false for the sell side.
+   * @return The side of the book.
+   */
+  private OrderBook bookOf(boolean buySide) {
+    return buySide ? buyOrders : sellOrders;
+  }
+}
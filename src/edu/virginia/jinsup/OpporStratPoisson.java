@@ -1,6 +1,7 @@
 package edu.virginia.jinsup;
 
 import org.apache.commons.math3.distribution.UniformRealDistribution;
+import org.apache.commons.math3.random.RandomGenerator;
 
 /**
  * Agent whose behavior depends on a global buy probability (acting as a news
@@ -9,23 +10,11 @@ import org.apache.commons.math3.distribution.UniformRealDistribution;
 public class OpporStratPoisson extends PoissonAgent {
 
   /**
-   * Limits the number of shares owned by the agent.
-   */
-  private static final int INVENTORY_LIMIT =
-    Parameters.opporStratInventoryLimit;
-
-  /**
-   * Whether or not agent owns more shares than INVENTORY_LIMIT or has a deficit
-   * of more than -INVENTORY_LIMIT.
+   * Whether or not agent owns more shares than the inventory limit or has a
+   * deficit of more than minus the limit.
    */
   private boolean overLimit;
 
-  /**
-   * Global buy probability for all poisson opportunistic traders. Initially set
-   * at 50 %.
-   */
-  private static double currBuyProbability = Parameters.initialBuyProbability;
-
   /**
    * Creates an opportunistic trader.
    * 
@@ -47,54 +36,83 @@ public class OpporStratPoisson extends PoissonAgent {
     overLimit = false;
   }
 
+  /**
+   * Creates an opportunistic trader that is a member of a PoissonAgentGroup.
+   * 
+   * @param matchEng
+   *          Matching engine of the simulation.
+   * @param randomStream
+   *          Stream of random numbers of the group.
+   */
+  public OpporStratPoisson(MatchingEngine matchEng, RandomStream randomStream) {
+    super(matchEng, "OpporStratPoisson", randomStream);
+    overLimit = false;
+  }
+
   @Override
   public void makeOrder() {
-    boolean[] inventoryResults =
-      checkInventory(getInventory(), INVENTORY_LIMIT, overLimit);
-    processInventory(inventoryResults[OVERRIDE], inventoryResults[WILL_BUY]);
-    overLimit = inventoryResults[OVER_LIMIT];
-    boolean willBuy = inventoryResults[WILL_BUY];
-    // Whether or not to skip factor checking
-
-    if (!inventoryResults[OVERRIDE]) {
-      willBuy = (JinSup.rand.nextFloat() < currBuyProbability);
-    }
-
-    createPoissonOrder(willBuy,
-      getOrderSize(Parameters.opporStratOrderSizeProbabilities),
-      Parameters.opporStratTickProbabilities);
+    overLimit = makeOrder(this, getID(), getInventory(), overLimit);
   }
 
   /**
-   * Calculates the new global buy probability.
+   * Places an order of an opportunistic trader: within its inventory limit, it
+   * buys with the global buy probability.
+   * 
+   * @param agent
+   *          The trader, or the PoissonAgentStore it belongs to.
+   * @param agentID
+   *          ID of the trader.
+   * @param inventory
+   *          The number of shares the trader has.
+   * @param overLimit
+   *          True if the trader broke its inventory limit on its last order.
+   * @return True if the trader has broken its inventory limit now.
    */
-  public static void calcNewBuyProbability() {
-    currBuyProbability =
-      currBuyProbability
-        + (new UniformRealDistribution(JinSup.randGen,
-          Parameters.lowerUniformBound, Parameters.upperUniformBound)).sample();
+  static boolean makeOrder(Agent agent, long agentID, int inventory,
+    boolean overLimit) {
+    Parameters parameters = agent.getParameters();
+    int inventoryResults =
+      limitInventory(agent, agentID, inventory,
+        parameters.opporStratInventoryLimit, overLimit);
+    boolean willBuy = (inventoryResults & WILL_BUY) != 0;
+    // Whether or not to skip factor checking
 
-    // prevent the probability from going over the limit
-    if (currBuyProbability < Parameters.minBuyProbability) {
-      currBuyProbability = Parameters.minBuyProbability;
-    }
-    if (currBuyProbability > Parameters.maxBuyProbability) {
-      currBuyProbability = Parameters.maxBuyProbability;
+    if ((inventoryResults & OVER_LIMIT) == 0) {
+      willBuy =
+        (agent.getRandom().nextFloat() < agent.getSimulation()
+          .getBuyProbability());
     }
+
+    placeOrder(agent, agentID, willBuy,
+      parameters.opporStratOrderSizeProbabilities,
+      parameters.opporStratTickProbabilities);
+    return (inventoryResults & OVER_LIMIT) != 0;
   }
 
   /**
-   * Manually set the global buy probability.
+   * Calculates the new global buy probability of a simulation.
    * 
-   * @param buyProbability
-   *          The probability of making a buy order.
+   * @param simulation
+   *          The simulation whose buy probability to update.
+   * @param randGen
+   *          Random number generator to draw the change from.
    */
-  public static void setBuyProbability(double buyProbability) {
-    currBuyProbability = buyProbability;
-  }
+  public static void calcNewBuyProbability(Simulation simulation,
+    RandomGenerator randGen) {
+    Parameters parameters = simulation.getParameters();
+    double currBuyProbability =
+      simulation.getBuyProbability()
+        + (new UniformRealDistribution(randGen, parameters.lowerUniformBound,
+          parameters.upperUniformBound)).sample();
 
-  public static double getCurrBuyProbability() {
-    return currBuyProbability;
+    // prevent the probability from going over the limit
+    if (currBuyProbability < parameters.minBuyProbability) {
+      currBuyProbability = parameters.minBuyProbability;
+    }
+    if (currBuyProbability > parameters.maxBuyProbability) {
+      currBuyProbability = parameters.maxBuyProbability;
+    }
+    simulation.setBuyProbability(currBuyProbability);
   }
 
 }
@@ -7,11 +7,6 @@ import java.util.Comparator;
  */
 public class Order implements Comparator<Order> {
 
-  /**
-   * The ID that should be assigned to the next order created.
-   */
-  private static long nextOrderID = 0;
-
   /**
    * The price (CENTS) of the order. Can only be in increments of 0.25.
    */
@@ -20,7 +15,7 @@ public class Order implements Comparator<Order> {
   /**
    * The original amount of shares this order is for.
    */
-  private final int originalQuant;
+  private int originalQuant;
   /**
    * The current amount of shares this order is for.
    */
@@ -29,26 +24,86 @@ public class Order implements Comparator<Order> {
   /**
    * ID number of the order.
    */
-  private final long id;
+  private long id;
 
   /**
    * Is true if this is an order to buy shares. False otherwise.
    */
-  private final boolean buyOrder;
+  private boolean buyOrder;
 
   /**
    * ID of the agent that initiated the order.
    */
-  private final long agentID;
+  private long agentID;
 
   /**
    * Is true if this is a market order; false otherwise.
    */
-  private final boolean marketOrder;
+  private boolean marketOrder;
+
+  /**
+   * Price level of the order book the order is resting in, or null if the
+   * order is not in the order book.
+   */
+  private PriceLevel level;
+
+  /**
+   * The order in front of this one in its price level's queue.
+   */
+  private Order prevInLevel;
+
+  /**
+   * The order behind this one in its price level's queue.
+   */
+  private Order nextInLevel;
+
+  /**
+   * The previous (older) resting order of the same agent.
+   */
+  private Order prevByAgent;
+
+  /**
+   * The next (newer) resting order of the same agent.
+   */
+  private Order nextByAgent;
+
+  /**
+   * The previous (older) resting order of the same agent on the same side.
+   */
+  private Order prevSameSide;
+
+  /**
+   * The next (newer) resting order of the same agent on the same side.
+   */
+  private Order nextSameSide;
+
+  /**
+   * The previous (older) resting order of the same agent at the same price.
+   */
+  private Order prevSamePrice;
+
+  /**
+   * The next (newer) resting order of the same agent at the same price.
+   */
+  private Order nextSamePrice;
+
+  /**
+   * Is true once the order has been filled or cancelled and handed back to the
+   * OrderPool.
+   */
+  private boolean released;
+
+  /**
+   * Number of the order in its OrderPool, which serves as its handle in an
+   * ObjectOrderBookStore, or -1 if it does not belong to a pool.
+   */
+  private int slot;
 
   /**
    * Creates an order based on the parameters specified.
    * 
+   * @param id
+   *          ID of the order, given out by the simulation.
    * @param agentID
    *          ID of the agent that initiated the order.
    * @param price
@@ -61,16 +116,81 @@ public class Order implements Comparator<Order> {
    * @param marketOrder
    *          Is true if this is a market order; false otherwise.
    */
-  public Order(long agentID, int price, int originalQuant, boolean buyOrder,
-    boolean marketOrder) {
-    id = nextOrderID;
-    nextOrderID++;
+  public Order(long id, long agentID, int price, int originalQuant,
+    boolean buyOrder, boolean marketOrder) {
+    slot = -1;
+    reset(id, agentID, price, originalQuant, buyOrder, marketOrder);
+  }
+
+  /**
+   * Creates a copy of an order that is stored somewhere else, e.g. in an
+   * OrderStore. The copy keeps the ID of the stored order and is not linked
+   * into the order book, so changing it does not affect the stored order.
+   * 
+   * @param id
+   *          ID of the stored order.
+   * @param agentID
+   *          ID of the agent that initiated the order.
+   * @param price
+   *          Price (CENTS) of the order.
+   * @param originalQuant
+   *          The quantity of shares the agent originally wanted to buy or sell.
+   * @param currentQuant
+   *          The quantity of shares that is left in the order.
+   * @param buyOrder
+   *          Is true if the order is to buy shares. False otherwise.
+   * @param marketOrder
+   *          Is true if this is a market order; false otherwise.
+   */
+  Order(long id, long agentID, int price, int originalQuant, int currentQuant,
+    boolean buyOrder, boolean marketOrder) {
+    this.id = id;
+    this.agentID = agentID;
+    this.buyOrder = buyOrder;
+    this.originalQuant = originalQuant;
+    this.price = price;
+    this.marketOrder = marketOrder;
+    this.currentQuant = currentQuant;
+    this.slot = -1;
+  }
+
+  /**
+   * Reinitializes the order as if it had just been constructed, including
+   * giving it a new ID. Used by the OrderPool to recycle orders.
+   * 
+   * @param id
+   *          New ID of the order.
+   * @param agentID
+   *          ID of the agent that initiated the order.
+   * @param price
+   *          Price (CENTS) that for the shares to buy or sell for this order.
+   * @param originalQuant
+   *          The quantity of shares the agent originally wants to buy or sell.
+   * @param buyOrder
+   *          Is true if the agent wants to initiate an order to buy shares.
+   *          False otherwise.
+   * @param marketOrder
+   *          Is true if this is a market order; false otherwise.
+   */
+  void reset(long id, long agentID, int price, int originalQuant,
+    boolean buyOrder, boolean marketOrder) {
+    this.id = id;
     this.agentID = agentID;
     this.buyOrder = buyOrder;
     this.originalQuant = originalQuant;
     this.price = price;
     this.marketOrder = marketOrder;
     currentQuant = originalQuant;
+    level = null;
+    prevInLevel = null;
+    nextInLevel = null;
+    prevByAgent = null;
+    nextByAgent = null;
+    prevSameSide = null;
+    nextSameSide = null;
+    prevSamePrice = null;
+    nextSamePrice = null;
+    released = false;
   }
 
   /**
@@ -106,6 +226,10 @@ public class Order implements Comparator<Order> {
    *          The new quantity of shares that the order should be for.
    */
   public void setQuant(int newQuant) {
+    // Keep the aggregate quantity of the price level up to date.
+    if (level != null) {
+      level.addQuantity(newQuant - currentQuant);
+    }
     currentQuant = newQuant;
   }
 
@@ -210,17 +334,135 @@ public class Order implements Comparator<Order> {
       }
     };
 
-  public String toString() {
-    return "ID: " + this.id + " Creator: " + this.agentID + " Price: "
-      + this.price + " Current Quantity: " + this.currentQuant + " Buy Order: "
-      + this.buyOrder;
+  /**
+   * @return The price level the order is resting in, or null if it is not in
+   *         the order book.
+   */
+  PriceLevel getLevel() {
+    return level;
+  }
+
+  void setLevel(PriceLevel level) {
+    this.level = level;
+  }
+
+  /**
+   * @return The order with the next highest time priority at the same price.
+   */
+  Order getPrevInLevel() {
+    return prevInLevel;
+  }
+
+  void setPrevInLevel(Order prevInLevel) {
+    this.prevInLevel = prevInLevel;
+  }
+
+  /**
+   * @return The order with the next lowest time priority at the same price.
+   */
+  Order getNextInLevel() {
+    return nextInLevel;
+  }
+
+  void setNextInLevel(Order nextInLevel) {
+    this.nextInLevel = nextInLevel;
+  }
+
+  /**
+   * @return The agent's resting order that was created before this one.
+   */
+  Order getPrevByAgent() {
+    return prevByAgent;
+  }
+
+  void setPrevByAgent(Order prevByAgent) {
+    this.prevByAgent = prevByAgent;
+  }
+
+  /**
+   * @return The agent's resting order that was created after this one.
+   */
+  Order getNextByAgent() {
+    return nextByAgent;
+  }
+
+  void setNextByAgent(Order nextByAgent) {
+    this.nextByAgent = nextByAgent;
+  }
+
+  /**
+   * @return The agent's resting order on the same side that was created before
+   *         this one.
+   */
+  Order getPrevSameSide() {
+    return prevSameSide;
+  }
+
+  void setPrevSameSide(Order prevSameSide) {
+    this.prevSameSide = prevSameSide;
+  }
+
+  /**
+   * @return The agent's resting order on the same side that was created after
+   *         this one.
+   */
+  Order getNextSameSide() {
+    return nextSameSide;
+  }
+
+  void setNextSameSide(Order nextSameSide) {
+    this.nextSameSide = nextSameSide;
   }
 
-  public static long getNextOrderID() {
-    return nextOrderID;
+  /**
+   * @return The agent's resting order at the same price that was placed before
+   *         this one.
+   */
+  Order getPrevSamePrice() {
+    return prevSamePrice;
   }
 
-  public static void setNextOrderID(long newNextOrderID) {
-    nextOrderID = newNextOrderID;
+  void setPrevSamePrice(Order prevSamePrice) {
+    this.prevSamePrice = prevSamePrice;
+  }
+
+  /**
+   * @return The agent's resting order at the same price that was placed after
+   *         this one.
+   */
+  Order getNextSamePrice() {
+    return nextSamePrice;
+  }
+
+  void setNextSamePrice(Order nextSamePrice) {
+    this.nextSamePrice = nextSamePrice;
+  }
+
+  /**
+   * @return True if the order has been handed back to the OrderPool.
+   */
+  boolean isReleased() {
+    return released;
+  }
+
+  void setReleased(boolean released) {
+    this.released = released;
+  }
+
+  /**
+   * @return Number of the order in its OrderPool, or -1.
+   */
+  int getSlot() {
+    return slot;
+  }
+
+  void setSlot(int slot) {
+    this.slot = slot;
+  }
+
+  public String toString() {
+    return "ID: " + this.id + " Creator: " + this.agentID + " Price: "
+      + this.price + " Current Quantity: " + this.currentQuant + " Buy Order: "
+      + this.buyOrder;
   }
 }
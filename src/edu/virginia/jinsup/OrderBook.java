@@ -0,0 +1,362 @@
+package edu.virginia.jinsup;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * One side (buy or sell) of the order book. Prices on the tick grid that are
+ * close to the starting price are stored in an array of price levels indexed
+ * by tick, and a bitmap of the occupied levels is used to find the best price.
+ * Any price that falls outside of the array (or off the tick grid) is stored in
+ * an overflow map instead.
+ */
+public class OrderBook {
+
+  /**
+   * Number of price levels stored in the array. Centered on the starting price
+   * this covers +/- $512 with a 25 cent tick size.
+   */
+  static final int LADDER_SIZE = 4096;
+
+  /**
+   * True if this side holds buy orders, where the best price is the highest
+   * price. False if it holds sell orders, where the best price is the lowest.
+   */
+  private final boolean buySide;
+
+  /**
+   * Tick number (price / TICK_SIZE) of the price level at index zero.
+   */
+  private final int minTick;
+
+  /**
+   * Price levels on the tick grid, indexed by tick number minus minTick.
+   * Levels are created on first use and kept around once they are emptied.
+   */
+  private final PriceLevel[] ladder;
+
+  /**
+   * One bit per entry of the ladder that is set when the level has orders.
+   */
+  private final long[] occupied;
+
+  /**
+   * Index of the best occupied level in the ladder, or -1 if the ladder is
+   * empty.
+   */
+  private int bestIndex;
+
+  /**
+   * Non-empty price levels that could not be stored in the ladder, keyed by
+   * price.
+   */
+  private final TreeMap<Integer, PriceLevel> overflow;
+
+  /**
+   * Creates an empty side of the order book.
+   * 
+   * @param buySide
+   *          True if the book will hold buy orders, false for sell orders.
+   * @param centerPrice
+   *          Price (CENTS) that the ladder should be centered around. This
+   *          should be the starting price of the simulation.
+   */
+  public OrderBook(boolean buySide, int centerPrice) {
+    this.buySide = buySide;
+    this.minTick = centerPrice / Agent.TICK_SIZE - LADDER_SIZE / 2;
+    this.ladder = new PriceLevel[LADDER_SIZE];
+    this.occupied = new long[LADDER_SIZE / 64];
+    this.bestIndex = -1;
+    this.overflow = new TreeMap<Integer, PriceLevel>();
+  }
+
+  /**
+   * Adds an order to the back of the queue at its price.
+   * 
+   * @param order
+   *          The order to add. Must not already be in the order book.
+   */
+  public void add(Order order) {
+    int price = order.getPrice();
+    int index = indexOf(price);
+    PriceLevel level;
+    if (index < 0) {
+      level = overflow.get(price);
+      if (level == null) {
+        level = new PriceLevel(price);
+        overflow.put(price, level);
+      }
+    } else {
+      level = ladder[index];
+      if (level == null) {
+        level = new PriceLevel(price);
+        ladder[index] = level;
+      }
+      occupied[index >>> 6] |= 1L << index;
+      if (bestIndex < 0 || (buySide ? index > bestIndex : index < bestIndex)) {
+        bestIndex = index;
+      }
+    }
+    level.append(order);
+  }
+
+  /**
+   * Removes an order from the order book.
+   * 
+   * @param order
+   *          The order to remove.
+   * @return True if the order was in this side of the order book.
+   */
+  public boolean remove(Order order) {
+    PriceLevel level = order.getLevel();
+    if (level == null || order.isBuyOrder() != buySide) {
+      return false;
+    }
+    level.remove(order);
+    if (level.isEmpty()) {
+      releaseLevel(level);
+    }
+    return true;
+  }
+
+  /**
+   * @return True if there are no orders on this side of the book.
+   */
+  public boolean isEmpty() {
+    return bestIndex < 0 && overflow.isEmpty();
+  }
+
+  /**
+   * @param price
+   *          Price (CENTS) to look up.
+   * @return The price level at the given price, or null if there are no orders
+   *         at that price.
+   */
+  public PriceLevel getLevel(int price) {
+    int index = indexOf(price);
+    if (index < 0) {
+      return overflow.get(price);
+    }
+    PriceLevel level = ladder[index];
+    return (level == null || level.isEmpty()) ? null : level;
+  }
+
+  /**
+   * @return The non-empty price level with the best price (highest for buy
+   *         orders, lowest for sell orders), or null if the side is empty.
+   */
+  public PriceLevel getBestLevel() {
+    PriceLevel best = (bestIndex < 0) ? null : ladder[bestIndex];
+    if (overflow.isEmpty()) {
+      return best;
+    }
+    Map.Entry<Integer, PriceLevel> entry =
+      buySide ? overflow.lastEntry() : overflow.firstEntry();
+    return isBetter(entry.getValue(), best) ? entry.getValue() : best;
+  }
+
+  /**
+   * @return The order with the highest priority on this side of the book, or
+   *         null if the side is empty.
+   */
+  public Order getBestOrder() {
+    PriceLevel best = getBestLevel();
+    return (best == null) ? null : best.getFirst();
+  }
+
+  /**
+   * Gets the next non-empty price level going away from the best price.
+   * 
+   * @param level
+   *          The level to start from.
+   * @return The non-empty level with the next worse price, or null if there is
+   *         none.
+   */
+  public PriceLevel getNextLevel(PriceLevel level) {
+    int price = level.getPrice();
+    PriceLevel next = null;
+    if (!overflow.isEmpty()) {
+      Map.Entry<Integer, PriceLevel> entry =
+        buySide ? overflow.lowerEntry(price) : overflow.higherEntry(price);
+      if (entry != null) {
+        next = entry.getValue();
+      }
+    }
+    int index;
+    if (buySide) {
+      // Largest tick strictly below the price.
+      index = highestOccupied(Math.floorDiv(price - 1, Agent.TICK_SIZE)
+        - minTick);
+    } else {
+      // Smallest tick strictly above the price.
+      index = lowestOccupied(Math.floorDiv(price, Agent.TICK_SIZE) + 1
+        - minTick);
+    }
+    if (index >= 0 && isBetter(ladder[index], next)) {
+      next = ladder[index];
+    }
+    return next;
+  }
+
+  /**
+   * Fills in the total quantity at each of the best price levels, best first.
+   * 
+   * @param prices
+   *          Array to store the price (CENTS) of each level in. Its length is
+   *          the maximum number of levels returned.
+   * @param quantities
+   *          Array to store the total quantity of each level in. Must be at
+   *          least as long as prices.
+   * @return The number of levels filled in, which will be less than the length
+   *         of prices if there are not enough levels in the book.
+   */
+  public int getDepth(int[] prices, int[] quantities) {
+    int depth = 0;
+    PriceLevel level = getBestLevel();
+    while (level != null && depth < prices.length) {
+      prices[depth] = level.getPrice();
+      quantities[depth] = level.getTotalQuantity();
+      depth++;
+      level = getNextLevel(level);
+    }
+    return depth;
+  }
+
+  /**
+   * @return Every order on this side of the book, sorted by highest price first
+   *         and then by time of creation.
+   */
+  public ArrayList<Order> toArrayList() {
+    ArrayList<PriceLevel> levels = new ArrayList<PriceLevel>();
+    for (PriceLevel l = getBestLevel(); l != null; l = getNextLevel(l)) {
+      levels.add(l);
+    }
+    ArrayList<Order> orders = new ArrayList<Order>();
+    for (int i = 0; i < levels.size(); i++) {
+      PriceLevel l = levels.get(buySide ? i : levels.size() - 1 - i);
+      for (Order o = l.getFirst(); o != null; o = o.getNextInLevel()) {
+        orders.add(o);
+      }
+    }
+    return orders;
+  }
+
+  /**
+   * Forgets about a price level that no longer has any orders.
+   * 
+   * @param level
+   *          The empty level.
+   */
+  private void releaseLevel(PriceLevel level) {
+    int index = indexOf(level.getPrice());
+    if (index < 0) {
+      overflow.remove(level.getPrice());
+      return;
+    }
+    occupied[index >>> 6] &= ~(1L << index);
+    if (index == bestIndex) {
+      bestIndex =
+        buySide ? highestOccupied(index - 1) : lowestOccupied(index + 1);
+    }
+  }
+
+  /**
+   * @param price
+   *          Price (CENTS) to look up.
+   * @return Index of the price in the ladder, or -1 if the price must be kept
+   *         in the overflow map.
+   */
+  private int indexOf(int price) {
+    if (price % Agent.TICK_SIZE != 0) {
+      return -1;
+    }
+    int index = price / Agent.TICK_SIZE - minTick;
+    return (index < 0 || index >= LADDER_SIZE) ? -1 : index;
+  }
+
+  /**
+   * @param candidate
+   *          Level to check. Must not be null.
+   * @param current
+   *          Level to compare against. May be null.
+   * @return True if candidate has a better price than current for this side.
+   */
+  private boolean isBetter(PriceLevel candidate, PriceLevel current) {
+    if (current == null) {
+      return true;
+    }
+    return buySide ? candidate.getPrice() > current.getPrice() : candidate
+      .getPrice() < current.getPrice();
+  }
+
+  /**
+   * @param from
+   *          Index to start searching downwards from (inclusive).
+   * @return The highest occupied index that is at most from, or -1 if there is
+   *         none.
+   */
+  private int highestOccupied(int from) {
+    return highestSetBit(occupied, from);
+  }
+
+  /**
+   * @param from
+   *          Index to start searching upwards from (inclusive).
+   * @return The lowest occupied index that is at least from, or -1 if there is
+   *         none.
+   */
+  private int lowestOccupied(int from) {
+    return lowestSetBit(occupied, from);
+  }
+
+  /**
+   * @param bits
+   *          Bitmap to search.
+   * @param from
+   *          Index to start searching downwards from (inclusive).
+   * @return The highest set bit that is at most from, or -1 if there is none.
+   */
+  static int highestSetBit(long[] bits, int from) {
+    if (from < 0) {
+      return -1;
+    }
+    if (from >= bits.length * 64) {
+      from = bits.length * 64 - 1;
+    }
+    int word = from >>> 6;
+    long w = bits[word] & (-1L >>> (63 - (from & 63)));
+    while (w == 0) {
+      if (--word < 0) {
+        return -1;
+      }
+      w = bits[word];
+    }
+    return (word << 6) + 63 - Long.numberOfLeadingZeros(w);
+  }
+
+  /**
+   * @param bits
+   *          Bitmap to search.
+   * @param from
+   *          Index to start searching upwards from (inclusive).
+   * @return The lowest set bit that is at least from, or -1 if there is none.
+   */
+  static int lowestSetBit(long[] bits, int from) {
+    if (from >= bits.length * 64) {
+      return -1;
+    }
+    if (from < 0) {
+      from = 0;
+    }
+    int word = from >>> 6;
+    long w = bits[word] & (-1L << (from & 63));
+    while (w == 0) {
+      if (++word >= bits.length) {
+        return -1;
+      }
+      w = bits[word];
+    }
+    return (word << 6) + Long.numberOfTrailingZeros(w);
+  }
+}
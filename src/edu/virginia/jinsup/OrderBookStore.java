@@ -0,0 +1,272 @@
+package edu.virginia.jinsup;
+
+/**
+ * Storage of the orders of a MatchingEngine: both sides of the order book, the
+ * resting orders of every agent and the order ID index. The MatchingEngine does
+ * all of the matching and only uses a store to keep track of the orders, so
+ * that the way orders are stored can be chosen with --orderStore without
+ * writing the matching twice.
+ * 
+ * Orders are addressed by long handles. A handle stays valid until its order is
+ * released, after which it must not be used.
+ */
+public interface OrderBookStore {
+
+  /**
+   * Handle meaning "no order".
+   */
+  long NONE = -1;
+
+  /**
+   * Makes room for the orders of more agents.
+   * 
+   * @param agentCount
+   *          Number of agents to make room for. Agent IDs are below this.
+   */
+  void setAgentCapacity(int agentCount);
+
+  /**
+   * Stores a new order. It does not rest in the order book until rest() is
+   * called.
+   * 
+   * @param id
+   *          ID of the order.
+   * @param agentID
+   *          ID of the agent that initiated the order.
+   * @param price
+   *          Price (CENTS) of the order.
+   * @param originalQuant
+   *          The quantity of shares the agent wants to buy or sell.
+   * @param buyOrder
+   *          True if the agent wants to buy. False otherwise.
+   * @param marketOrder
+   *          True if this is a market order; false otherwise.
+   * @return Handle of the order.
+   */
+  long add(long id, long agentID, int price, int originalQuant,
+    boolean buyOrder, boolean marketOrder);
+
+  /**
+   * Puts a stored order at the back of the queue at its price, at the end of
+   * its agent's orders and into the order ID index.
+   * 
+   * @param handle
+   *          Handle of the order. Must not be resting already.
+   */
+  void rest(long handle);
+
+  /**
+   * Takes an order out of the order book, out of its agent's orders and out of
+   * the order ID index. Market orders never rest, so nothing is done for them.
+   * 
+   * @param handle
+   *          Handle of the order.
+   * @return True if the order was resting.
+   */
+  boolean unrest(long handle);
+
+  /**
+   * Frees a stored order that is not resting. Its handle becomes invalid.
+   * 
+   * @param handle
+   *          Handle of the order.
+   */
+  void release(long handle);
+
+  /**
+   * Moves a resting order to the back of the queue at a new price and sets its
+   * quantity. It keeps its place among its agent's orders.
+   * 
+   * @param handle
+   *          Handle of the resting order.
+   * @param price
+   *          The new price (CENTS).
+   * @param quant
+   *          The new quantity.
+   */
+  void modify(long handle, int price, int quant);
+
+  /**
+   * @param orderID
+   *          ID of an order.
+   * @return Handle of the resting order with the ID, or NONE if there is none.
+   */
+  long find(long orderID);
+
+  /**
+   * @return The number of order objects or slots that have been allocated so
+   *         far. Once enough orders have been filled or cancelled, this should
+   *         stop increasing.
+   */
+  long getAllocatedOrderCount();
+
+  /**
+   * @param handle
+   *          Handle of an order.
+   * @return The ID of the order.
+   */
+  long getID(long handle);
+
+  /**
+   * @param handle
+   *          Handle of an order.
+   * @return The ID of the agent that initiated the order.
+   */
+  long getAgentID(long handle);
+
+  /**
+   * @param handle
+   *          Handle of an order.
+   * @return The price (CENTS) of the order.
+   */
+  int getPrice(long handle);
+
+  /**
+   * @param handle
+   *          Handle of an order.
+   * @return The quantity the order was created with.
+   */
+  int getOriginalQuant(long handle);
+
+  /**
+   * @param handle
+   *          Handle of an order.
+   * @return The quantity that is left in the order.
+   */
+  int getCurrentQuant(long handle);
+
+  /**
+   * Sets the quantity that is left in an order, keeping the total quantity of
+   * its price level up to date if it is resting.
+   * 
+   * @param handle
+   *          Handle of an order.
+   * @param quant
+   *          The new quantity.
+   */
+  void setCurrentQuant(long handle, int quant);
+
+  /**
+   * @param handle
+   *          Handle of an order.
+   * @return True if the order is a buy order.
+   */
+  boolean isBuyOrder(long handle);
+
+  /**
+   * @param handle
+   *          Handle of an order.
+   * @return True if the order is a market order.
+   */
+  boolean isMarketOrder(long handle);
+
+  /**
+   * @param buySide
+   *          True for the buy side of the book, false for the sell side.
+   * @param price
+   *          Price (CENTS) to look up.
+   * @return The order with the highest time priority at the price, or NONE if
+   *         there are no orders at that price.
+   */
+  long getFirstAt(boolean buySide, int price);
+
+  /**
+   * @param buySide
+   *          True for the buy side of the book, false for the sell side.
+   * @return The order with the highest priority on the side, or NONE if the
+   *         side is empty.
+   */
+  long getBest(boolean buySide);
+
+  /**
+   * @param handle
+   *          Handle of a resting order.
+   * @return The order behind it at the same price, or NONE.
+   */
+  long getNextInLevel(long handle);
+
+  /**
+   * @param handle
+   *          Handle of a resting order.
+   * @return The first order at the next worse price on the same side, or
+   *         NONE.
+   */
+  long getFirstInNextLevel(long handle);
+
+  /**
+   * @param buySide
+   *          True for the buy side of the book, false for the sell side.
+   * @return The sum of quantities of all orders at the best price of the side.
+   */
+  int getBestQuantity(boolean buySide);
+
+  /**
+   * Fills in the total quantity at each of the best prices of a side, best
+   * first.
+   * 
+   * @param buySide
+   *          True for the buy side of the book, false for the sell side.
+   * @param prices
+   *          Array to store the price (CENTS) of each level in. Its length is
+   *          the maximum number of levels returned.
+   * @param quantities
+   *          Array to store the total quantity of each level in.
+   * @return The number of levels filled in.
+   */
+  int getDepth(boolean buySide, int[] prices, int[] quantities);
+
+  /**
+   * @param agentID
+   *          ID of an agent.
+   * @return The number of resting orders the agent has.
+   */
+  int getOrderCount(long agentID);
+
+  /**
+   * @param agentID
+   *          ID of an agent.
+   * @return The agent's oldest resting order, or NONE.
+   */
+  long getOldest(long agentID);
+
+  /**
+   * @param handle
+   *          Handle of a resting order.
+   * @return The next newer resting order of the same agent, or NONE.
+   */
+  long getNextByAgent(long handle);
+
+  /**
+   * @param agentID
+   *          ID of an agent.
+   * @param buySide
+   *          True for buy orders, false for sell orders.
+   * @return The agent's oldest resting order on the side, or NONE.
+   */
+  long getOldestOnSide(long agentID, boolean buySide);
+
+  /**
+   * @param handle
+   *          Handle of a resting order.
+   * @return The next newer resting order of the same agent on the same side,
+   *         or NONE.
+   */
+  long getNextSameSide(long handle);
+
+  /**
+   * @param agentID
+   *          ID of an agent.
+   * @param price
+   *          Price (CENTS) to look up.
+   * @return The agent's oldest resting order at the price, or NONE.
+   */
+  long getOldestAtPrice(long agentID, int price);
+
+  /**
+   * @param handle
+   *          Handle of a resting order.
+   * @return The next newer resting order of the same agent at the same price,
+   *         or NONE.
+   */
+  long getNextSamePrice(long handle);
+}
@@ -0,0 +1,192 @@
+package edu.virginia.jinsup;
+
+/**
+ * A new, modified or cancelled order. The fields are those of the order after
+ * the change.
+ */
+public class OrderEvent extends EngineEvent {
+
+  /**
+   * ID of the agent that owns the order.
+   */
+  private long agentID;
+
+  /**
+   * Code of the type of the agent, see EngineListener.agentTypeAdded().
+   */
+  private int agentType;
+
+  /**
+   * True if the order is a buy order.
+   */
+  private boolean buyOrder;
+
+  /**
+   * ID of the order.
+   */
+  private long orderID;
+
+  /**
+   * Original quantity of the order.
+   */
+  private int originalQuant;
+
+  /**
+   * Price (CENTS) of the order.
+   */
+  private int price;
+
+  /**
+   * True if the order is a market order.
+   */
+  private boolean market;
+
+  /**
+   * Leaves quantity of the order.
+   */
+  private int leavesQuant;
+
+  /**
+   * 1 for a new order, 2 for a modification, 3 for a cancellation, 105 for a
+   * trade.
+   */
+  private int messageType;
+
+  /**
+   * Change of the quantity of the order.
+   */
+  private int quantChanged;
+
+  /**
+   * Change of the price (CENTS) of the order.
+   */
+  private int priceChanged;
+
+  /**
+   * Sets the fields of the order.
+   * 
+   * @param agentID
+   *          ID of the agent that owns the order.
+   * @param agentType
+   *          Code of the type of the agent.
+   * @param buyOrder
+   *          True if the order is a buy order.
+   * @param orderID
+   *          ID of the order.
+   * @param originalQuant
+   *          Original quantity of the order.
+   * @param price
+   *          Price (CENTS) of the order.
+   * @param market
+   *          True if the order is a market order.
+   * @param leavesQuant
+   *          Leaves quantity of the order.
+   */
+  void setOrder(long agentID, int agentType, boolean buyOrder, long orderID,
+    int originalQuant, int price, boolean market, int leavesQuant) {
+    this.agentID = agentID;
+    this.agentType = agentType;
+    this.buyOrder = buyOrder;
+    this.orderID = orderID;
+    this.originalQuant = originalQuant;
+    this.price = price;
+    this.market = market;
+    this.leavesQuant = leavesQuant;
+  }
+
+  /**
+   * Sets what happened to the order.
+   * 
+   * @param messageType
+   *          1 for a new order, 2 for a modification, 3 for a cancellation,
+   *          105 for a trade.
+   * @param quantChanged
+   *          Change of the quantity of the order.
+   * @param priceChanged
+   *          Change of the price (CENTS) of the order.
+   */
+  void setChange(int messageType, int quantChanged, int priceChanged) {
+    this.messageType = messageType;
+    this.quantChanged = quantChanged;
+    this.priceChanged = priceChanged;
+  }
+
+  /**
+   * @return ID of the agent that owns the order.
+   */
+  public long getAgentID() {
+    return agentID;
+  }
+
+  /**
+   * @return Code of the type of the agent.
+   */
+  public int getAgentType() {
+    return agentType;
+  }
+
+  /**
+   * @return True if the order is a buy order.
+   */
+  public boolean isBuyOrder() {
+    return buyOrder;
+  }
+
+  /**
+   * @return ID of the order.
+   */
+  public long getOrderID() {
+    return orderID;
+  }
+
+  /**
+   * @return Original quantity of the order.
+   */
+  public int getOriginalQuant() {
+    return originalQuant;
+  }
+
+  /**
+   * @return Price (CENTS) of the order.
+   */
+  public int getPrice() {
+    return price;
+  }
+
+  /**
+   * @return True if the order is a market order.
+   */
+  public boolean isMarketOrder() {
+    return market;
+  }
+
+  /**
+   * @return Leaves quantity of the order.
+   */
+  public int getLeavesQuant() {
+    return leavesQuant;
+  }
+
+  /**
+   * @return 1 for a new order, 2 for a modification, 3 for a cancellation, 105
+   *         for a trade.
+   */
+  public int getMessageType() {
+    return messageType;
+  }
+
+  /**
+   * @return Change of the quantity of the order: minus the leaves quantity for
+   *         a cancellation, minus the volume for a trade.
+   */
+  public int getQuantChanged() {
+    return quantChanged;
+  }
+
+  /**
+   * @return Change of the price (CENTS) of the order.
+   */
+  public int getPriceChanged() {
+    return priceChanged;
+  }
+}
@@ -0,0 +1,135 @@
+package edu.virginia.jinsup;
+
+import java.util.Arrays;
+
+/**
+ * Recycles Order objects so that the simulation does not have to allocate a new
+ * order every time an agent places one. The ObjectOrderBookStore releases an
+ * order back to the pool once it has been completely filled or cancelled, after
+ * which nobody may use it any more. Every order of the pool has a number, its
+ * slot, by which it can be looked up.
+ * 
+ * In debug mode, released orders are never handed out again. Instead they stay
+ * marked as released so that any later use of a stale reference can be
+ * detected.
+ */
+public class OrderPool {
+
+  /**
+   * True if released orders should be kept out of circulation so that using
+   * them can be detected.
+   */
+  private final boolean debug;
+
+  /**
+   * Head of the list of released orders that can be handed out again. The list
+   * is linked through the orders' price level links, which are unused while an
+   * order is not in the order book.
+   */
+  private Order free;
+
+  /**
+   * Every order of the pool, indexed by slot.
+   */
+  private Order[] orders;
+
+  /**
+   * Number of Order objects that belong to the pool.
+   */
+  private int allocatedCount;
+
+  /**
+   * Creates an empty order pool.
+   * 
+   * @param debug
+   *          True if use of released orders should be detected.
+   */
+  public OrderPool(boolean debug) {
+    this.debug = debug;
+    this.free = null;
+    this.orders = new Order[1024];
+    this.allocatedCount = 0;
+  }
+
+  /**
+   * Gets an order from the pool, allocating a new one only if there are no
+   * released orders available.
+   * 
+   * @param id
+   *          ID to give the order.
+   * @param agentID
+   *          ID of the agent that initiated the order.
+   * @param price
+   *          Price (CENTS) that for the shares to buy or sell for this order.
+   * @param originalQuant
+   *          The quantity of shares the agent originally wants to buy or sell.
+   * @param buyOrder
+   *          Is true if the agent wants to initiate an order to buy shares.
+   *          False otherwise.
+   * @param marketOrder
+   *          Is true if this is a market order; false otherwise.
+   * @return An order initialized with the given values.
+   */
+  public Order acquire(long id, long agentID, int price, int originalQuant,
+    boolean buyOrder, boolean marketOrder) {
+    Order order = free;
+    if (order == null) {
+      order = new Order(id, agentID, price, originalQuant, buyOrder,
+        marketOrder);
+      register(order);
+      return order;
+    }
+    free = order.getNextInLevel();
+    order.reset(id, agentID, price, originalQuant, buyOrder, marketOrder);
+    return order;
+  }
+
+  /**
+   * Gives a newly allocated order a slot.
+   * 
+   * @param order
+   *          The order.
+   */
+  private void register(Order order) {
+    if (allocatedCount == orders.length) {
+      orders = Arrays.copyOf(orders, allocatedCount * 2);
+    }
+    order.setSlot(allocatedCount);
+    orders[allocatedCount++] = order;
+  }
+
+  /**
+   * @param slot
+   *          Slot of an order of the pool.
+   * @return The order.
+   */
+  public Order get(int slot) {
+    return orders[slot];
+  }
+
+  /**
+   * Returns an order that has been filled or cancelled to the pool. The order
+   * must not be resting in the order book and must not be used afterwards.
+   * 
+   * @param order
+   *          The order to release.
+   */
+  public void release(Order order) {
+    if (order.isReleased()) {
+      throw new IllegalStateException("Order " + order.getID()
+        + " was released twice.");
+    }
+    order.setReleased(true);
+    if (!debug) {
+      order.setNextInLevel(free);
+      free = order;
+    }
+  }
+
+  /**
+   * @return The number of Order objects the pool has had to allocate.
+   */
+  public long getAllocatedCount() {
+    return allocatedCount;
+  }
+}
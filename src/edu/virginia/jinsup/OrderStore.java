@@ -0,0 +1,472 @@
+package edu.virginia.jinsup;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the orders of an ArrayOrderBookStore in parallel arrays of primitives
+ * instead of one Order object per order. Every order lives in a slot, and all
+ * of its fields (including the links that queue it in the order book and chain
+ * it to its agent's other orders) are stored at that slot in the arrays. This
+ * avoids the object header, the references and the hash map entries that each
+ * Order object needs, and keeps the orders close together in memory.
+ * 
+ * Orders are addressed by long handles. The low 32 bits of a handle are the
+ * slot and the high 32 bits are the generation of the slot, which is increased
+ * every time an order is removed from it. This way a handle to a removed order
+ * can be detected with isLive() even if its slot has been reused.
+ */
+public class OrderStore {
+
+  /**
+   * Handle (or slot) value meaning "no order".
+   */
+  public static final long NONE = -1;
+
+  /**
+   * Flag set for buy orders.
+   */
+  private static final byte BUY = 1;
+
+  /**
+   * Flag set for market orders.
+   */
+  private static final byte MARKET = 2;
+
+  /**
+   * Number of slots that the store starts with.
+   */
+  private static final int INITIAL_CAPACITY = 1024;
+
+  /**
+   * Order ID of each slot.
+   */
+  private long[] ids;
+
+  /**
+   * ID of the agent that initiated the order in each slot.
+   */
+  private long[] agentIDs;
+
+  /**
+   * Price (CENTS) of the order in each slot.
+   */
+  private int[] prices;
+
+  /**
+   * Original quantity of the order in each slot.
+   */
+  private int[] originalQuants;
+
+  /**
+   * Current quantity of the order in each slot.
+   */
+  private int[] currentQuants;
+
+  /**
+   * BUY and MARKET flags of the order in each slot.
+   */
+  private byte[] flags;
+
+  /**
+   * Generation of each slot. Increased every time the slot is freed.
+   */
+  private int[] generations;
+
+  /**
+   * Price level of the order book that each order rests in, or -1.
+   */
+  private int[] levels;
+
+  /**
+   * Slot of the order in front of each order in its price level, or -1.
+   */
+  private int[] prevInLevel;
+
+  /**
+   * Slot of the order behind each order in its price level, or -1. Also links
+   * the list of free slots.
+   */
+  private int[] nextInLevel;
+
+  /**
+   * Slot of the previous (older) resting order of the same agent, or -1.
+   */
+  private int[] prevByAgent;
+
+  /**
+   * Slot of the next (newer) resting order of the same agent, or -1.
+   */
+  private int[] nextByAgent;
+
+  /**
+   * Slot of the previous (older) resting order of the same agent on the same
+   * side, or -1.
+   */
+  private int[] prevSameSide;
+
+  /**
+   * Slot of the next (newer) resting order of the same agent on the same side,
+   * or -1.
+   */
+  private int[] nextSameSide;
+
+  /**
+   * First slot of the list of free slots, or -1 if every slot up to
+   * usedSlots has an order.
+   */
+  private int freeSlot;
+
+  /**
+   * Number of slots that have ever held an order.
+   */
+  private int usedSlots;
+
+  /**
+   * Number of orders in the store.
+   */
+  private int size;
+
+  /**
+   * Slot of the order with each order ID.
+   */
+  private final LongIntMap index;
+
+  /**
+   * Creates an empty order store.
+   */
+  public OrderStore() {
+    ids = new long[INITIAL_CAPACITY];
+    agentIDs = new long[INITIAL_CAPACITY];
+    prices = new int[INITIAL_CAPACITY];
+    originalQuants = new int[INITIAL_CAPACITY];
+    currentQuants = new int[INITIAL_CAPACITY];
+    flags = new byte[INITIAL_CAPACITY];
+    generations = new int[INITIAL_CAPACITY];
+    levels = new int[INITIAL_CAPACITY];
+    prevInLevel = new int[INITIAL_CAPACITY];
+    nextInLevel = new int[INITIAL_CAPACITY];
+    prevByAgent = new int[INITIAL_CAPACITY];
+    nextByAgent = new int[INITIAL_CAPACITY];
+    prevSameSide = new int[INITIAL_CAPACITY];
+    nextSameSide = new int[INITIAL_CAPACITY];
+    freeSlot = -1;
+    usedSlots = 0;
+    size = 0;
+    index = new LongIntMap(INITIAL_CAPACITY * 2);
+  }
+
+  /**
+   * Stores a new order. The order is not linked to anything yet.
+   * 
+   * @param id
+   *          ID of the order. Must not be negative or already in the store.
+   * @param agentID
+   *          ID of the agent that initiated the order.
+   * @param price
+   *          Price (CENTS) of the order.
+   * @param originalQuant
+   *          The quantity of shares the agent wants to buy or sell.
+   * @param buyOrder
+   *          True if the agent wants to buy. False otherwise.
+   * @param marketOrder
+   *          True if this is a market order; false otherwise.
+   * @return Handle of the new order.
+   */
+  public long add(long id, long agentID, int price, int originalQuant,
+    boolean buyOrder, boolean marketOrder) {
+    int slot = freeSlot;
+    if (slot < 0) {
+      if (usedSlots == ids.length) {
+        grow();
+      }
+      slot = usedSlots++;
+    } else {
+      freeSlot = nextInLevel[slot];
+    }
+    ids[slot] = id;
+    agentIDs[slot] = agentID;
+    prices[slot] = price;
+    originalQuants[slot] = originalQuant;
+    currentQuants[slot] = originalQuant;
+    flags[slot] = (byte) ((buyOrder ? BUY : 0) | (marketOrder ? MARKET : 0));
+    levels[slot] = -1;
+    prevInLevel[slot] = -1;
+    nextInLevel[slot] = -1;
+    prevByAgent[slot] = -1;
+    nextByAgent[slot] = -1;
+    prevSameSide[slot] = -1;
+    nextSameSide[slot] = -1;
+    size++;
+    index.put(id, slot);
+    return handleOf(slot);
+  }
+
+  /**
+   * Removes an order from the store. The order must already have been unlinked
+   * from the order book and from its agent's orders. Its handle becomes stale.
+   * 
+   * @param handle
+   *          Handle of the order to remove.
+   */
+  public void remove(long handle) {
+    if (!isLive(handle)) {
+      throw new IllegalStateException("Order handle " + handle
+        + " was removed twice.");
+    }
+    int slot = (int) handle;
+    index.remove(ids[slot]);
+    generations[slot]++;
+    nextInLevel[slot] = freeSlot;
+    freeSlot = slot;
+    size--;
+  }
+
+  /**
+   * @param handle
+   *          Handle to check.
+   * @return True if the handle refers to an order that is still in the store.
+   */
+  public boolean isLive(long handle) {
+    int slot = (int) handle;
+    return slot >= 0 && slot < usedSlots
+      && generations[slot] == (int) (handle >>> 32);
+  }
+
+  /**
+   * @param orderID
+   *          ID of the order to look up.
+   * @return Handle of the order with the given ID, or NONE if there is no such
+   *         order in the store.
+   */
+  public long find(long orderID) {
+    return handleOf(index.get(orderID));
+  }
+
+  /**
+   * @return The number of orders in the store.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return The number of slots that have ever been used. Slots are reused
+   *         once their orders are removed, so this stops increasing once the
+   *         number of live orders stops increasing.
+   */
+  public int getUsedSlots() {
+    return usedSlots;
+  }
+
+  /**
+   * Makes a copy of an order as an Order object, e.g. to hand it to an agent.
+   * 
+   * @param handle
+   *          Handle of the order.
+   * @return A new order with the same ID and fields as the stored order.
+   */
+  public Order toOrder(long handle) {
+    return new Order(getID(handle), getAgentID(handle), getPrice(handle),
+      getOriginalQuant(handle), getCurrentQuant(handle), isBuyOrder(handle),
+      isMarketOrder(handle));
+  }
+
+  /**
+   * @param handle
+   *          Handle of the order.
+   * @return The ID of the order.
+   */
+  public long getID(long handle) {
+    return ids[(int) handle];
+  }
+
+  /**
+   * @param handle
+   *          Handle of the order.
+   * @return The ID of the agent that initiated the order.
+   */
+  public long getAgentID(long handle) {
+    return agentIDs[(int) handle];
+  }
+
+  /**
+   * @param handle
+   *          Handle of the order.
+   * @return The price (CENTS) of the order.
+   */
+  public int getPrice(long handle) {
+    return prices[(int) handle];
+  }
+
+  /**
+   * @param handle
+   *          Handle of the order. Must not be resting in the order book.
+   * @param price
+   *          The new price (CENTS) of the order.
+   */
+  public void setPrice(long handle, int price) {
+    prices[(int) handle] = price;
+  }
+
+  /**
+   * @param handle
+   *          Handle of the order.
+   * @return The quantity the order was created with.
+   */
+  public int getOriginalQuant(long handle) {
+    return originalQuants[(int) handle];
+  }
+
+  /**
+   * @param handle
+   *          Handle of the order.
+   * @return The quantity that is left in the order.
+   */
+  public int getCurrentQuant(long handle) {
+    return currentQuants[(int) handle];
+  }
+
+  /**
+   * Sets the quantity that is left in the order. If the order is resting in
+   * the order book, use CompactOrderBook.setQuant() instead so that the total
+   * quantity of its price level is kept up to date.
+   * 
+   * @param handle
+   *          Handle of the order.
+   * @param quant
+   *          The new quantity.
+   */
+  public void setCurrentQuant(long handle, int quant) {
+    currentQuants[(int) handle] = quant;
+  }
+
+  /**
+   * @param handle
+   *          Handle of the order.
+   * @return True if the order is a buy order.
+   */
+  public boolean isBuyOrder(long handle) {
+    return (flags[(int) handle] & BUY) != 0;
+  }
+
+  /**
+   * @param handle
+   *          Handle of the order.
+   * @return True if the order is a market order.
+   */
+  public boolean isMarketOrder(long handle) {
+    return (flags[(int) handle] & MARKET) != 0;
+  }
+
+  /**
+   * @param slot
+   *          A slot of the store, or -1.
+   * @return Handle of the order currently in the slot, or NONE if slot is -1.
+   */
+  long handleOf(int slot) {
+    return (slot < 0) ? NONE : ((long) generations[slot] << 32) | slot;
+  }
+
+  /**
+   * @return The price level the order in the slot rests in, or -1 if it is not
+   *         in the order book.
+   */
+  int getLevel(int slot) {
+    return levels[slot];
+  }
+
+  void setLevel(int slot, int level) {
+    levels[slot] = level;
+  }
+
+  /**
+   * @return Slot of the order with the next highest time priority at the same
+   *         price, or -1.
+   */
+  int getPrevInLevel(int slot) {
+    return prevInLevel[slot];
+  }
+
+  void setPrevInLevel(int slot, int prev) {
+    prevInLevel[slot] = prev;
+  }
+
+  /**
+   * @return Slot of the order with the next lowest time priority at the same
+   *         price, or -1.
+   */
+  int getNextInLevel(int slot) {
+    return nextInLevel[slot];
+  }
+
+  void setNextInLevel(int slot, int next) {
+    nextInLevel[slot] = next;
+  }
+
+  /**
+   * @return Slot of the previous (older) order of the same agent, or -1.
+   */
+  int getPrevByAgent(int slot) {
+    return prevByAgent[slot];
+  }
+
+  void setPrevByAgent(int slot, int prev) {
+    prevByAgent[slot] = prev;
+  }
+
+  /**
+   * @return Slot of the next (newer) order of the same agent, or -1.
+   */
+  int getNextByAgent(int slot) {
+    return nextByAgent[slot];
+  }
+
+  void setNextByAgent(int slot, int next) {
+    nextByAgent[slot] = next;
+  }
+
+  /**
+   * @return Slot of the previous (older) order of the same agent on the same
+   *         side, or -1.
+   */
+  int getPrevSameSide(int slot) {
+    return prevSameSide[slot];
+  }
+
+  void setPrevSameSide(int slot, int prev) {
+    prevSameSide[slot] = prev;
+  }
+
+  /**
+   * @return Slot of the next (newer) order of the same agent on the same side,
+   *         or -1.
+   */
+  int getNextSameSide(int slot) {
+    return nextSameSide[slot];
+  }
+
+  void setNextSameSide(int slot, int next) {
+    nextSameSide[slot] = next;
+  }
+
+  /**
+   * Doubles the number of slots.
+   */
+  private void grow() {
+    int capacity = ids.length * 2;
+    ids = Arrays.copyOf(ids, capacity);
+    agentIDs = Arrays.copyOf(agentIDs, capacity);
+    prices = Arrays.copyOf(prices, capacity);
+    originalQuants = Arrays.copyOf(originalQuants, capacity);
+    currentQuants = Arrays.copyOf(currentQuants, capacity);
+    flags = Arrays.copyOf(flags, capacity);
+    generations = Arrays.copyOf(generations, capacity);
+    levels = Arrays.copyOf(levels, capacity);
+    prevInLevel = Arrays.copyOf(prevInLevel, capacity);
+    nextInLevel = Arrays.copyOf(nextInLevel, capacity);
+    prevByAgent = Arrays.copyOf(prevByAgent, capacity);
+    nextByAgent = Arrays.copyOf(nextByAgent, capacity);
+    prevSameSide = Arrays.copyOf(prevSameSide, capacity);
+    nextSameSide = Arrays.copyOf(nextSameSide, capacity);
+  }
+}
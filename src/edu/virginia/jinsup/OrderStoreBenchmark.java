@@ -0,0 +1,116 @@
+package edu.virginia.jinsup;
+
+/**
+ * Compares how much heap memory each resting order takes in an
+ * ObjectOrderBookStore, which stores Order objects, and in an
+ * ArrayOrderBookStore, which stores orders in an OrderStore. Run with:
+ * 
+ * java -cp jinsup.jar edu.virginia.jinsup.OrderStoreBenchmark [orders] [agents]
+ */
+public class OrderStoreBenchmark {
+
+  /**
+   * Number of resting orders to create if none is given.
+   */
+  private static final int DEFAULT_ORDER_COUNT = 1000000;
+
+  /**
+   * Number of agents to spread the orders over if none is given.
+   */
+  private static final int DEFAULT_AGENT_COUNT = 1000;
+
+  /**
+   * Number of price levels on each side of the book that the orders are spread
+   * over.
+   */
+  private static final int PRICE_LEVELS = 200;
+
+  public static void main(String[] args) {
+    int orderCount =
+      (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_ORDER_COUNT;
+    int agentCount =
+      (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_AGENT_COUNT;
+
+    System.out.println("Orders: " + orderCount + ", agents: " + agentCount);
+    Simulation simulation = createSimulation();
+    int buyPrice = simulation.getParameters().buyPrice;
+    measure("objects", new MatchingEngine(simulation,
+      new ObjectOrderBookStore(buyPrice, false)), orderCount, agentCount);
+    measure("arrays", new MatchingEngine(createSimulation(),
+      new ArrayOrderBookStore(buyPrice)), orderCount, agentCount);
+  }
+
+  /**
+   * @return A simulation in which nothing is logged and no trades are made
+   *         while the book is filled.
+   */
+  private static Simulation createSimulation() {
+    Parameters parameters = new Parameters();
+    parameters.testing = true;
+    parameters.showGui = false;
+    parameters.buyPrice = 10000;
+    Settings settings = new Settings(new RunOptions(), 0, null, null, null);
+    return new Simulation(settings, parameters);
+  }
+
+  /**
+   * Fills the order book of a matching engine with resting orders and prints
+   * the heap memory used per order.
+   * 
+   * @param name
+   *          Name of the order store to print.
+   * @param matchingEngine
+   *          An empty matching engine.
+   * @param orderCount
+   *          Number of orders to create.
+   * @param agentCount
+   *          Number of agents to create the orders for.
+   */
+  private static void measure(String name, MatchingEngine matchingEngine,
+    int orderCount, int agentCount) {
+    Agent[] agents = new Agent[agentCount];
+    for (int i = 0; i < agentCount; i++) {
+      agents[i] = new Agent(matchingEngine, "Benchmark") {
+        @Override
+        void act() {
+        }
+      };
+    }
+
+    int buyPrice = matchingEngine.getSimulation().getParameters().buyPrice;
+    long before = usedMemory();
+    for (int i = 0; i < orderCount; i++) {
+      // Buy orders below the starting price and sell orders above it, so
+      // that none of them trade.
+      boolean buyOrder = (i & 1) == 0;
+      int ticks = 1 + (i >> 1) % PRICE_LEVELS;
+      int price = buyPrice + (buyOrder ? -ticks : ticks) * Agent.TICK_SIZE;
+      agents[i % agentCount].createNewOrder(price, 1 + i % 10, buyOrder);
+    }
+    long after = usedMemory();
+
+    System.out.printf("%-8s %8.1f bytes/order%n", name, (after - before)
+      / (double) orderCount);
+    // Keep the engine reachable until after the measurement.
+    if (matchingEngine.getAllocatedOrderCount() < orderCount) {
+      System.err.println("Error: Not all orders were stored.");
+      System.exit(1);
+    }
+  }
+
+  /**
+   * @return The number of bytes of heap in use after garbage collection.
+   */
+  private static long usedMemory() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+      try {
+        Thread.sleep(50);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
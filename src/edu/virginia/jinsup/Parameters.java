@@ -3,90 +3,134 @@ package edu.virginia.jinsup;
 import java.util.ArrayList;
 
 /**
- * Holds all parameters required for the simulation and provides the parameters
- * to the rest of the simulation.
+ * Holds all parameters required for a simulation and provides the parameters
+ * to the rest of the simulation. Each simulation has its own Parameters, so
+ * several simulations with different configurations can run at once.
  */
 public class Parameters {
 
   // Overall simulation parameters
   // Price must be in CENTS and a multiple of 25.
-  public static int buyPrice;
-  public static long startTime;
-  public static long endTime;
-  public static long tradeTime;
-  public static boolean testing;
-  public static boolean showGui;
+  public int buyPrice;
+  public long startTime;
+  public long endTime;
+  public long tradeTime;
+  public boolean testing;
+  public boolean showGui;
 
   // Agent counts
-  public static int fundCount;
-  public static int marketMakerCount;
-  public static int opporStratCount;
-  public static int hftCount;
-  public static int smallTraderCount;
-  public static int intelligentAgentCount;
+  public int fundCount;
+  public int marketMakerCount;
+  public int opporStratCount;
+  public int hftCount;
+  public int smallTraderCount;
+  public int intelligentAgentCount;
 
   // Poisson arrival rates
-  public static double fundamentalArrivalRate;
-  public static double marketMakerArrivalRate;
-  public static double opporStratArrivalRate;
-  public static double hftArrivalRate;
-  public static double smallTraderArrivalRate;
+  public double fundamentalArrivalRate;
+  public double marketMakerArrivalRate;
+  public double opporStratArrivalRate;
+  public double hftArrivalRate;
+  public double smallTraderArrivalRate;
 
   // Poisson cancel rates
-  public static double fundamentalCancelRate;
-  public static double marketMakerCancelRate;
-  public static double opporStratCancelRate;
-  public static double hftCancelRate;
-  public static double smallTraderCancelRate;
+  public double fundamentalCancelRate;
+  public double marketMakerCancelRate;
+  public double opporStratCancelRate;
+  public double hftCancelRate;
+  public double smallTraderCancelRate;
 
   // Poisson Order size probabilities
-  public static ArrayList<Double> fundamentalOrderSizeProbabilities =
-    new ArrayList<Double>();
-  public static ArrayList<Double> marketMakerOrderSizeProbabilities =
-    new ArrayList<Double>();
-  public static ArrayList<Double> opporStratOrderSizeProbabilities =
-    new ArrayList<Double>();
-  public static ArrayList<Double> hftOrderSizeProbabilities =
-    new ArrayList<Double>();
-  public static ArrayList<Double> smallTraderOrderSizeProbabilities =
-    new ArrayList<Double>();
+  public AliasTable fundamentalOrderSizeProbabilities;
+  public AliasTable marketMakerOrderSizeProbabilities;
+  public AliasTable opporStratOrderSizeProbabilities;
+  public AliasTable hftOrderSizeProbabilities;
+  public AliasTable smallTraderOrderSizeProbabilities;
 
   // Poisson tick level probabilities
-  public static ArrayList<Double> fundamentalTickProbabilities =
-    new ArrayList<Double>();
-  public static ArrayList<Double> marketMakerTickProbabilities =
-    new ArrayList<Double>();
-  public static ArrayList<Double> opporStratTickProbabilities =
-    new ArrayList<Double>();
-  public static ArrayList<Double> hftTickProbabilities =
-    new ArrayList<Double>();
-  public static ArrayList<Double> smallTraderTickProbabilities =
-    new ArrayList<Double>();
+  public AliasTable fundamentalTickProbabilities;
+  public AliasTable marketMakerTickProbabilities;
+  public AliasTable opporStratTickProbabilities;
+  public AliasTable hftTickProbabilities;
+  public AliasTable smallTraderTickProbabilities;
 
   // Inventory Limits
-  public static int marketMakerInventoryLimit;
-  public static int opporStratInventoryLimit;
-  public static int hftInventoryLimit;
-  public static int intelligentAgentInventoryLimit;
+  public int marketMakerInventoryLimit;
+  public int opporStratInventoryLimit;
+  public int hftInventoryLimit;
+  public int intelligentAgentInventoryLimit;
 
   // OS parameters
-  public static int opporStratNewsFreq;
-  public static double initialBuyProbability;
-  public static double minBuyProbability;
-  public static double maxBuyProbability;
-  public static double lowerUniformBound;
-  public static double upperUniformBound;
+  public int opporStratNewsFreq;
+  public double initialBuyProbability;
+  public double minBuyProbability;
+  public double maxBuyProbability;
+  public double lowerUniformBound;
+  public double upperUniformBound;
 
   // IA parameters
-  public static int intelligentAgentThreshold;
-  public static ArrayList<Integer> intelligentAgentDelays;
-  public static int intelligentAgentLogFreq;
-  public static boolean intelligentAgentThresholdEnable;
-  public static int halfTickWidth;
-  public static int orderSize;
-  public static int actInterval;
+  public int intelligentAgentThreshold;
+  public ArrayList<Integer> intelligentAgentDelays;
+  public int intelligentAgentLogFreq;
+  public boolean intelligentAgentThresholdEnable;
+  public int halfTickWidth;
+  public int orderSize;
+  public int actInterval;
 
-  public static boolean checkProbabilitiesList(ArrayList<Double> listToCheck) {
+  /**
+   * Loads the parameters of a simulation from a configuration file, using the
+   * parser that matches the file's extension.
+   * 
+   * @param configPath
+   *          Path to an XML or JSON configuration file.
+   * @return The parameters read from the file.
+   */
+  public static Parameters load(String configPath) {
+    Parameters parameters = null;
+    if (configPath.substring(configPath.length() - 3).equals("xml")) {
+      parameters = XMLParser.loadParameters(configPath);
+    } else if (configPath.substring(configPath.length() - 4).equals("json")) {
+      parameters = JSONParser.loadParameters(configPath);
+    } else {
+      throw new IllegalArgumentException(
+        "Configuration file must be in either XML or JSON format!"
+          + "\nSee the wiki for more details and examples.");
+    }
+    parameters.endTime = (parameters.startTime + parameters.tradeTime);
+    return parameters;
+  }
+
+  /**
+   * Builds the table of a list of probabilities read from a configuration file.
+   * Throws an IllegalArgumentException if the probabilities are not a
+   * distribution.
+   * 
+   * @param name
+   *          Name of the list in the configuration file, used in the error
+   *          message.
+   * @param probabilities
+   *          The probabilities.
+   * @return The table to draw from.
+   */
+  public static AliasTable createProbabilityTable(String name,
+    double[] probabilities) {
+    if (probabilities.length == 0) {
+      throw new IllegalArgumentException(name + " has no probabilities.");
+    }
+    for (double probability : probabilities) {
+      if (probability < 0 || Double.isNaN(probability)) {
+        throw new IllegalArgumentException(name
+          + " has a probability that is not a number of at least 0.");
+      }
+    }
+    if (!checkProbabilitiesList(probabilities)) {
+      throw new IllegalArgumentException("Probabilities of " + name
+        + " do not add up close enough to 1.0.");
+    }
+    return new AliasTable(probabilities);
+  }
+
+  public static boolean checkProbabilitiesList(double[] listToCheck) {
     double sum = 0.0;
     for (double i : listToCheck) {
       sum += i;
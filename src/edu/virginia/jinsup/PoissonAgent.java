@@ -1,11 +1,14 @@
 package edu.virginia.jinsup;
 
-import java.util.ArrayList;
-
 import org.apache.commons.math3.distribution.ExponentialDistribution;
 
 /**
  * Agent that implements a poisson trading distribution.
+ * 
+ * The PoissonAgentStore runs poisson traders without an object of their own,
+ * so each type decides on its orders in a static makeOrder() method that both
+ * the agent class and the store call, and this class has the static helpers
+ * that draw their orders and act times.
  */
 public abstract class PoissonAgent extends Agent {
 
@@ -20,12 +23,14 @@ public abstract class PoissonAgent extends Agent {
   private final double lambdaCancel;
 
   /**
-   * Exponential distribution with mean 1 / lambdaOrder.
+   * Exponential distribution with mean 1 / lambdaOrder, or null if the
+   * ExponentialSampler is used instead.
    */
   private final ExponentialDistribution orderDist;
 
   /**
-   * Exponential distribution with mean 1 / lambdaCancel.
+   * Exponential distribution with mean 1 / lambdaCancel, or null if the
+   * ExponentialSampler is used instead.
    */
   private final ExponentialDistribution cancelDist;
 
@@ -48,12 +53,8 @@ public abstract class PoissonAgent extends Agent {
     this.lambdaOrder = lambdaOrder * 1000;
     this.lambdaCancel = lambdaCancel * 1000;
 
-    this.orderDist =
-      new ExponentialDistribution(JinSup.randGen, 1 / this.lambdaOrder,
-        ExponentialDistribution.DEFAULT_INVERSE_ABSOLUTE_ACCURACY);
-    this.cancelDist =
-      new ExponentialDistribution(JinSup.randGen, 1 / this.lambdaCancel,
-        ExponentialDistribution.DEFAULT_INVERSE_ABSOLUTE_ACCURACY);
+    this.orderDist = createDistribution(this, this.lambdaOrder);
+    this.cancelDist = createDistribution(this, this.lambdaCancel);
 
     // set agents to create an order before canceling one
     setNextAction(Action.ORDER);
@@ -61,8 +62,28 @@ public abstract class PoissonAgent extends Agent {
 
     // no need for poisson determined act times for initial actions
     super.setNextOrderTime(initialActTime);
-    super.setNextCancelTime((long) (getStartupTime() + 1.0 - this.lambdaCancel
-      * (cancelDist.sample() - 1.0)));
+    super.setNextCancelTime(nextTime(this, getStartupTime(), this.lambdaCancel,
+      cancelDist));
+  }
+
+  /**
+   * Constructs a poisson trader that is a member of a PoissonAgentGroup (can
+   * only be called from a subclass). The group decides when the member orders
+   * and cancels, so the member keeps no act times of its own and is never
+   * scheduled.
+   * 
+   * @param matchEng
+   *          Matching engine of simulation.
+   * @param randomStream
+   *          Stream of random numbers of the group.
+   */
+  public PoissonAgent(MatchingEngine matchEng, String name,
+    RandomStream randomStream) {
+    super(matchEng, name, randomStream);
+    this.lambdaOrder = 0;
+    this.lambdaCancel = 0;
+    this.orderDist = null;
+    this.cancelDist = null;
   }
 
   /**
@@ -76,9 +97,7 @@ public abstract class PoissonAgent extends Agent {
     switch (getNextAction()) {
       case CANCEL:
         // cancel the oldest order, if there are any available
-        if (agentHasOrders()) {
-          cancelOrder(getOldestOrder());
-        }
+        cancelOldestOrder();
         setNextCancelTime(getNextCancelTime());
         break;
       case ORDER:
@@ -90,9 +109,7 @@ public abstract class PoissonAgent extends Agent {
           + "  properly initialized?");
         break;
       default:
-        System.err.println("Fatal Error: Undefined action enum type...exiting");
-        System.exit(1);
-        break;
+        throw new IllegalStateException("Undefined action enum type.");
     }
 
     // make sure that both actions do not occur at the same time step
@@ -121,8 +138,8 @@ public abstract class PoissonAgent extends Agent {
    */
   @Override
   protected void setNextOrderTime(long currOrderTime) {
-    super.setNextOrderTime((long) (currOrderTime + 1.0 - lambdaOrder
-      * (orderDist.sample() - 1.0)));
+    super.setNextOrderTime(nextTime(this, currOrderTime, lambdaOrder,
+      orderDist));
   }
 
   /**
@@ -133,78 +150,162 @@ public abstract class PoissonAgent extends Agent {
    */
   @Override
   protected void setNextCancelTime(long currCancelTime) {
-    super.setNextCancelTime((long) (currCancelTime + 1.0 - lambdaCancel
-      * (cancelDist.sample() - 1.0)));
+    super.setNextCancelTime(nextTime(this, currCancelTime, lambdaCancel,
+      cancelDist));
   }
 
   /**
    * Manages the probabilities of creating orders. Implementations will differ
-   * depending on type of agent.
+   * depending on type of agent, and call the static makeOrder() of their
+   * class.
    */
   abstract void makeOrder();
 
   /**
-   * Deals with order creation given a list of probabilities. *** The first
-   * probability supplied must be the probability of creating a market order
-   * ***. See wiki for more details.
+   * Creates the distribution that the times between actions of a poisson
+   * trader are drawn from.
    * 
+   * @param agent
+   *          The agent whose random numbers to draw from: the trader, or the
+   *          PoissonAgentStore it belongs to.
+   * @param lambda
+   *          Mean time between actions, in milliseconds.
+   * @return Exponential distribution with mean 1 / lambda, or null if the
+   *         ExponentialSampler is used instead.
+   */
+  static ExponentialDistribution createDistribution(Agent agent,
+    double lambda) {
+    if (agent.getSimulation().isZigguratSampler()) {
+      return null;
+    }
+    return new ExponentialDistribution(agent.getRandomGenerator(),
+      1 / lambda, ExponentialDistribution.DEFAULT_INVERSE_ABSOLUTE_ACCURACY);
+  }
+
+  /**
+   * Calculates the next order or cancel time of a poisson trader.
+   * 
+   * @param agent
+   *          The agent whose random numbers to draw from.
+   * @param current
+   *          The current order or cancel time.
+   * @param lambda
+   *          Mean time between actions of that kind, in milliseconds.
+   * @param dist
+   *          The distribution from createDistribution() for lambda.
+   * @return The next time.
+   */
+  static long nextTime(Agent agent, long current, double lambda,
+    ExponentialDistribution dist) {
+    double sample =
+      (dist == null) ? ExponentialSampler.sample(agent.getRandomGenerator())
+        / lambda : dist.sample();
+    return (long) (current + 1.0 - lambda * (sample - 1.0));
+  }
+
+  /**
+   * Checks the inventory of a trader with an inventory limit, and if it has
+   * broken the limit, cancels its orders on the side it should stop trading
+   * on.
+   * 
+   * @param agent
+   *          The trader, or the PoissonAgentStore it belongs to.
+   * @param agentID
+   *          ID of the trader.
+   * @param inventory
+   *          The number of shares the trader has.
+   * @param inventoryLimit
+   *          The inventory limit of the trader.
+   * @param overLimit
+   *          True if the trader broke the limit on its last order.
+   * @return The flags WILL_BUY and OVER_LIMIT of Agent.checkInventory().
+   */
+  static int limitInventory(Agent agent, long agentID, int inventory,
+    int inventoryLimit, boolean overLimit) {
+    int results = checkInventory(inventory, inventoryLimit, overLimit);
+    if ((results & OVER_LIMIT) != 0) {
+      if ((results & WILL_BUY) != 0) {
+        agent.getMatchingEngine().cancelAllSellOrders(agentID);
+      } else {
+        agent.getMatchingEngine().cancelAllBuyOrders(agentID);
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Chooses the side of an order from the share of the best prices or
+   * quantities that is on the buy side, as market makers and HFTs do.
+   * 
+   * @param agent
+   *          The agent whose random numbers to draw from.
+   * @param factor
+   *          The share on the buy side.
+   * @param willBuy
+   *          The side to keep if the share is 0.9 or more.
+   * @return True to buy, false to sell.
+   */
+  static boolean chooseSide(Agent agent, double factor, boolean willBuy) {
+    if (factor < 0.9) {
+      return 10 * agent.getRandom().nextFloat() < ((int) (factor * 10 + 1));
+    }
+    return willBuy;
+  }
+
+  /**
+   * Deals with order creation given tables of probabilities: draws the size
+   * of the order and how many ticks from the last trade price it is. *** The
+   * first tick probability must be the probability of creating a market
+   * order ***. See wiki for more details.
+   * 
+   * @param agent
+   *          The trader, or the PoissonAgentStore it belongs to.
+   * @param agentID
+   *          ID of the trader.
    * @param isBuying
    *          True if agent is issuing a buy order; false if issuing a sell
    *          order.
-   * @param quantity
-   *          Number of shares to issue order for.
-   * @param probabilities
+   * @param sizeProbabilities
+   *          Probabilities of creating an order of a certain quantity. The
+   *          probabilities must be listed in ascending order with respect to
+   *          the order quantity, e.g. P[Q=1], P[Q=2], etc. See PT Extension
+   *          page for more details.
+   * @param tickProbabilities
    *          Probabilities of creating an order for a certain tick from the
    *          last trade price. The probabilities must be listed in ascending
    *          order with respect to the number of ticks of the last trade price,
    *          e.g. P[1 tick], P[2 tick], etc.
    */
-  protected void createPoissonOrder(boolean isBuying, int quantity,
-    ArrayList<Double> probabilities) {
-    double probability = JinSup.rand.nextDouble();
-
-    if (probability < probabilities.get(0)) {
+  static void placeOrder(Agent agent, long agentID, boolean isBuying,
+    AliasTable sizeProbabilities, AliasTable tickProbabilities) {
+    int quantity = drawIndex(agent, sizeProbabilities) + 1;
+    int ticks = drawIndex(agent, tickProbabilities);
+    if (ticks == 0) {
       // create a market order
-      createMarketOrder(quantity, isBuying);
+      agent.getMatchingEngine().tradeMarketOrder(agentID, quantity, isBuying);
       return;
     }
-
-    double cumulativeProb = probabilities.get(0) + probabilities.get(1);
-    for (int i = 1; i < probabilities.size(); ++i) {
-      if (probability < cumulativeProb) {
-        // create a limit order; if the agent is buying, then as the tick
-        // increases, the lower the buy price
-        createNewOrder(getLastTradePrice()
-          - ((isBuying ? 1 : -1) * TICK_SIZE * i), quantity, isBuying);
-        return;
-      }
-      cumulativeProb += probabilities.get(i + 1);
-    }
+    // create a limit order; if the agent is buying, then as the tick
+    // increases, the lower the buy price
+    agent.getMatchingEngine().createOrder(agentID,
+      agent.getLastTradePrice() - ((isBuying ? 1 : -1) * TICK_SIZE * ticks),
+      quantity, isBuying);
   }
 
   /**
-   * Calculates the probability of issuing an order for a certain quantity. See
-   * PT Extension page for more details.
+   * Draws an index from a table of probabilities with the sampler chosen in
+   * the settings.
    * 
+   * @param agent
+   *          The agent whose random numbers to draw from.
    * @param probabilities
-   *          Probabilities of creating an order of a certain quantity. The
-   *          probabilities must be listed in ascending order with respect to
-   *          the order quantity, e.g. P[Q=1], P[Q=2], etc.
-   * @return The quantity to issue an order for.
-   */
-  protected int getOrderSize(ArrayList<Double> probabilities) {
-    double probability = JinSup.rand.nextDouble();
-    double cumulativeProb = 0;
-    int i = 0;
-    do {
-      cumulativeProb += probabilities.get(i);
-      if (probability < cumulativeProb) {
-        return i + 1;
-      }
-      ++i;
-    } while (i < probabilities.size());
-    System.err
-      .println("Order size probabilites do not add up to 1.0 for poisson agent");
-    return 0;
+   *          The table to draw from.
+   * @return The index.
+   */
+  private static int drawIndex(Agent agent, AliasTable probabilities) {
+    if (agent.getSimulation().isAliasSampler()) {
+      return probabilities.sample(agent.getRandom());
+    }
+    return probabilities.scan(agent.getRandom());
   }
 }
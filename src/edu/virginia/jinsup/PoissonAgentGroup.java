@@ -0,0 +1,182 @@
+package edu.virginia.jinsup;
+
+import java.util.ArrayList;
+
+import org.apache.commons.math3.distribution.ExponentialDistribution;
+
+/**
+ * Acts for a whole population of statistically identical poisson traders, so
+ * that the Controller schedules one agent instead of every member. Merging the
+ * order times of many independent members gives a poisson process whose rate
+ * is the sum of their rates, and likewise for the cancel times. The group
+ * draws the times of these two merged processes and hands each order or
+ * cancellation to a member chosen uniformly at random.
+ * 
+ * The members still have their own IDs, inventories and orders in the
+ * matching engine, but no act times. They draw their random numbers from the
+ * stream of the group.
+ */
+public class PoissonAgentGroup extends Agent {
+
+  /**
+   * The members of the group.
+   */
+  private final ArrayList<PoissonAgent> members;
+
+  /**
+   * Mean time between orders of one member, in milliseconds.
+   */
+  private final double lambdaOrder;
+
+  /**
+   * Mean time between cancellations of one member, in milliseconds.
+   */
+  private final double lambdaCancel;
+
+  /**
+   * Exponential distribution with mean 1, or null if the ExponentialSampler is
+   * used instead.
+   */
+  private final ExponentialDistribution unitDist;
+
+  /**
+   * Time of the next order of the group, in fractional milliseconds so that
+   * several orders can fall in the same millisecond.
+   */
+  private double orderInstant;
+
+  /**
+   * Time of the next cancellation of the group, in fractional milliseconds.
+   */
+  private double cancelInstant;
+
+  /**
+   * Creates a group without members. Add the members with addMember() and
+   * then call start() before scheduling the group.
+   * 
+   * @param matchEng
+   *          Matching engine of the simulation.
+   * @param lambdaOrder
+   *          Mean time between orders of one member, in seconds.
+   * @param lambdaCancel
+   *          Mean time between cancellations of one member, in seconds.
+   */
+  public PoissonAgentGroup(MatchingEngine matchEng, double lambdaOrder,
+    double lambdaCancel) {
+    super(matchEng, "PoissonAgentGroup");
+    members = new ArrayList<PoissonAgent>();
+    this.lambdaOrder = lambdaOrder * 1000;
+    this.lambdaCancel = lambdaCancel * 1000;
+    if (getSimulation().isZigguratSampler()) {
+      unitDist = null;
+    } else {
+      unitDist =
+        new ExponentialDistribution(getRandomGenerator(), 1.0,
+          ExponentialDistribution.DEFAULT_INVERSE_ABSOLUTE_ACCURACY);
+    }
+  }
+
+  /**
+   * @return The stream of random numbers that members of the group should
+   *         draw from.
+   */
+  public RandomStream getMemberStream() {
+    return getRandomStream();
+  }
+
+  /**
+   * @param member
+   *          A poisson trader created with the stream of the group.
+   */
+  public void addMember(PoissonAgent member) {
+    members.add(member);
+  }
+
+  /**
+   * @return The number of members of the group.
+   */
+  public int getMemberCount() {
+    return members.size();
+  }
+
+  /**
+   * Draws the first order and cancel times. Like single poisson traders, each
+   * member places its first order at a uniformly random time in the startup
+   * period, and first cancels one mean time between cancellations after the
+   * startup period.
+   */
+  public void start() {
+    orderInstant = nextOrderInstant(0);
+    cancelInstant =
+      nextInstant(getStartupTime() + lambdaCancel, lambdaCancel);
+    chooseNextAction();
+  }
+
+  /**
+   * Lets a random member order or cancel its oldest order, whichever comes
+   * first, and draws the time of the next event of that kind. Keeps acting
+   * while the next event falls in the same millisecond.
+   */
+  @Override
+  void act() {
+    long now = getNextActTime();
+    PoissonAgent member = members.get(getRandom().nextInt(members.size()));
+    if (getNextAction() == Action.ORDER) {
+      member.makeOrder();
+      orderInstant = nextOrderInstant(orderInstant);
+    } else {
+      member.cancelOldestOrder();
+      cancelInstant = nextInstant(cancelInstant, lambdaCancel);
+    }
+    chooseNextAction();
+    setWillAct(getNextActTime() == now);
+  }
+
+  /**
+   * Sets the next action to the order or cancellation that comes first.
+   */
+  private void chooseNextAction() {
+    if (cancelInstant < orderInstant) {
+      setNextAction(Action.CANCEL);
+      setNextActTime((long) cancelInstant);
+    } else {
+      setNextAction(Action.ORDER);
+      setNextActTime((long) orderInstant);
+    }
+  }
+
+  /**
+   * Draws the time of the next order. During the startup period the share of
+   * members that have started ordering grows linearly with time, so orders are
+   * drawn at the full rate and each is kept with the probability that a member
+   * has started by then.
+   * 
+   * @param instant
+   *          Time of the previous order, in fractional milliseconds.
+   * @return Time of the next order, in fractional milliseconds.
+   */
+  private double nextOrderInstant(double instant) {
+    long startupTime = getStartupTime();
+    do {
+      instant = nextInstant(instant, lambdaOrder);
+    } while (instant < startupTime
+      && getRandom().nextDouble() * startupTime >= instant);
+    return instant;
+  }
+
+  /**
+   * Draws the time of the next event of a merged process.
+   * 
+   * @param instant
+   *          Time of the previous event, in fractional milliseconds.
+   * @param lambda
+   *          Mean time between events of one member, in milliseconds.
+   * @return Time of the next event, in fractional milliseconds.
+   */
+  private double nextInstant(double instant, double lambda) {
+    double unit =
+      (unitDist == null) ? ExponentialSampler.sample(getRandomGenerator())
+        : unitDist.sample();
+    return instant + unit * lambda / members.size();
+  }
+}
@@ -0,0 +1,366 @@
+package edu.virginia.jinsup;
+
+import java.util.Arrays;
+
+import org.apache.commons.math3.distribution.ExponentialDistribution;
+
+/**
+ * Holds any number of poisson traders of every type in primitive arrays, so
+ * that a trader takes a few dozen bytes instead of an Agent object with its
+ * own random number generator and distributions. Each trader has its own
+ * agent ID, inventory, orders and order and cancel times, which are drawn by
+ * the same PoissonAgent helpers as those of a PoissonAgent. When a trader
+ * orders, the static makeOrder() of the class of its type decides what it
+ * does.
+ * 
+ * The store is scheduled as a single agent that acts whenever one of its
+ * traders is due. The traders draw their random numbers from the stream of
+ * the store.
+ */
+public class PoissonAgentStore extends Agent {
+
+  /**
+   * Type code of fundamental buyers.
+   */
+  public static final int FUND_BUYER = 0;
+
+  /**
+   * Type code of fundamental sellers.
+   */
+  public static final int FUND_SELLER = 1;
+
+  /**
+   * Type code of market makers.
+   */
+  public static final int MARKET_MAKER = 2;
+
+  /**
+   * Type code of opportunistic traders.
+   */
+  public static final int OPPOR_STRAT = 3;
+
+  /**
+   * Type code of high frequency traders.
+   */
+  public static final int HFT = 4;
+
+  /**
+   * Type code of small traders.
+   */
+  public static final int SMALL_TRADER = 5;
+
+  /**
+   * Name of each type, indexed by type code, as logged by the matching
+   * engine.
+   */
+  private static final String[] TYPE_NAMES = {"FundBuyerPoisson",
+    "FundSellerPoisson", "MarketMakerPoisson", "OpporStratPoisson",
+    "HFTPoisson", "SmallTrader"};
+
+  /**
+   * Mean time between orders of a trader of each type, in milliseconds.
+   */
+  private final double[] lambdaOrders;
+
+  /**
+   * Mean time between cancellations of a trader of each type, in
+   * milliseconds.
+   */
+  private final double[] lambdaCancels;
+
+  /**
+   * Distribution of the times between orders of each type, or nulls if the
+   * ExponentialSampler is used instead.
+   */
+  private final ExponentialDistribution[] orderDists;
+
+  /**
+   * Distribution of the times between cancellations of each type, or nulls if
+   * the ExponentialSampler is used instead.
+   */
+  private final ExponentialDistribution[] cancelDists;
+
+  /**
+   * Agent ID of the first trader. The traders have consecutive IDs.
+   */
+  private long firstID;
+
+  /**
+   * Number of traders.
+   */
+  private int count;
+
+  /**
+   * Type code of each trader.
+   */
+  private byte[] types;
+
+  /**
+   * Next order time of each trader.
+   */
+  private long[] orderTimes;
+
+  /**
+   * Next cancel time of each trader.
+   */
+  private long[] cancelTimes;
+
+  /**
+   * Inventory of each trader.
+   */
+  private int[] inventories;
+
+  /**
+   * Whether each trader broke its inventory limit on its last order.
+   */
+  private boolean[] overLimits;
+
+  /**
+   * Queue of the traders ordered by their next act time.
+   */
+  private final TimeQueue queue;
+
+  /**
+   * Traders that are due at the current time.
+   */
+  private int[] due;
+
+  /**
+   * Creates a store without traders.
+   * 
+   * @param matchEng
+   *          Matching engine of the simulation.
+   * @param capacity
+   *          Number of traders to make room for.
+   */
+  public PoissonAgentStore(MatchingEngine matchEng, int capacity) {
+    super(matchEng, "PoissonAgentStore");
+    Parameters parameters = getParameters();
+    lambdaOrders = new double[TYPE_NAMES.length];
+    lambdaCancels = new double[TYPE_NAMES.length];
+    orderDists = new ExponentialDistribution[TYPE_NAMES.length];
+    cancelDists = new ExponentialDistribution[TYPE_NAMES.length];
+    // The same rates as the Controller gives the agent classes.
+    setType(FUND_BUYER, (int) parameters.fundamentalArrivalRate,
+      (int) parameters.fundamentalCancelRate);
+    setType(FUND_SELLER, (int) parameters.fundamentalArrivalRate,
+      (int) parameters.fundamentalCancelRate);
+    setType(MARKET_MAKER, (int) parameters.marketMakerArrivalRate,
+      (int) parameters.marketMakerCancelRate);
+    setType(OPPOR_STRAT, (int) parameters.opporStratArrivalRate,
+      (int) parameters.opporStratCancelRate);
+    setType(HFT, parameters.hftArrivalRate, parameters.hftCancelRate);
+    setType(SMALL_TRADER, (int) parameters.smallTraderArrivalRate,
+      (int) parameters.smallTraderCancelRate);
+
+    capacity = Math.max(capacity, 1);
+    firstID = -1;
+    count = 0;
+    types = new byte[capacity];
+    orderTimes = new long[capacity];
+    cancelTimes = new long[capacity];
+    inventories = new int[capacity];
+    overLimits = new boolean[capacity];
+    queue = new TimeQueue(capacity);
+    due = new int[16];
+    setNextActTime(Long.MAX_VALUE);
+  }
+
+  /**
+   * Sets the rates of a type of trader.
+   * 
+   * @param type
+   *          Type code.
+   * @param lambdaOrder
+   *          Mean time between orders, in seconds.
+   * @param lambdaCancel
+   *          Mean time between cancellations, in seconds.
+   */
+  private void setType(int type, double lambdaOrder, double lambdaCancel) {
+    lambdaOrders[type] = lambdaOrder * 1000;
+    lambdaCancels[type] = lambdaCancel * 1000;
+    orderDists[type] =
+      PoissonAgent.createDistribution(this, lambdaOrders[type]);
+    cancelDists[type] =
+      PoissonAgent.createDistribution(this, lambdaCancels[type]);
+  }
+
+  /**
+   * Adds a trader with a new agent ID. No other agent may be created while
+   * traders are added, so that the traders get consecutive IDs.
+   * 
+   * @param type
+   *          Type code of the trader.
+   * @param initialActTime
+   *          Time of the trader's first order.
+   */
+  public void addAgent(int type, long initialActTime) {
+    long id = getSimulation().takeNextAgentID();
+    if (count == 0) {
+      firstID = id;
+    } else if (id != firstID + count) {
+      throw new IllegalStateException("Agent IDs of the PoissonAgentStore "
+        + "are not consecutive.");
+    }
+    getMatchingEngine().addNewAgent(id, this, TYPE_NAMES[type]);
+    if (count == types.length) {
+      int length = count * 2;
+      types = Arrays.copyOf(types, length);
+      orderTimes = Arrays.copyOf(orderTimes, length);
+      cancelTimes = Arrays.copyOf(cancelTimes, length);
+      inventories = Arrays.copyOf(inventories, length);
+      overLimits = Arrays.copyOf(overLimits, length);
+    }
+    int trader = count++;
+    types[trader] = (byte) type;
+    // Like a PoissonAgent, order first and start cancelling after startup.
+    orderTimes[trader] = initialActTime;
+    cancelTimes[trader] = nextCancelTime(type, getStartupTime());
+    inventories[trader] = 0;
+    overLimits[trader] = false;
+    queue.add(trader, initialActTime);
+    setNextActTime(queue.getFirstTime());
+  }
+
+  /**
+   * @return The number of traders.
+   */
+  public int getAgentCount() {
+    return count;
+  }
+
+  /**
+   * @param agentID
+   *          Agent ID of a trader in the store.
+   * @return The inventory of the trader.
+   */
+  public int getInventory(long agentID) {
+    return inventories[(int) (agentID - firstID)];
+  }
+
+  @Override
+  public void setLastOrderTraded(long agentID, boolean traded, int volume) {
+    inventories[(int) (agentID - firstID)] += volume;
+  }
+
+  /**
+   * Lets every trader that is due act once, in random order, like the
+   * Controller does with agents that are due at the same time.
+   */
+  @Override
+  void act() {
+    long now = getNextActTime();
+    int dueCount = 0;
+    while (queue.getFirstTime() <= now) {
+      int trader = queue.removeFirst();
+      if (queue.getTime(trader) == now) {
+        if (dueCount == due.length) {
+          due = Arrays.copyOf(due, dueCount * 2);
+        }
+        due[dueCount++] = trader;
+      }
+    }
+    for (int i = dueCount; i > 1; i--) {
+      int j = getRandom().nextInt(i);
+      int tmp = due[i - 1];
+      due[i - 1] = due[j];
+      due[j] = tmp;
+    }
+    for (int i = 0; i < dueCount; i++) {
+      actTrader(due[i], now);
+    }
+    setNextActTime(queue.getFirstTime());
+    setWillAct(false);
+  }
+
+  /**
+   * Performs a trader's next action and queues it for the one after, in the
+   * same way as PoissonAgent.act().
+   * 
+   * @param trader
+   *          Index of the trader.
+   * @param now
+   *          The current time.
+   */
+  private void actTrader(int trader, long now) {
+    int type = types[trader];
+    long oldOrderTime = orderTimes[trader];
+    if (orderTimes[trader] < cancelTimes[trader]) {
+      makeOrder(trader);
+      orderTimes[trader] = nextOrderTime(type, orderTimes[trader]);
+    } else {
+      getMatchingEngine().cancelOldestOrder(firstID + trader);
+      cancelTimes[trader] = nextCancelTime(type, cancelTimes[trader]);
+    }
+    // make sure that both actions do not occur at the same time step
+    while (cancelTimes[trader] == orderTimes[trader]) {
+      orderTimes[trader] = nextOrderTime(type, oldOrderTime);
+    }
+    long actTime = Math.min(orderTimes[trader], cancelTimes[trader]);
+    if (actTime > now) {
+      queue.add(trader, actTime);
+    }
+  }
+
+  /**
+   * Places an order for a trader in the way its type does.
+   * 
+   * @param trader
+   *          Index of the trader.
+   */
+  private void makeOrder(int trader) {
+    long id = firstID + trader;
+    switch (types[trader]) {
+      case FUND_BUYER:
+        FundBuyerPoisson.makeOrder(this, id);
+        break;
+      case FUND_SELLER:
+        FundSellerPoisson.makeOrder(this, id);
+        break;
+      case SMALL_TRADER:
+        SmallTrader.makeOrder(this, id);
+        break;
+      case MARKET_MAKER:
+        overLimits[trader] =
+          MarketMakerPoisson.makeOrder(this, id, inventories[trader],
+            overLimits[trader]);
+        break;
+      case OPPOR_STRAT:
+        overLimits[trader] =
+          OpporStratPoisson.makeOrder(this, id, inventories[trader],
+            overLimits[trader]);
+        break;
+      case HFT:
+        overLimits[trader] =
+          HFTPoisson.makeOrder(this, id, inventories[trader],
+            overLimits[trader]);
+        break;
+      default:
+        throw new IllegalStateException("Undefined agent type.");
+    }
+  }
+
+  /**
+   * @param type
+   *          Type code of a trader.
+   * @param current
+   *          The trader's current order time.
+   * @return The trader's next order time.
+   */
+  private long nextOrderTime(int type, long current) {
+    return PoissonAgent.nextTime(this, current, lambdaOrders[type],
+      orderDists[type]);
+  }
+
+  /**
+   * @param type
+   *          Type code of a trader.
+   * @param current
+   *          The trader's current cancel time.
+   * @return The trader's next cancel time.
+   */
+  private long nextCancelTime(int type, long current) {
+    return PoissonAgent.nextTime(this, current, lambdaCancels[type],
+      cancelDists[type]);
+  }
+}
@@ -0,0 +1,143 @@
+package edu.virginia.jinsup;
+
+/**
+ * All of the resting orders on one side of the order book at a single price.
+ * Orders are kept in a FIFO queue so that the order at the head of the queue
+ * is the one with the highest time priority. The queue is linked through the
+ * orders themselves so that adding and removing an order does not allocate.
+ */
+public class PriceLevel {
+
+  /**
+   * The price (CENTS) of every order in this level.
+   */
+  private final int price;
+
+  /**
+   * The oldest order at this price, i.e. the next one to trade.
+   */
+  private Order head;
+
+  /**
+   * The newest order at this price.
+   */
+  private Order tail;
+
+  /**
+   * Sum of the current quantities of all orders in this level.
+   */
+  private int totalQuantity;
+
+  /**
+   * Number of orders in this level.
+   */
+  private int orderCount;
+
+  /**
+   * Creates an empty price level.
+   * 
+   * @param price
+   *          The price (CENTS) of the orders that will be stored in the level.
+   */
+  public PriceLevel(int price) {
+    this.price = price;
+    head = null;
+    tail = null;
+    totalQuantity = 0;
+    orderCount = 0;
+  }
+
+  /**
+   * @return The price (CENTS) of the orders in this level.
+   */
+  public int getPrice() {
+    return price;
+  }
+
+  /**
+   * @return The order with the highest time priority at this price, or null if
+   *         the level is empty.
+   */
+  public Order getFirst() {
+    return head;
+  }
+
+  /**
+   * @return The sum of the current quantities of all orders at this price.
+   */
+  public int getTotalQuantity() {
+    return totalQuantity;
+  }
+
+  /**
+   * @return The number of orders resting at this price.
+   */
+  public int getOrderCount() {
+    return orderCount;
+  }
+
+  /**
+   * @return True if there are no orders resting at this price.
+   */
+  public boolean isEmpty() {
+    return head == null;
+  }
+
+  /**
+   * Places an order at the back of the queue.
+   * 
+   * @param order
+   *          The order to add. Must have the same price as the level and must
+   *          not already be in a level.
+   */
+  void append(Order order) {
+    order.setLevel(this);
+    order.setPrevInLevel(tail);
+    order.setNextInLevel(null);
+    if (tail == null) {
+      head = order;
+    } else {
+      tail.setNextInLevel(order);
+    }
+    tail = order;
+    totalQuantity += order.getCurrentQuant();
+    orderCount++;
+  }
+
+  /**
+   * Unlinks an order from the queue.
+   * 
+   * @param order
+   *          The order to remove. Must currently be in this level.
+   */
+  void remove(Order order) {
+    Order prev = order.getPrevInLevel();
+    Order next = order.getNextInLevel();
+    if (prev == null) {
+      head = next;
+    } else {
+      prev.setNextInLevel(next);
+    }
+    if (next == null) {
+      tail = prev;
+    } else {
+      next.setPrevInLevel(prev);
+    }
+    order.setLevel(null);
+    order.setPrevInLevel(null);
+    order.setNextInLevel(null);
+    totalQuantity -= order.getCurrentQuant();
+    orderCount--;
+  }
+
+  /**
+   * Updates the total quantity when the quantity of an order in this level
+   * changes. Called by the order itself.
+   * 
+   * @param quantChanged
+   *          New quantity of the order minus its old quantity.
+   */
+  void addQuantity(int quantChanged) {
+    totalQuantity += quantChanged;
+  }
+}
@@ -0,0 +1,25 @@
+package edu.virginia.jinsup;
+
+/**
+ * Destination of the average profits of the intelligent agents, which the
+ * Controller logs every intelligentAgentProfitLogFrequency milliseconds.
+ * The files stay open for the whole run.
+ */
+public interface ProfitLog {
+
+  /**
+   * Logs the average profits of the intelligent agents at a time.
+   * 
+   * @param time
+   *          Time in milliseconds.
+   * @param averageProfits
+   *          Average profit (DOLLARS) of the intelligent agents of each delay,
+   *          in the order of the delays in the parameters.
+   */
+  void logProfits(long time, double[] averageProfits);
+
+  /**
+   * Writes everything logged so far to the log files and closes them.
+   */
+  void close();
+}
@@ -0,0 +1,44 @@
+package edu.virginia.jinsup;
+
+import java.util.Random;
+
+import org.apache.commons.math3.random.RandomGenerator;
+
+/**
+ * A stream of random numbers that a part of the simulation draws from, seen
+ * both as a RandomGenerator, for the distributions of commons-math, and as a
+ * Random. Both views draw from the same underlying generator.
+ */
+public class RandomStream {
+
+  /**
+   * The stream as a RandomGenerator.
+   */
+  private final RandomGenerator randomGenerator;
+
+  /**
+   * The stream as a Random.
+   */
+  private final Random random;
+
+  /**
+   * Creates a stream from two views of the same generator.
+   * 
+   * @param randomGenerator
+   *          The generator as a RandomGenerator.
+   * @param random
+   *          The generator as a Random.
+   */
+  public RandomStream(RandomGenerator randomGenerator, Random random) {
+    this.randomGenerator = randomGenerator;
+    this.random = random;
+  }
+
+  public RandomGenerator getRandomGenerator() {
+    return randomGenerator;
+  }
+
+  public Random getRandom() {
+    return random;
+  }
+}
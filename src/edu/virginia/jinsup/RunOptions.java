@@ -0,0 +1,243 @@
+package edu.virginia.jinsup;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.beust.jcommander.Parameter;
+
+/**
+ * The command-line options that apply to every simulation run, as opposed to
+ * the seed, the log files and the configuration file, which differ from run to
+ * run. JinSup and the SweepRunner both read them through a ParametersDelegate,
+ * and the Settings of each run start out as a copy of them.
+ */
+public class RunOptions {
+
+  // Random
+
+  @Parameter(names = {"--randomGenerator", "-rng"},
+    description = "Random number generation algorithm")
+  private String rng = "mersenne";
+
+  @Parameter(names = {"--rngStreams"},
+    description = "Random number streams: split (one per agent) or shared")
+  private String rngStreams = "split";
+
+  @Parameter(names = {"--exponentialSampler"},
+    description = "How to draw times between actions: ziggurat or commons")
+  private String exponentialSampler = "ziggurat";
+
+  @Parameter(names = {"--discreteSampler"},
+    description = "How to draw order sizes and tick levels: alias or scan")
+  private String discreteSampler = "alias";
+
+  // Agents
+
+  @Parameter(names = {"--poissonAgents"},
+    description = "How to run poisson traders: individual, aggregate (one "
+      + "merged process per type) or compact (one store of arrays)")
+  private String poissonAgents = "individual";
+
+  // Logs
+
+  @Parameter(names = {"--logFormat"},
+    description = "Format of the trade log: csv or binary (smaller, convert "
+      + "with BinaryLogConverter)")
+  private String logFormat = "csv";
+
+  @Parameter(names = {"--logWriter"},
+    description = "Where to format and write the trade log: async (on its own "
+      + "thread) or sync (on the simulation thread)")
+  private String logWriter = "async";
+
+  @Parameter(names = {"--logQueueSize"},
+    description = "Number of messages the async log writer can fall behind by")
+  private int logQueueSize = 65536;
+
+  @Parameter(names = {"--logBackpressure"},
+    description = "What to do when the async log writer falls too far behind: "
+      + "block (wait for it) or drop (skip messages)")
+  private String logBackpressure = "block";
+
+  @Parameter(names = {"--logCompression"},
+    description = "Compression of the trade log: none or gzip")
+  private String logCompression = "none";
+
+  @Parameter(names = {"--logCompressionThreads"},
+    description = "Number of threads to compress the trade log on, shared by "
+      + "every segment and run")
+  private int logCompressionThreads = Runtime.getRuntime()
+    .availableProcessors();
+
+  @Parameter(names = {"--logMessages"},
+    description = "Message types to write to the trade log, separated by "
+      + "commas: 1 (new), 2 (modify), 3 (cancel), 4 (top of book) and/or 105 "
+      + "(trade). Top of book is only written if asked for")
+  private List<String> logMessages = new ArrayList<String>();
+
+  @Parameter(names = {"--logAgentTypes"},
+    description = "Agent types to write to the trade log, separated by commas")
+  private List<String> logAgentTypes = new ArrayList<String>();
+
+  @Parameter(names = {"--logWindows"},
+    description = "Time windows to write to the trade log, as start-end in "
+      + "milliseconds, separated by commas")
+  private List<String> logWindows = new ArrayList<String>();
+
+  @Parameter(names = {"--logSampleRate"},
+    description = "Share of the messages to write to the trade log")
+  private double logSampleRate = 1.0;
+
+  @Parameter(names = {"--logSegmentSeconds"},
+    description = "Start a new trade log segment every this many seconds of "
+      + "simulated time (0: never)")
+  private long logSegmentSeconds = 0;
+
+  @Parameter(names = {"--logSegmentBytes"},
+    description = "Start a new trade log segment when the current one has "
+      + "this many bytes before compression (0: never)")
+  private long logSegmentBytes = 0;
+
+  @Parameter(names = {"--iaProfitFormat"},
+    description = "Format of the IA profit logs: csv or binary")
+  private String iaProfitFormat = "csv";
+
+  @Parameter(names = {"--iaProfitLayout"},
+    description = "Layout of the IA profit logs: separate (a file per delay) "
+      + "or combined (one file for all delays)")
+  private String iaProfitLayout = "separate";
+
+  // Order Storage
+
+  @Parameter(names = {"--orderStore"},
+    description = "How to store orders: objects or arrays (less memory)")
+  private String orderStore = "objects";
+
+  // Debugging
+
+  @Parameter(names = {"--debugOrders"},
+    description = "Check that orders are not used after being released")
+  private boolean debugOrders = false;
+
+  /**
+   * Creates options with default values, to be filled in from the command
+   * line.
+   */
+  public RunOptions() {
+  }
+
+  /**
+   * Creates a copy of a set of options.
+   * 
+   * @param options
+   *          The options to copy.
+   */
+  public RunOptions(RunOptions options) {
+    this.rng = options.rng;
+    this.rngStreams = options.rngStreams;
+    this.exponentialSampler = options.exponentialSampler;
+    this.discreteSampler = options.discreteSampler;
+    this.poissonAgents = options.poissonAgents;
+    this.logFormat = options.logFormat;
+    this.logWriter = options.logWriter;
+    this.logQueueSize = options.logQueueSize;
+    this.logBackpressure = options.logBackpressure;
+    this.logCompression = options.logCompression;
+    this.logCompressionThreads = options.logCompressionThreads;
+    this.logMessages = new ArrayList<String>(options.logMessages);
+    this.logAgentTypes = new ArrayList<String>(options.logAgentTypes);
+    this.logWindows = new ArrayList<String>(options.logWindows);
+    this.logSampleRate = options.logSampleRate;
+    this.logSegmentSeconds = options.logSegmentSeconds;
+    this.logSegmentBytes = options.logSegmentBytes;
+    this.iaProfitFormat = options.iaProfitFormat;
+    this.iaProfitLayout = options.iaProfitLayout;
+    this.orderStore = options.orderStore;
+    this.debugOrders = options.debugOrders;
+  }
+
+  public String getRNG() {
+    return rng;
+  }
+
+  public String getRNGStreams() {
+    return rngStreams;
+  }
+
+  public String getExponentialSampler() {
+    return exponentialSampler;
+  }
+
+  public String getDiscreteSampler() {
+    return discreteSampler;
+  }
+
+  public String getPoissonAgents() {
+    return poissonAgents;
+  }
+
+  public String getLogFormat() {
+    return logFormat;
+  }
+
+  public String getLogWriter() {
+    return logWriter;
+  }
+
+  public int getLogQueueSize() {
+    return logQueueSize;
+  }
+
+  public String getLogBackpressure() {
+    return logBackpressure;
+  }
+
+  public String getLogCompression() {
+    return logCompression;
+  }
+
+  public int getLogCompressionThreads() {
+    return logCompressionThreads;
+  }
+
+  public List<String> getLogMessages() {
+    return logMessages;
+  }
+
+  public List<String> getLogAgentTypes() {
+    return logAgentTypes;
+  }
+
+  public List<String> getLogWindows() {
+    return logWindows;
+  }
+
+  public double getLogSampleRate() {
+    return logSampleRate;
+  }
+
+  public long getLogSegmentSeconds() {
+    return logSegmentSeconds;
+  }
+
+  public long getLogSegmentBytes() {
+    return logSegmentBytes;
+  }
+
+  public String getIAProfitFormat() {
+    return iaProfitFormat;
+  }
+
+  public String getIAProfitLayout() {
+    return iaProfitLayout;
+  }
+
+  public String getOrderStore() {
+    return orderStore;
+  }
+
+  public boolean isDebugOrders() {
+    return debugOrders;
+  }
+
+}
@@ -0,0 +1,303 @@
+package edu.virginia.jinsup;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+
+/**
+ * Trade log split into segment files, each a complete log of its own in the
+ * format of the simulation. A new segment is started every given number of
+ * milliseconds of simulated time, counted from time zero, and/or when the
+ * current segment has reached a given size. Finished segments are closed right
+ * away. Both sides of a trade always go into the same segment.
+ * 
+ * The segments of "log.csv" are named "log-00000.csv", "log-00001.csv", etc.
+ * An index, "log-index.csv", gets a line for every finished segment with its
+ * file, the times of its first and last messages, the ID of the first new
+ * order and the first trade match ID in it (-1 if none), and its number of
+ * messages and bytes before compression. Order IDs and trade match IDs are
+ * given out in increasing order, so the index tells which segment an order was
+ * created in or a trade happened in.
+ */
+public class SegmentedTradeLog implements TradeLog {
+
+  /**
+   * Header line of the index.
+   */
+  private static final String INDEX_HEADER =
+    "Segment, File, Start Time, End Time, First Order ID, "
+      + "First Trade Match ID, Messages, Uncompressed Bytes\n";
+
+  /**
+   * The simulation, which creates the segments.
+   */
+  private final Simulation simulation;
+
+  /**
+   * Path of the log up to where the segment number goes.
+   */
+  private final String prefix;
+
+  /**
+   * Path of the log after where the segment number goes.
+   */
+  private final String suffix;
+
+  /**
+   * Milliseconds of simulated time each segment covers, or 0 if segments are
+   * not split by time.
+   */
+  private final long segmentMillis;
+
+  /**
+   * Size in bytes at which a segment is finished, or 0 if segments are not
+   * split by size.
+   */
+  private final long segmentBytes;
+
+  /**
+   * Names of the agent types, indexed by code, to add to every segment.
+   */
+  private final ArrayList<String> typeNames;
+
+  /**
+   * Writer of the index.
+   */
+  private FileWriter index;
+
+  /**
+   * The current segment, or null if none is open.
+   */
+  private TradeLog segment;
+
+  /**
+   * Number of the current or next segment.
+   */
+  private int segmentNumber;
+
+  /**
+   * File name of the current segment.
+   */
+  private String segmentName;
+
+  /**
+   * Time at which the current segment ends.
+   */
+  private long segmentEnd;
+
+  /**
+   * Times of the first and last messages of the current segment.
+   */
+  private long startTime;
+  private long endTime;
+
+  /**
+   * ID of the first new order and first trade match ID in the current
+   * segment, or -1 if there are none.
+   */
+  private long firstOrderID;
+  private long firstMatchID;
+
+  /**
+   * Number of messages in the current segment.
+   */
+  private long messageCount;
+
+  /**
+   * Number of bytes in the finished segments.
+   */
+  private long finishedSize;
+
+  /**
+   * True if the last message was the aggressive side of a trade, whose
+   * passive side must go into the same segment.
+   */
+  private boolean tradeOpen;
+
+  /**
+   * Creates the index. The first segment is created with the first message.
+   * 
+   * @param simulation
+   *          The simulation, which creates the segments.
+   * @param path
+   *          Path of the log, which the names of the segments and index are
+   *          made from.
+   * @param segmentMillis
+   *          Milliseconds of simulated time each segment should cover, or 0.
+   * @param segmentBytes
+   *          Size in bytes at which a segment should be finished, or 0.
+   */
+  public SegmentedTradeLog(Simulation simulation, String path,
+    long segmentMillis, long segmentBytes) {
+    this.simulation = simulation;
+    this.segmentMillis = segmentMillis;
+    this.segmentBytes = segmentBytes;
+    // Put the segment number before the extensions, e.g. log-00000.csv.gz
+    int nameStart = path.lastIndexOf(File.separatorChar) + 1;
+    int dot = path.indexOf('.', nameStart);
+    if (dot <= nameStart) {
+      dot = path.length();
+    }
+    prefix = path.substring(0, dot) + "-";
+    suffix = path.substring(dot);
+    typeNames = new ArrayList<String>();
+    segment = null;
+    segmentNumber = 0;
+    finishedSize = 0;
+    tradeOpen = false;
+    try {
+      index = new FileWriter(prefix + "index.csv");
+      index.write(INDEX_HEADER);
+      index.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to create log index.", e);
+    }
+  }
+
+  @Override
+  public void addAgentType(int code, String name) {
+    while (typeNames.size() <= code) {
+      typeNames.add(null);
+    }
+    typeNames.set(code, name);
+    if (segment != null) {
+      segment.addAgentType(code, name);
+    }
+  }
+
+  @Override
+  public void logOrder(long time, int bestBid, int bestAsk, long agentID,
+    int agentType, int messageType, boolean buyOrder, long orderID,
+    int originalQuant, int price, boolean market, int leavesQuant) {
+    startMessage(time);
+    segment.logOrder(time, bestBid, bestAsk, agentID, agentType, messageType,
+      buyOrder, orderID, originalQuant, price, market, leavesQuant);
+    if (messageType == 1 && firstOrderID < 0) {
+      firstOrderID = orderID;
+    }
+    tradeOpen = false;
+  }
+
+  @Override
+  public void logTrade(long time, int bestBid, int bestAsk, long agentID,
+    int agentType, boolean buyOrder, long orderID, int originalQuant,
+    int price, boolean market, int leavesQuant, int tradePrice, int volume,
+    boolean aggressor, long matchID) {
+    startMessage(time);
+    segment.logTrade(time, bestBid, bestAsk, agentID, agentType, buyOrder,
+      orderID, originalQuant, price, market, leavesQuant, tradePrice, volume,
+      aggressor, matchID);
+    if (firstMatchID < 0) {
+      firstMatchID = matchID;
+    }
+    tradeOpen = aggressor;
+  }
+
+  /**
+   * Logs the change in the current segment. A change that comes between the
+   * two sides of a trade does not end the segment before the other side.
+   */
+  @Override
+  public void logTopOfBook(long time, int bestBid, int bestAsk) {
+    startMessage(time);
+    segment.logTopOfBook(time, bestBid, bestAsk);
+  }
+
+  @Override
+  public long getSize() {
+    TradeLog current = segment;
+    return finishedSize + ((current == null) ? 0 : current.getSize());
+  }
+
+  @Override
+  public void flush() {
+    if (segment != null) {
+      segment.flush();
+    }
+  }
+
+  @Override
+  public void close() {
+    if (segment != null) {
+      finishSegment();
+    }
+    try {
+      index.close();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to close log index.", e);
+    }
+  }
+
+  /**
+   * Closes the current segment and the index, as close() does.
+   */
+  @Override
+  public void abort() {
+    close();
+  }
+
+  /**
+   * Finishes the current segment if the message does not belong in it, and
+   * starts a new segment if none is open.
+   * 
+   * @param time
+   *          Time of the message.
+   */
+  private void startMessage(long time) {
+    if (segment != null && !tradeOpen
+      && (time >= segmentEnd || (segmentBytes > 0
+        && segment.getSize() >= segmentBytes))) {
+      finishSegment();
+    }
+    if (segment == null) {
+      startSegment(time);
+    }
+    endTime = time;
+    messageCount++;
+  }
+
+  /**
+   * Opens a new segment.
+   * 
+   * @param time
+   *          Time of its first message.
+   */
+  private void startSegment(long time) {
+    String path = prefix + String.format("%05d", segmentNumber) + suffix;
+    segmentName = new File(path).getName();
+    segment = simulation.createTradeLogFile(path);
+    for (int code = 0; code < typeNames.size(); code++) {
+      if (typeNames.get(code) != null) {
+        segment.addAgentType(code, typeNames.get(code));
+      }
+    }
+    segmentEnd =
+      (segmentMillis > 0) ? (time / segmentMillis + 1) * segmentMillis
+        : Long.MAX_VALUE;
+    startTime = time;
+    firstOrderID = -1;
+    firstMatchID = -1;
+    messageCount = 0;
+  }
+
+  /**
+   * Closes the current segment and adds it to the index.
+   */
+  private void finishSegment() {
+    long size = segment.getSize();
+    segment.close();
+    segment = null;
+    finishedSize += size;
+    try {
+      index.write(segmentNumber + "," + segmentName + "," + startTime + ","
+        + endTime + "," + firstOrderID + "," + firstMatchID + ","
+        + messageCount + "," + size + "\n");
+      index.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to update log index.", e);
+    }
+    segmentNumber++;
+  }
+}
@@ -1,69 +1,56 @@
 package edu.virginia.jinsup;
 
-import java.util.Calendar;
-
-import com.beust.jcommander.Parameter;
-
-public class Settings {
-
-  private static Calendar calendar = Calendar.getInstance();
-  private static String timestamp = String.format("%2d%02d%02d-%02d%02d%02d",
-    calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH),
-    calendar.get(Calendar.DAY_OF_MONTH), calendar.get(Calendar.HOUR_OF_DAY),
-    calendar.get(Calendar.MINUTE), calendar.get(Calendar.SECOND));
-
-  // Random
-
-  @Parameter(names = {"--randomGenerator", "-rng"},
-    description = "Random number generation algorithm")
-  private static String rng = "mersenne";
-
-  @Parameter(names = {"--seed"}, description = "PRNG seed")
-  private static long seed = System.currentTimeMillis();
-
-  // Logs
-
-  @Parameter(names = {"--destTradeFile", "-dt"},
-    description = "File to write trade log data")
-  private static String destTradeFile = "log-" + timestamp + ".csv";
-
-  @Parameter(names = {"--destIAProfitFile", "-dia"},
-    description = "File to write IA profits")
-  private static String destIAProfitFile = "IAProfits-" + timestamp + ".csv";
-
-  // Configuration File
-  @Parameter(names = {"--config"}, description = "Configuration file",
-    required = true)
-  private static String configPath;
-
-  // Help
-
-  @Parameter(names = {"--help"}, description = "Show this usage information",
-    help = true)
-  private static boolean help;
-
-  public static String getRNG() {
-    return rng;
+/**
+ * The settings of one simulation run: the options shared by all runs plus the
+ * seed, the log files and the configuration file of this run.
+ */
+public class Settings extends RunOptions {
+
+  private final long seed;
+
+  private final String destTradeFile;
+
+  private final String destIAProfitFile;
+
+  private final String configPath;
+
+  /**
+   * Creates the settings of one simulation run.
+   * 
+   * @param options
+   *          The options shared by all runs, which are copied.
+   * @param seed
+   *          PRNG seed.
+   * @param destTradeFile
+   *          File to write trade log data.
+   * @param destIAProfitFile
+   *          File to write IA profits.
+   * @param configPath
+   *          Configuration file.
+   */
+  public Settings(RunOptions options, long seed, String destTradeFile,
+    String destIAProfitFile, String configPath) {
+    super(options);
+    this.seed = seed;
+    this.destTradeFile = destTradeFile;
+    this.destIAProfitFile = destIAProfitFile;
+    this.configPath = configPath;
   }
 
-  public static long getSeed() {
+  public long getSeed() {
     return seed;
   }
 
-  public static String getDestTradeFile() {
+  public String getDestTradeFile() {
     return destTradeFile;
   }
 
-  public static String getDestIAProfitFile() {
+  public String getDestIAProfitFile() {
     return destIAProfitFile;
   }
 
-  public static String getConfigPath() {
+  public String getConfigPath() {
     return configPath;
   }
 
-  public static boolean showHelp() {
-    return help;
-  }
-
 }
@@ -0,0 +1,697 @@
+package edu.virginia.jinsup;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
+import java.security.SecureRandom;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.apache.commons.math3.random.AbstractRandomGenerator;
+import org.apache.commons.math3.random.JDKRandomGenerator;
+import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.random.RandomAdaptor;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.random.Well19937c;
+
+/**
+ * Holds everything that belongs to one run of the simulator: its settings and
+ * parameters, its random number streams, its price graph and the IDs that are
+ * given out to agents and orders. Nothing about a simulation is kept in static
+ * fields, so several simulations can run at the same time in one JVM.
+ * 
+ * Each agent, the news process, the scheduler and the setup of the agents
+ * draw random numbers from their own stream. Every stream is seeded from the
+ * simulation's seed and the stream's ID alone, so a run is reproducible no
+ * matter in which order the streams are drawn from. With "--rngStreams
+ * shared", all of them draw from one stream instead, as the simulator used to.
+ */
+public class Simulation {
+
+  /**
+   * ID of the stream used to set up the agents. Agents' own streams use their
+   * agent ID, which is never negative.
+   */
+  public static final long SETUP_STREAM = -1;
+
+  /**
+   * ID of the stream used for news, i.e. updates to the buy probability.
+   */
+  public static final long NEWS_STREAM = -2;
+
+  /**
+   * ID of the stream used to shuffle the agents that act at the same time.
+   */
+  public static final long SCHEDULER_STREAM = -3;
+
+  /**
+   * Increment of the SplitMix64 generator, used to spread stream IDs apart.
+   */
+  private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+  /**
+   * Largest number of messages the async log writer can fall behind by.
+   */
+  private static final int MAX_LOG_QUEUE_SIZE = 1 << 26;
+
+  /**
+   * Command-line settings of the simulation.
+   */
+  private final Settings settings;
+
+  /**
+   * Parameters read from the configuration file.
+   */
+  private final Parameters parameters;
+
+  /**
+   * True if every stream should be a separate generator, false if they should
+   * all be sharedStream.
+   */
+  private final boolean splitStreams;
+
+  /**
+   * The stream every part of the simulation draws from if streams are not
+   * split.
+   */
+  private final RandomStream sharedStream;
+
+  /**
+   * True if exponential samples should be drawn with the ExponentialSampler,
+   * false if with commons-math's ExponentialDistribution.
+   */
+  private final boolean zigguratSampler;
+
+  /**
+   * True if order sizes and tick levels should be drawn from alias tables in
+   * constant time, false if by scanning the probabilities.
+   */
+  private final boolean aliasSampler;
+
+  /**
+   * True if each type of poisson trader should be driven by one
+   * PoissonAgentGroup, false if every trader should be scheduled on its own.
+   */
+  private final boolean aggregatePoissonAgents;
+
+  /**
+   * True if all poisson traders should be kept in one PoissonAgentStore.
+   */
+  private final boolean compactPoissonAgents;
+
+  /**
+   * True if the trade log should be written as binary records, false if as
+   * CSV.
+   */
+  private final boolean binaryLog;
+
+  /**
+   * True if the trade log should be written by an AsyncTradeLog.
+   */
+  private final boolean asyncLog;
+
+  /**
+   * True if the AsyncTradeLog should drop messages when it falls behind,
+   * false if the simulation should wait for it.
+   */
+  private final boolean dropLogMessages;
+
+  /**
+   * True if log files should be gzipped.
+   */
+  private final boolean gzipLogs;
+
+  /**
+   * Price graph, or null if the GUI is not shown.
+   */
+  private GraphFrame graphFrame;
+
+  /**
+   * Decides which messages go into the trade log, or null if there is no
+   * trade log.
+   */
+  private TradeLogFilter tradeLogFilter;
+
+  /**
+   * The ID that should be assigned to the next order created.
+   */
+  private long nextOrderID;
+
+  /**
+   * The ID that should be assigned to the next agent created.
+   */
+  private long nextAgentID;
+
+  /**
+   * Global buy probability for all poisson opportunistic traders, which acts
+   * as a news feed.
+   */
+  private double buyProbability;
+
+  /**
+   * Creates a simulation. The simulation does not start until run() is
+   * called.
+   * 
+   * @param settings
+   *          Command-line settings of the simulation.
+   * @param parameters
+   *          Parameters read from the configuration file.
+   */
+  public Simulation(Settings settings, Parameters parameters) {
+    this.settings = settings;
+    this.parameters = parameters;
+    nextOrderID = 0;
+    nextAgentID = 0;
+    buyProbability = parameters.initialBuyProbability;
+    String rngStreams = settings.getRNGStreams().toLowerCase();
+    if (rngStreams.equals("split")) {
+      splitStreams = true;
+      sharedStream = null;
+    } else if (rngStreams.equals("shared")) {
+      splitStreams = false;
+      sharedStream = createStream(settings.getRNG(), settings.getSeed());
+    } else {
+      splitStreams = false;
+      sharedStream = null;
+      throw new IllegalArgumentException(
+        "RNG streams must be either split or shared.");
+    }
+    String exponentialSampler = settings.getExponentialSampler().toLowerCase();
+    zigguratSampler = exponentialSampler.equals("ziggurat");
+    if (!zigguratSampler && !exponentialSampler.equals("commons")) {
+      throw new IllegalArgumentException(
+        "Exponential sampler must be either ziggurat or commons.");
+    }
+    String discreteSampler = settings.getDiscreteSampler().toLowerCase();
+    aliasSampler = discreteSampler.equals("alias");
+    if (!aliasSampler && !discreteSampler.equals("scan")) {
+      throw new IllegalArgumentException(
+        "Discrete sampler must be either alias or scan.");
+    }
+    String poissonAgents = settings.getPoissonAgents().toLowerCase();
+    aggregatePoissonAgents = poissonAgents.equals("aggregate");
+    compactPoissonAgents = poissonAgents.equals("compact");
+    if (!aggregatePoissonAgents && !compactPoissonAgents
+      && !poissonAgents.equals("individual")) {
+      throw new IllegalArgumentException(
+        "Poisson agents must be either individual, aggregate or compact.");
+    }
+    String logFormat = settings.getLogFormat().toLowerCase();
+    binaryLog = logFormat.equals("binary");
+    if (!binaryLog && !logFormat.equals("csv")) {
+      throw new IllegalArgumentException(
+        "Log format must be either csv or binary.");
+    }
+    String logWriter = settings.getLogWriter().toLowerCase();
+    asyncLog = logWriter.equals("async");
+    if (!asyncLog && !logWriter.equals("sync")) {
+      throw new IllegalArgumentException(
+        "Log writer must be either async or sync.");
+    }
+    if (settings.getLogQueueSize() < 1
+      || settings.getLogQueueSize() > MAX_LOG_QUEUE_SIZE) {
+      throw new IllegalArgumentException(
+        "Log queue size must be between 1 and " + MAX_LOG_QUEUE_SIZE + ".");
+    }
+    String logBackpressure = settings.getLogBackpressure().toLowerCase();
+    dropLogMessages = logBackpressure.equals("drop");
+    if (!dropLogMessages && !logBackpressure.equals("block")) {
+      throw new IllegalArgumentException(
+        "Log backpressure must be either block or drop.");
+    }
+    String logCompression = settings.getLogCompression().toLowerCase();
+    gzipLogs = logCompression.equals("gzip");
+    if (!gzipLogs && !logCompression.equals("none")) {
+      throw new IllegalArgumentException(
+        "Log compression must be either none or gzip.");
+    }
+    if (settings.getLogCompressionThreads() < 1) {
+      throw new IllegalArgumentException(
+        "Log compression threads must be at least 1.");
+    }
+  }
+
+  /**
+   * Gets the random number stream for a part of the simulation. The stream is
+   * created with its own generator and a seed derived from the simulation's
+   * seed and the stream's ID, unless streams are shared.
+   * 
+   * @param id
+   *          ID of the stream: an agent ID or one of the *_STREAM constants.
+   *          Each ID should only be asked for once.
+   * @return The stream.
+   */
+  public RandomStream createStream(long id) {
+    if (!splitStreams) {
+      return sharedStream;
+    }
+    return createStream(settings.getRNG(), deriveSeed(settings.getSeed(), id));
+  }
+
+  /**
+   * Derives the seed of a stream by mixing the simulation's seed and the
+   * stream's ID with the SplitMix64 finalizer, so that nearby IDs get
+   * unrelated seeds.
+   * 
+   * @param seed
+   *          Seed of the simulation.
+   * @param id
+   *          ID of the stream.
+   * @return Seed of the stream.
+   */
+  static long deriveSeed(long seed, long id) {
+    long z = seed + id * GOLDEN_GAMMA;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  /**
+   * Creates a random number stream with a new generator.
+   * 
+   * @param algorithm
+   *          Random number generation algorithm.
+   * @param seed
+   *          Seed of the generator.
+   * @return The stream.
+   */
+  private static RandomStream createStream(String algorithm, long seed) {
+    RandomGenerator randGen;
+    String rng = algorithm.toLowerCase();
+    if (rng.equals("mersenne")) { // Mersenne Twister
+      randGen = new MersenneTwister(seed);
+      return new RandomStream(randGen, new RandomAdaptor(randGen));
+    } else if (rng.equals("well19937c")) { // Well19937c
+      randGen = new Well19937c(seed);
+      return new RandomStream(randGen, new RandomAdaptor(randGen));
+    } else if (rng.equals("secure")) { // SecureRandom
+      final Random rand = new SecureRandom();
+      rand.setSeed(seed);
+      randGen = new AbstractRandomGenerator() {
+        @Override
+        public boolean nextBoolean() {
+          return rand.nextBoolean();
+        }
+
+        @Override
+        public void nextBytes(byte[] bytes) {
+          rand.nextBytes(bytes);
+        }
+
+        @Override
+        public double nextDouble() {
+          return rand.nextDouble();
+        }
+
+        @Override
+        public float nextFloat() {
+          return rand.nextFloat();
+        }
+
+        @Override
+        public double nextGaussian() {
+          return rand.nextGaussian();
+        }
+
+        @Override
+        public int nextInt() {
+          return rand.nextInt();
+        }
+
+        @Override
+        public int nextInt(int n) {
+          return rand.nextInt(n);
+        }
+
+        @Override
+        public long nextLong() {
+          return rand.nextLong();
+        }
+
+        @Override
+        public void setSeed(long seed) {
+          rand.setSeed(seed);
+        }
+      };
+      return new RandomStream(randGen, rand);
+    } else { // Random
+      randGen = new JDKRandomGenerator();
+      randGen.setSeed(seed);
+      return new RandomStream(randGen, new RandomAdaptor(randGen));
+    }
+  }
+
+  /**
+   * Creates the matching engine and controller of the simulation and runs it
+   * until the end of the trading period.
+   */
+  public void run() {
+    // Create window
+    if (parameters.showGui) {
+      graphFrame = new GraphFrame();
+    }
+
+    MatchingEngine matchingEngine = new MatchingEngine(this);
+
+    // The engine only does output work for the listeners added here
+    if (!parameters.testing) {
+      tradeLogFilter = createTradeLogFilter();
+      matchingEngine.addListener(new TradeLogListener(createTradeLog(),
+        tradeLogFilter));
+    }
+    if (parameters.showGui) {
+      matchingEngine.addListener(new GraphListener(graphFrame));
+    }
+
+    Controller controller = null;
+    long elapsedTime = System.nanoTime();
+    try {
+      controller = new Controller(this, matchingEngine);
+      controller.runSimulator();
+    } catch (RuntimeException | Error e) {
+      // Write out what was logged before the failure, so that the logs are
+      // not cut off and their writer threads stop.
+      try {
+        if (controller != null) {
+          controller.abortLogs();
+        } else {
+          matchingEngine.abortListeners();
+        }
+      } catch (RuntimeException closeFailure) {
+        e.addSuppressed(closeFailure);
+      }
+      throw e;
+    }
+    if (parameters.showGui) {
+      graphFrame.showFinished(System.nanoTime() - elapsedTime);
+    }
+  }
+
+  /**
+   * Warns about the agent types given with --logAgentTypes that no agent has,
+   * which are most likely misspelt, since nothing of them would be logged.
+   * Must be called once every agent has been created.
+   */
+  public void checkLogAgentTypes() {
+    if (tradeLogFilter == null) {
+      return;
+    }
+    TreeSet<String> unknown = tradeLogFilter.getUnknownAgentTypes();
+    if (!unknown.isEmpty()) {
+      System.err.println("Warning: --logAgentTypes names agent types that "
+        + "no agent has: " + unknown + ". The agent types are "
+        + tradeLogFilter.getAgentTypes() + ".");
+    }
+  }
+
+  /**
+   * Creates the order storage that was requested with --orderStore.
+   * 
+   * @return An empty order book store.
+   */
+  public OrderBookStore createOrderBookStore() {
+    String orderStore = settings.getOrderStore().toLowerCase();
+    if (orderStore.equals("objects")) {
+      return new ObjectOrderBookStore(parameters.buyPrice,
+        settings.isDebugOrders());
+    } else if (orderStore.equals("arrays")) {
+      return new ArrayOrderBookStore(parameters.buyPrice);
+    }
+    throw new IllegalArgumentException(
+      "Order store must be either objects or arrays.");
+  }
+
+  /**
+   * Creates the trade log in the requested format, split into segments and
+   * written on its own thread if requested.
+   * 
+   * @return The trade log.
+   */
+  public TradeLog createTradeLog() {
+    String destTradeFile = settings.getDestTradeFile();
+    long segmentSeconds = settings.getLogSegmentSeconds();
+    long segmentBytes = settings.getLogSegmentBytes();
+    if (segmentSeconds < 0 || segmentBytes < 0) {
+      throw new IllegalArgumentException(
+        "Log segment seconds and bytes must not be negative.");
+    }
+    TradeLog tradeLog;
+    if (segmentSeconds > 0 || segmentBytes > 0) {
+      tradeLog =
+        new SegmentedTradeLog(this, destTradeFile, segmentSeconds * 1000,
+          segmentBytes);
+    } else {
+      tradeLog = createTradeLogFile(destTradeFile);
+    }
+    if (asyncLog) {
+      return new AsyncTradeLog(tradeLog, settings.getLogQueueSize(),
+        dropLogMessages);
+    }
+    return tradeLog;
+  }
+
+  /**
+   * Creates a trade log file in the requested format, which is written on the
+   * calling thread.
+   * 
+   * @param path
+   *          The log file.
+   * @return The trade log.
+   */
+  public TradeLog createTradeLogFile(String path) {
+    WritableByteChannel channel = openLogFile(path);
+    if (binaryLog) {
+      return new BinaryTradeLog(channel);
+    }
+    return new CsvTradeLog(channel);
+  }
+
+  /**
+   * Creates the filter of the messages to write to the trade log from the
+   * settings.
+   * 
+   * @return The filter, or null if every message should be logged.
+   */
+  public TradeLogFilter createTradeLogFilter() {
+    List<String> logMessages = settings.getLogMessages();
+    List<String> logAgentTypes = settings.getLogAgentTypes();
+    List<String> logWindows = settings.getLogWindows();
+    double sampleRate = settings.getLogSampleRate();
+    if (!(sampleRate >= 0 && sampleRate <= 1)) {
+      throw new IllegalArgumentException(
+        "Log sample rate must be between 0 and 1.");
+    }
+    if (logMessages.isEmpty() && logAgentTypes.isEmpty()
+      && logWindows.isEmpty() && sampleRate == 1) {
+      return null;
+    }
+
+    int[] messageTypes = {1, 2, 3, 105};
+    if (!logMessages.isEmpty()) {
+      messageTypes = new int[logMessages.size()];
+      for (int i = 0; i < messageTypes.length; i++) {
+        String messageType = logMessages.get(i).trim();
+        if (!messageType.matches("1|2|3|4|105")) {
+          throw new IllegalArgumentException(
+            "Message type " + messageType + " is not 1, 2, 3, 4 or 105.");
+        }
+        messageTypes[i] = Integer.parseInt(messageType);
+      }
+    }
+
+    HashSet<String> agentTypeNames = null;
+    if (!logAgentTypes.isEmpty()) {
+      agentTypeNames = new HashSet<String>();
+      for (String agentType : logAgentTypes) {
+        agentTypeNames.add(agentType.trim());
+      }
+    }
+
+    long[] windowStarts = null;
+    long[] windowEnds = null;
+    if (!logWindows.isEmpty()) {
+      windowStarts = new long[logWindows.size()];
+      windowEnds = new long[logWindows.size()];
+      for (int i = 0; i < windowStarts.length; i++) {
+        String window = logWindows.get(i).trim();
+        int dash = window.indexOf('-');
+        try {
+          windowStarts[i] = Long.parseLong(window.substring(0, dash).trim());
+          windowEnds[i] = Long.parseLong(window.substring(dash + 1).trim());
+        } catch (RuntimeException e) {
+          throw new IllegalArgumentException(
+            "Time window " + window + " is not of the form start-end.");
+        }
+        if (windowEnds[i] <= windowStarts[i]
+          || (i > 0 && windowStarts[i] < windowEnds[i - 1])) {
+          throw new IllegalArgumentException(
+            "Time windows must be non-empty, sorted and not overlap.");
+        }
+      }
+    }
+    return new TradeLogFilter(messageTypes, agentTypeNames, windowStarts,
+      windowEnds, sampleRate, settings.getSeed());
+  }
+
+  /**
+   * Creates the log of the average profits of the intelligent agents in the
+   * requested format and layout. The files are named after the IA profit file
+   * of the settings: e.g. IAProfits-Delay1.csv, IAProfits-Delay5.csv, ... for
+   * separate files, or IAProfits.csv for one combined file, with .bin instead
+   * of .csv for binary files.
+   * 
+   * @param delays
+   *          The delays of the intelligent agents.
+   * @return The profit log.
+   */
+  public ProfitLog createProfitLog(List<Integer> delays) {
+    String format = settings.getIAProfitFormat().toLowerCase();
+    boolean binary = format.equals("binary");
+    if (!binary && !format.equals("csv")) {
+      throw new IllegalArgumentException(
+        "IA profit format must be either csv or binary.");
+    }
+    String layout = settings.getIAProfitLayout().toLowerCase();
+    boolean combined = layout.equals("combined");
+    if (!combined && !layout.equals("separate")) {
+      throw new IllegalArgumentException(
+        "IA profit layout must be either separate or combined.");
+    }
+    String location =
+      new File(settings.getDestIAProfitFile()).getAbsolutePath().split(
+        ".csv")[0];
+    String extension = binary ? ".bin" : ".csv";
+    int[] delayValues = new int[delays.size()];
+    for (int i = 0; i < delayValues.length; i++) {
+      delayValues[i] = delays.get(i);
+    }
+    String[] paths;
+    if (combined) {
+      paths = new String[] {location + extension};
+    } else {
+      paths = new String[delayValues.length];
+      for (int i = 0; i < paths.length; i++) {
+        paths[i] = location + "-Delay" + delayValues[i] + extension;
+      }
+    }
+    if (binary) {
+      return new BinaryProfitLog(paths, delayValues, combined);
+    }
+    return new CsvProfitLog(paths, delayValues, combined);
+  }
+
+  /**
+   * Creates a log file, which is gzipped if requested.
+   * 
+   * @param path
+   *          The log file.
+   * @return Channel to write the contents of the log file to.
+   */
+  public WritableByteChannel openLogFile(String path) {
+    WritableByteChannel channel = null;
+    try {
+      channel = new FileOutputStream(path).getChannel();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to create log file " + path, e);
+    }
+    if (gzipLogs) {
+      return new GzipBlockChannel(channel,
+        settings.getLogCompressionThreads());
+    }
+    return channel;
+  }
+
+  /**
+   * @return True if exponential samples should be drawn with the
+   *         ExponentialSampler, false if with commons-math's
+   *         ExponentialDistribution.
+   */
+  public boolean isZigguratSampler() {
+    return zigguratSampler;
+  }
+
+  /**
+   * @return True if order sizes and tick levels should be drawn with
+   *         AliasTable.sample(), false if with AliasTable.scan().
+   */
+  public boolean isAliasSampler() {
+    return aliasSampler;
+  }
+
+  /**
+   * @return True if each type of poisson trader should be driven by one
+   *         PoissonAgentGroup, false if every trader acts on its own.
+   */
+  public boolean isAggregatePoissonAgents() {
+    return aggregatePoissonAgents;
+  }
+
+  /**
+   * @return True if all poisson traders should be kept in one
+   *         PoissonAgentStore, false if every trader is an object of its own.
+   */
+  public boolean isCompactPoissonAgents() {
+    return compactPoissonAgents;
+  }
+
+  public Settings getSettings() {
+    return settings;
+  }
+
+  public Parameters getParameters() {
+    return parameters;
+  }
+
+  /**
+   * @return The price graph, or null if the GUI is not shown.
+   */
+  public GraphFrame getGraphFrame() {
+    return graphFrame;
+  }
+
+  /**
+   * Sets the ID to be given to the next order, e.g. when orders that were
+   * created while setting up should not count.
+   * 
+   * @param newNextOrderID
+   *          The ID of the next order.
+   */
+  public void setNextOrderID(long newNextOrderID) {
+    nextOrderID = newNextOrderID;
+  }
+
+  /**
+   * @return The ID that should be assigned to a new order. The next call will
+   *         return a different ID.
+   */
+  public long takeNextOrderID() {
+    return nextOrderID++;
+  }
+
+  /**
+   * @return The ID that should be assigned to a new agent. The next call will
+   *         return a different ID.
+   */
+  public long takeNextAgentID() {
+    return nextAgentID++;
+  }
+
+  public double getBuyProbability() {
+    return buyProbability;
+  }
+
+  /**
+   * Manually set the global buy probability of the poisson opportunistic
+   * traders.
+   * 
+   * @param buyProbability
+   *          The probability of making a buy order.
+   */
+  public void setBuyProbability(double buyProbability) {
+    this.buyProbability = buyProbability;
+  }
+}
@@ -22,12 +22,37 @@ public class SmallTrader extends PoissonAgent {
     super(matchEng, "SmallTrader", lambdaOrder, lambdaCancel, initialActTime);
   }
 
+  /**
+   * Creates a small trader that is a member of a PoissonAgentGroup.
+   * 
+   * @param matchEng
+   *          Matching engine of the simulation.
+   * @param randomStream
+   *          Stream of random numbers of the group.
+   */
+  public SmallTrader(MatchingEngine matchEng, RandomStream randomStream) {
+    super(matchEng, "SmallTrader", randomStream);
+  }
+
   @Override
   void makeOrder() {
-    boolean willBuy = JinSup.rand.nextBoolean();
-    createPoissonOrder(willBuy,
-      getOrderSize(Parameters.smallTraderOrderSizeProbabilities),
-      Parameters.smallTraderTickProbabilities);
+    makeOrder(this, getID());
+  }
+
+  /**
+   * Places an order of a small trader: buy or sell with equal probability.
+   * 
+   * @param agent
+   *          The trader, or the PoissonAgentStore it belongs to.
+   * @param agentID
+   *          ID of the trader.
+   */
+  static void makeOrder(Agent agent, long agentID) {
+    boolean willBuy = agent.getRandom().nextBoolean();
+    Parameters parameters = agent.getParameters();
+    placeOrder(agent, agentID, willBuy,
+      parameters.smallTraderOrderSizeProbabilities,
+      parameters.smallTraderTickProbabilities);
   }
 
 }
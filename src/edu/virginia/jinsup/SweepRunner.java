@@ -0,0 +1,182 @@
+package edu.virginia.jinsup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParameterException;
+import com.beust.jcommander.ParametersDelegate;
+
+/**
+ * Runs a simulation for every combination of a list of configuration files and
+ * a list of seeds, several at a time in one JVM. Each run writes its logs to
+ * its own directory, named after the configuration file and the seed, inside
+ * the output directory. The GUI is never shown for these runs. Run with:
+ * 
+ * java -cp jinsup.jar edu.virginia.jinsup.SweepRunner --config a.json,b.xml
+ * --seeds 1,2,3 [options]
+ */
+public class SweepRunner {
+
+  public static final String RUN_COMMAND =
+    "java -cp jinsup.jar edu.virginia.jinsup.SweepRunner";
+
+  @Parameter(names = {"--config"},
+    description = "Configuration files, separated by commas", required = true)
+  private List<String> configPaths = new ArrayList<String>();
+
+  @Parameter(names = {"--seeds"},
+    description = "PRNG seeds to run each configuration with, separated by "
+      + "commas", required = true)
+  private List<String> seeds = new ArrayList<String>();
+
+  @Parameter(names = {"--threads"},
+    description = "Number of simulations to run at the same time")
+  private int threads = Runtime.getRuntime().availableProcessors();
+
+  @Parameter(names = {"--outDir"},
+    description = "Directory to write the logs of every run to")
+  private String outDir = "sweep";
+
+  @ParametersDelegate
+  private RunOptions options = new RunOptions();
+
+  @Parameter(names = {"--help"}, description = "Show this usage information",
+    help = true)
+  private boolean help;
+
+  public static void main(String[] args) {
+    SweepRunner sweepRunner = new SweepRunner();
+    try {
+      JCommander jcommander = new JCommander(sweepRunner, args);
+      if (sweepRunner.help) {
+        jcommander.setProgramName(RUN_COMMAND);
+        jcommander.usage();
+        System.exit(0);
+      }
+    } catch (ParameterException e) {
+      System.err.println(e.getMessage()
+        + "\nUse --help to display usage information.");
+      System.exit(1);
+    }
+    sweepRunner.run();
+  }
+
+  /**
+   * Runs every combination of configuration file and seed on a fixed pool of
+   * threads and waits for all of them to finish. A run that fails is reported
+   * without stopping the others, and the sweep exits with status 1 once they
+   * have all finished.
+   */
+  public void run() {
+    ArrayList<Long> seedValues = new ArrayList<Long>();
+    for (String seed : seeds) {
+      try {
+        seedValues.add(Long.parseLong(seed.trim()));
+      } catch (NumberFormatException e) {
+        System.err.println("Error: Seed " + seed + " is not a number.");
+        System.exit(1);
+      }
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    ArrayList<String> runNames = new ArrayList<String>();
+    ArrayList<Future<?>> results = new ArrayList<Future<?>>();
+    for (String configPath : configPaths) {
+      for (long seed : seedValues) {
+        String runName = getConfigName(configPath) + "-seed" + seed;
+        // Runs with the same name would write to the same log files.
+        if (runNames.contains(runName)) {
+          continue;
+        }
+        runNames.add(runName);
+        results.add(executor.submit(createRun(configPath, seed, runName)));
+      }
+    }
+    executor.shutdown();
+
+    boolean failed = false;
+    for (int i = 0; i < results.size(); i++) {
+      try {
+        results.get(i).get();
+        System.out.println("Finished " + runNames.get(i));
+      } catch (ExecutionException e) {
+        // Only this run failed; the others keep running.
+        Throwable cause = e.getCause();
+        System.err.println("Error: Run " + runNames.get(i) + " failed: "
+          + cause.getMessage());
+        if (!(cause instanceof IllegalArgumentException)) {
+          cause.printStackTrace();
+        }
+        failed = true;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        executor.shutdownNow();
+        System.exit(1);
+      }
+    }
+    if (failed) {
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Creates the task that runs one simulation.
+   * 
+   * @param configPath
+   *          Configuration file of the simulation.
+   * @param seed
+   *          PRNG seed of the simulation.
+   * @param runName
+   *          Name of the directory to write the logs of the simulation to.
+   * @return The task.
+   */
+  private Runnable createRun(final String configPath, final long seed,
+    String runName) {
+    final File runDir = new File(outDir, runName);
+    String tradeFileName =
+      options.getLogFormat().equalsIgnoreCase("binary") ? "log.bin"
+        : "log.csv";
+    if (options.getLogCompression().equalsIgnoreCase("gzip")) {
+      tradeFileName += ".gz";
+    }
+    String destTradeFile = new File(runDir, tradeFileName).getPath();
+    String destIAProfitFile = new File(runDir, "IAProfits.csv").getPath();
+    final Settings settings =
+      new Settings(options, seed, destTradeFile, destIAProfitFile, configPath);
+    return new Runnable() {
+      @Override
+      public void run() {
+        try {
+          Files.createDirectories(runDir.toPath());
+        } catch (IOException e) {
+          throw new UncheckedIOException("Failed to create directory "
+            + runDir, e);
+        }
+        Parameters parameters = Parameters.load(configPath);
+        parameters.showGui = false;
+        new Simulation(settings, parameters).run();
+      }
+    };
+  }
+
+  /**
+   * @param configPath
+   *          Path to a configuration file.
+   * @return The name of the configuration file without its extension.
+   */
+  private static String getConfigName(String configPath) {
+    String name = new File(configPath).getName();
+    int dot = name.lastIndexOf('.');
+    return (dot > 0) ? name.substring(0, dot) : name;
+  }
+}
@@ -0,0 +1,151 @@
+package edu.virginia.jinsup;
+
+import java.util.Arrays;
+
+/**
+ * A priority queue of numbers, such as agent numbers, ordered by the time each
+ * number is queued for. Numbers queued for the same time come out smallest
+ * first. The queue is a binary heap in primitive arrays, so it takes no memory
+ * per entry beyond an int and a long.
+ */
+public class TimeQueue {
+
+  /**
+   * The time each number is or was last queued for, indexed by number.
+   */
+  private long[] times;
+
+  /**
+   * The heap of queued numbers.
+   */
+  private int[] heap;
+
+  /**
+   * Number of numbers in the heap.
+   */
+  private int size;
+
+  /**
+   * Creates an empty queue.
+   * 
+   * @param capacity
+   *          Number of numbers to make room for. The queue grows if larger
+   *          numbers are added.
+   */
+  public TimeQueue(int capacity) {
+    times = new long[Math.max(capacity, 1)];
+    heap = new int[Math.max(capacity, 1)];
+    size = 0;
+  }
+
+  /**
+   * Queues a number. The number must not already be queued.
+   * 
+   * @param number
+   *          The number.
+   * @param time
+   *          The time to queue it for.
+   */
+  public void add(int number, long time) {
+    if (number >= times.length) {
+      times = Arrays.copyOf(times, Math.max(number + 1, times.length * 2));
+    }
+    if (size == heap.length) {
+      heap = Arrays.copyOf(heap, size * 2);
+    }
+    times[number] = time;
+    int i = size++;
+    heap[i] = number;
+    siftUp(i);
+  }
+
+  /**
+   * @return True if no number is queued.
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * @return The earliest time a number is queued for, or Long.MAX_VALUE if no
+   *         number is queued.
+   */
+  public long getFirstTime() {
+    return (size == 0) ? Long.MAX_VALUE : times[heap[0]];
+  }
+
+  /**
+   * @param number
+   *          A number that has been added.
+   * @return The time the number was last queued for.
+   */
+  public long getTime(int number) {
+    return times[number];
+  }
+
+  /**
+   * @return The number that comes first, which is removed from the queue.
+   */
+  public int removeFirst() {
+    int first = heap[0];
+    size--;
+    if (size > 0) {
+      heap[0] = heap[size];
+      siftDown(0);
+    }
+    return first;
+  }
+
+  /**
+   * @param a
+   *          A number.
+   * @param b
+   *          Another number.
+   * @return True if number a comes before number b in the queue.
+   */
+  private boolean before(int a, int b) {
+    return times[a] < times[b] || (times[a] == times[b] && a < b);
+  }
+
+  /**
+   * Moves a heap entry up until its parent comes before it.
+   * 
+   * @param i
+   *          Index of the entry in the heap.
+   */
+  private void siftUp(int i) {
+    int number = heap[i];
+    while (i > 0) {
+      int parent = (i - 1) >>> 1;
+      if (!before(number, heap[parent])) {
+        break;
+      }
+      heap[i] = heap[parent];
+      i = parent;
+    }
+    heap[i] = number;
+  }
+
+  /**
+   * Moves a heap entry down until it comes before both of its children.
+   * 
+   * @param i
+   *          Index of the entry in the heap.
+   */
+  private void siftDown(int i) {
+    int number = heap[i];
+    int half = size >>> 1;
+    while (i < half) {
+      int child = 2 * i + 1;
+      if (child + 1 < size && before(heap[child + 1], heap[child])) {
+        child++;
+      }
+      if (!before(heap[child], number)) {
+        break;
+      }
+      heap[i] = heap[child];
+      i = child;
+    }
+    heap[i] = number;
+  }
+}
@@ -0,0 +1,50 @@
+package edu.virginia.jinsup;
+
+/**
+ * A change of the best bid or ask price. The new prices are those of the
+ * EngineEvent.
+ */
+public class TopOfBookEvent extends EngineEvent {
+
+  /**
+   * Message type of top-of-book changes in the trade log.
+   */
+  public static final int TOP_OF_BOOK = 4;
+
+  /**
+   * Best bid price (CENTS) before the change, or -1 if there was none.
+   */
+  private int previousBestBid;
+
+  /**
+   * Best ask price (CENTS) before the change, or -1 if there was none.
+   */
+  private int previousBestAsk;
+
+  /**
+   * Sets the best prices before the change.
+   * 
+   * @param previousBestBid
+   *          Best bid price (CENTS), or -1 if there was none.
+   * @param previousBestAsk
+   *          Best ask price (CENTS), or -1 if there was none.
+   */
+  void setPrevious(int previousBestBid, int previousBestAsk) {
+    this.previousBestBid = previousBestBid;
+    this.previousBestAsk = previousBestAsk;
+  }
+
+  /**
+   * @return Best bid price (CENTS) before the change, or -1 if there was none.
+   */
+  public int getPreviousBestBid() {
+    return previousBestBid;
+  }
+
+  /**
+   * @return Best ask price (CENTS) before the change, or -1 if there was none.
+   */
+  public int getPreviousBestAsk() {
+    return previousBestAsk;
+  }
+}
@@ -0,0 +1,81 @@
+package edu.virginia.jinsup;
+
+/**
+ * One side of a trade. The order fields are those of the traded order after
+ * the trade.
+ */
+public class TradeEvent extends OrderEvent {
+
+  /**
+   * Message type of trades.
+   */
+  public static final int TRADE = 105;
+
+  /**
+   * Price (CENTS) that the trade occurred at.
+   */
+  private int tradePrice;
+
+  /**
+   * Volume that was traded on this order.
+   */
+  private int volume;
+
+  /**
+   * True if the order is the aggressive side of the trade.
+   */
+  private boolean aggressor;
+
+  /**
+   * ID of the trade, shared by both of its sides.
+   */
+  private long matchID;
+
+  /**
+   * Sets the fields of the trade.
+   * 
+   * @param tradePrice
+   *          Price (CENTS) that the trade occurred at.
+   * @param volume
+   *          Volume that was traded on this order.
+   * @param aggressor
+   *          True if the order is the aggressive side of the trade.
+   * @param matchID
+   *          ID of the trade, shared by both of its sides.
+   */
+  void setTrade(int tradePrice, int volume, boolean aggressor, long matchID) {
+    this.tradePrice = tradePrice;
+    this.volume = volume;
+    this.aggressor = aggressor;
+    this.matchID = matchID;
+    setChange(TRADE, -volume, 0);
+  }
+
+  /**
+   * @return Price (CENTS) that the trade occurred at.
+   */
+  public int getTradePrice() {
+    return tradePrice;
+  }
+
+  /**
+   * @return Volume that was traded on this order.
+   */
+  public int getVolume() {
+    return volume;
+  }
+
+  /**
+   * @return True if the order is the aggressive side of the trade.
+   */
+  public boolean isAggressor() {
+    return aggressor;
+  }
+
+  /**
+   * @return ID of the trade, shared by both of its sides.
+   */
+  public long getMatchID() {
+    return matchID;
+  }
+}
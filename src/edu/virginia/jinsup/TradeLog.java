@@ -0,0 +1,124 @@
+package edu.virginia.jinsup;
+
+/**
+ * Destination of the trade log of a simulation. The MatchingEngine passes it
+ * the raw fields of every order message and trade, and the log decides how to
+ * store them.
+ */
+public interface TradeLog {
+
+  /**
+   * Introduces an agent type before it is first used in a message.
+   * 
+   * @param code
+   *          Code of the type, as passed to the log methods.
+   * @param name
+   *          Name of the type.
+   */
+  void addAgentType(int code, String name);
+
+  /**
+   * Logs the creation, modification or cancellation of an order.
+   * 
+   * @param time
+   *          Time of the message in milliseconds.
+   * @param bestBid
+   *          Best bid price (CENTS), or a negative number if there is none.
+   * @param bestAsk
+   *          Best ask price (CENTS), or a negative number if there is none.
+   * @param agentID
+   *          ID of the agent that owns the order.
+   * @param agentType
+   *          Code of the type of the agent.
+   * @param messageType
+   *          1 for a new order, 2 for a modification, 3 for a cancellation.
+   * @param buyOrder
+   *          True if the order is a buy order.
+   * @param orderID
+   *          ID of the order.
+   * @param originalQuant
+   *          Original quantity of the order.
+   * @param price
+   *          Price (CENTS) of the order.
+   * @param market
+   *          True if the order is a market order.
+   * @param leavesQuant
+   *          Leaves quantity of the order.
+   */
+  void logOrder(long time, int bestBid, int bestAsk, long agentID,
+    int agentType, int messageType, boolean buyOrder, long orderID,
+    int originalQuant, int price, boolean market, int leavesQuant);
+
+  /**
+   * Logs one side of a trade.
+   * 
+   * @param time
+   *          Time of the trade in milliseconds.
+   * @param bestBid
+   *          Best bid price (CENTS), or a negative number if there is none.
+   * @param bestAsk
+   *          Best ask price (CENTS), or a negative number if there is none.
+   * @param agentID
+   *          ID of the agent that owns the order.
+   * @param agentType
+   *          Code of the type of the agent.
+   * @param buyOrder
+   *          True if the order is a buy order.
+   * @param orderID
+   *          ID of the order.
+   * @param originalQuant
+   *          Original quantity of the order.
+   * @param price
+   *          Price (CENTS) of the order.
+   * @param market
+   *          True if the order is a market order.
+   * @param leavesQuant
+   *          Leaves quantity of the order after the trade.
+   * @param tradePrice
+   *          Price (CENTS) that the trade occurred at.
+   * @param volume
+   *          Volume that was traded on this order.
+   * @param aggressor
+   *          True if the order is the aggressive side of the trade.
+   * @param matchID
+   *          ID of the trade, shared by both of its sides.
+   */
+  void logTrade(long time, int bestBid, int bestAsk, long agentID,
+    int agentType, boolean buyOrder, long orderID, int originalQuant,
+    int price, boolean market, int leavesQuant, int tradePrice, int volume,
+    boolean aggressor, long matchID);
+
+  /**
+   * Logs a change of the best bid or ask price.
+   * 
+   * @param time
+   *          Time of the change in milliseconds.
+   * @param bestBid
+   *          Best bid price (CENTS), or a negative number if there is none.
+   * @param bestAsk
+   *          Best ask price (CENTS), or a negative number if there is none.
+   */
+  void logTopOfBook(long time, int bestBid, int bestAsk);
+
+  /**
+   * @return The number of bytes logged so far, before any compression.
+   */
+  long getSize();
+
+  /**
+   * Writes everything logged so far to the log file.
+   */
+  void flush();
+
+  /**
+   * Writes everything logged so far to the log file and closes it.
+   */
+  void close();
+
+  /**
+   * Closes the log file after the simulation has failed, without waiting for
+   * room to log anything else. Messages that were already logged are still
+   * written.
+   */
+  void abort();
+}
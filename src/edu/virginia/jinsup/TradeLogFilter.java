@@ -0,0 +1,238 @@
+package edu.virginia.jinsup;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.TreeSet;
+
+/**
+ * Decides which messages go into the trade log, by message type, agent type
+ * and time, and by sampling. The TradeLogListener asks before it passes a
+ * message to the log, so dropped messages cost nothing to format or write.
+ * 
+ * Sampling does not draw from the random number streams of the simulation, so
+ * it does not change what happens in the simulation. Instead, each message is
+ * kept if a hash of the seed and the message falls below the sampling rate.
+ * Both sides of a trade are kept or dropped together.
+ * 
+ * Top-of-book changes belong to no agent, so they are logged whatever the
+ * agent types to log are.
+ */
+public class TradeLogFilter {
+
+  /**
+   * Message type of trades.
+   */
+  private static final int TRADE = 105;
+
+  /**
+   * Key that the messages of orders are hashed by, to keep them apart from the
+   * trade match IDs that trades are hashed by.
+   */
+  private static final long ORDER_KEY = 1L << 62;
+
+  /**
+   * Key that top-of-book changes are hashed by, below ORDER_KEY and above any
+   * trade match ID.
+   */
+  private static final long TOP_OF_BOOK_KEY = 1L << 61;
+
+  /**
+   * Whether each message type is logged, indexed by message type.
+   */
+  private final boolean[] messageTypes;
+
+  /**
+   * Names of the agent types to log, or null if all are logged.
+   */
+  private final HashSet<String> agentTypeNames;
+
+  /**
+   * Whether each agent type is logged, indexed by type code.
+   */
+  private boolean[] agentTypes;
+
+  /**
+   * Names of the agent types that have been added so far.
+   */
+  private final TreeSet<String> addedTypeNames;
+
+  /**
+   * Start of each time window to log, in milliseconds, or null if all times
+   * are logged.
+   */
+  private final long[] windowStarts;
+
+  /**
+   * End (exclusive) of each time window to log, in milliseconds.
+   */
+  private final long[] windowEnds;
+
+  /**
+   * Index of the first window that has not ended yet. Messages come in order
+   * of time, so earlier windows are never needed again.
+   */
+  private int window;
+
+  /**
+   * Share of messages to log, between 0 and 1.
+   */
+  private final double sampleRate;
+
+  /**
+   * Seed of the sampling hash.
+   */
+  private final long seed;
+
+  /**
+   * Number of order messages seen so far, which are sampled by their number.
+   */
+  private long orderCount;
+
+  /**
+   * Number of top-of-book changes seen so far, which are sampled by their
+   * number.
+   */
+  private long topOfBookCount;
+
+  /**
+   * Creates a filter.
+   * 
+   * @param messageTypes
+   *          Message types to log: 1, 2, 3, 4 (top of book) and/or 105.
+   * @param agentTypeNames
+   *          Names of the agent types to log, or null to log all.
+   * @param windowStarts
+   *          Starts of the time windows to log, in milliseconds, or null to
+   *          log all times.
+   * @param windowEnds
+   *          Ends (exclusive) of the time windows to log, in milliseconds.
+   *          The windows must be sorted and must not overlap.
+   * @param sampleRate
+   *          Share of the messages to log, between 0 and 1.
+   * @param seed
+   *          Seed of the sampling hash.
+   */
+  public TradeLogFilter(int[] messageTypes, HashSet<String> agentTypeNames,
+    long[] windowStarts, long[] windowEnds, double sampleRate, long seed) {
+    this.messageTypes = new boolean[TRADE + 1];
+    for (int messageType : messageTypes) {
+      this.messageTypes[messageType] = true;
+    }
+    this.agentTypeNames = agentTypeNames;
+    agentTypes = new boolean[0];
+    addedTypeNames = new TreeSet<String>();
+    this.windowStarts = windowStarts;
+    this.windowEnds = windowEnds;
+    window = 0;
+    this.sampleRate = sampleRate;
+    this.seed = seed;
+    orderCount = 0;
+    topOfBookCount = 0;
+  }
+
+  /**
+   * Tells the filter the name of an agent type.
+   * 
+   * @param code
+   *          Code of the type.
+   * @param name
+   *          Name of the type.
+   */
+  public void addAgentType(int code, String name) {
+    if (code >= agentTypes.length) {
+      agentTypes = Arrays.copyOf(agentTypes, code + 1);
+    }
+    agentTypes[code] = agentTypeNames == null || agentTypeNames.contains(name);
+    addedTypeNames.add(name);
+  }
+
+  /**
+   * @return The names of the agent types to log that no agent type added so
+   *         far has, sorted. Empty if all agent types are logged.
+   */
+  public TreeSet<String> getUnknownAgentTypes() {
+    TreeSet<String> unknown = new TreeSet<String>();
+    if (agentTypeNames != null) {
+      unknown.addAll(agentTypeNames);
+      unknown.removeAll(addedTypeNames);
+    }
+    return unknown;
+  }
+
+  /**
+   * @return The names of the agent types that have been added so far, sorted.
+   */
+  public TreeSet<String> getAgentTypes() {
+    return new TreeSet<String>(addedTypeNames);
+  }
+
+  /**
+   * @param time
+   *          Time of the message in milliseconds.
+   * @param messageType
+   *          1 for a new order, 2 for a modification, 3 for a cancellation.
+   * @param agentType
+   *          Code of the type of the agent that owns the order.
+   * @return True if the message should be logged.
+   */
+  public boolean acceptsOrder(long time, int messageType, int agentType) {
+    // Count every order message so sampling does not depend on the filters.
+    long key = ORDER_KEY + orderCount++;
+    return messageTypes[messageType] && agentTypes[agentType]
+      && inWindow(time) && sampled(key);
+  }
+
+  /**
+   * @param time
+   *          Time of the trade in milliseconds.
+   * @param agentType
+   *          Code of the type of the agent that owns the order.
+   * @param matchID
+   *          ID of the trade.
+   * @return True if this side of the trade should be logged.
+   */
+  public boolean acceptsTrade(long time, int agentType, long matchID) {
+    return messageTypes[TRADE] && agentTypes[agentType] && inWindow(time)
+      && sampled(matchID);
+  }
+
+  /**
+   * @param time
+   *          Time of the change of the best prices in milliseconds.
+   * @return True if the change should be logged.
+   */
+  public boolean acceptsTopOfBook(long time) {
+    long key = TOP_OF_BOOK_KEY + topOfBookCount++;
+    return messageTypes[TopOfBookEvent.TOP_OF_BOOK] && inWindow(time)
+      && sampled(key);
+  }
+
+  /**
+   * @param time
+   *          Time of a message in milliseconds, no earlier than the time of
+   *          the previous message.
+   * @return True if the time falls in one of the windows to log.
+   */
+  private boolean inWindow(long time) {
+    if (windowStarts == null) {
+      return true;
+    }
+    while (window < windowEnds.length && time >= windowEnds[window]) {
+      window++;
+    }
+    return window < windowEnds.length && time >= windowStarts[window];
+  }
+
+  /**
+   * @param key
+   *          Key of a message.
+   * @return True if the message falls in the sample.
+   */
+  private boolean sampled(long key) {
+    if (sampleRate >= 1) {
+      return true;
+    }
+    long hash = Simulation.deriveSeed(seed, key);
+    return (hash >>> 11) * 0x1.0p-53 < sampleRate;
+  }
+}
@@ -0,0 +1,105 @@
+package edu.virginia.jinsup;
+
+/**
+ * Writes the order and trade events of a MatchingEngine to a trade log,
+ * leaving out those that the filter does not accept. Changes of the top of the
+ * book are only written if the filter asks for them, since the best prices are
+ * logged with every other message anyway.
+ */
+public class TradeLogListener implements EngineListener {
+
+  /**
+   * The trade log.
+   */
+  private final TradeLog tradeLog;
+
+  /**
+   * Decides which messages go into the trade log, or null if all do.
+   */
+  private final TradeLogFilter tradeLogFilter;
+
+  /**
+   * @param tradeLog
+   *          The trade log.
+   * @param tradeLogFilter
+   *          Decides which messages go into the trade log, or null if all do.
+   */
+  public TradeLogListener(TradeLog tradeLog, TradeLogFilter tradeLogFilter) {
+    this.tradeLog = tradeLog;
+    this.tradeLogFilter = tradeLogFilter;
+  }
+
+  @Override
+  public void agentTypeAdded(int code, String name) {
+    tradeLog.addAgentType(code, name);
+    if (tradeLogFilter != null) {
+      tradeLogFilter.addAgentType(code, name);
+    }
+  }
+
+  @Override
+  public void orderAccepted(OrderEvent event) {
+    logOrder(event);
+  }
+
+  @Override
+  public void orderModified(OrderEvent event) {
+    logOrder(event);
+  }
+
+  @Override
+  public void orderCancelled(OrderEvent event) {
+    logOrder(event);
+  }
+
+  /**
+   * Logs a new, modified or cancelled order if the filter accepts it.
+   * 
+   * @param event
+   *          The order.
+   */
+  private void logOrder(OrderEvent event) {
+    if (tradeLogFilter == null
+      || tradeLogFilter.acceptsOrder(event.getTime(), event.getMessageType(),
+        event.getAgentType())) {
+      tradeLog.logOrder(event.getTime(), event.getBestBid(),
+        event.getBestAsk(), event.getAgentID(), event.getAgentType(),
+        event.getMessageType(), event.isBuyOrder(), event.getOrderID(),
+        event.getOriginalQuant(), event.getPrice(), event.isMarketOrder(),
+        event.getLeavesQuant());
+    }
+  }
+
+  @Override
+  public void trade(TradeEvent event) {
+    if (tradeLogFilter == null
+      || tradeLogFilter.acceptsTrade(event.getTime(), event.getAgentType(),
+        event.getMatchID())) {
+      tradeLog.logTrade(event.getTime(), event.getBestBid(),
+        event.getBestAsk(), event.getAgentID(), event.getAgentType(),
+        event.isBuyOrder(), event.getOrderID(), event.getOriginalQuant(),
+        event.getPrice(), event.isMarketOrder(), event.getLeavesQuant(),
+        event.getTradePrice(), event.getVolume(), event.isAggressor(),
+        event.getMatchID());
+    }
+  }
+
+  @Override
+  public void topOfBookChanged(TopOfBookEvent event) {
+    if (tradeLogFilter != null
+      && tradeLogFilter.acceptsTopOfBook(event.getTime())) {
+      tradeLog.logTopOfBook(event.getTime(), event.getBestBid(),
+        event.getBestAsk());
+    }
+  }
+
+  @Override
+  public void close() {
+    tradeLog.close();
+  }
+
+  @Override
+  public void abort() {
+    tradeLog.abort();
+  }
+}
@@ -16,208 +16,200 @@ public class XMLParser {
    * 
    * @param configFileLocation
    *          The location of the configuration file.
+   * @return The parameters read from the file.
    */
-  public static void loadParameters(String configFileLocation) {
+  public static Parameters loadParameters(String configFileLocation) {
+    Parameters parameters = new Parameters();
     Document doc = null;
     Builder parser = new Builder();
     try {
       doc = parser.build(new File(configFileLocation));
     } catch (ParsingException | IOException e) {
-      // TODO Auto-generated catch block
-      System.err.println("Error: Could not parse configuration file.");
+      throw new IllegalArgumentException("Could not parse configuration file "
+        + configFileLocation + ".", e);
     }
 
     Element root = doc.getRootElement();
 
     // Overall simulation parameters
-    Parameters.buyPrice =
+    parameters.buyPrice =
       Integer.parseInt(root.getAttribute("buyPrice").getValue());
-    Parameters.startTime =
+    parameters.startTime =
       Long.parseLong(root.getAttribute("startTime").getValue());
-    Parameters.tradeTime =
+    parameters.tradeTime =
       Long.parseLong(root.getAttribute("tradeTime").getValue());
-    Parameters.testing =
+    parameters.testing =
       root.getAttribute("testing").getValue().toLowerCase().equals("true");
-    Parameters.showGui =
+    parameters.showGui =
       root.getAttribute("showGui").getValue().toLowerCase().equals("true");
 
     // Agent Counts
     Element agentCounts = root.getFirstChildElement("AgentCounts");
-    Parameters.fundCount =
+    parameters.fundCount =
       Integer.parseInt(agentCounts.getFirstChildElement("FundamentalCount")
         .getValue());
-    Parameters.marketMakerCount =
+    parameters.marketMakerCount =
       Integer.parseInt(agentCounts.getFirstChildElement("MarketMakerCount")
         .getValue());
-    Parameters.opporStratCount =
+    parameters.opporStratCount =
       Integer.parseInt(agentCounts.getFirstChildElement("OpporStratCount")
         .getValue());
-    Parameters.hftCount =
+    parameters.hftCount =
       Integer.parseInt(agentCounts.getFirstChildElement("HFTCount").getValue());
-    Parameters.smallTraderCount =
+    parameters.smallTraderCount =
       Integer.parseInt(agentCounts.getFirstChildElement("SmallTraderCount")
         .getValue());
-    Parameters.intelligentAgentCount =
+    parameters.intelligentAgentCount =
       Integer.parseInt(agentCounts
         .getFirstChildElement("IntelligentAgentCount").getValue());
 
     // Poisson arrival rates
     Element poissonArrivalRates =
       root.getFirstChildElement("PoissonArrivalRates");
-    Parameters.fundamentalArrivalRate =
+    parameters.fundamentalArrivalRate =
       Double.parseDouble(poissonArrivalRates.getFirstChildElement(
         "FundamentalArrivalRate").getValue());
-    Parameters.marketMakerArrivalRate =
+    parameters.marketMakerArrivalRate =
       Double.parseDouble(poissonArrivalRates.getFirstChildElement(
         "MarketMakerArrivalRate").getValue());
-    Parameters.opporStratArrivalRate =
+    parameters.opporStratArrivalRate =
       Double.parseDouble(poissonArrivalRates.getFirstChildElement(
         "OpporStratArrivalRate").getValue());
-    Parameters.hftArrivalRate =
+    parameters.hftArrivalRate =
       Double.parseDouble(poissonArrivalRates.getFirstChildElement(
         "HFTArrivalRate").getValue());
-    Parameters.smallTraderArrivalRate =
+    parameters.smallTraderArrivalRate =
       Double.parseDouble(poissonArrivalRates.getFirstChildElement(
         "SmallTraderArrivalRate").getValue());
 
     // Poisson cancel rates
     Element poissonCancelRates =
       root.getFirstChildElement("PoissonCancelRates");
-    Parameters.fundamentalCancelRate =
+    parameters.fundamentalCancelRate =
       Double.parseDouble(poissonCancelRates.getFirstChildElement(
         "FundamentalCancelRate").getValue());
-    Parameters.marketMakerCancelRate =
+    parameters.marketMakerCancelRate =
       Double.parseDouble(poissonCancelRates.getFirstChildElement(
         "MarketMakerCancelRate").getValue());
-    Parameters.opporStratCancelRate =
+    parameters.opporStratCancelRate =
       Double.parseDouble(poissonCancelRates.getFirstChildElement(
         "OpporStratCancelRate").getValue());
-    Parameters.hftCancelRate =
+    parameters.hftCancelRate =
       Double.parseDouble(poissonCancelRates.getFirstChildElement(
         "HFTCancelRate").getValue());
-    Parameters.smallTraderCancelRate =
+    parameters.smallTraderCancelRate =
       Double.parseDouble(poissonCancelRates.getFirstChildElement(
         "SmallTraderCancelRate").getValue());
 
     // Poisson order size probabilities
     Element orderSizeProbabilities =
       root.getFirstChildElement("PoissonOrderSizeProbabilities");
-    Parameters.fundamentalOrderSizeProbabilities =
-      getMultipleDoubleElements(orderSizeProbabilities
-        .getFirstChildElement("FundamentalSizes"));
-    Parameters.marketMakerOrderSizeProbabilities =
-      getMultipleDoubleElements(orderSizeProbabilities
-        .getFirstChildElement("MarketMakerSizes"));
-    Parameters.opporStratOrderSizeProbabilities =
-      getMultipleDoubleElements(orderSizeProbabilities
-        .getFirstChildElement("OpporStratSizes"));
-    Parameters.hftOrderSizeProbabilities =
-      getMultipleDoubleElements(orderSizeProbabilities
-        .getFirstChildElement("HFTSizes"));
-    Parameters.smallTraderOrderSizeProbabilities =
-      getMultipleDoubleElements(orderSizeProbabilities
-        .getFirstChildElement("SmallTraderSizes"));
+    parameters.fundamentalOrderSizeProbabilities =
+      getProbabilities(orderSizeProbabilities, "FundamentalSizes");
+    parameters.marketMakerOrderSizeProbabilities =
+      getProbabilities(orderSizeProbabilities, "MarketMakerSizes");
+    parameters.opporStratOrderSizeProbabilities =
+      getProbabilities(orderSizeProbabilities, "OpporStratSizes");
+    parameters.hftOrderSizeProbabilities =
+      getProbabilities(orderSizeProbabilities, "HFTSizes");
+    parameters.smallTraderOrderSizeProbabilities =
+      getProbabilities(orderSizeProbabilities, "SmallTraderSizes");
 
     // Poisson tick probabilities
     Element tickProbabilities =
       root.getFirstChildElement("PoissonTickProbabilities");
-    Parameters.fundamentalTickProbabilities =
-      getMultipleDoubleElements(tickProbabilities
-        .getFirstChildElement("FundamentalTicks"));
-    Parameters.marketMakerTickProbabilities =
-      getMultipleDoubleElements(tickProbabilities
-        .getFirstChildElement("MarketMakerTicks"));
-    Parameters.opporStratTickProbabilities =
-      getMultipleDoubleElements(tickProbabilities
-        .getFirstChildElement("OpporStratTicks"));
-    Parameters.hftTickProbabilities =
-      getMultipleDoubleElements(tickProbabilities
-        .getFirstChildElement("HFTTicks"));
-    Parameters.smallTraderTickProbabilities =
-      getMultipleDoubleElements(tickProbabilities
-        .getFirstChildElement("SmallTraderTicks"));
+    parameters.fundamentalTickProbabilities =
+      getProbabilities(tickProbabilities, "FundamentalTicks");
+    parameters.marketMakerTickProbabilities =
+      getProbabilities(tickProbabilities, "MarketMakerTicks");
+    parameters.opporStratTickProbabilities =
+      getProbabilities(tickProbabilities, "OpporStratTicks");
+    parameters.hftTickProbabilities =
+      getProbabilities(tickProbabilities, "HFTTicks");
+    parameters.smallTraderTickProbabilities =
+      getProbabilities(tickProbabilities, "SmallTraderTicks");
 
     // Inventory Limits
     Element inventoryLimits = root.getFirstChildElement("InventoryLimits");
-    Parameters.marketMakerInventoryLimit =
+    parameters.marketMakerInventoryLimit =
       Integer.parseInt(inventoryLimits.getFirstChildElement(
         "MarketMakerInventoryLimit").getValue());
-    Parameters.opporStratInventoryLimit =
+    parameters.opporStratInventoryLimit =
       Integer.parseInt(inventoryLimits.getFirstChildElement(
         "OpporStratInventoryLimit").getValue());
-    Parameters.hftInventoryLimit =
+    parameters.hftInventoryLimit =
       Integer.parseInt(inventoryLimits
         .getFirstChildElement("HFTInventoryLimit").getValue());
-    Parameters.intelligentAgentInventoryLimit =
+    parameters.intelligentAgentInventoryLimit =
       Integer.parseInt(inventoryLimits.getFirstChildElement(
         "IntelligentAgentInventoryLimit").getValue());
 
     // Intelligent Agent Parameters
     Element intelligentAgentParams =
       root.getFirstChildElement("IntelligentAgentParams");
-    Parameters.intelligentAgentLogFreq =
+    parameters.intelligentAgentLogFreq =
       Integer.parseInt(intelligentAgentParams.getFirstChildElement(
         "ProfitLogFrequency").getValue());
-    Parameters.intelligentAgentThreshold =
+    parameters.intelligentAgentThreshold =
       Integer.parseInt(intelligentAgentParams.getFirstChildElement("Threshold")
         .getValue());
-    Parameters.intelligentAgentDelays =
+    parameters.intelligentAgentDelays =
       getMultipleIntegerElements(intelligentAgentParams
         .getFirstChildElement("Delays"));
-    Parameters.halfTickWidth =
+    parameters.halfTickWidth =
       Integer.parseInt(intelligentAgentParams.getFirstChildElement(
         "HalfTickWidth").getValue());
-    Parameters.orderSize =
+    parameters.orderSize =
       Integer.parseInt(intelligentAgentParams.getFirstChildElement("OrderSize")
         .getValue());
-    Parameters.actInterval =
+    parameters.actInterval =
       Integer.parseInt(intelligentAgentParams.getFirstChildElement(
         "ActInterval").getValue());
-    Parameters.intelligentAgentThresholdEnable =
+    parameters.intelligentAgentThresholdEnable =
       intelligentAgentParams.getFirstChildElement("ThresholdEnable").getValue()
         .toLowerCase().equals("true");
 
     // OpporStrat Parameters
     Element opporStratParams = root.getFirstChildElement("OpporStratParams");
-    Parameters.opporStratNewsFreq =
+    parameters.opporStratNewsFreq =
       Integer.parseInt(opporStratParams.getFirstChildElement(
         "OpporStratNewsFreq").getValue());
-    Parameters.initialBuyProbability =
+    parameters.initialBuyProbability =
       Double.parseDouble(opporStratParams.getFirstChildElement(
         "InitialBuyProbability").getValue());
-    Parameters.minBuyProbability =
+    parameters.minBuyProbability =
       Double.parseDouble(opporStratParams.getFirstChildElement(
         "MinBuyProbability").getValue());
-    Parameters.maxBuyProbability =
+    parameters.maxBuyProbability =
       Double.parseDouble(opporStratParams.getFirstChildElement(
         "MaxBuyProbability").getValue());
-    Parameters.lowerUniformBound =
+    parameters.lowerUniformBound =
       Double.parseDouble(opporStratParams.getFirstChildElement(
         "LowerUniformBound").getValue());
-    Parameters.upperUniformBound =
+    parameters.upperUniformBound =
       Double.parseDouble(opporStratParams.getFirstChildElement(
         "UpperUniformBound").getValue());
 
+    return parameters;
   }
 
   /**
-   * Helper method used to parse a list of Double values.
+   * Helper method used to parse a list of probabilities. Throws an
+   * IllegalArgumentException if they do not add up to 1.0.
    * 
-   * @param element
-   *          The element to extract the list from.
-   * @return ArrayList of values from the given element.
+   * @param parent
+   *          The element that contains the list.
+   * @param name
+   *          Name of the element to extract the list from.
+   * @return Table to draw from the probabilities with.
    */
-  private static ArrayList<Double> getMultipleDoubleElements(Element element) {
-    ArrayList<Double> values = new ArrayList<Double>();
-    String[] strArray = element.getValue().split(" ");
-    for (String str : strArray) {
-      values.add(Double.parseDouble(str));
-    }
-    if (!Parameters.checkProbabilitiesList(values)) {
-      System.err
-        .println("Error: Probabilities do not add up close enough to 1.0.");
+  private static AliasTable getProbabilities(Element parent, String name) {
+    String[] strArray = parent.getFirstChildElement(name).getValue().split(" ");
+    double[] values = new double[strArray.length];
+    for (int i = 0; i < strArray.length; i++) {
+      values[i] = Double.parseDouble(strArray[i]);
     }
-    return values;
+    return Parameters.createProbabilityTable(name, values);
   }
 
   /**
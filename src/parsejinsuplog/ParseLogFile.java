@@ -7,7 +7,13 @@
  */
 package parsejinsuplog;
 
-import java.io.FileReader;
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.zip.GZIPInputStream;
 import au.com.bytecode.opencsv.CSVReader;
 import java.io.FileNotFoundException;
 import java.util.*;
@@ -118,7 +124,7 @@ public class ParseLogFile {
 
     try {
       // Get the CSVReader instance with specifying the delimiter to be used
-      reader = new CSVReader(new FileReader(this.getLogFileLocation()), ',');
+      reader = new CSVReader(openLog(this.getLogFileLocation()), ',');
       String[] nextLine;
       // Read first line which is the header
       nextLine = reader.readNext();
@@ -272,6 +278,24 @@ public class ParseLogFile {
     }
   }
 
+  /*
+   * Opens the log file for reading. Logs written with --logCompression gzip
+   * are recognized by the gzip magic number and decompressed on the fly, so
+   * they can be parsed like plain .csv logs.
+   */
+  private static Reader openLog(String location) throws IOException {
+    InputStream in =
+      new BufferedInputStream(new FileInputStream(location), 1 << 16);
+    in.mark(2);
+    int first = in.read();
+    int second = in.read();
+    in.reset();
+    if (first == 0x1f && second == 0x8b) {
+      in = new GZIPInputStream(in, 1 << 16);
+    }
+    return new InputStreamReader(in);
+  }
+
   /*
    * Helper method to print all the orders in an array list of orders
    */